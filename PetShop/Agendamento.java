@@ -6,13 +6,21 @@ import java.time.LocalTime;
 
 /**
  * Representa um agendamento de serviço para um pet no pet shop.
+ * <p>
+ * Só a situação muda depois da criação. Ela fica em um único campo volátil, alterado pela loja com o
+ * próprio monitor: quem lê sem bloqueio, por um {@link Instantaneo}, vê sempre uma situação inteira e
+ * recente, nunca um comparecimento e um cancelamento ao mesmo tempo.
  */
 public class Agendamento {
     private final Pets pet;      // Pet que será atendido
     private final LocalDate data;   // Data do agendamento
     private final LocalTime hora;   // Hora do agendamento
     private final String servico;   // Nome do serviço agendado
-    private final double valor;     // Valor do serviço
+    private final Dinheiro valor;   // Valor do serviço
+    // Código da situação: '-' pendente, 'S' compareceu, 'N' faltou, 'C' cancelado antes do atendimento
+    // (a vaga e os lembretes já foram liberados).
+    private volatile char situacao = '-';
+    private volatile double riscoReserva = Double.NaN; // Probabilidade de falta usada ao reservar a vaga (só em memória)
 
     /**
      * Construtor da classe Agendamento, garantindo a inicialização dos atributos.
@@ -24,7 +32,7 @@ public class Agendamento {
      * @param valor Valor do serviço
      * @throws IllegalArgumentException Se a data do agendamento for no passado ou fora do horário de funcionamento
      */
-    public Agendamento(Pets pet, LocalDate data, LocalTime hora, String servico, double valor) {
+    public Agendamento(Pets pet, LocalDate data, LocalTime hora, String servico, Dinheiro valor) {
         if (data.isBefore(LocalDate.now()) || (data.isEqual(LocalDate.now()) && hora.isBefore(LocalTime.now()))) {
             throw new IllegalArgumentException("A data e hora do agendamento devem estar no presente.");
         }
@@ -39,6 +47,29 @@ public class Agendamento {
         this.valor = valor;
     }
 
+    // Usado por restaurar: um agendamento salvo pode estar no passado.
+    private Agendamento(Pets pet, LocalDate data, LocalTime hora, String servico, Dinheiro valor, char situacao) {
+        this.pet = pet;
+        this.data = data;
+        this.hora = hora;
+        this.servico = servico;
+        this.valor = valor;
+        this.situacao = situacao;
+    }
+
+    /**
+     * Recria um agendamento salvo, sem as validações de data de um agendamento novo.
+     * @param situacao Código da situação gravado por {@link #getCodigoSituacao()}
+     * @return Agendamento restaurado
+     * @throws IllegalArgumentException Se o código da situação for desconhecido
+     */
+    static Agendamento restaurar(Pets pet, LocalDate data, LocalTime hora, String servico, Dinheiro valor, String situacao) {
+        return switch (situacao) {
+            case "-", "S", "N", "C" -> new Agendamento(pet, data, hora, servico, valor, situacao.charAt(0));
+            default -> throw new IllegalArgumentException("Situação de agendamento desconhecida: " + situacao);
+        };
+    }
+
     /**
      * Verifica se a data e hora do agendamento estão dentro do horário de funcionamento do pet shop.
      * 
@@ -46,7 +77,7 @@ public class Agendamento {
      * @param hora Hora do agendamento
      * @return true se o horário for válido, false caso contrário
      */
-    private boolean isHorarioValido(LocalDate data, LocalTime hora) {
+    public static boolean isHorarioValido(LocalDate data, LocalTime hora) {
         DayOfWeek diaDaSemana = data.getDayOfWeek();
         if (null == diaDaSemana) { // Segunda a sexta
             return hora.isAfter(LocalTime.of(7, 59)) && hora.isBefore(LocalTime.of(18, 1)); // 08:00 a 18:00
@@ -67,8 +98,76 @@ public class Agendamento {
      * @return String com informações do agendamento
      */
     public String getDetalhesAgendamento() {
-        return String.format("Data: %s | Hora: %s | Pet: %s | Serviço: %s | Valor: R$ %.2f",
-                data, hora, pet.getNomePet(), servico, valor);
+        return String.format("Data: %s | Hora: %s | Pet: %s | Serviço: %s | Valor: R$ %s%s",
+                data, hora, pet.getNomePet(), servico, valor, situacao == 'C' ? " | Cancelado" : "");
+    }
+
+    /**
+     * Registra se o cliente compareceu ao agendamento. O resultado só pode ser registrado uma vez.
+     * 
+     * @param compareceu true se o pet foi atendido, false em caso de falta
+     * @throws IllegalStateException Se o resultado já tiver sido registrado
+     */
+    public void registrarComparecimento(boolean compareceu) {
+        char atual = situacao;
+        if (atual == 'C') throw new IllegalStateException("O agendamento foi cancelado.");
+        if (atual != '-') throw new IllegalStateException("O comparecimento deste agendamento já foi registrado.");
+        situacao = compareceu ? 'S' : 'N';
+    }
+
+    /**
+     * Cancela o agendamento. Só agendamentos pendentes podem ser cancelados.
+     * 
+     * @throws IllegalStateException Se o agendamento já tiver sido cancelado ou o comparecimento registrado
+     */
+    public void cancelar() {
+        char atual = situacao;
+        if (atual == 'C') throw new IllegalStateException("O agendamento já foi cancelado.");
+        if (atual != '-') {
+            throw new IllegalStateException("O comparecimento deste agendamento já foi registrado; não é possível cancelá-lo.");
+        }
+        situacao = 'C';
+    }
+
+    // Desfaz o cancelamento (usado ao desfazer a remoção que cancelou o agendamento).
+    void reativar() {
+        situacao = '-';
+    }
+
+    /**
+     * Indica se o agendamento ainda aguarda o atendimento (nem registrado nem cancelado).
+     * @return true se estiver pendente
+     */
+    public boolean isPendente() {
+        return situacao == '-';
+    }
+    public boolean isCancelado() {
+        return situacao == 'C';
+    }
+
+    /**
+     * Situação do agendamento para relatórios e consultas.
+     * @return "pendente", "compareceu", "faltou" ou "cancelado"
+     */
+    public String getSituacao() {
+        return switch (situacao) {
+            case 'C' -> "cancelado";
+            case 'S' -> "compareceu";
+            case 'N' -> "faltou";
+            default -> "pendente";
+        };
+    }
+
+    // Código de uma letra gravado nos arquivos: "-" pendente, "S" compareceu, "N" faltou, "C" cancelado.
+    String getCodigoSituacao() {
+        return String.valueOf(situacao);
+    }
+
+    double getRiscoReserva() {
+        return riscoReserva;
+    }
+    void setRiscoReserva(double riscoReserva) {
+        this.riscoReserva = riscoReserva;
     }
 
     // Getters
@@ -84,8 +183,12 @@ public class Agendamento {
     public String getServico() {
         return servico; 
     }
-    public double getValor() {
+    public Dinheiro getValor() {
         return valor; 
     }
+    public Boolean getCompareceu() {
+        char atual = situacao;
+        return atual == 'S' ? Boolean.TRUE : atual == 'N' ? Boolean.FALSE : null;
+    }
     
 }
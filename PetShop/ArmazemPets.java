@@ -0,0 +1,188 @@
+package aps3;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Armazenamento compacto dos dados dos pets em vetores paralelos (estrutura de vetores).
+ * <p>
+ * Cada loja tem o seu armazenamento, e cada pet ocupa nele uma posição: espécie em um byte, peso em
+ * gramas e nascimento em dias desde 1970-01-01 como int, e o nome como referência à instância
+ * canônica do texto (nomes como "Rex" e "Luna" se repetem muito e são guardados uma única vez).
+ * Com a geração da posição, são 17 bytes por pet, contra mais de 100 bytes de um objeto com Strings e
+ * {@link java.time.LocalDate} próprios. Os objetos {@link Pets} são apenas visões sobre uma posição
+ * deste armazenamento.
+ * <p>
+ * O dicionário de nomes é limitado a {@value #LIMITE_DICIONARIO} textos: ao enchê-lo, ele é
+ * esvaziado e recomeça, então nomes que aparecem uma vez só não o fazem crescer sem limite e os
+ * nomes comuns voltam a ser compartilhados logo em seguida. As posições já gravadas continuam
+ * apontando para os seus textos.
+ * <p>
+ * Os vetores são divididos em blocos que nunca são realocados, então a leitura não precisa de
+ * bloqueio: o pet chega às outras threads publicado pela {@link Loja}, depois de gravado aqui.
+ * A posição de um pet removido só volta para a lista de livres quando a loja o descarta da
+ * lixeira sem agendamentos no histórico, que ainda o referenciariam. Versões antigas dos
+ * cadastros, resultados de consultas e cópias do objeto podem continuar segurando a visão: cada
+ * posição tem uma geração, incrementada ao ser liberada, e a visão guarda a geração em que foi
+ * criada. Toda leitura confere a geração depois de ler o dado (como o {@code validate} de um
+ * {@link java.util.concurrent.locks.StampedLock}), então uma visão antiga falha em vez de ler os
+ * dados do pet que passou a ocupar a posição.
+ */
+final class ArmazemPets {
+    static final byte CACHORRO = 0;
+    static final byte GATO = 1;
+    private static final String[] ESPECIES = {"Cachorro", "Gato"};
+
+    private static final int BITS_BLOCO = 12;
+    private static final int TAMANHO_BLOCO = 1 << BITS_BLOCO;
+    private static final int MASCARA_BLOCO = TAMANHO_BLOCO - 1;
+    static final int LIMITE_DICIONARIO = 1 << 14;
+
+    private volatile byte[][] especies = new byte[4][];
+    private volatile int[][] pesosGramas = new int[4][];
+    private volatile int[][] nascimentos = new int[4][];
+    private volatile String[][] nomes = new String[4][];
+    private volatile int[][] geracoes = new int[4][]; // Incrementada cada vez que a posição é liberada
+    private int quantidade;       // Posições já usadas alguma vez
+    private int[] livres = new int[16]; // Posições liberadas, reaproveitadas primeiro
+    private int quantidadeLivres;
+
+    private final Map<String, String> dicionario = new HashMap<>(); // Texto -> instância canônica (com o monitor)
+
+    /**
+     * Reserva uma posição para um novo pet, reaproveitando uma liberada se houver.
+     * @return Posição do pet
+     */
+    synchronized int adicionar(String nome, byte especie, int pesoGramas, int nascimento) {
+        int posicao = quantidadeLivres > 0 ? livres[--quantidadeLivres] : quantidade++;
+        int bloco = posicao >>> BITS_BLOCO;
+        if (bloco == especies.length) {
+            int novoTamanho = especies.length * 2;
+            especies = Arrays.copyOf(especies, novoTamanho);
+            pesosGramas = Arrays.copyOf(pesosGramas, novoTamanho);
+            nascimentos = Arrays.copyOf(nascimentos, novoTamanho);
+            nomes = Arrays.copyOf(nomes, novoTamanho);
+            geracoes = Arrays.copyOf(geracoes, novoTamanho);
+        }
+        if (especies[bloco] == null) {
+            especies[bloco] = new byte[TAMANHO_BLOCO];
+            pesosGramas[bloco] = new int[TAMANHO_BLOCO];
+            nascimentos[bloco] = new int[TAMANHO_BLOCO];
+            nomes[bloco] = new String[TAMANHO_BLOCO];
+            geracoes[bloco] = new int[TAMANHO_BLOCO];
+        }
+        int deslocamento = posicao & MASCARA_BLOCO;
+        especies[bloco][deslocamento] = especie;
+        pesosGramas[bloco][deslocamento] = pesoGramas;
+        nascimentos[bloco][deslocamento] = nascimento;
+        nomes[bloco][deslocamento] = canonico(nome);
+        return posicao;
+    }
+
+    /**
+     * Devolve a posição de um pet que não é mais referenciado para a lista de livres. A geração
+     * muda antes de qualquer dado ser sobrescrito, então as visões antigas passam a falhar.
+     * @param posicao Posição do pet descartado
+     * @param geracao Geração da visão que pede a liberação
+     * @throws IllegalStateException Se a posição já tiver sido liberada
+     */
+    synchronized void liberar(int posicao, int geracao) {
+        validar(posicao, geracao);
+        geracoes[posicao >>> BITS_BLOCO][posicao & MASCARA_BLOCO]++;
+        VarHandle.releaseFence(); // A nova geração fica visível antes dos dados do próximo ocupante
+        if (quantidadeLivres == livres.length) livres = Arrays.copyOf(livres, livres.length * 2);
+        livres[quantidadeLivres++] = posicao;
+        nomes[posicao >>> BITS_BLOCO][posicao & MASCARA_BLOCO] = null; // Solta o texto, se era o último a usá-lo
+    }
+
+    // Geração atual da posição, lida por quem acabou de reservá-la.
+    int getGeracao(int posicao) {
+        return geracoes[posicao >>> BITS_BLOCO][posicao & MASCARA_BLOCO];
+    }
+
+    // Falha se a posição foi liberada depois que a visão foi criada; chamado depois de ler o dado.
+    private void validar(int posicao, int geracao) {
+        VarHandle.acquireFence(); // A leitura do dado não passa para depois da leitura da geração
+        if (geracoes[posicao >>> BITS_BLOCO][posicao & MASCARA_BLOCO] != geracao) {
+            throw new IllegalStateException("O pet foi descartado do cadastro; a posição dele pode já pertencer a outro pet.");
+        }
+    }
+
+    String getNome(int posicao, int geracao) {
+        String nome = nomes[posicao >>> BITS_BLOCO][posicao & MASCARA_BLOCO];
+        validar(posicao, geracao);
+        return nome;
+    }
+    synchronized void setNome(int posicao, int geracao, String nome) {
+        validar(posicao, geracao);
+        nomes[posicao >>> BITS_BLOCO][posicao & MASCARA_BLOCO] = canonico(nome);
+    }
+
+    byte getCodigoEspecie(int posicao, int geracao) {
+        byte especie = especies[posicao >>> BITS_BLOCO][posicao & MASCARA_BLOCO];
+        validar(posicao, geracao);
+        return especie;
+    }
+    String getEspecie(int posicao, int geracao) {
+        return ESPECIES[getCodigoEspecie(posicao, geracao)];
+    }
+    void setEspecie(int posicao, int geracao, byte especie) {
+        validar(posicao, geracao);
+        especies[posicao >>> BITS_BLOCO][posicao & MASCARA_BLOCO] = especie;
+    }
+
+    int getPesoGramas(int posicao, int geracao) {
+        int gramas = pesosGramas[posicao >>> BITS_BLOCO][posicao & MASCARA_BLOCO];
+        validar(posicao, geracao);
+        return gramas;
+    }
+    void setPesoGramas(int posicao, int geracao, int gramas) {
+        validar(posicao, geracao);
+        pesosGramas[posicao >>> BITS_BLOCO][posicao & MASCARA_BLOCO] = gramas;
+    }
+
+    int getNascimento(int posicao, int geracao) {
+        int dia = nascimentos[posicao >>> BITS_BLOCO][posicao & MASCARA_BLOCO];
+        validar(posicao, geracao);
+        return dia;
+    }
+    void setNascimento(int posicao, int geracao, int dia) {
+        validar(posicao, geracao);
+        nascimentos[posicao >>> BITS_BLOCO][posicao & MASCARA_BLOCO] = dia;
+    }
+
+    /**
+     * Converte o nome informado na espécie armazenada.
+     * @param especie Nome da espécie, sem diferenciar maiúsculas e minúsculas
+     * @return Código da espécie, ou -1 se não for Cachorro nem Gato
+     */
+    static byte codigoEspecie(String especie) {
+        for (byte i = 0; i < ESPECIES.length; i++) {
+            if (ESPECIES[i].equalsIgnoreCase(especie)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Pets ocupando posições no armazenamento.
+     * @return Posições usadas menos as liberadas
+     */
+    synchronized int getQuantidade() {
+        return quantidade - quantidadeLivres;
+    }
+
+    synchronized int getQuantidadeNomes() {
+        return dicionario.size();
+    }
+
+    // Instância compartilhada do nome; chamado com o monitor do armazenamento.
+    private String canonico(String nome) {
+        String existente = dicionario.get(nome);
+        if (existente != null) return existente;
+        if (dicionario.size() == LIMITE_DICIONARIO) dicionario.clear(); // Recomeça: os nomes comuns logo voltam
+        dicionario.put(nome, nome);
+        return nome;
+    }
+}
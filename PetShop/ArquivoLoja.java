@@ -0,0 +1,628 @@
+package aps3;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Grava a loja em um diretório e a reabre carregando os clientes sob demanda.
+ * <p>
+ * Os clientes são divididos em segmentos pelo hash do CPF; cada segmento é um arquivo de texto com
+ * os clientes, suas contas de fidelidade, seus pets, o histórico de saúde e os agendamentos, no
+ * mesmo formato de campos separados por ";" do {@link ModoLote}. O índice ({@value #INDICE}) guarda
+ * só o que é pequeno e não cresce com o número de clientes: a tabela de segmentos, a última
+ * sequência do {@link FeedAlteracoes} incluída nos dados (a numeração continua dela ao reabrir), o financeiro, o
+ * catálogo de produtos, o modelo de faltas, a ocupação dos horários futuros (que o agendamento
+ * precisa para não lotar um horário cujos clientes ainda não foram lidos) e o caixa: os resumos
+ * dos dias fechados e a abertura do dia ainda aberto. As despesas e os movimentos do caixa, que
+ * crescem com o uso, ficam em {@value #LANCAMENTOS}.
+ * <p>
+ * Ao abrir, só o índice é lido; a loja reserva as posições de cada cliente e agendamento e lê o
+ * segmento de um CPF no primeiro acesso a ele. Consultas que percorrem todos os clientes carregam
+ * os segmentos que faltam, e os lançamentos são lidos antes da primeira alteração ou do primeiro
+ * acesso ao financeiro ou ao caixa. Em segundo plano, {@link #iniciarAquecimento} lê primeiro os
+ * lançamentos e os segmentos com agendamentos recentes ou futuros, que são os mais procurados e os
+ * que têm lembretes a enviar.
+ * Agendamentos de pets já removidos ficam em {@value #ORFAOS}, com o último dono de cada pet,
+ * lido só quando o histórico inteiro é consultado.
+ */
+public class ArquivoLoja {
+    public static final String DIRETORIO_PADRAO = "dados";
+    public static final int DIAS_AQUECIMENTO = 7;        // Agendamentos desde esta quantidade de dias atrás
+    private static final String INDICE = "indice.txt";
+    private static final String ORFAOS = "orfaos.txt";
+    private static final String LANCAMENTOS = "lancamentos.txt";
+    private static final String FORMATO = "petshop-dados";
+    private static final int VERSAO_FORMATO = 1;
+    private static final int CLIENTES_POR_SEGMENTO = 1024;
+    private static final int SEGMENTOS_MINIMOS = 16;
+
+    private final Path diretorio;
+
+    // Estado da abertura; alterado só sob o monitor da loja aberta.
+    private int segmentos;             // Potência de 2; os segmentos "segmentos" e "segmentos + 1" são os órfãos e os lançamentos
+    private LocalDate[] ultimaData;    // Data do último agendamento de cada segmento, ou null
+    private boolean[] carregados;
+    private int pendentes;
+    private volatile int lidos;        // Segmentos já lidos, para acompanhamento
+    private Financeiro financeiro;     // Destino dos lançamentos, obtido na abertura (os getters da loja os carregariam)
+    private FechamentoCaixa caixa;
+
+    /**
+     * Construtor do arquivo.
+     * @param diretorio Diretório dos dados (criado ao salvar)
+     */
+    public ArquivoLoja(Path diretorio) {
+        if (diretorio == null) throw new IllegalArgumentException("Diretório não pode ser nulo.");
+        this.diretorio = diretorio;
+    }
+
+    /**
+     * Indica se o diretório tem dados salvos, contando os de uma gravação interrompida durante a
+     * troca dos diretórios (que {@link #abrir} recupera).
+     * @return true se o índice existir
+     */
+    public boolean existe() {
+        if (Files.isRegularFile(diretorio.resolve(INDICE))) return true;
+        return !Files.exists(diretorio) && (Files.isRegularFile(temporario().resolve(INDICE))
+            || Files.isRegularFile(antigo().resolve(INDICE)));
+    }
+
+    // Gravação
+
+    /**
+     * Salva todos os dados da loja, carregando antes os segmentos que ainda não foram lidos. As
+     * alterações ficam bloqueadas durante a gravação. Os arquivos são escritos em um diretório
+     * temporário que só substitui o anterior depois de completo; se a troca for interrompida, {@link #abrir}
+     * e a gravação seguinte recuperam o diretório completo que sobrou.
+     * @param loja Loja a ser salva
+     * @return Quantidade de clientes salvos
+     * @throws IOException Se não for possível gravar
+     */
+    public int salvar(Loja loja) throws IOException {
+        synchronized (loja) {
+            Instantaneo instantaneo = loja.instantaneo(); // Carrega o que faltava
+            recuperar();
+            Path temporario = temporario();
+            apagar(temporario);
+            Files.createDirectories(temporario);
+
+            List<Cliente> clientes = new ArrayList<>(instantaneo.getClientes());
+            int quantidade = segmentosPara(clientes.size());
+            List<List<Cliente>> porSegmento = new ArrayList<>(quantidade);
+            for (int i = 0; i < quantidade; i++) {
+                porSegmento.add(new ArrayList<>());
+            }
+            Map<Cliente, Integer> posicoes = new IdentityHashMap<>(clientes.size());
+            for (int i = 0; i < clientes.size(); i++) {
+                posicoes.put(clientes.get(i), i);
+                porSegmento.get(segmento(clientes.get(i).getCpf(), quantidade)).add(clientes.get(i));
+            }
+
+            // Posição de cada agendamento, agrupada por pet.
+            List<Agendamento> agendamentos = instantaneo.getAgendamentos();
+            Map<Pets, List<Integer>> agendamentosPorPet = new IdentityHashMap<>();
+            for (int i = 0; i < agendamentos.size(); i++) {
+                agendamentosPorPet.computeIfAbsent(agendamentos.get(i).getPet(), p -> new ArrayList<>(2)).add(i);
+            }
+
+            LocalDate[] datas = new LocalDate[quantidade];
+            for (int s = 0; s < quantidade; s++) {
+                try (BufferedWriter saida = Files.newBufferedWriter(temporario.resolve(nomeSegmento(s)), StandardCharsets.UTF_8)) {
+                    for (Cliente cliente : porSegmento.get(s)) {
+                        gravarCliente(saida, loja, cliente, posicoes.get(cliente));
+                        for (Pets pet : instantaneo.getPets(cliente)) {
+                            LocalDate ultima = gravarPet(saida, loja, pet, agendamentosPorPet.remove(pet), agendamentos);
+                            if (ultima != null && (datas[s] == null || ultima.isAfter(datas[s]))) datas[s] = ultima;
+                        }
+                    }
+                }
+            }
+            try (BufferedWriter saida = Files.newBufferedWriter(temporario.resolve(ORFAOS), StandardCharsets.UTF_8)) {
+                for (Map.Entry<Pets, List<Integer>> orfao : agendamentosPorPet.entrySet()) {
+                    gravarExDono(saida, instantaneo.buscarExDono(orfao.getKey()));
+                    gravarPet(saida, loja, orfao.getKey(), orfao.getValue(), agendamentos);
+                }
+            }
+            try (BufferedWriter saida = Files.newBufferedWriter(temporario.resolve(LANCAMENTOS), StandardCharsets.UTF_8)) {
+                gravarLancamentos(saida, loja.getFinanceiro().getLivroDespesas(),
+                    loja.getFinanceiro().getLivroDespesas().getQuantidade(), loja.getCaixa().capturarDiario());
+            }
+            gravarIndice(temporario.resolve(INDICE), loja, instantaneo, quantidade, clientes.size(), agendamentos.size(), datas);
+
+            // Troca os diretórios. Uma interrupção entre os dois movimentos deixa os dados em ".old" e
+            // ".tmp", que recuperar() devolve ao lugar; o antigo só é apagado com o novo confirmado.
+            Path antigo = antigo();
+            if (Files.exists(diretorio)) {
+                apagar(antigo); // Sobra de uma gravação anterior: o diretório atual tem o índice
+                Files.move(diretorio, antigo, StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.move(temporario, diretorio, StandardCopyOption.ATOMIC_MOVE);
+            if (Files.isRegularFile(diretorio.resolve(INDICE))) apagar(antigo);
+            loja.getFeed().aparar(); // Com os dados gravados, o feed só guarda o que os consumidores retêm
+            return clientes.size();
+        }
+    }
+
+    // Grava o registro do cliente (com o histórico de faltas) e a conta de fidelidade; os pets vêm em seguida.
+    static void gravarCliente(Writer saida, Loja loja, Cliente cliente, int posicao) throws IOException {
+        int[] historico = loja.getPrevisorFalta().getHistorico(cliente.getCpf());
+        linha(saida, "cliente", posicao, cliente.getNome(), cliente.getCpf(), cliente.getTelefone(), cliente.getEndereco(),
+            historico[0], historico[1]);
+        long[] conta = loja.getFidelidade().exportar(cliente.getCpf());
+        if (conta != null) saida.write("fidelidade;" + juntar(conta) + "\n");
+    }
+
+    // Grava o último dono de um pet removido, antes do pet, para que o histórico continue mostrando de quem era.
+    static void gravarExDono(Writer saida, Cliente exDono) throws IOException {
+        if (exDono != null) linha(saida, "exdono", exDono.getNome(), exDono.getCpf(), exDono.getTelefone(), exDono.getEndereco());
+    }
+
+    // Grava um pet com o histórico de saúde e os agendamentos (posicoes null para nenhum); devolve a data do último.
+    static LocalDate gravarPet(Writer saida, Loja loja, Pets pet, List<Integer> posicoes, List<Agendamento> agendamentos)
+            throws IOException {
+        linha(saida, "pet", pet.getNomePet(), pet.getEspecie(), pet.getPesoPet(), data(pet.getDataNascimento()));
+        List<String> pesos = new ArrayList<>();
+        loja.getSaude().consultarPesos(pet, LocalDate.MIN, LocalDate.MAX, (dia, peso) -> pesos.add(data(dia) + ";" + peso));
+        for (String peso : pesos) {
+            saida.write("peso;" + peso + "\n");
+        }
+        for (RegistroSaude.Evento evento : loja.getSaude().consultarEventos(pet, LocalDate.MIN, LocalDate.MAX)) {
+            linha(saida, evento.getTipo().equals("Vacina") ? "vacina" : "anotacao", data(evento.getData()), evento.getDescricao());
+        }
+        LocalDate ultima = null;
+        if (posicoes == null) return null;
+        for (int posicao : posicoes) {
+            Agendamento agendamento = agendamentos.get(posicao);
+            linha(saida, "agendamento", posicao, data(agendamento.getData()), agendamento.getHora().format(ModoLote.FORMATO_HORA),
+                agendamento.getServico(), agendamento.getValor().getCentavos(), agendamento.getCodigoSituacao());
+            if (ultima == null || agendamento.getData().isAfter(ultima)) ultima = agendamento.getData();
+        }
+        return ultima;
+    }
+
+    private static void gravarIndice(Path arquivo, Loja loja, Instantaneo instantaneo, int quantidade, int clientes,
+                                     int agendamentos, LocalDate[] datas) throws IOException {
+        // Gravado com outro nome e renomeado no fim: um diretório temporário com o índice está completo.
+        Path parcial = arquivo.resolveSibling(INDICE + ".parcial");
+        try (BufferedWriter saida = Files.newBufferedWriter(parcial, StandardCharsets.UTF_8)) {
+            linha(saida, FORMATO, VERSAO_FORMATO);
+            linha(saida, "segmentos", quantidade, clientes, agendamentos);
+            linha(saida, "feed", loja.getFeed().getUltimaSequencia()); // A numeração do feed continua após reabrir
+            gravarGerais(saida, loja, instantaneo);
+            for (int s = 0; s < quantidade; s++) {
+                linha(saida, "segmento", s, datas[s] == null ? "-" : data(datas[s]));
+            }
+        }
+        Files.move(parcial, arquivo, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Grava o que não pertence a um cliente: financeiro, produtos, modelo de faltas, ocupação dos horários futuros e caixa
+    // (sem as despesas e os movimentos, que ficam em gravarLancamentos).
+    static void gravarGerais(Writer saida, Loja loja, Instantaneo instantaneo) throws IOException {
+        Financeiro financeiro = loja.getFinanceiro();
+        linha(saida, "financeiro", financeiro.getRecebimento().getCentavos(), financeiro.getServicoFeitos(),
+            financeiro.getMetodoPagamento(), data(financeiro.getDataRegistro()));
+        for (Map.Entry<String, Dinheiro> metodo : financeiro.getRecebimentoPorMetodo().entrySet()) {
+            linha(saida, "recebimento", metodo.getKey(), metodo.getValue().getCentavos());
+        }
+        for (Produto produto : instantaneo.getProdutos()) {
+            linha(saida, "produto", produto.getCodProduto(), produto.getNome(), produto.getCategoria(),
+                produto.getPreco().getCentavos(), produto.getEstoque());
+        }
+        StringBuilder pesos = new StringBuilder();
+        for (double peso : loja.getPrevisorFalta().getPesos()) {
+            pesos.append(';').append(peso);
+        }
+        saida.write("previsor;" + loja.getPrevisorFalta().getExemplosTreinados() + pesos + "\n");
+        List<String> horarios = new ArrayList<>();
+        loja.getOverbooking().exportar(LocalDate.now(), (chave, h) -> horarios.add(chave + ";" + h[0] + ";" + h[1] + ";" + h[2]));
+        for (String horario : horarios) {
+            saida.write("horario;" + horario + "\n");
+        }
+        loja.getCaixa().gravar(saida);
+    }
+
+    // Grava o que cresce com o uso: as primeiras despesas do livro, que só recebe lançamentos no fim, e os
+    // movimentos do caixa capturados. Não precisa do monitor da loja.
+    static void gravarLancamentos(Writer saida, LivroDespesas despesas, int quantidade, FechamentoCaixa.Diario diario)
+            throws IOException {
+        for (int i = 0; i < quantidade; i++) {
+            LivroDespesas.Lancamento lancamento = despesas.getLancamento(i);
+            linha(saida, "despesa", lancamento.getValor().getCentavos(), lancamento.getCategoria(), data(lancamento.getData()),
+                lancamento.getFornecedor());
+        }
+        diario.gravar(saida);
+    }
+
+    // Abertura e carga sob demanda
+
+    /**
+     * Abre os dados salvos em uma loja vazia: lê só o índice e deixa os clientes para serem
+     * carregados sob demanda.
+     * @param loja Loja vazia que receberá os dados
+     * @return Quantidade de clientes salvos (ainda não carregados)
+     * @throws IOException Se o índice não puder ser lido
+     * @throws IllegalArgumentException Se o índice estiver corrompido ou for de outra versão
+     * @throws IllegalStateException Se a loja não estiver vazia ou o arquivo já tiver sido aberto
+     */
+    public int abrir(Loja loja) throws IOException {
+        recuperar();
+        List<String> linhas = Files.readAllLines(diretorio.resolve(INDICE), StandardCharsets.UTF_8);
+        if (linhas.isEmpty() || !linhas.get(0).equals(FORMATO + ";" + VERSAO_FORMATO)) {
+            throw new IllegalArgumentException("Formato de dados desconhecido em " + diretorio + ".");
+        }
+        synchronized (loja) {
+            if (carregados != null) throw new IllegalStateException("Arquivo já aberto.");
+            int clientes = 0, agendamentos = 0;
+            long sequencia = 0; // Última alteração do feed incluída nos dados (0 em arquivos sem o registro)
+            List<Produto> produtos = new ArrayList<>();
+            List<String[]> depois = new ArrayList<>(); // Aplicados depois de a loja reservar as posições
+            for (int n = 1; n < linhas.size(); n++) {
+                String[] c = FeedAlteracoes.separar(linhas.get(n));
+                try {
+                    switch (c[0]) {
+                        case "segmentos" -> {
+                            segmentos = Integer.parseInt(c[1]);
+                            clientes = Integer.parseInt(c[2]);
+                            agendamentos = Integer.parseInt(c[3]);
+                            if (Integer.bitCount(segmentos) != 1) throw new IllegalArgumentException("quantidade de segmentos inválida");
+                            ultimaData = new LocalDate[segmentos];
+                        }
+                        case "feed" -> sequencia = Long.parseLong(c[1]);
+                        case "segmento" -> ultimaData[Integer.parseInt(c[1])] = c[2].equals("-") ? null : LocalDate.parse(c[2], ModoLote.FORMATO_DATA);
+                        case "produto" -> produtos.add(lerProduto(c));
+                        case "financeiro", "recebimento", "despesa", "previsor", "horario", "caixa", "fechamento" -> depois.add(c);
+                        default -> throw new IllegalArgumentException("registro desconhecido: " + c[0]);
+                    }
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException(INDICE + ", linha " + (n + 1) + ": " + e.getMessage(), e);
+                }
+            }
+            if (ultimaData == null) throw new IllegalArgumentException(INDICE + ": tabela de segmentos ausente.");
+
+            loja.abrirSegmentos(this, clientes, agendamentos);
+            financeiro = loja.getFinanceiro();
+            caixa = loja.getCaixa();
+            for (Produto produto : produtos) {
+                loja.restaurarProduto(produto);
+            }
+            restaurarIndice(loja, depois);
+            loja.getFeed().retomar(sequencia);
+            carregados = new boolean[segmentos + 2];
+            pendentes = segmentos + 2;
+            return clientes;
+        }
+    }
+
+    static Produto lerProduto(String[] c) {
+        return new Produto(c[2], Dinheiro.deCentavos(Long.parseLong(c[4])), Integer.parseInt(c[5]), c[3], Integer.parseInt(c[1]));
+    }
+
+    // Aplica os registros gerais (financeiro, recebimento, previsor, horario, caixa e fechamento) em uma loja vazia,
+    // além dos lançamentos que arquivos anteriores a {@value #LANCAMENTOS} guardavam no índice.
+    static void restaurarIndice(Loja loja, List<String[]> registros) {
+        Financeiro financeiro = loja.getFinanceiro();
+        String[] resumo = null;
+        for (String[] c : registros) {
+            if (restaurarLancamento(financeiro, loja.getCaixa(), c)) continue;
+            switch (c[0]) {
+                case "financeiro" -> resumo = c;
+                case "recebimento" -> financeiro.registrarRecebimento(Dinheiro.deCentavos(Long.parseLong(c[2])), c[1]);
+                case "previsor" -> {
+                    double[] pesos = new double[c.length - 2];
+                    for (int i = 0; i < pesos.length; i++) {
+                        pesos[i] = Double.parseDouble(c[i + 2]);
+                    }
+                    loja.getPrevisorFalta().restaurarPesos(pesos, Long.parseLong(c[1]));
+                }
+                case "horario" -> loja.getOverbooking().restaurar(Long.parseLong(c[1]),
+                    new double[] {Double.parseDouble(c[2]), Double.parseDouble(c[3]), Double.parseDouble(c[4])});
+                case "caixa", "fechamento" -> loja.getCaixa().restaurar(c);
+                default -> throw new IllegalArgumentException("registro desconhecido: " + c[0]);
+            }
+        }
+        // O resumo vem por último: os recebimentos por método também somam no total.
+        if (resumo != null) {
+            financeiro.setRecebimento(Dinheiro.deCentavos(Long.parseLong(resumo[1])));
+            financeiro.setServicoFeitos(Integer.parseInt(resumo[2]));
+            financeiro.setMetodoPagamento(resumo[3]);
+            financeiro.setDataRegistro(LocalDate.parse(resumo[4], ModoLote.FORMATO_DATA));
+        }
+        loja.abrirCaixa(); // Dados sem caixa gravado: o primeiro período abre com os contadores lidos
+    }
+
+    // Aplica uma despesa ou um movimento do caixa; devolve false para os demais registros.
+    static boolean restaurarLancamento(Financeiro financeiro, FechamentoCaixa caixa, String[] c) {
+        if (c[0].equals("despesa")) {
+            financeiro.adicionarDespesa(c[2], LocalDate.parse(c[3], ModoLote.FORMATO_DATA),
+                Dinheiro.deCentavos(Long.parseLong(c[1])), c[4]);
+            return true;
+        }
+        if (c[0].equals("caixa") && c[1].equals("movimento")) {
+            caixa.restaurar(c);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Carrega o segmento de um CPF, se ainda não tiver sido lido.
+     * @param loja Loja aberta com este arquivo
+     * @param cpfFormatado CPF no formato 000.000.000-00
+     * @throws IllegalStateException Se o segmento não puder ser lido
+     */
+    void carregarCliente(Loja loja, String cpfFormatado) {
+        if (cpfFormatado.length() != 14) return; // CPF inválido: não há cliente com ele
+        int segmento = segmento(cpfFormatado, segmentos);
+        if (carregados[segmento]) return; // Leitura sem o monitor: no pior caso, confere de novo abaixo
+        synchronized (loja) {
+            carregar(loja, segmento);
+        }
+    }
+
+    /**
+     * Carrega todos os segmentos que ainda não foram lidos.
+     * @param loja Loja aberta com este arquivo
+     * @throws IllegalStateException Se algum segmento não puder ser lido
+     */
+    void carregarTodos(Loja loja) {
+        synchronized (loja) {
+            for (int segmento = 0; segmento <= segmentos + 1; segmento++) {
+                carregar(loja, segmento);
+            }
+        }
+    }
+
+    /**
+     * Carrega as despesas e os movimentos do caixa, se ainda não tiverem sido lidos.
+     * @param loja Loja aberta com este arquivo
+     * @throws IllegalStateException Se os lançamentos não puderem ser lidos
+     */
+    void carregarLancamentos(Loja loja) {
+        boolean[] estado = carregados;
+        if (estado == null || estado[segmentos + 1]) return; // Nulo durante a abertura, que aplica o índice
+        synchronized (loja) {
+            carregar(loja, segmentos + 1);
+        }
+    }
+
+    /**
+     * Lê em segundo plano os lançamentos e os segmentos com agendamentos a partir de alguns dias atrás, do mais
+     * recente para o mais antigo. Cada segmento é carregado de uma vez, liberando a loja entre um
+     * e outro para não atrasar os atendimentos.
+     * @param loja Loja aberta com este arquivo
+     * @param dias Dias para trás considerados recentes
+     * @return Thread do aquecimento (daemon)
+     */
+    public Thread iniciarAquecimento(Loja loja, int dias) {
+        LocalDate limite = LocalDate.now().minusDays(dias);
+        List<Integer> ordem = new ArrayList<>();
+        for (int s = 0; s < segmentos; s++) {
+            if (ultimaData[s] != null && !ultimaData[s].isBefore(limite)) ordem.add(s);
+        }
+        ordem.sort(Comparator.comparing((Integer s) -> ultimaData[s]).reversed());
+        ordem.add(0, segmentos + 1);
+        Thread thread = new Thread(() -> {
+            try {
+                for (int segmento : ordem) {
+                    synchronized (loja) {
+                        carregar(loja, segmento);
+                    }
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Aquecimento dos dados interrompido: " + e.getMessage());
+            }
+        }, "aquecimento-dados");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    public int getSegmentos() {
+        return segmentos;
+    }
+
+    /**
+     * Segmentos já lidos, contando o de agendamentos órfãos e o de lançamentos.
+     * @return Quantidade de segmentos lidos
+     */
+    public int getSegmentosLidos() {
+        return lidos;
+    }
+
+    // Chamado com o monitor da loja.
+    private void carregar(Loja loja, int segmento) {
+        if (carregados[segmento]) return;
+        Path arquivo = diretorio.resolve(segmento == segmentos ? ORFAOS : segmento > segmentos ? LANCAMENTOS : nomeSegmento(segmento));
+        List<String> linhas;
+        try {
+            linhas = Files.readAllLines(arquivo, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            if (segmento <= segmentos) throw new IllegalStateException("Não foi possível ler " + arquivo + ": " + e.getMessage(), e);
+            linhas = List.of(); // Arquivo anterior aos lançamentos separados: eles vieram no índice
+        } catch (IOException e) {
+            throw new IllegalStateException("Não foi possível ler " + arquivo + ": " + e.getMessage(), e);
+        }
+
+        Leitor leitor = new Leitor(loja, false);
+        for (int n = 0; n < linhas.size(); n++) {
+            String[] c = FeedAlteracoes.separar(linhas.get(n));
+            try {
+                boolean lido = segmento > segmentos ? restaurarLancamento(financeiro, caixa, c) : leitor.ler(c);
+                if (!lido) throw new IllegalArgumentException("registro desconhecido: " + c[0]);
+            } catch (RuntimeException e) {
+                throw new IllegalStateException(arquivo.getFileName() + ", linha " + (n + 1) + ": " + e.getMessage(), e);
+            }
+        }
+        leitor.terminar();
+
+        carregados[segmento] = true;
+        lidos++;
+        if (--pendentes == 0) loja.segmentosCarregados();
+    }
+
+    /**
+     * Lê os registros de clientes de um segmento (cliente, fidelidade, pet, peso, vacina, anotacao e
+     * agendamento) e publica cada cliente na loja, com os pets e os agendamentos, quando o seguinte começa.
+     */
+    static final class Leitor {
+        private final Loja loja;
+        private final boolean emOrdem;  // Clientes ocupam as posições na ordem em que aparecem, ignorando a gravada
+        private int proximaPosicao;
+        private Cliente cliente;
+        private int posicaoCliente = -1;
+        private Pets pet;
+        private Cliente exDono;         // Último dono do próximo pet removido
+        private final Map<String, Cliente> exDonos = new HashMap<>(); // Um objeto por CPF de ex-dono
+        private final List<Object[]> agendamentos = new ArrayList<>(); // {posição, agendamento} do cliente atual
+
+        Leitor(Loja loja, boolean emOrdem) {
+            this.loja = loja;
+            this.emOrdem = emOrdem;
+        }
+
+        /**
+         * Lê um registro (exdono só aparece antes dos pets removidos).
+         * @param c Campos do registro
+         * @return false se o registro não for de cliente
+         */
+        boolean ler(String[] c) {
+            RegistroSaude saude = loja.getSaude();
+            switch (c[0]) {
+                case "cliente" -> {
+                    terminar();
+                    posicaoCliente = emOrdem ? proximaPosicao++ : Integer.parseInt(c[1]);
+                    cliente = new Cliente(c[2], c[3], c[4], c[5]);
+                    loja.getPrevisorFalta().restaurarHistorico(cliente.getCpf(), Integer.parseInt(c[6]), Integer.parseInt(c[7]));
+                }
+                case "fidelidade" -> {
+                    long[] conta = new long[c.length - 1];
+                    for (int i = 0; i < conta.length; i++) {
+                        conta[i] = Long.parseLong(c[i + 1]);
+                    }
+                    loja.getFidelidade().restaurar(cliente.getCpf(), conta);
+                }
+                case "exdono" -> exDono = exDonos.computeIfAbsent(c[2], cpf -> new Cliente(c[1], c[2], c[3], c[4]));
+                case "pet" -> {
+                    pet = new Pets(loja.getArmazemPets(), c[1], c[2], Float.parseFloat(c[3]), LocalDate.parse(c[4], ModoLote.FORMATO_DATA));
+                    if (cliente != null) {
+                        cliente.adicionarPet(pet);
+                    } else if (exDono != null) {
+                        loja.restaurarExDono(pet, exDono);
+                    }
+                    exDono = null;
+                }
+                case "peso" -> saude.registrarPeso(pet, LocalDate.parse(c[1], ModoLote.FORMATO_DATA), Float.parseFloat(c[2]));
+                case "vacina" -> saude.registrarVacina(pet, LocalDate.parse(c[1], ModoLote.FORMATO_DATA), c[2]);
+                case "anotacao" -> saude.registrarAnotacao(pet, LocalDate.parse(c[1], ModoLote.FORMATO_DATA), c[2]);
+                case "agendamento" -> agendamentos.add(new Object[] {Integer.parseInt(c[1]), Agendamento.restaurar(pet,
+                    LocalDate.parse(c[2], ModoLote.FORMATO_DATA), LocalTime.parse(c[3], ModoLote.FORMATO_HORA), c[4],
+                    Dinheiro.deCentavos(Long.parseLong(c[5])), c[6])});
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Publica o cliente em leitura (com os pets) e, em seguida, os agendamentos dos seus pets.
+         */
+        void terminar() {
+            if (cliente != null) loja.restaurarCliente(posicaoCliente, cliente);
+            for (Object[] agendamento : agendamentos) {
+                loja.restaurarAgendamento((Integer) agendamento[0], (Agendamento) agendamento[1], cliente);
+            }
+            agendamentos.clear();
+            cliente = null;
+        }
+    }
+
+    // Utilitários
+
+    // Devolve ao lugar os dados de uma gravação interrompida entre os dois movimentos da troca: o
+    // temporário, se estiver completo (tem o índice), senão o anterior.
+    private void recuperar() throws IOException {
+        if (Files.exists(diretorio)) return;
+        for (Path candidato : new Path[] {temporario(), antigo()}) {
+            if (Files.isRegularFile(candidato.resolve(INDICE))) {
+                Files.move(candidato, diretorio, StandardCopyOption.ATOMIC_MOVE);
+                return;
+            }
+        }
+    }
+
+    private Path temporario() {
+        return diretorio.resolveSibling(diretorio.getFileName() + ".tmp");
+    }
+
+    private Path antigo() {
+        return diretorio.resolveSibling(diretorio.getFileName() + ".old");
+    }
+
+    private static int segmentosPara(int clientes) {
+        int quantidade = SEGMENTOS_MINIMOS;
+        while (quantidade < clientes / CLIENTES_POR_SEGMENTO) quantidade <<= 1;
+        return quantidade;
+    }
+
+    // Segmento do CPF: os dígitos espalhados por uma multiplicação (os verificadores não são uniformes).
+    private static int segmento(String cpfFormatado, int quantidade) {
+        long digitos = 0;
+        for (int i = 0; i < cpfFormatado.length(); i++) {
+            char c = cpfFormatado.charAt(i);
+            if (c >= '0' && c <= '9') digitos = digitos * 10 + (c - '0');
+        }
+        return (int) ((digitos * 0x9E3779B97F4A7C15L) >>> 40) & (quantidade - 1);
+    }
+
+    private static String juntar(long[] valores) {
+        StringBuilder texto = new StringBuilder();
+        for (long valor : valores) {
+            if (texto.length() > 0) texto.append(';');
+            texto.append(valor);
+        }
+        return texto.toString();
+    }
+
+    private static String nomeSegmento(int segmento) {
+        return String.format("segmento-%04d.txt", segmento);
+    }
+
+    private static String data(LocalDate data) {
+        return data.format(ModoLote.FORMATO_DATA);
+    }
+
+    private static void linha(Writer saida, Object... campos) throws IOException {
+        saida.write(FeedAlteracoes.comando(campos));
+        saida.write('\n');
+    }
+
+    private static void apagar(Path caminho) throws IOException {
+        if (!Files.exists(caminho)) return;
+        try (Stream<Path> arquivos = Files.walk(caminho)) {
+            for (Path arquivo : arquivos.sorted(Comparator.reverseOrder()).toList()) {
+                try {
+                    Files.delete(arquivo);
+                } catch (NoSuchFileException e) {
+                    // Já apagado
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package aps3;
+
+import java.util.Arrays;
+
+/**
+ * Árvore de Fenwick (árvore binária indexada) de somas de {@code long}.
+ * Soma em uma posição e consulta de prefixo ou intervalo custam O(log n), sem guardar os valores individuais.
+ * Posições vão de 0 a {@link #tamanho()} - 1.
+ */
+public class ArvoreFenwick {
+    private long[] arvore; // Índices de 1 a tamanho; a posição 0 não é usada
+
+    /**
+     * Construtor da árvore, com todas as posições zeradas.
+     * @param tamanho Quantidade de posições (não pode ser negativa)
+     * @throws IllegalArgumentException Se o tamanho for negativo
+     */
+    public ArvoreFenwick(int tamanho) {
+        if (tamanho < 0) throw new IllegalArgumentException("Tamanho não pode ser negativo.");
+        arvore = new long[tamanho + 1];
+    }
+
+    public int tamanho() {
+        return arvore.length - 1;
+    }
+
+    /**
+     * Soma um valor a uma posição.
+     * @param posicao Posição alterada
+     * @param valor Valor somado (pode ser negativo)
+     * @throws IndexOutOfBoundsException Se a posição estiver fora da árvore
+     */
+    public void somar(int posicao, long valor) {
+        if (posicao < 0 || posicao >= tamanho()) throw new IndexOutOfBoundsException("Posição inválida: " + posicao);
+        for (int i = posicao + 1; i < arvore.length; i += i & -i) {
+            arvore[i] += valor;
+        }
+    }
+
+    /**
+     * Soma das posições de 0 até a informada, inclusive.
+     * @param posicao Última posição somada; valores negativos resultam em 0 e valores além do fim somam tudo
+     * @return Soma do prefixo
+     */
+    public long prefixo(int posicao) {
+        long soma = 0;
+        for (int i = Math.min(posicao, tamanho() - 1) + 1; i > 0; i -= i & -i) {
+            soma += arvore[i];
+        }
+        return soma;
+    }
+
+    /**
+     * Soma das posições de um intervalo.
+     * @param de Primeira posição (inclusiva)
+     * @param ate Última posição (inclusiva)
+     * @return Soma do intervalo (0 se estiver vazio)
+     */
+    public long intervalo(int de, int ate) {
+        if (ate < de) return 0;
+        return prefixo(ate) - prefixo(de - 1);
+    }
+
+    /**
+     * Valor acumulado em uma única posição.
+     * @param posicao Posição consultada
+     * @return Valor da posição
+     */
+    public long valor(int posicao) {
+        return intervalo(posicao, posicao);
+    }
+
+    /**
+     * Menor posição cujo prefixo alcança o valor informado, em O(log n). Exige que nenhuma posição seja negativa.
+     * @param alvo Soma procurada
+     * @return Posição encontrada, ou {@link #tamanho()} se a soma total for menor que o alvo
+     */
+    public int buscarPrefixo(long alvo) {
+        if (alvo <= 0) return 0;
+        int posicao = 0;
+        for (int passo = Integer.highestOneBit(Math.max(1, tamanho())); passo > 0; passo >>= 1) {
+            int proxima = posicao + passo;
+            if (proxima < arvore.length && arvore[proxima] < alvo) {
+                posicao = proxima;
+                alvo -= arvore[proxima];
+            }
+        }
+        return posicao;
+    }
+
+    /**
+     * Redimensiona a árvore preservando os valores, que podem ser deslocados para a direita ou,
+     * descartando as primeiras posições, para a esquerda. Reconstrói a árvore em O(n).
+     * @param novoTamanho Nova quantidade de posições
+     * @param deslocamento Quantas posições os valores atuais andam para a direita; se negativo, as
+     *                     primeiras {@code -deslocamento} posições são descartadas
+     * @throws IllegalArgumentException Se os valores atuais não couberem no novo tamanho
+     */
+    public void redimensionar(int novoTamanho, int deslocamento) {
+        if (-deslocamento > tamanho() || tamanho() + deslocamento > novoTamanho) {
+            throw new IllegalArgumentException("Os valores atuais não cabem no novo tamanho.");
+        }
+        // Desfaz a árvore em valores individuais, percorrendo do fim para o início.
+        long[] valores = arvore.clone();
+        for (int i = valores.length - 1; i > 0; i--) {
+            int pai = i + (i & -i);
+            if (pai < valores.length) valores[pai] -= arvore[i];
+        }
+        long[] nova = new long[novoTamanho + 1];
+        int descartadas = Math.max(0, -deslocamento);
+        System.arraycopy(valores, 1 + descartadas, nova, 1 + Math.max(0, deslocamento), valores.length - 1 - descartadas);
+        // Reconstrói em O(n): cada nó repassa sua soma ao responsável pelo intervalo seguinte.
+        for (int i = 1; i < nova.length; i++) {
+            int pai = i + (i & -i);
+            if (pai < nova.length) nova[pai] += nova[i];
+        }
+        arvore = nova;
+    }
+
+    /**
+     * Zera todas as posições.
+     */
+    public void limpar() {
+        Arrays.fill(arvore, 0);
+    }
+}
@@ -0,0 +1,56 @@
+package aps3;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+
+/**
+ * Canal de notificação local que grava os lembretes em um arquivo ou na saída padrão,
+ * substituindo o envio real por SMS/WhatsApp.
+ */
+public class CanalArquivo implements CanalNotificacao {
+    private final Path arquivo; // Aberto no primeiro envio, ou null para a saída padrão
+    private Writer saida;
+
+    /**
+     * Cria um canal que acrescenta os lembretes ao final de um arquivo. O arquivo só é criado no
+     * primeiro lembrete enviado; se não puder ser aberto, os lembretes vão para a saída padrão.
+     * @param arquivo Caminho do arquivo de saída
+     */
+    public CanalArquivo(Path arquivo) {
+        this.arquivo = arquivo;
+    }
+
+    /**
+     * Cria um canal que escreve na saída padrão.
+     */
+    public CanalArquivo() {
+        this(null);
+    }
+
+    @Override
+    public synchronized void enviar(Lembrete lembrete) throws IOException {
+        if (saida == null) saida = abrir();
+        saida.write(String.format("[%s] Para: %s (%s) | %s%n",
+            LocalDateTime.now().withNano(0), lembrete.getNomeCliente(), lembrete.getTelefone(), lembrete.getMensagem()));
+        saida.flush();
+    }
+
+    // Abre o arquivo para acrescentar, ou a saída padrão se não houver arquivo ou ele não puder ser aberto.
+    private Writer abrir() {
+        if (arquivo != null) {
+            try {
+                return Files.newBufferedWriter(arquivo, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                // Sem o arquivo, os lembretes continuam visíveis na saída padrão.
+            }
+        }
+        return new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,16 @@
+package aps3;
+
+import java.io.IOException;
+
+/**
+ * Destino para onde os lembretes de agendamento são enviados (SMS, WhatsApp, arquivo, etc.).
+ */
+public interface CanalNotificacao {
+
+    /**
+     * Entrega um lembrete ao cliente.
+     * @param lembrete Lembrete a ser enviado
+     * @throws IOException Se o envio falhar
+     */
+    void enviar(Lembrete lembrete) throws IOException;
+}
@@ -0,0 +1,78 @@
+package aps3;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Carrinho de compras que combina produtos do estoque e serviços avulsos em uma única venda.
+ */
+public class Carrinho {
+    private final List<ItemProduto> produtos = new ArrayList<>(); // Produtos e quantidades adicionados
+    private final List<Servico> servicos = new ArrayList<>();     // Serviços cobrados na mesma venda
+
+    /**
+     * Item de produto no carrinho, com a quantidade desejada.
+     */
+    public static final class ItemProduto {
+        private final Produto produto;
+        private final int quantidade;
+
+        private ItemProduto(Produto produto, int quantidade) {
+            this.produto = produto;
+            this.quantidade = quantidade;
+        }
+
+        public Produto getProduto() {
+            return produto;
+        }
+        public int getQuantidade() {
+            return quantidade;
+        }
+    }
+
+    /**
+     * Adiciona um produto ao carrinho. Produtos repetidos têm as quantidades somadas.
+     * @param produto Produto a ser vendido (não pode ser nulo)
+     * @param quantidade Quantidade desejada (deve ser positiva)
+     * @throws IllegalArgumentException Se algum parâmetro for inválido
+     */
+    public void adicionarProduto(Produto produto, int quantidade) {
+        if (produto == null) throw new IllegalArgumentException("Produto não pode ser nulo.");
+        if (quantidade <= 0) throw new IllegalArgumentException("Quantidade deve ser maior que zero.");
+        for (int i = 0; i < produtos.size(); i++) {
+            ItemProduto item = produtos.get(i);
+            if (item.produto == produto) {
+                produtos.set(i, new ItemProduto(produto, item.quantidade + quantidade));
+                return;
+            }
+        }
+        produtos.add(new ItemProduto(produto, quantidade));
+    }
+
+    /**
+     * Adiciona um serviço avulso ao carrinho.
+     * @param servico Serviço a ser cobrado (não pode ser nulo)
+     * @throws IllegalArgumentException Se o serviço for nulo
+     */
+    public void adicionarServico(Servico servico) {
+        if (servico == null) throw new IllegalArgumentException("Serviço não pode ser nulo.");
+        servicos.add(servico);
+    }
+
+    /**
+     * Verifica se o carrinho não possui itens.
+     * @return true se não há produtos nem serviços
+     */
+    public boolean isVazio() {
+        return produtos.isEmpty() && servicos.isEmpty();
+    }
+
+    // Getters
+    public List<ItemProduto> getProdutos() {
+        return Collections.unmodifiableList(produtos);
+    }
+    public List<Servico> getServicos() {
+        return Collections.unmodifiableList(servicos);
+    }
+}
@@ -0,0 +1,254 @@
+package aps3;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finaliza vendas de produtos e serviços: aplica promoções, reserva o estoque, registra o
+ * recebimento no financeiro e emite o recibo.
+ *
+ * A venda tem duas fases: a cotação, que calcula as linhas com as promoções e não altera nada, e
+ * a conclusão, que reserva o estoque, lança o total no financeiro e numera o recibo. Vários caixas
+ * podem cotar ao mesmo tempo; a {@link Loja} executa a conclusão sob o seu monitor, para que o
+ * estoque baixado, o recibo e a alteração publicada no feed saiam na mesma ordem.
+ */
+public class Checkout {
+    private final Financeiro financeiro;                                          // Destino dos recebimentos
+    private final MotorPrecos motorPrecos;                                        // Promoções de serviços (pode ser nulo)
+    private final PrevisaoEstoque previsaoEstoque;                                // Consumo dos produtos (pode ser nulo)
+    private final Map<Integer, Double> promocoesProduto = new ConcurrentHashMap<>(); // Código do produto -> desconto %
+    private final Map<String, Double> promocoesCategoria = new ConcurrentHashMap<>(); // Categoria -> desconto %
+    private final AtomicLong proximoRecibo = new AtomicLong(1);                   // Numeração sequencial dos recibos
+
+    /**
+     * Construtor do checkout.
+     * @param financeiro Financeiro que receberá os lançamentos (não pode ser nulo)
+     * @throws IllegalArgumentException Se o financeiro for nulo
+     */
+    public Checkout(Financeiro financeiro) {
+        this(financeiro, null);
+    }
+
+    /**
+     * Construtor do checkout com motor de promoções para os serviços avulsos.
+     * @param financeiro Financeiro que receberá os lançamentos (não pode ser nulo)
+     * @param motorPrecos Motor usado para cotar os serviços, inclusive combos do mesmo pet (pode ser nulo)
+     * @throws IllegalArgumentException Se o financeiro for nulo
+     */
+    public Checkout(Financeiro financeiro, MotorPrecos motorPrecos) {
+        this(financeiro, motorPrecos, null);
+    }
+
+    /**
+     * Construtor do checkout que também alimenta a previsão de consumo a cada venda.
+     * @param financeiro Financeiro que receberá os lançamentos (não pode ser nulo)
+     * @param motorPrecos Motor usado para cotar os serviços (pode ser nulo)
+     * @param previsaoEstoque Previsão atualizada com as unidades vendidas (pode ser nula)
+     * @throws IllegalArgumentException Se o financeiro for nulo
+     */
+    public Checkout(Financeiro financeiro, MotorPrecos motorPrecos, PrevisaoEstoque previsaoEstoque) {
+        if (financeiro == null) throw new IllegalArgumentException("Financeiro não pode ser nulo.");
+        this.financeiro = financeiro;
+        this.motorPrecos = motorPrecos;
+        this.previsaoEstoque = previsaoEstoque;
+    }
+
+    /**
+     * Define um desconto percentual para um produto, sem alterar o preço cadastrado.
+     * @param codProduto Código do produto
+     * @param descontoPercentual Percentual de desconto (entre 1 e 100)
+     * @throws IllegalArgumentException Se o percentual for inválido
+     */
+    public void definirPromocaoProduto(int codProduto, double descontoPercentual) {
+        validarPercentual(descontoPercentual);
+        promocoesProduto.put(codProduto, descontoPercentual);
+    }
+
+    /**
+     * Define um desconto percentual para todos os produtos de uma categoria.
+     * @param categoria Categoria do produto
+     * @param descontoPercentual Percentual de desconto (entre 1 e 100)
+     * @throws IllegalArgumentException Se o percentual for inválido
+     */
+    public void definirPromocaoCategoria(String categoria, double descontoPercentual) {
+        validarPercentual(descontoPercentual);
+        promocoesCategoria.put(categoria.toLowerCase(), descontoPercentual);
+    }
+
+    /**
+     * Remove as promoções de um produto e de uma categoria.
+     * @param codProduto Código do produto
+     * @param categoria Categoria do produto
+     */
+    public void removerPromocoes(int codProduto, String categoria) {
+        promocoesProduto.remove(codProduto);
+        if (categoria != null) promocoesCategoria.remove(categoria.toLowerCase());
+    }
+
+    /**
+     * Finaliza a venda. Se algum produto não tiver estoque suficiente, nenhuma unidade é baixada.
+     * @param carrinho Carrinho com os itens da venda (não pode estar vazio)
+     * @param metodoPagamento Método de pagamento utilizado (não pode ser vazio)
+     * @return Recibo da venda
+     * @throws IllegalArgumentException Se o carrinho ou o método de pagamento forem inválidos
+     * @throws IllegalStateException Se não houver estoque suficiente
+     */
+    public Recibo finalizar(Carrinho carrinho, String metodoPagamento) {
+        return finalizar(carrinho, metodoPagamento, 0);
+    }
+
+    /**
+     * Finaliza a venda para um cliente com nível de fidelidade, que habilita as promoções de nível nos serviços.
+     * @param carrinho Carrinho com os itens da venda (não pode estar vazio)
+     * @param metodoPagamento Método de pagamento utilizado (não pode ser vazio)
+     * @param nivelFidelidade Nível de fidelidade do cliente (0 = sem fidelidade)
+     * @return Recibo da venda
+     * @throws IllegalArgumentException Se o carrinho ou o método de pagamento forem inválidos
+     * @throws IllegalStateException Se não houver estoque suficiente
+     */
+    public Recibo finalizar(Carrinho carrinho, String metodoPagamento, int nivelFidelidade) {
+        return concluir(cotar(carrinho, metodoPagamento, nivelFidelidade));
+    }
+
+    /**
+     * Calcula as linhas da venda com as promoções em vigor, sem reservar estoque nem lançar nada.
+     * @param carrinho Carrinho com os itens da venda (não pode estar vazio)
+     * @param metodoPagamento Método de pagamento utilizado (não pode ser vazio)
+     * @param nivelFidelidade Nível de fidelidade do cliente (0 = sem fidelidade)
+     * @return Cotação a concluir
+     * @throws IllegalArgumentException Se o carrinho ou o método de pagamento forem inválidos
+     */
+    Cotacao cotar(Carrinho carrinho, String metodoPagamento, int nivelFidelidade) {
+        if (carrinho == null || carrinho.isVazio()) throw new IllegalArgumentException("Carrinho vazio.");
+        if (metodoPagamento == null || metodoPagamento.isBlank()) throw new IllegalArgumentException("Método de pagamento inválido.");
+
+        LocalDateTime agora = LocalDateTime.now();
+        List<Recibo.Linha> linhas = new ArrayList<>();
+        for (Carrinho.ItemProduto item : carrinho.getProdutos()) {
+            Produto produto = item.getProduto();
+            double desconto = descontoAplicavel(produto);
+            Dinheiro unitario = produto.getPreco();
+            Dinheiro comDesconto = produto.precoComDesconto(desconto);
+            linhas.add(new Recibo.Linha(produto.getNome(), item.getQuantidade(), unitario,
+                unitario.subtrair(comDesconto).multiplicar(item.getQuantidade()), comDesconto.multiplicar(item.getQuantidade())));
+        }
+        Map<Pets, List<String>> servicosPorPet = agruparServicosPorPet(carrinho.getServicos());
+        for (Servico servico : carrinho.getServicos()) {
+            Dinheiro cobrado = motorPrecos == null ? servico.getPreco()
+                : motorPrecos.cotar(servico.getNomeServico(), servico.getPet().getPortePet(), agora,
+                    servicosPorPet.get(servico.getPet()), nivelFidelidade);
+            linhas.add(new Recibo.Linha(servico.getNomeServico() + " (" + servico.getPet().getNomePet() + ")",
+                1, servico.getPreco(), servico.getPreco().subtrair(cobrado), cobrado));
+        }
+        return new Cotacao(carrinho, metodoPagamento.trim(), agora, linhas);
+    }
+
+    /**
+     * Conclui uma venda cotada: reserva o estoque, alimenta a previsão, lança o total e emite o recibo
+     * com os preços da cotação. Se algum produto não tiver estoque suficiente, nenhuma unidade é baixada.
+     * @param cotacao Cotação feita por {@link #cotar}
+     * @return Recibo da venda
+     * @throws IllegalStateException Se não houver estoque suficiente
+     */
+    Recibo concluir(Cotacao cotacao) {
+        reservarEstoque(cotacao.produtos);
+        if (previsaoEstoque != null) {
+            for (Carrinho.ItemProduto item : cotacao.produtos) {
+                previsaoEstoque.registrarSaida(item.getProduto(), item.getQuantidade(), cotacao.instante.toLocalDate()); // O(1) por item
+            }
+        }
+        Recibo recibo = new Recibo(proximoRecibo.getAndIncrement(), cotacao.instante, cotacao.metodoPagamento, cotacao.linhas);
+        financeiro.registrarRecebimento(recibo.getTotal(), recibo.getMetodoPagamento());
+        financeiro.registrarServicos(cotacao.servicos);
+        return recibo;
+    }
+
+    /**
+     * Reaplica uma venda feita em outra loja (o líder da replicação) com o total que ela cobrou: baixa o
+     * estoque, alimenta a previsão e lança o recebimento, sem recalcular as promoções locais.
+     * @param carrinho Carrinho com os itens da venda (não pode estar vazio)
+     * @param metodoPagamento Método de pagamento utilizado (não pode ser vazio)
+     * @param total Total cobrado na venda original
+     * @param instante Momento da venda original
+     * @return Recibo com uma única linha no total gravado
+     * @throws IllegalArgumentException Se o carrinho, o método de pagamento ou o total forem inválidos
+     * @throws IllegalStateException Se não houver estoque suficiente
+     */
+    Recibo reaplicar(Carrinho carrinho, String metodoPagamento, Dinheiro total, LocalDateTime instante) {
+        if (carrinho == null || carrinho.isVazio()) throw new IllegalArgumentException("Carrinho vazio.");
+        if (metodoPagamento == null || metodoPagamento.isBlank()) throw new IllegalArgumentException("Método de pagamento inválido.");
+        if (total == null || total.isNegativo() || instante == null) throw new IllegalArgumentException("Venda reaplicada inválida.");
+
+        reservarEstoque(carrinho.getProdutos());
+        if (previsaoEstoque != null) {
+            for (Carrinho.ItemProduto item : carrinho.getProdutos()) {
+                previsaoEstoque.registrarSaida(item.getProduto(), item.getQuantidade(), instante.toLocalDate());
+            }
+        }
+        List<Recibo.Linha> linhas = List.of(new Recibo.Linha("Venda reaplicada", 1, total, Dinheiro.ZERO, total));
+        Recibo recibo = new Recibo(proximoRecibo.getAndIncrement(), instante, metodoPagamento.trim(), linhas);
+        financeiro.registrarRecebimento(recibo.getTotal(), recibo.getMetodoPagamento());
+        financeiro.registrarServicos(carrinho.getServicos().size());
+        return recibo;
+    }
+
+    /**
+     * Venda calculada e ainda não concluída. Guarda uma cópia dos produtos do carrinho, para que a
+     * reserva baixe exatamente o que foi cotado.
+     */
+    static final class Cotacao {
+        private final List<Carrinho.ItemProduto> produtos;
+        private final int servicos;
+        private final String metodoPagamento;
+        private final LocalDateTime instante;
+        private final List<Recibo.Linha> linhas;
+
+        private Cotacao(Carrinho carrinho, String metodoPagamento, LocalDateTime instante, List<Recibo.Linha> linhas) {
+            this.produtos = List.copyOf(carrinho.getProdutos());
+            this.servicos = carrinho.getServicos().size();
+            this.metodoPagamento = metodoPagamento;
+            this.instante = instante;
+            this.linhas = linhas;
+        }
+    }
+
+    // Reserva cada produto; se algum faltar, devolve o que já foi reservado e cancela a venda.
+    private void reservarEstoque(List<Carrinho.ItemProduto> itens) {
+        for (int i = 0; i < itens.size(); i++) {
+            Carrinho.ItemProduto item = itens.get(i);
+            if (!item.getProduto().reservarEstoque(item.getQuantidade())) {
+                for (int j = 0; j < i; j++) {
+                    itens.get(j).getProduto().adicionarEstoque(itens.get(j).getQuantidade());
+                }
+                throw new IllegalStateException("Estoque insuficiente para " + item.getProduto().getNome() + ".");
+            }
+        }
+    }
+
+    // Serviços do mesmo pet no carrinho formam um atendimento, o que habilita as promoções de combo.
+    private static Map<Pets, List<String>> agruparServicosPorPet(List<Servico> servicos) {
+        Map<Pets, List<String>> porPet = new IdentityHashMap<>();
+        for (Servico servico : servicos) {
+            porPet.computeIfAbsent(servico.getPet(), p -> new ArrayList<>()).add(servico.getNomeServico());
+        }
+        return porPet;
+    }
+
+    // A promoção do produto tem prioridade sobre a promoção da categoria.
+    private double descontoAplicavel(Produto produto) {
+        Double desconto = promocoesProduto.get(produto.getCodProduto());
+        if (desconto == null) desconto = promocoesCategoria.get(produto.getCategoria().toLowerCase());
+        return desconto == null ? 0 : desconto;
+    }
+
+    private static void validarPercentual(double descontoPercentual) {
+        if (descontoPercentual <= 0 || descontoPercentual > 100) {
+            throw new IllegalArgumentException("Porcentagem de desconto inválida! Informe um valor entre 1% e 100%.");
+        }
+    }
+}
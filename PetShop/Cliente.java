@@ -1,19 +1,22 @@
 package aps3;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 
 /**
  * Representa um cliente do pet shop com informações cadastrais e pets associados.
+ * <p>
+ * Telefone e endereço, lidos raramente, ficam juntos em um único vetor UTF-8 em vez de duas Strings.
  */
 public class Cliente {
+    private static final Pets[] SEM_PETS = new Pets[0];
+
     private final String nome;      // Nome completo do cliente
     private final String cpf;       // CPF do cliente formatado corretamente
-    private final String telefone;  // Telefone do cliente
-    private final String endereco;  // Endereço do cliente
-    private final List<Pets> pets;   // Lista de pets associados ao cliente
+    private final byte[] contato;   // Telefone e endereço em UTF-8, separados por um byte 0
+    private volatile Pets[] pets;   // Pets associados ao cliente; substituído a cada alteração
 
     /**
      * Construtor da classe Cliente, garantindo validações adequadas.
@@ -32,9 +35,8 @@ public class Cliente {
 
         this.nome = nome.trim();
         this.cpf = formatarCPF(cpf);
-        this.telefone = telefone.trim();
-        this.endereco = endereco.trim();
-        this.pets = new ArrayList<>(); // Inicializa a lista de pets do cliente
+        this.contato = (telefone.trim() + '\0' + endereco.trim()).getBytes(StandardCharsets.UTF_8);
+        this.pets = SEM_PETS; // Vetor copiado a cada alteração: leitura segura enquanto outra sessão altera os pets
     }
 
     // Getters
@@ -45,10 +47,17 @@ public class Cliente {
         return cpf;
     }
     public String getTelefone() {
-        return telefone; 
+        return new String(contato, 0, separadorContato(), StandardCharsets.UTF_8);
     }
     public String getEndereco() {
-        return endereco; 
+        int inicio = separadorContato() + 1;
+        return new String(contato, inicio, contato.length - inicio, StandardCharsets.UTF_8);
+    }
+
+    private int separadorContato() {
+        int i = 0;
+        while (contato[i] != 0) i++;
+        return i;
     }
 
     /**
@@ -57,7 +66,7 @@ public class Cliente {
      * @return Lista de pets associada ao cliente
      */
     public List<Pets> getPets() {
-        return Collections.unmodifiableList(pets);
+        return List.of(pets);
     }
 
     /**
@@ -65,8 +74,29 @@ public class Cliente {
      * @param pet Instância válida de Pet
      * @throws NullPointerException Se o pet for nulo
      */
-    public void adicionarPet(Pets pet) {
-        pets.add(Objects.requireNonNull(pet, "Pet não pode ser nulo"));
+    public synchronized void adicionarPet(Pets pet) {
+        Objects.requireNonNull(pet, "Pet não pode ser nulo");
+        Pets[] novos = Arrays.copyOf(pets, pets.length + 1);
+        novos[pets.length] = pet;
+        pets = novos;
+    }
+
+    /**
+     * Remove um pet do cliente.
+     * @param pet Pet a ser removido
+     * @return true se o pet pertencia ao cliente e foi removido
+     */
+    public synchronized boolean removerPet(Pets pet) {
+        Pets[] atuais = pets;
+        for (int i = 0; i < atuais.length; i++) {
+            if (atuais[i] == pet) {
+                Pets[] novos = Arrays.copyOf(atuais, atuais.length - 1);
+                System.arraycopy(atuais, i + 1, novos, i, atuais.length - i - 1);
+                pets = novos;
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -74,12 +104,13 @@ public class Cliente {
      * @return Relatório formatado com detalhes dos pets
      */
     public String listarPets() {
-        if (pets.isEmpty()) {
+        Pets[] pets = this.pets;
+        if (pets.length == 0) {
             return "Nenhum pet cadastrado.";
         }
 
         StringBuilder sb = new StringBuilder();
-        sb.append(String.format("\nPets de %s (%d):", nome, pets.size()));
+        sb.append(String.format("\nPets de %s (%d):", nome, pets.length));
 
         for (Pets pet : pets) {
             sb.append("\n----------------------------------------");
@@ -102,7 +133,7 @@ public class Cliente {
             Endereço: %s
             Total de Pets: %d
             """,
-            nome, cpf, telefone, endereco, pets.size()
+            nome, cpf, getTelefone(), getEndereco(), pets.length
         );
     }
 
@@ -137,8 +168,14 @@ public class Cliente {
      * @param cpf CPF informado pelo usuário
      * @return CPF formatado
      */
-    private String formatarCPF(String cpf) {
-        String cpfLimpo = cpf.replaceAll("[^0-9]", "");
-        return cpfLimpo.replaceAll("(\\d{3})(\\d{3})(\\d{3})(\\d{2})", "$1.$2.$3-$4");
+    public static String formatarCPF(String cpf) {
+        // Percorre os caracteres uma única vez: a busca por CPF acontece em todo cadastro e agendamento.
+        StringBuilder sb = new StringBuilder(14);
+        for (int i = 0; i < cpf.length(); i++) {
+            char c = cpf.charAt(i);
+            if (c >= '0' && c <= '9') sb.append(c);
+        }
+        if (sb.length() != 11) return sb.toString();
+        return sb.insert(9, '-').insert(6, '.').insert(3, '.').toString();
     }
 }
@@ -0,0 +1,561 @@
+package aps3;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Consultas em texto sobre clientes, pets, agendamentos e produtos, para perguntas do balcão que
+ * não justificam uma tela nova:
+ *
+ * <pre>
+ * pets onde especie = Gato e porte = Grande e idade &gt; 10
+ * agendamentos onde servico = "Banho" e data entre 01/03/2025 e 31/03/2025 ordenar por valor desc
+ * clientes where nome contem silva and pets &gt;= 2 limit 20
+ * </pre>
+ *
+ * A forma geral é {@code entidade [onde condição (e condição)*] [ordenar por campo [desc]] [limite n]}.
+ * As palavras-chave também podem ser escritas em inglês ({@code where}, {@code and}, {@code between},
+ * {@code contains}, {@code order by}, {@code limit}). Os operadores são {@code = != < <= > >=},
+ * {@code entre a e b} e {@code contem}. Textos são comparados sem diferenciar maiúsculas e acentos;
+ * valores com espaços vão entre aspas. Datas são dd/MM/yyyy ou {@code hoje}, horas HH:mm.
+ * <p>
+ * O planejador escolhe, entre as condições, a que tem índice e menos candidatos: CPF (clientes e
+ * pets, pelo mapa de CPFs), código (produtos) e data (agendamentos, pelo índice por dia, quando o
+ * intervalo tem começo e fim). As demais condições filtram os candidatos. Sem índice aplicável, a
+ * entidade é varrida, em paralelo quando é grande e a consulta precisa de todos os resultados. Os
+ * resultados são produzidos sob demanda: com {@code limite} e sem ordenação, a varredura para
+ * assim que encontra o bastante.
+ */
+public final class Consulta {
+    static final int LIMITE_PARALELO = 20_000;            // Candidatos a partir dos quais a varredura é paralela
+    private static final int DIAS_MAXIMOS_INDICE = 3_660; // Intervalos de datas maiores são varridos
+
+    private enum Tipo { TEXTO, NUMERO, DATA, HORA }
+
+    private enum Operador {
+        IGUAL("="), DIFERENTE("!="), MENOR("<"), MENOR_IGUAL("<="), MAIOR(">"), MAIOR_IGUAL(">="), ENTRE("entre"), CONTEM("contem");
+
+        private final String simbolo;
+
+        Operador(String simbolo) {
+            this.simbolo = simbolo;
+        }
+    }
+
+    // Campo consultável de uma entidade; o valor é lido do objeto na versão consultada.
+    private static final class Campo {
+        private final String nome;
+        private final Tipo tipo;
+        private final BiFunction<Instantaneo, Object, Object> valor;
+
+        private Campo(String nome, Tipo tipo, BiFunction<Instantaneo, Object, Object> valor) {
+            this.nome = nome;
+            this.tipo = tipo;
+            this.valor = valor;
+        }
+    }
+
+    // Entidade consultável: campos, tamanho e varredura completa.
+    private static final class Entidade {
+        private final String nome;
+        private final Map<String, Campo> campos = new LinkedHashMap<>();
+        private final Function<Instantaneo, Integer> tamanho;
+        private final Function<Instantaneo, Stream<?>> varredura;
+
+        private Entidade(String nome, Function<Instantaneo, Integer> tamanho, Function<Instantaneo, Stream<?>> varredura) {
+            this.nome = nome;
+            this.tamanho = tamanho;
+            this.varredura = varredura;
+        }
+
+        private Entidade campo(String nome, Tipo tipo, BiFunction<Instantaneo, Object, Object> valor) {
+            campos.put(nome, new Campo(nome, tipo, valor));
+            return this;
+        }
+    }
+
+    private static final Map<String, Entidade> ENTIDADES = new LinkedHashMap<>();
+
+    static {
+        Entidade clientes = new Entidade("clientes", i -> i.getClientes().size(), i -> i.getClientes().stream())
+            .campo("nome", Tipo.TEXTO, (i, c) -> ((Cliente) c).getNome())
+            .campo("cpf", Tipo.TEXTO, (i, c) -> ((Cliente) c).getCpf())
+            .campo("telefone", Tipo.TEXTO, (i, c) -> ((Cliente) c).getTelefone())
+            .campo("endereco", Tipo.TEXTO, (i, c) -> ((Cliente) c).getEndereco())
+            .campo("pets", Tipo.NUMERO, (i, c) -> i.getPets((Cliente) c).size());
+        Entidade pets = new Entidade("pets", Instantaneo::getQuantidadePets,
+                i -> i.getClientes().stream().flatMap(c -> i.getPets(c).stream()))
+            .campo("nome", Tipo.TEXTO, (i, p) -> ((Pets) p).getNomePet())
+            .campo("especie", Tipo.TEXTO, (i, p) -> ((Pets) p).getEspecie())
+            .campo("porte", Tipo.TEXTO, (i, p) -> ((Pets) p).getPortePet())
+            .campo("peso", Tipo.NUMERO, (i, p) -> ((Pets) p).getPesoPet())
+            .campo("nascimento", Tipo.DATA, (i, p) -> ((Pets) p).getDataNascimento())
+            .campo("idade", Tipo.NUMERO, (i, p) -> ((Pets) p).getIdade(LocalDate.now()))
+            .campo("cpf", Tipo.TEXTO, (i, p) -> cpfDono(i, (Pets) p))
+            .campo("dono", Tipo.TEXTO, (i, p) -> {
+                Cliente dono = i.buscarDono((Pets) p);
+                return dono == null ? null : dono.getNome();
+            });
+        Entidade agendamentos = new Entidade("agendamentos", i -> i.getAgendamentos().size(), i -> i.getAgendamentos().stream())
+            .campo("data", Tipo.DATA, (i, a) -> ((Agendamento) a).getData())
+            .campo("hora", Tipo.HORA, (i, a) -> ((Agendamento) a).getHora())
+            .campo("pet", Tipo.TEXTO, (i, a) -> ((Agendamento) a).getPet().getNomePet())
+            .campo("cpf", Tipo.TEXTO, (i, a) -> cpfDonoHistorico(i, ((Agendamento) a).getPet()))
+            .campo("servico", Tipo.TEXTO, (i, a) -> ((Agendamento) a).getServico())
+            .campo("valor", Tipo.NUMERO, (i, a) -> ((Agendamento) a).getValor())
+            .campo("status", Tipo.TEXTO, (i, a) -> ((Agendamento) a).getSituacao());
+        Entidade produtos = new Entidade("produtos", i -> i.getProdutos().size(), i -> i.getProdutos().stream())
+            .campo("codigo", Tipo.NUMERO, (i, p) -> ((Produto) p).getCodProduto())
+            .campo("nome", Tipo.TEXTO, (i, p) -> ((Produto) p).getNome())
+            .campo("categoria", Tipo.TEXTO, (i, p) -> ((Produto) p).getCategoria())
+            .campo("preco", Tipo.NUMERO, (i, p) -> ((Produto) p).getPreco())
+            .campo("estoque", Tipo.NUMERO, (i, p) -> ((Produto) p).getEstoque());
+        for (Entidade entidade : List.of(clientes, pets, agendamentos, produtos)) {
+            ENTIDADES.put(entidade.nome, entidade);
+        }
+    }
+
+    // Condição já convertida para o tipo do campo.
+    private static final class Condicao {
+        private final Campo campo;
+        private final Operador operador;
+        private final Object valor;      // Limite inferior no caso de "entre"
+        private final Object ate;        // Limite superior de "entre"
+        private final String texto;      // Valor como foi digitado, para os índices
+
+        private Condicao(Campo campo, Operador operador, Object valor, Object ate, String texto) {
+            this.campo = campo;
+            this.operador = operador;
+            this.valor = valor;
+            this.ate = ate;
+            this.texto = texto;
+        }
+
+        private boolean aceita(Instantaneo instantaneo, Object objeto) {
+            Object atual = campo.valor.apply(instantaneo, objeto);
+            if (atual == null) return false;
+            if (operador == Operador.CONTEM) return comparavel(atual, campo.tipo).toString().contains((String) valor);
+            int comparacao = comparar(comparavel(atual, campo.tipo), valor);
+            return switch (operador) {
+                case IGUAL -> comparacao == 0;
+                case DIFERENTE -> comparacao != 0;
+                case MENOR -> comparacao < 0;
+                case MENOR_IGUAL -> comparacao <= 0;
+                case MAIOR -> comparacao > 0;
+                case MAIOR_IGUAL -> comparacao >= 0;
+                case ENTRE -> comparacao >= 0 && comparar(comparavel(atual, campo.tipo), ate) <= 0;
+                case CONTEM -> throw new AssertionError();
+            };
+        }
+
+        @Override
+        public String toString() {
+            return campo.nome + " " + operador.simbolo + " " + texto;
+        }
+    }
+
+    /**
+     * Plano de execução escolhido para uma versão dos cadastros.
+     */
+    public static final class Plano {
+        private final String descricao;
+        private final long candidatos;
+        private final boolean paralelo;
+        private final Stream<?> fonte;
+        private final Consulta consulta;
+        private final Instantaneo instantaneo;
+
+        private Plano(String descricao, long candidatos, boolean paralelo, Stream<?> fonte, Consulta consulta, Instantaneo instantaneo) {
+            this.descricao = descricao;
+            this.candidatos = candidatos;
+            this.paralelo = paralelo;
+            this.fonte = fonte;
+            this.consulta = consulta;
+            this.instantaneo = instantaneo;
+        }
+
+        public String getDescricao() {
+            return descricao;
+        }
+
+        /**
+         * Quantidade de objetos que o plano examina (estimada pelo tamanho do índice ou da entidade).
+         * @return Candidatos examinados
+         */
+        public long getCandidatos() {
+            return candidatos;
+        }
+
+        public boolean isParalelo() {
+            return paralelo;
+        }
+
+        /**
+         * Executa o plano. O stream é preguiçoso e pode ser paralelo: para manter a ordem e aproveitar
+         * o paralelismo, consuma com {@link Stream#forEachOrdered} ou com uma coleta.
+         * @return Objetos encontrados ({@link Cliente}, {@link Pets}, {@link Agendamento} ou {@link Produto})
+         */
+        public Stream<Object> executar() {
+            Stream<?> resultado = paralelo ? fonte.parallel() : fonte;
+            for (Condicao condicao : consulta.condicoes) {
+                resultado = resultado.filter(o -> condicao.aceita(instantaneo, o));
+            }
+            Stream<Object> objetos = resultado.map(o -> (Object) o);
+            if (consulta.ordenacao != null) {
+                Campo campo = consulta.ordenacao;
+                Comparator<Object> ordem = Comparator.comparing(o -> comparavel(campo.valor.apply(instantaneo, o), campo.tipo),
+                    Comparator.nullsLast(Consulta::comparar));
+                objetos = objetos.sorted(consulta.decrescente ? ordem.reversed() : ordem);
+            }
+            return consulta.limite >= 0 ? objetos.limit(consulta.limite) : objetos;
+        }
+
+        /**
+         * Executa o plano e formata cada resultado com os campos da entidade.
+         * @return Valores de cada resultado, na ordem de {@link Consulta#getColunas()}
+         */
+        public Stream<List<String>> linhas() {
+            return executar().map(o -> consulta.formatar(instantaneo, o));
+        }
+
+        @Override
+        public String toString() {
+            return descricao;
+        }
+    }
+
+    private final String texto;
+    private final Entidade entidade;
+    private final List<Condicao> condicoes;
+    private final Campo ordenacao;
+    private final boolean decrescente;
+    private final long limite;
+
+    private Consulta(String texto, Entidade entidade, List<Condicao> condicoes, Campo ordenacao, boolean decrescente, long limite) {
+        this.texto = texto;
+        this.entidade = entidade;
+        this.condicoes = condicoes;
+        this.ordenacao = ordenacao;
+        this.decrescente = decrescente;
+        this.limite = limite;
+    }
+
+    /**
+     * Interpreta o texto de uma consulta.
+     * @param texto Consulta, ex.: {@code pets onde especie = Gato e idade > 10}
+     * @return Consulta pronta para ser planejada
+     * @throws IllegalArgumentException Se a consulta tiver erro de sintaxe, campo desconhecido ou valor inválido
+     */
+    public static Consulta compilar(String texto) {
+        if (texto == null || texto.isBlank()) throw new IllegalArgumentException("Consulta vazia.");
+        return new Interpretador(texto).consulta();
+    }
+
+    /**
+     * Escolhe como executar a consulta sobre uma versão dos cadastros.
+     * @param instantaneo Versão consultada (com todos os clientes carregados)
+     * @return Plano com a fonte dos candidatos
+     */
+    public Plano planejar(Instantaneo instantaneo) {
+        Plano melhor = null;
+        for (Plano plano : new Plano[] {porCpf(instantaneo), porCodigo(instantaneo), porData(instantaneo)}) {
+            if (plano != null && (melhor == null || plano.candidatos < melhor.candidatos)) melhor = plano;
+        }
+        if (melhor != null) return melhor;
+        int tamanho = entidade.tamanho.apply(instantaneo);
+        // Com limite e sem ordenação, a varredura sequencial para cedo; em paralelo, examinaria blocos inteiros à frente.
+        boolean paralelo = tamanho >= LIMITE_PARALELO && (limite < 0 || ordenacao != null) && !condicoes.isEmpty();
+        return new Plano((paralelo ? "varredura paralela" : "varredura") + " de " + tamanho + " " + entidade.nome,
+            tamanho, paralelo, entidade.varredura.apply(instantaneo), this, instantaneo);
+    }
+
+    /**
+     * Nomes dos campos da entidade consultada, na ordem em que {@link Plano#linhas()} os devolve.
+     * @return Nomes das colunas
+     */
+    public List<String> getColunas() {
+        return List.copyOf(entidade.campos.keySet());
+    }
+
+    @Override
+    public String toString() {
+        return texto;
+    }
+
+    // Índices
+
+    // Índice de CPF: o mapa de clientes (clientes) ou o de pets por dono (pets).
+    private Plano porCpf(Instantaneo instantaneo) {
+        Condicao condicao = igualdade("cpf");
+        if (condicao == null || !(entidade.nome.equals("clientes") || entidade.nome.equals("pets"))) return null;
+        Cliente cliente = instantaneo.buscarCliente(Cliente.formatarCPF(condicao.texto));
+        Stream<?> fonte = cliente == null ? Stream.empty()
+            : entidade.nome.equals("clientes") ? Stream.of(cliente) : instantaneo.getPets(cliente).stream();
+        long candidatos = cliente == null ? 0 : entidade.nome.equals("clientes") ? 1 : instantaneo.getPets(cliente).size();
+        return new Plano("índice de CPF (" + condicao + ")", candidatos, false, fonte, this, instantaneo);
+    }
+
+    private Plano porCodigo(Instantaneo instantaneo) {
+        Condicao condicao = igualdade("codigo");
+        if (condicao == null || !entidade.nome.equals("produtos")) return null;
+        double codigo = (Double) condicao.valor;
+        Produto produto = codigo == Math.rint(codigo) ? instantaneo.buscarProduto((int) codigo) : null;
+        return new Plano("índice de código (" + condicao + ")", produto == null ? 0 : 1, false, Stream.ofNullable(produto), this,
+            instantaneo);
+    }
+
+    // Índice por dia: atende um intervalo com começo e fim, juntando as condições de data.
+    private Plano porData(Instantaneo instantaneo) {
+        if (!entidade.nome.equals("agendamentos")) return null;
+        LocalDate de = null, ate = null;
+        for (Condicao condicao : condicoes) {
+            if (!condicao.campo.nome.equals("data")) continue;
+            LocalDate valor = (LocalDate) condicao.valor;
+            switch (condicao.operador) {
+                case IGUAL -> { de = maior(de, valor); ate = menor(ate, valor); }
+                case MAIOR -> de = maior(de, valor.plusDays(1));
+                case MAIOR_IGUAL -> de = maior(de, valor);
+                case MENOR -> ate = menor(ate, valor.minusDays(1));
+                case MENOR_IGUAL -> ate = menor(ate, valor);
+                case ENTRE -> { de = maior(de, valor); ate = menor(ate, (LocalDate) condicao.ate); }
+                default -> { } // "!=" não restringe o intervalo
+            }
+        }
+        if (de == null || ate == null || ate.toEpochDay() - de.toEpochDay() > DIAS_MAXIMOS_INDICE) return null;
+        long candidatos = 0;
+        for (LocalDate dia = de; !dia.isAfter(ate); dia = dia.plusDays(1)) {
+            candidatos += instantaneo.getAgendamentosDoDia(dia).size();
+        }
+        LocalDate inicio = de;
+        long dias = ate.toEpochDay() - de.toEpochDay() + 1;
+        Stream<?> fonte = Stream.iterate(inicio, dia -> dia.plusDays(1)).limit(Math.max(0, dias))
+            .flatMap(dia -> instantaneo.getAgendamentosDoDia(dia).stream()
+                .sorted(Comparator.comparing(Agendamento::getHora)));
+        return new Plano("índice por data (" + Math.max(0, dias) + " dias)", candidatos, false, fonte, this, instantaneo);
+    }
+
+    private Condicao igualdade(String campo) {
+        for (Condicao condicao : condicoes) {
+            if (condicao.campo.nome.equals(campo) && condicao.operador == Operador.IGUAL) return condicao;
+        }
+        return null;
+    }
+
+    private static LocalDate maior(LocalDate atual, LocalDate valor) {
+        return atual == null || valor.isAfter(atual) ? valor : atual;
+    }
+
+    private static LocalDate menor(LocalDate atual, LocalDate valor) {
+        return atual == null || valor.isBefore(atual) ? valor : atual;
+    }
+
+    // Valores
+
+    private List<String> formatar(Instantaneo instantaneo, Object objeto) {
+        List<String> valores = new ArrayList<>(entidade.campos.size());
+        for (Campo campo : entidade.campos.values()) {
+            Object valor = campo.valor.apply(instantaneo, objeto);
+            valores.add(valor == null ? "-"
+                : valor instanceof LocalDate data ? data.format(ModoLote.FORMATO_DATA)
+                : valor instanceof LocalTime hora ? hora.format(ModoLote.FORMATO_HORA)
+                : valor.toString());
+        }
+        return valores;
+    }
+
+    private static String cpfDono(Instantaneo instantaneo, Pets pet) {
+        Cliente dono = instantaneo.buscarDono(pet);
+        return dono == null ? null : dono.getCpf();
+    }
+
+    // Agendamentos de pets removidos continuam com o CPF do último dono.
+    private static String cpfDonoHistorico(Instantaneo instantaneo, Pets pet) {
+        Cliente dono = instantaneo.buscarDonoHistorico(pet);
+        return dono == null ? null : dono.getCpf();
+    }
+
+    // Valor na forma usada nas comparações: texto normalizado, número como double.
+    private static Object comparavel(Object valor, Tipo tipo) {
+        if (valor == null) return null;
+        return switch (tipo) {
+            case TEXTO -> TabelaGeocodigos.normalizar(valor.toString());
+            case NUMERO -> valor instanceof Dinheiro dinheiro ? dinheiro.getCentavos() / 100.0 : ((Number) valor).doubleValue();
+            case DATA, HORA -> valor;
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int comparar(Object a, Object b) {
+        return ((Comparable) a).compareTo(b);
+    }
+
+    // Converte o valor digitado para o tipo do campo.
+    private static Object converter(Campo campo, String texto) {
+        try {
+            return switch (campo.tipo) {
+                case TEXTO -> TabelaGeocodigos.normalizar(campo.nome.equals("cpf") ? Cliente.formatarCPF(texto) : texto);
+                case NUMERO -> Double.parseDouble(texto.replace(',', '.'));
+                case DATA -> texto.equalsIgnoreCase("hoje") ? LocalDate.now() : LocalDate.parse(texto, ModoLote.FORMATO_DATA);
+                case HORA -> LocalTime.parse(texto, ModoLote.FORMATO_HORA);
+            };
+        } catch (NumberFormatException | DateTimeParseException e) {
+            String esperado = switch (campo.tipo) {
+                case NUMERO -> "um número";
+                case DATA -> "uma data dd/MM/yyyy";
+                case HORA -> "uma hora HH:mm";
+                case TEXTO -> "um texto";
+            };
+            throw new IllegalArgumentException("Valor inválido para " + campo.nome + ": '" + texto + "' (esperado " + esperado + ").");
+        }
+    }
+
+    // Interpretação do texto
+
+    private static final class Interpretador {
+        private final String texto;
+        private final List<String> simbolos = new ArrayList<>();
+        private final List<Boolean> literais = new ArrayList<>(); // Símbolo veio entre aspas
+        private int posicao;
+
+        private Interpretador(String texto) {
+            this.texto = texto.strip();
+            separar();
+        }
+
+        // Separa palavras, valores entre aspas e operadores.
+        private void separar() {
+            int i = 0;
+            while (i < texto.length()) {
+                char c = texto.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '"' || c == '\'') {
+                    int fim = texto.indexOf(c, i + 1);
+                    if (fim < 0) throw new IllegalArgumentException("Aspas sem fechamento na posição " + (i + 1) + ".");
+                    adicionar(texto.substring(i + 1, fim), true);
+                    i = fim + 1;
+                } else if (c == '=' || c == '<' || c == '>' || c == '!') {
+                    int fim = i + 1;
+                    if (fim < texto.length() && (texto.charAt(fim) == '=' || (c == '<' && texto.charAt(fim) == '>'))) fim++;
+                    adicionar(texto.substring(i, fim), false);
+                    i = fim;
+                } else {
+                    int fim = i;
+                    while (fim < texto.length() && !Character.isWhitespace(texto.charAt(fim)) && "=<>!\"'".indexOf(texto.charAt(fim)) < 0) fim++;
+                    adicionar(texto.substring(i, fim), false);
+                    i = fim;
+                }
+            }
+        }
+
+        private void adicionar(String simbolo, boolean literal) {
+            simbolos.add(simbolo);
+            literais.add(literal);
+        }
+
+        private Consulta consulta() {
+            String nomeEntidade = palavra(proximo("o nome da entidade"));
+            Entidade entidade = ENTIDADES.get(nomeEntidade);
+            if (entidade == null) {
+                throw new IllegalArgumentException("Entidade desconhecida: '" + nomeEntidade + "'. Use " + String.join(", ", ENTIDADES.keySet()) + ".");
+            }
+            List<Condicao> condicoes = new ArrayList<>();
+            Campo ordenacao = null;
+            boolean decrescente = false;
+            long limite = -1;
+            if (palavraChave("onde", "where")) {
+                do {
+                    condicoes.add(condicao(entidade));
+                } while (palavraChave("e", "and"));
+            }
+            if (palavraChave("ordenar", "order")) {
+                if (!palavraChave("por", "by")) throw new IllegalArgumentException("Esperado 'por' depois de 'ordenar'.");
+                ordenacao = campo(entidade, proximo("o campo da ordenação"));
+                if (palavraChave("desc", "decrescente")) decrescente = true;
+                else palavraChave("asc", "crescente");
+            }
+            if (palavraChave("limite", "limit")) {
+                String valor = proximo("o limite");
+                try {
+                    limite = Long.parseLong(valor);
+                } catch (NumberFormatException e) {
+                    limite = -1;
+                }
+                if (limite < 0) throw new IllegalArgumentException("Limite inválido: '" + valor + "'.");
+            }
+            if (posicao < simbolos.size()) {
+                throw new IllegalArgumentException("Não entendi '" + simbolos.get(posicao) + "'. Valores com espaços vão entre aspas.");
+            }
+            return new Consulta(texto, entidade, List.copyOf(condicoes), ordenacao, decrescente, limite);
+        }
+
+        private Condicao condicao(Entidade entidade) {
+            Campo campo = campo(entidade, proximo("um campo"));
+            String simbolo = proximo("um operador depois de " + campo.nome);
+            boolean simbolico = !literais.get(posicao - 1) && "=<>!".indexOf(simbolo.charAt(0)) >= 0;
+            Operador operador = switch (literais.get(posicao - 1) ? "" : simbolico ? simbolo : palavra(simbolo)) {
+                case "=", "==" -> Operador.IGUAL;
+                case "!=", "<>" -> Operador.DIFERENTE;
+                case "<" -> Operador.MENOR;
+                case "<=" -> Operador.MENOR_IGUAL;
+                case ">" -> Operador.MAIOR;
+                case ">=" -> Operador.MAIOR_IGUAL;
+                case "entre", "between" -> Operador.ENTRE;
+                case "contem", "contains" -> Operador.CONTEM;
+                default -> throw new IllegalArgumentException("Operador desconhecido: '" + simbolo + "'. Use = != < <= > >= entre contem.");
+            };
+            String valor = proximo("um valor para " + campo.nome);
+            if (operador == Operador.CONTEM) {
+                if (campo.tipo != Tipo.TEXTO) throw new IllegalArgumentException("'contem' só se aplica a textos; " + campo.nome + " não é texto.");
+                return new Condicao(campo, operador, TabelaGeocodigos.normalizar(valor), null, valor);
+            }
+            if (operador == Operador.ENTRE) {
+                if (!palavraChave("e", "and")) throw new IllegalArgumentException("Esperado 'e' em '" + campo.nome + " entre'.");
+                String ate = proximo("o fim do intervalo de " + campo.nome);
+                return new Condicao(campo, operador, converter(campo, valor), converter(campo, ate), valor + " e " + ate);
+            }
+            return new Condicao(campo, operador, converter(campo, valor), null, valor);
+        }
+
+        private Campo campo(Entidade entidade, String nome) {
+            Campo campo = entidade.campos.get(palavra(nome));
+            if (campo == null) {
+                throw new IllegalArgumentException("Campo desconhecido em " + entidade.nome + ": '" + nome + "'. Use "
+                    + String.join(", ", entidade.campos.keySet()) + ".");
+            }
+            return campo;
+        }
+
+        private String proximo(String esperado) {
+            if (posicao >= simbolos.size()) throw new IllegalArgumentException("Consulta incompleta: faltou " + esperado + ".");
+            return simbolos.get(posicao++);
+        }
+
+        // Consome a próxima palavra se for uma das palavras-chave (sem aspas).
+        private boolean palavraChave(String... opcoes) {
+            if (posicao >= simbolos.size() || literais.get(posicao)) return false;
+            String atual = palavra(simbolos.get(posicao));
+            for (String opcao : opcoes) {
+                if (opcao.equals(atual)) {
+                    posicao++;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Palavra-chave, entidade ou campo sem maiúsculas nem acentos ("Espécie" -> "especie").
+        private static String palavra(String simbolo) {
+            return TabelaGeocodigos.normalizar(simbolo);
+        }
+    }
+}
@@ -0,0 +1,715 @@
+package aps3;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Cópias de segurança da loja em um único arquivo compactado: completas (cadastros, saúde,
+ * fidelidade, financeiro e produtos) ou incrementais (as alterações do {@link FeedAlteracoes}
+ * posteriores a uma sequência ou a um instante).
+ * <p>
+ * O arquivo é uma sequência de blocos independentes com registros de texto no formato do
+ * {@link ArquivoLoja}. Cada bloco é compactado com {@link Deflater} e gravado com o tamanho e o
+ * CRC-32C do conteúdo original; os blocos são compactados em paralelo e gravados na ordem, com
+ * poucos em andamento, então a memória usada não depende do tamanho da loja. Um bloco vazio marca o
+ * fim e o último registro confere a quantidade de registros: um arquivo truncado ou alterado é
+ * recusado na leitura, com o número do bloco.
+ * <p>
+ * A cópia completa não bloqueia a loja. Os cadastros vêm do {@link Instantaneo} obtido no início,
+ * junto com a sequência do feed e os dados gerais, que são pequenos. Das despesas e dos movimentos
+ * do caixa, que crescem com o uso, a loja bloqueada só anota até onde a cópia vai; as linhas são
+ * gravadas depois, com ela livre. O que é alterado no lugar
+ * (saúde, pontos, histórico de faltas e situação dos agendamentos) é preservado por cópia na
+ * escrita: antes de alterar um cliente que a cópia ainda não gravou, a loja pede à
+ * {@link Gravacao} que o grave como estava no início. A cópia é, assim, o estado exato da loja na
+ * sequência registrada, e a cópia incremental seguinte parte dela: o feed retém as alterações
+ * posteriores à última cópia gravada (completa ou incremental). A exceção é a expiração de
+ * pontos, que altera todas as contas: ela não é preservada, mas é idempotente e fica no feed, então
+ * aplicar a incremental seguinte leva ao mesmo estado.
+ * <p>
+ * O CRC confere só os bytes de cada bloco. A restauração completa confere também o resultado: a
+ * loja restaurada precisa ter os clientes e agendamentos contados no cabeçalho. A incremental só é
+ * aplicada sobre a loja que está exatamente na sequência da cópia anterior, sem lacunas no arquivo.
+ */
+public final class CopiaSeguranca {
+    public static final int CARACTERES_POR_BLOCO = 1 << 19;
+    private static final int BYTES_MAXIMOS_BLOCO = 4 * CARACTERES_POR_BLOCO; // Limite do UTF-8, conferido na leitura
+    private static final byte[] ASSINATURA = "PETSHOP-COPIA\n".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSAO_FORMATO = 1;
+    private static final String COMPLETA = "completa";
+    private static final String INCREMENTAL = "incremental";
+    private static final int ALTERACOES_POR_LOTE = 4096;
+
+    private CopiaSeguranca() {
+    }
+
+    /**
+     * Resultado de uma gravação, verificação ou restauração.
+     */
+    public static final class Resumo {
+        private final String tipo;
+        private final long sequenciaInicial; // Completa: sequência da cópia; incremental: cursor de onde parte
+        private final long sequenciaFinal;   // Última alteração contida (igual à inicial na completa)
+        private final long registros;
+        private final int blocos;
+        private final long bytes;
+
+        private Resumo(String tipo, long sequenciaInicial, long sequenciaFinal, long registros, int blocos, long bytes) {
+            this.tipo = tipo;
+            this.sequenciaInicial = sequenciaInicial;
+            this.sequenciaFinal = sequenciaFinal;
+            this.registros = registros;
+            this.blocos = blocos;
+            this.bytes = bytes;
+        }
+
+        public boolean isCompleta() {
+            return tipo.equals(COMPLETA);
+        }
+        public long getSequenciaInicial() {
+            return sequenciaInicial;
+        }
+
+        /**
+         * Sequência até a qual a loja fica atualizada depois de restaurar a cópia; a próxima
+         * incremental deve partir dela.
+         * @return Sequência final da cópia
+         */
+        public long getSequenciaFinal() {
+            return sequenciaFinal;
+        }
+        public long getRegistros() {
+            return registros;
+        }
+        public int getBlocos() {
+            return blocos;
+        }
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Cópia %s: sequências %d a %d, %d registros em %d blocos (%d bytes)", tipo, sequenciaInicial,
+                sequenciaFinal, registros, blocos, bytes);
+        }
+    }
+
+    // Gravação
+
+    /**
+     * Grava uma cópia completa da loja sem bloquear as alterações. O arquivo só substitui um
+     * anterior de mesmo nome depois de completo.
+     * @param loja Loja copiada
+     * @param arquivo Arquivo de destino
+     * @return Resumo da cópia, com a sequência do feed em que ela foi tirada
+     * @throws IOException Se não for possível gravar
+     * @throws IllegalStateException Se outra cópia completa estiver em andamento
+     */
+    public static Resumo gravarCompleta(Loja loja, Path arquivo) throws IOException {
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        Gravacao gravacao;
+        String gerais;
+        int despesas;
+        FechamentoCaixa.Diario diario;
+        synchronized (loja) { // Só o necessário para fixar o ponto da cópia; o resto é gravado com a loja livre
+            Instantaneo instantaneo = loja.instantaneo();
+            long sequencia = loja.getFeed().getUltimaSequencia();
+            StringWriter texto = new StringWriter();
+            ArquivoLoja.gravarGerais(texto, loja, instantaneo);
+            gerais = texto.toString();
+            despesas = loja.getFinanceiro().getLivroDespesas().getQuantidade(); // Só cresce: basta a quantidade
+            diario = loja.getCaixa().capturarDiario();
+            gravacao = new Gravacao(loja, instantaneo, sequencia);
+            loja.iniciarCopia(gravacao);
+        }
+        Instantaneo instantaneo = gravacao.instantaneo;
+        GravadorBlocos saida = null;
+        try {
+            saida = new GravadorBlocos(temporario);
+            saida.registro(FeedAlteracoes.comando("copia", COMPLETA, VERSAO_FORMATO, gravacao.sequencia,
+                instantaneo.getClientes().size(), instantaneo.getAgendamentos().size()) + "\n");
+            saida.registro(gerais);
+            try (Writer lancamentos = new TextoEmBlocos(saida)) {
+                ArquivoLoja.gravarLancamentos(lancamentos, loja.getFinanceiro().getLivroDespesas(), despesas, diario);
+            }
+            for (int posicao = 0; posicao < instantaneo.getPosicoesClientes(); posicao++) {
+                String registros = gravacao.cliente(posicao);
+                if (registros != null) saida.registro(registros);
+            }
+            gravarAgendamentos(saida, gravacao);
+            saida.fechar();
+        } finally {
+            loja.terminarCopia(gravacao);
+            if (saida != null) saida.abortar();
+        }
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        loja.getFeed().reter(CopiaSeguranca.class, gravacao.sequencia); // A próxima incremental parte daqui
+        return new Resumo(COMPLETA, gravacao.sequencia, gravacao.sequencia, saida.getRegistros(), saida.getBlocos(),
+            saida.getBytes());
+    }
+
+    /**
+     * Grava uma cópia incremental com as alterações posteriores a uma sequência, lidas do feed em lotes.
+     * @param loja Loja copiada
+     * @param desde Sequência final da cópia anterior (completa ou incremental)
+     * @param arquivo Arquivo de destino
+     * @return Resumo da cópia; a sequência final é a da próxima incremental
+     * @throws IOException Se não for possível gravar
+     * @throws IllegalStateException Se as alterações posteriores à sequência já tiverem sido descartadas do feed
+     */
+    public static Resumo gravarIncremental(Loja loja, long desde, Path arquivo) throws IOException {
+        FeedAlteracoes feed = loja.getFeed();
+        long ate = feed.getUltimaSequencia(); // Alterações publicadas durante a gravação ficam para a próxima
+        if (desde > ate) throw new IllegalArgumentException("Sequência posterior à última alteração: " + desde);
+        feed.ler(desde, 1); // Falha já aqui se as alterações tiverem sido descartadas
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        GravadorBlocos saida = new GravadorBlocos(temporario);
+        try {
+            saida.registro(FeedAlteracoes.comando("copia", INCREMENTAL, VERSAO_FORMATO, desde, ate) + "\n");
+            StringBuilder lote = new StringBuilder();
+            for (long cursor = desde; cursor < ate; ) {
+                lote.setLength(0);
+                for (FeedAlteracoes.Alteracao alteracao : feed.ler(cursor, (int) Math.min(ALTERACOES_POR_LOTE, ate - cursor))) {
+                    // O comando é o último campo e já está no formato de uma linha.
+                    lote.append("alteracao;").append(alteracao.getSequencia()).append(';').append(alteracao.getInstante())
+                        .append(';').append(alteracao.getComando()).append('\n');
+                    cursor = alteracao.getSequencia();
+                }
+                saida.registro(lote.toString());
+            }
+            saida.fechar();
+        } finally {
+            saida.abortar();
+        }
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        loja.getFeed().reter(CopiaSeguranca.class, ate);
+        return new Resumo(INCREMENTAL, desde, ate, saida.getRegistros(), saida.getBlocos(), saida.getBytes());
+    }
+
+    // Agendamentos na ordem da loja, com o dono pelo CPF e o pet pela posição na lista do dono.
+    private static void gravarAgendamentos(GravadorBlocos saida, Gravacao gravacao) throws IOException {
+        Instantaneo instantaneo = gravacao.instantaneo;
+        Map<Pets, Integer> orfaos = new IdentityHashMap<>(); // Pets removidos que ainda têm agendamentos
+        StringBuilder texto = new StringBuilder();
+        int posicao = 0;
+        for (Agendamento agendamento : instantaneo.getAgendamentos()) {
+            Pets pet = agendamento.getPet();
+            Cliente dono = instantaneo.buscarDono(pet);
+            String cpf, indicePet;
+            if (dono != null) {
+                cpf = dono.getCpf();
+                indicePet = String.valueOf(instantaneo.getPets(dono).indexOf(pet));
+            } else {
+                Integer orfao = orfaos.get(pet);
+                if (orfao == null) {
+                    orfao = orfaos.size();
+                    orfaos.put(pet, orfao);
+                    Cliente exDono = instantaneo.buscarExDono(pet);
+                    texto.append(FeedAlteracoes.comando("orfao", orfao, pet.getNomePet(), pet.getEspecie(), pet.getPesoPet(),
+                        pet.getDataNascimento().format(ModoLote.FORMATO_DATA))).append('\n');
+                    if (exDono != null) {
+                        texto.append(FeedAlteracoes.comando("exdono", exDono.getNome(), exDono.getCpf(), exDono.getTelefone(),
+                            exDono.getEndereco())).append('\n');
+                    }
+                }
+                cpf = "-";
+                indicePet = String.valueOf(orfao);
+            }
+            String situacao = gravacao.situacao(agendamento);
+            texto.append(FeedAlteracoes.comando("agenda", posicao++, cpf, indicePet, agendamento.getData().format(ModoLote.FORMATO_DATA),
+                agendamento.getHora().format(ModoLote.FORMATO_HORA), agendamento.getServico(), agendamento.getValor().getCentavos(),
+                situacao)).append('\n');
+            if (texto.length() >= 64 * 1024) {
+                saida.registro(texto.toString());
+                texto.setLength(0);
+            }
+        }
+        saida.registro(texto.toString());
+        gravacao.agendamentosGravados();
+    }
+
+    /**
+     * Cópia completa em andamento. A loja chama {@link #preservar(Cliente)} e
+     * {@link #preservar(Agendamento)} com o próprio monitor, antes de alterar o que a cópia ainda não gravou.
+     */
+    static final class Gravacao {
+        private final Loja loja;
+        private final Instantaneo instantaneo;
+        private final long sequencia;
+        private int proximaPosicao;         // Posição interna do próximo cliente a gravar
+        private boolean agendamentosGravados;
+        private final Map<Cliente, String> clientesPreservados = new IdentityHashMap<>();
+        private final Map<Agendamento, String> situacoesPreservadas = new IdentityHashMap<>();
+
+        private Gravacao(Loja loja, Instantaneo instantaneo, long sequencia) {
+            this.loja = loja;
+            this.instantaneo = instantaneo;
+            this.sequencia = sequencia;
+        }
+
+        /**
+         * Guarda os registros do cliente como estavam no início da cópia, se ela ainda não os gravou.
+         * @param cliente Cliente prestes a ser alterado
+         */
+        synchronized void preservar(Cliente cliente) {
+            int posicao = instantaneo.getPosicaoCliente(cliente.getCpf());
+            if (posicao < proximaPosicao) return; // Já gravado, ou cadastrado depois do início da cópia
+            Cliente original = instantaneo.getClienteEm(posicao);
+            if (!clientesPreservados.containsKey(original)) clientesPreservados.put(original, registros(original, posicao));
+        }
+
+        /**
+         * Guarda a situação do agendamento (comparecimento ou cancelamento) como estava no início da cópia.
+         * @param agendamento Agendamento prestes a ser alterado
+         */
+        synchronized void preservar(Agendamento agendamento) {
+            if (!agendamentosGravados) situacoesPreservadas.putIfAbsent(agendamento, agendamento.getCodigoSituacao());
+        }
+
+        // Registros do cliente na posição: os preservados, ou os atuais se ele não foi alterado desde o início.
+        private synchronized String cliente(int posicao) {
+            proximaPosicao = posicao + 1;
+            Cliente cliente = instantaneo.getClienteEm(posicao);
+            if (cliente == null) return null;
+            String preservados = clientesPreservados.remove(cliente);
+            return preservados != null ? preservados : registros(cliente, posicao);
+        }
+
+        private synchronized String situacao(Agendamento agendamento) {
+            String preservada = situacoesPreservadas.remove(agendamento);
+            return preservada != null ? preservada : agendamento.getCodigoSituacao();
+        }
+
+        private synchronized void agendamentosGravados() {
+            agendamentosGravados = true;
+            situacoesPreservadas.clear();
+        }
+
+        private String registros(Cliente cliente, int posicao) {
+            StringWriter texto = new StringWriter();
+            try {
+                ArquivoLoja.gravarCliente(texto, loja, cliente, posicao);
+                for (Pets pet : instantaneo.getPets(cliente)) {
+                    ArquivoLoja.gravarPet(texto, loja, pet, null, null);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e); // StringWriter não lança
+            }
+            return texto.toString();
+        }
+    }
+
+    // Leitura
+
+    /**
+     * Confere um arquivo de cópia sem aplicá-lo: assinatura, CRC de cada bloco e quantidade de registros.
+     * @param arquivo Arquivo da cópia
+     * @return Resumo da cópia
+     * @throws IOException Se não for possível ler o arquivo
+     * @throws IllegalArgumentException Se o arquivo estiver corrompido, truncado ou for de outro formato
+     */
+    public static Resumo verificar(Path arquivo) throws IOException {
+        return ler(arquivo, c -> { });
+    }
+
+    /**
+     * Restaura uma cópia completa em uma loja vazia, conferindo cada bloco antes de aplicá-lo e, no
+     * fim, os totais de clientes e agendamentos do cabeçalho. Se a cópia estiver corrompida ou não
+     * conferir, a loja fica incompleta e deve ser descartada.
+     * @param arquivo Arquivo da cópia completa
+     * @param loja Loja vazia
+     * @return Resumo da cópia; a sequência final é a de onde as incrementais devem partir, e o feed da loja continua dela
+     * @throws IOException Se não for possível ler o arquivo
+     * @throws IllegalArgumentException Se o arquivo estiver corrompido, não for uma cópia completa ou
+     *         a loja restaurada não tiver os totais do cabeçalho
+     * @throws IllegalStateException Se a loja não estiver vazia
+     */
+    public static Resumo restaurar(Path arquivo, Loja loja) throws IOException {
+        ArquivoLoja.Leitor leitor = new ArquivoLoja.Leitor(loja, true);
+        List<String[]> gerais = new ArrayList<>(); // Aplicados depois de a loja reservar as posições, como no índice do arquivo
+        List<Pets> orfaos = new ArrayList<>();
+        Map<String, Cliente> exDonos = new HashMap<>(); // Um objeto por CPF de ex-dono
+        int[] secao = {0};                          // 0: dados gerais; 1: clientes; 2: agendamentos
+        int[] agendamentos = {0};
+        int[] totais = new int[2];                  // Clientes e agendamentos do cabeçalho
+        Resumo resumo = ler(arquivo, c -> {
+            switch (c[0]) {
+                case "copia" -> {
+                    if (!c[1].equals(COMPLETA)) throw new IllegalArgumentException("a cópia não é completa");
+                    totais[0] = Integer.parseInt(c[4]);
+                    totais[1] = Integer.parseInt(c[5]);
+                    loja.abrirSegmentos(null, totais[0], totais[1]);
+                }
+                case "produto" -> loja.restaurarProduto(ArquivoLoja.lerProduto(c));
+                case "financeiro", "recebimento", "despesa", "previsor", "horario", "caixa", "fechamento" -> gerais.add(c);
+                default -> {
+                    if (secao[0] == 0) {
+                        ArquivoLoja.restaurarIndice(loja, gerais);
+                        secao[0] = 1;
+                    }
+                    if (secao[0] == 1 && (c[0].equals("orfao") || c[0].equals("exdono") || c[0].equals("agenda") || c[0].equals("fim"))) {
+                        leitor.terminar();
+                        secao[0] = 2;
+                    }
+                    switch (c[0]) {
+                        case "orfao" -> orfaos.add(new Pets(loja.getArmazemPets(), c[2], c[3], Float.parseFloat(c[4]), LocalDate.parse(c[5], ModoLote.FORMATO_DATA)));
+                        case "exdono" -> loja.restaurarExDono(orfaos.get(orfaos.size() - 1),
+                            exDonos.computeIfAbsent(c[2], cpf -> new Cliente(c[1], c[2], c[3], c[4])));
+                        case "agenda" -> restaurarAgendamento(loja, agendamentos[0]++, c, orfaos);
+                        case "fim" -> { }
+                        default -> {
+                            if (secao[0] == 2 || !leitor.ler(c)) throw new IllegalArgumentException("registro inesperado: " + c[0]);
+                        }
+                    }
+                }
+            }
+        });
+        Instantaneo restaurado = loja.instantaneo();
+        if (restaurado.getClientes().size() != totais[0] || restaurado.getAgendamentos().size() != totais[1]) {
+            throw new IllegalArgumentException(arquivo + ": a loja restaurada tem " + restaurado.getClientes().size() + " clientes e "
+                + restaurado.getAgendamentos().size() + " agendamentos, mas a cópia registra " + totais[0] + " e " + totais[1] + ".");
+        }
+        loja.getFeed().retomar(resumo.getSequenciaFinal()); // As incrementais reaplicadas mantêm a numeração original
+        return resumo;
+    }
+
+    /**
+     * Aplica uma cópia incremental sobre a loja, pelo {@link ModoLote}, a partir da sequência em que
+     * ela está; alterações já aplicadas (sequência até a informada) são ignoradas. Antes de aplicar,
+     * confere o arquivo por inteiro, que as alterações seguem sem lacunas a partir da sequência e que
+     * a loja está nela, sem alterações próprias desde a cópia anterior; se algo não conferir, nada é
+     * aplicado. Nesse ponto a reaplicação usa os valores gravados (preços, riscos e instantes), e não
+     * as regras nem o relógio locais, então chega ao mesmo estado da loja copiada. Se ainda assim uma
+     * alteração for rejeitada, as anteriores ficam aplicadas e a loja deve ser restaurada de novo. A
+     * loja fica bloqueada para outras alterações durante a aplicação.
+     * @param arquivo Arquivo da cópia incremental
+     * @param loja Loja restaurada da cópia anterior
+     * @param sequencia Sequência final da cópia anterior
+     * @return Resumo da cópia
+     * @throws IOException Se não for possível ler o arquivo
+     * @throws IllegalArgumentException Se o arquivo estiver corrompido, não for incremental ou pular alterações
+     * @throws IllegalStateException Se faltarem alterações entre a sequência e o início da cópia, se a
+     *         loja não estiver na sequência (nos dois casos ela fica como estava) ou se alguma
+     *         alteração for rejeitada
+     */
+    public static Resumo aplicar(Path arquivo, Loja loja, long sequencia) throws IOException {
+        long[] ultima = {sequencia}; // Última alteração seguida, sem lacuna, da sequência da loja
+        Resumo conferido = ler(arquivo, c -> {
+            if (!c[0].equals("alteracao")) return;
+            long numero = Long.parseLong(c[1]);
+            if (numero == ultima[0] + 1) ultima[0] = numero;
+        });
+        if (conferido.isCompleta()) throw new IllegalArgumentException(arquivo + " não é uma cópia incremental.");
+        if (conferido.getSequenciaInicial() > sequencia) {
+            throw new IllegalStateException("Faltam as alterações " + (sequencia + 1) + " a " + conferido.getSequenciaInicial()
+                + "; aplique antes a cópia que as contém.");
+        }
+        if (ultima[0] < conferido.getSequenciaFinal()) {
+            throw new IllegalArgumentException(arquivo + ": faltam as alterações a partir da " + (ultima[0] + 1) + ".");
+        }
+        synchronized (loja) {
+            long atual = loja.getFeed().getUltimaSequencia();
+            if (atual != sequencia) {
+                throw new IllegalStateException(arquivo + ": nada foi aplicado; a loja está na alteração " + atual + ", não na "
+                    + sequencia + " da cópia anterior.");
+            }
+            String rejeitada = reaplicar(arquivo, loja, sequencia);
+            if (rejeitada != null) {
+                throw new IllegalStateException(arquivo + ": aplicada até a alteração anterior, restaure a loja de novo; " + rejeitada);
+            }
+        }
+        return conferido;
+    }
+
+    // Reaplica as alterações posteriores à sequência, parando na primeira rejeitada; devolve o motivo dela ou null.
+    private static String reaplicar(Path arquivo, Loja loja, long sequencia) throws IOException {
+        ModoLote aplicador = new ModoLote(loja, true);
+        StringWriter resultado = new StringWriter();
+        String[] rejeitada = {null};
+        ler(arquivo, c -> {
+            if (rejeitada[0] != null || !c[0].equals("alteracao")) return;
+            long numero = Long.parseLong(c[1]);
+            if (numero <= sequencia) return;
+            resultado.getBuffer().setLength(0);
+            try {
+                if (!aplicador.executarLinha(numero, c[3], resultado)) {
+                    rejeitada[0] = "alteração " + numero + " rejeitada (" + resultado.toString().strip() + "): " + c[3];
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e); // A saída em memória não falha
+            }
+        });
+        return rejeitada[0];
+    }
+
+    private static void restaurarAgendamento(Loja loja, int posicao, String[] c, List<Pets> orfaos) {
+        Cliente dono = null;
+        Pets pet;
+        if (c[2].equals("-")) {
+            pet = orfaos.get(Integer.parseInt(c[3]));
+        } else {
+            dono = loja.buscarCliente(c[2]);
+            if (dono == null) throw new IllegalArgumentException("cliente do agendamento não encontrado: " + c[2]);
+            pet = loja.instantaneo().getPets(dono).get(Integer.parseInt(c[3]));
+        }
+        loja.restaurarAgendamento(posicao, Agendamento.restaurar(pet, LocalDate.parse(c[4], ModoLote.FORMATO_DATA),
+            LocalTime.parse(c[5], ModoLote.FORMATO_HORA), c[6], Dinheiro.deCentavos(Long.parseLong(c[7])), c[8]), dono);
+    }
+
+    // Destino de cada registro lido; as alterações incrementais têm o comando inteiro no último campo.
+    private interface Destino {
+        void registro(String[] campos);
+    }
+
+    // Lê os blocos em ordem, conferindo cada um antes de entregar os seus registros.
+    private static Resumo ler(Path arquivo, Destino destino) throws IOException {
+        try (DataInputStream entrada = new DataInputStream(new BufferedInputStream(Files.newInputStream(arquivo), 1 << 16))) {
+            byte[] assinatura = new byte[ASSINATURA.length];
+            entrada.readFully(assinatura);
+            if (!Arrays.equals(assinatura, ASSINATURA)) throw new IllegalArgumentException(arquivo + " não é uma cópia de segurança.");
+            Inflater inflater = new Inflater(true);
+            CRC32C crc = new CRC32C();
+            String[] cabecalho = null;
+            long registros = 0, bytes = ASSINATURA.length;
+            int blocos = 0;
+            boolean fim = false;
+            try {
+                while (true) {
+                    int tamanho = entrada.readInt();
+                    bytes += 4;
+                    if (tamanho == 0) break; // Marca de fim
+                    blocos++;
+                    int compactado = entrada.readInt();
+                    int esperado = entrada.readInt();
+                    if (tamanho < 0 || tamanho > BYTES_MAXIMOS_BLOCO || compactado < 0 || compactado > BYTES_MAXIMOS_BLOCO + 1024) {
+                        throw new IllegalArgumentException("bloco " + blocos + " com tamanho inválido");
+                    }
+                    byte[] dados = new byte[compactado];
+                    entrada.readFully(dados);
+                    bytes += 8 + compactado;
+                    byte[] original = new byte[tamanho];
+                    inflater.reset();
+                    inflater.setInput(dados);
+                    if (inflater.inflate(original) != tamanho || !inflater.finished()) {
+                        throw new IllegalArgumentException("bloco " + blocos + " não confere com o tamanho gravado");
+                    }
+                    crc.reset();
+                    crc.update(original);
+                    if ((int) crc.getValue() != esperado) throw new IllegalArgumentException("CRC do bloco " + blocos + " não confere");
+
+                    String texto = new String(original, StandardCharsets.UTF_8);
+                    for (int inicio = 0; inicio < texto.length(); ) {
+                        int quebra = texto.indexOf('\n', inicio);
+                        if (quebra < 0) throw new IllegalArgumentException("bloco " + blocos + " termina no meio de um registro");
+                        String linha = texto.substring(inicio, quebra);
+                        inicio = quebra + 1;
+                        if (fim) throw new IllegalArgumentException("registros depois do fim");
+                        String[] c = linha.startsWith("alteracao;") ? linha.split(";", 4) : FeedAlteracoes.separar(linha);
+                        if (cabecalho == null) {
+                            if (!c[0].equals("copia") || c.length < 4 || !c[2].equals(String.valueOf(VERSAO_FORMATO))) {
+                                throw new IllegalArgumentException("cabeçalho de cópia desconhecido");
+                            }
+                            cabecalho = c;
+                        } else if (c[0].equals("fim")) {
+                            if (Long.parseLong(c[1]) != registros - 1) { // Sem o cabeçalho
+                                throw new IllegalArgumentException("a cópia tem " + (registros - 1) + " registros, mas deveria ter " + c[1]);
+                            }
+                            fim = true;
+                        }
+                        try {
+                            destino.registro(c);
+                        } catch (RuntimeException e) {
+                            if (e instanceof IllegalStateException) throw e;
+                            throw new IllegalArgumentException("bloco " + blocos + ", registro " + (registros + 1) + ": " + e.getMessage(), e);
+                        }
+                        registros++;
+                    }
+                }
+            } catch (EOFException e) {
+                throw new IllegalArgumentException(arquivo + " está incompleto (terminou no bloco " + blocos + ").");
+            } catch (DataFormatException e) {
+                throw new IllegalArgumentException(arquivo + ": bloco " + blocos + " corrompido (" + e.getMessage() + ").");
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(arquivo + ": " + e.getMessage(), e);
+            } finally {
+                inflater.end();
+            }
+            if (!fim) throw new IllegalArgumentException(arquivo + " está incompleto (sem o registro final).");
+            if (entrada.read() >= 0) throw new IllegalArgumentException(arquivo + " tem dados depois do fim da cópia.");
+            boolean completa = cabecalho[1].equals(COMPLETA);
+            long inicial = Long.parseLong(cabecalho[3]);
+            return new Resumo(cabecalho[1], inicial, completa ? inicial : Long.parseLong(cabecalho[4]), registros - 2, blocos, bytes);
+        }
+    }
+
+    /**
+     * Acumula registros em blocos e os compacta em paralelo, gravando-os na ordem. No máximo
+     * {@link #EM_ANDAMENTO} blocos ficam na memória ao mesmo tempo.
+     */
+    // Repassa o texto escrito ao gravador em trechos de linhas completas, sem montar tudo na memória.
+    private static final class TextoEmBlocos extends Writer {
+        private final GravadorBlocos saida;
+        private final StringBuilder trecho = new StringBuilder();
+
+        private TextoEmBlocos(GravadorBlocos saida) {
+            this.saida = saida;
+        }
+
+        @Override
+        public void write(char[] texto, int inicio, int tamanho) throws IOException {
+            trecho.append(texto, inicio, tamanho);
+            if (trecho.length() >= 64 * 1024 && trecho.charAt(trecho.length() - 1) == '\n') flush();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            saida.registro(trecho.toString());
+            trecho.setLength(0);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    private static final class GravadorBlocos implements Closeable {
+        private static final int EM_ANDAMENTO = Math.max(2, 2 * Runtime.getRuntime().availableProcessors());
+
+        private final DataOutputStream destino;
+        private final Path arquivo;
+        private final ArrayDeque<CompletableFuture<byte[]>> pendentes = new ArrayDeque<>();
+        private final StringBuilder bloco = new StringBuilder(CARACTERES_POR_BLOCO + 8192);
+        private long registros;
+        private int blocos;
+        private long bytes;
+        private boolean fechado;
+
+        private GravadorBlocos(Path arquivo) throws IOException {
+            this.arquivo = arquivo;
+            this.destino = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(arquivo), 1 << 16));
+            destino.write(ASSINATURA);
+            bytes = ASSINATURA.length;
+        }
+
+        // Acrescenta uma ou mais linhas completas (terminadas em quebra de linha); um bloco nunca corta uma linha,
+        // mas um texto longo, como os dados gerais com os movimentos do caixa, é dividido entre vários blocos.
+        private void registro(String linhas) throws IOException {
+            int inicio = 0;
+            for (int i = 0; i < linhas.length(); i++) {
+                if (linhas.charAt(i) != '\n') continue;
+                registros++;
+                if (bloco.length() + i + 1 - inicio >= CARACTERES_POR_BLOCO) {
+                    bloco.append(linhas, inicio, i + 1);
+                    inicio = i + 1;
+                    despachar();
+                }
+            }
+            bloco.append(linhas, inicio, linhas.length());
+            if (bloco.length() >= CARACTERES_POR_BLOCO) despachar();
+        }
+
+        private void despachar() throws IOException {
+            if (bloco.length() == 0) return;
+            byte[] original = bloco.toString().getBytes(StandardCharsets.UTF_8);
+            bloco.setLength(0);
+            blocos++;
+            pendentes.add(CompletableFuture.supplyAsync(() -> compactar(original)));
+            while (pendentes.size() >= EM_ANDAMENTO) gravar(pendentes.poll());
+        }
+
+        private void gravar(CompletableFuture<byte[]> pendente) throws IOException {
+            byte[] dados;
+            try {
+                dados = pendente.join();
+            } catch (CompletionException e) {
+                throw new IOException("Falha ao compactar um bloco: " + e.getCause(), e.getCause());
+            }
+            destino.write(dados);
+            bytes += dados.length;
+        }
+
+        // Grava o registro final, os blocos que faltam e a marca de fim.
+        private void fechar() throws IOException {
+            registro(FeedAlteracoes.comando("fim", registros - 1) + "\n"); // Sem contar o cabeçalho
+            despachar();
+            while (!pendentes.isEmpty()) gravar(pendentes.poll());
+            destino.writeInt(0);
+            bytes += 4;
+            destino.close();
+            fechado = true;
+        }
+
+        // Descarta o arquivo temporário se a gravação não terminou.
+        private void abortar() throws IOException {
+            if (fechado) return;
+            close();
+            Files.deleteIfExists(arquivo);
+        }
+
+        @Override
+        public void close() throws IOException {
+            fechado = true;
+            destino.close();
+        }
+
+        private long getRegistros() {
+            return registros - 2; // Sem o cabeçalho e o registro final
+        }
+        private int getBlocos() {
+            return blocos;
+        }
+        private long getBytes() {
+            return bytes;
+        }
+    }
+
+    // Tamanho original, tamanho compactado e CRC-32C, seguidos dos dados compactados.
+    private static byte[] compactar(byte[] original) {
+        CRC32C crc = new CRC32C();
+        crc.update(original);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(original);
+            deflater.finish();
+            byte[] saida = new byte[12 + original.length + original.length / 1000 + 64]; // Cabe mesmo sem compactar
+            int tamanho = 12;
+            while (!deflater.finished()) {
+                if (tamanho == saida.length) saida = Arrays.copyOf(saida, saida.length * 2);
+                tamanho += deflater.deflate(saida, tamanho, saida.length - tamanho);
+            }
+            ByteBuffer.wrap(saida).putInt(original.length).putInt(tamanho - 12).putInt((int) crc.getValue());
+            return Arrays.copyOf(saida, tamanho);
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package aps3;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Agenda e envia lembretes de agendamentos (por padrão 24h e 2h antes do horário marcado).
+ *
+ * Os lembretes pendentes ficam em uma {@link RodaTemporizacao}; uma thread de relógio avança a roda
+ * e coloca os lembretes vencidos em uma fila limitada, consumida pela thread de entrega. Quando o canal
+ * fica lento e a fila enche, o relógio espera, aplicando contrapressão em vez de acumular memória.
+ */
+public class DespachanteLembretes {
+    private static final List<Duration> ANTECEDENCIAS = List.of(Duration.ofHours(24), Duration.ofHours(2));
+
+    private final CanalNotificacao canal;                         // Destino dos lembretes
+    private final BlockingQueue<Lembrete> fila;                   // Lembretes vencidos aguardando entrega
+    private final RodaTemporizacao<Lembrete> roda;                // Lembretes pendentes (acesso sincronizado)
+    private final Map<Pets, List<RodaTemporizacao.Tarefa<Lembrete>>> porPet = new IdentityHashMap<>();
+    private final long duracaoTique;                              // Resolução do relógio em milissegundos
+    private final AtomicLong enviados = new AtomicLong();         // Lembretes entregues com sucesso
+    private final AtomicLong falhas = new AtomicLong();           // Lembretes cujo envio falhou
+    private Thread relogio;
+    private Thread entregador;
+
+    /**
+     * Cria um despachante com resolução de um minuto.
+     * @param canal Canal usado para enviar os lembretes
+     * @param capacidadeFila Quantidade máxima de lembretes vencidos aguardando entrega
+     */
+    public DespachanteLembretes(CanalNotificacao canal, int capacidadeFila) {
+        this(canal, capacidadeFila, Duration.ofMinutes(1).toMillis());
+    }
+
+    /**
+     * Cria um despachante com a resolução informada.
+     * @param canal Canal usado para enviar os lembretes
+     * @param capacidadeFila Quantidade máxima de lembretes vencidos aguardando entrega (deve ser positiva)
+     * @param duracaoTique Resolução do relógio em milissegundos (deve ser positiva)
+     * @throws IllegalArgumentException Se algum parâmetro for inválido
+     */
+    public DespachanteLembretes(CanalNotificacao canal, int capacidadeFila, long duracaoTique) {
+        if (canal == null) throw new IllegalArgumentException("Canal de notificação não pode ser nulo.");
+        if (capacidadeFila <= 0) throw new IllegalArgumentException("Capacidade da fila deve ser positiva.");
+        this.canal = canal;
+        this.fila = new ArrayBlockingQueue<>(capacidadeFila);
+        this.duracaoTique = duracaoTique;
+        this.roda = new RodaTemporizacao<>(duracaoTique, System.currentTimeMillis());
+    }
+
+    /**
+     * Inicia as threads de relógio e de entrega. Ambas são daemon e não impedem o encerramento do sistema.
+     */
+    public synchronized void iniciar() {
+        if (relogio != null) return;
+        relogio = new Thread(this::executarRelogio, "lembretes-relogio");
+        entregador = new Thread(this::executarEntrega, "lembretes-entrega");
+        relogio.setDaemon(true);
+        entregador.setDaemon(true);
+        relogio.start();
+        entregador.start();
+    }
+
+    /**
+     * Interrompe as threads do despachante. Lembretes ainda pendentes são descartados.
+     */
+    public synchronized void encerrar() {
+        if (relogio == null) return;
+        relogio.interrupt();
+        entregador.interrupt();
+        relogio = entregador = null;
+    }
+
+    /**
+     * Agenda os lembretes de um agendamento. Antecedências que já passaram são ignoradas.
+     * @param agendamento Agendamento a ser lembrado
+     * @param cliente Dono do pet, que receberá os lembretes
+     * @return Quantidade de lembretes agendados
+     */
+    public int agendarLembretes(Agendamento agendamento, Cliente cliente) {
+        long horario = LocalDateTime.of(agendamento.getData(), agendamento.getHora())
+            .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long agora = System.currentTimeMillis();
+        int agendados = 0;
+
+        synchronized (roda) {
+            List<RodaTemporizacao.Tarefa<Lembrete>> tarefas = porPet.computeIfAbsent(agendamento.getPet(), p -> new ArrayList<>(2));
+            tarefas.removeIf(tarefa -> !tarefa.isPendente()); // Descarta referências a lembretes já enviados
+            for (Duration antecedencia : ANTECEDENCIAS) {
+                long disparo = horario - antecedencia.toMillis();
+                if (disparo > agora) {
+                    tarefas.add(roda.agendar(disparo, new Lembrete(agendamento, cliente, antecedencia)));
+                    agendados++;
+                }
+            }
+            if (tarefas.isEmpty()) porPet.remove(agendamento.getPet());
+        }
+        return agendados;
+    }
+
+    /**
+     * Cancela todos os lembretes pendentes de um pet (usado quando o pet ou o cliente é removido).
+     * @param pet Pet cujos lembretes serão cancelados
+     * @return Quantidade de lembretes cancelados
+     */
+    public int cancelarPet(Pets pet) {
+        synchronized (roda) {
+            List<RodaTemporizacao.Tarefa<Lembrete>> tarefas = porPet.remove(pet);
+            if (tarefas == null) return 0;
+            int cancelados = 0;
+            for (RodaTemporizacao.Tarefa<Lembrete> tarefa : tarefas) {
+                if (roda.cancelar(tarefa)) cancelados++;
+            }
+            return cancelados;
+        }
+    }
+
+    /**
+     * Cancela os lembretes pendentes de um único agendamento.
+     * @param agendamento Agendamento cujos lembretes serão cancelados
+     * @return Quantidade de lembretes cancelados
+     */
+    public int cancelarAgendamento(Agendamento agendamento) {
+        synchronized (roda) {
+            List<RodaTemporizacao.Tarefa<Lembrete>> tarefas = porPet.get(agendamento.getPet());
+            if (tarefas == null) return 0;
+            int cancelados = 0;
+            for (RodaTemporizacao.Tarefa<Lembrete> tarefa : tarefas) {
+                if (tarefa.getCarga().getAgendamento() == agendamento && roda.cancelar(tarefa)) cancelados++;
+            }
+            tarefas.removeIf(tarefa -> !tarefa.isPendente());
+            if (tarefas.isEmpty()) porPet.remove(agendamento.getPet());
+            return cancelados;
+        }
+    }
+
+    /**
+     * Retorna quantos lembretes aguardam o horário de envio.
+     * @return Total de lembretes pendentes
+     */
+    public int getPendentes() {
+        synchronized (roda) {
+            return roda.getPendentes();
+        }
+    }
+    public long getEnviados() {
+        return enviados.get();
+    }
+    public long getFalhas() {
+        return falhas.get();
+    }
+
+    // Avança a roda a cada tique e repassa os lembretes vencidos para a fila de entrega.
+    private void executarRelogio() {
+        List<Lembrete> vencidos = new ArrayList<>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long agora = System.currentTimeMillis();
+                synchronized (roda) {
+                    roda.avancar(agora, vencidos::add);
+                }
+                for (Lembrete lembrete : vencidos) {
+                    fila.put(lembrete); // Bloqueia quando a fila está cheia (contrapressão)
+                }
+                vencidos.clear();
+                Thread.sleep(duracaoTique - (System.currentTimeMillis() % duracaoTique));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Retira os lembretes da fila e os envia pelo canal configurado.
+    private void executarEntrega() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Lembrete lembrete = fila.take();
+                try {
+                    canal.enviar(lembrete);
+                    enviados.incrementAndGet();
+                } catch (IOException e) {
+                    falhas.incrementAndGet();
+                    System.err.println("Falha ao enviar lembrete: " + e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
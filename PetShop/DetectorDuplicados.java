@@ -0,0 +1,411 @@
+package aps3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Encontra clientes cadastrados mais de uma vez com pequenas diferenças: erro de digitação no nome,
+ * telefone em outro formato ou endereço escrito de outro jeito.
+ * <p>
+ * Cada cliente vira um conjunto de características: trigramas do nome, palavras do endereço (com
+ * abreviações como "R." e "Av." expandidas) e os 8 últimos dígitos do telefone. A assinatura
+ * MinHash ({@value #PERMUTACOES} funções de hash) resume o conjunto; a divisão em {@value #BANDAS}
+ * bandas (LSH) faz com que clientes parecidos caiam no mesmo balde de alguma banda. Só os pares que
+ * dividem um balde são comparados de fato, pela {@link #similaridade(Cliente, Cliente)}.
+ * <p>
+ * O índice incremental atende o cadastro, em microssegundos por cliente; {@link #buscarDuplicados}
+ * processa uma base inteira em paralelo, ordenando as chaves das bandas em vez de montar tabelas
+ * de hash, e agrupa os duplicados encontrados em propostas de mesclagem.
+ */
+public class DetectorDuplicados {
+    public static final double SIMILARIDADE_MINIMA = 0.7;  // Similaridade a partir da qual há proposta
+    private static final double NOME_MINIMO = 0.5;         // Parentes dividem telefone e endereço, não o nome
+    private static final int PERMUTACOES = 50;
+    private static final int BANDAS = 10;
+    private static final int LINHAS = PERMUTACOES / BANDAS;
+    private static final int COPIAS_TELEFONE = 3;          // Peso do telefone no conjunto de características
+    private static final int BALDE_MAXIMO = 64;            // Baldes maiores (ex.: telefone genérico) são ignorados
+    private static final long[] SEMENTES = new SplittableRandom(0x5EED_D0B1L).longs(PERMUTACOES).toArray();
+    private static final Map<String, String> ABREVIACOES = Map.ofEntries(
+        Map.entry("r", "rua"), Map.entry("av", "avenida"), Map.entry("al", "alameda"), Map.entry("tv", "travessa"),
+        Map.entry("trav", "travessa"), Map.entry("pc", "praca"), Map.entry("pca", "praca"), Map.entry("rod", "rodovia"),
+        Map.entry("est", "estrada"), Map.entry("estr", "estrada"), Map.entry("ap", "apto"), Map.entry("apt", "apto"),
+        Map.entry("apartamento", "apto"), Map.entry("n", ""), Map.entry("no", ""), Map.entry("num", ""),
+        Map.entry("numero", ""), Map.entry("de", ""), Map.entry("da", ""), Map.entry("do", ""),
+        Map.entry("das", ""), Map.entry("dos", "")
+    );
+
+    /**
+     * Proposta de mesclar dois cadastros da mesma pessoa.
+     */
+    public static final class Proposta {
+        private final Cliente manter;
+        private final Cliente remover;
+        private final double similaridade;
+
+        private Proposta(Cliente manter, Cliente remover, double similaridade) {
+            this.manter = manter;
+            this.remover = remover;
+            this.similaridade = similaridade;
+        }
+
+        /**
+         * Cadastro que fica com os pets: o que tem mais pets ou, no empate, o mais antigo.
+         * @return Cliente mantido
+         */
+        public Cliente getManter() {
+            return manter;
+        }
+        public Cliente getRemover() {
+            return remover;
+        }
+        public double getSimilaridade() {
+            return similaridade;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%s) <- %s (%s) | Similaridade: %.0f%%", manter.getNome(), manter.getCpf(),
+                remover.getNome(), remover.getCpf(), similaridade * 100);
+        }
+    }
+
+    // Características normalizadas de um cliente e as chaves das suas bandas.
+    private static final class Perfil {
+        private final int[] trigramasNome;    // Ordenados, sem repetição
+        private final int[] palavrasEndereco; // Hash de cada palavra; ordenados, sem repetição
+        private final int telefone;           // Últimos 8 dígitos, ou -1
+        private final int[] bandas;           // Hash de cada banda da assinatura MinHash
+
+        private Perfil(Cliente cliente) {
+            this.trigramasNome = trigramas(TabelaGeocodigos.normalizar(cliente.getNome()));
+            this.palavrasEndereco = palavrasEndereco(cliente.getEndereco());
+            String digitos = normalizarTelefone(cliente.getTelefone());
+            this.telefone = digitos.isEmpty() ? -1 : Integer.parseInt(digitos);
+            this.bandas = bandas(assinatura(this));
+        }
+    }
+
+    // Cliente no índice incremental.
+    private static final class Registro {
+        private final int ordem; // Ordem de indexação, para o desempate da proposta
+        private final Perfil perfil;
+
+        private Registro(int ordem, Perfil perfil) {
+            this.ordem = ordem;
+            this.perfil = perfil;
+        }
+    }
+
+    // Índice incremental: banda e hash da banda -> clientes no balde.
+    private final Map<Long, List<Cliente>> baldes = new HashMap<>();
+    private final Map<Cliente, Registro> registros = new IdentityHashMap<>();
+    private int proximaOrdem;
+
+    /**
+     * Indexa um cliente recém-cadastrado.
+     * @param cliente Cliente a indexar
+     */
+    public synchronized void indexar(Cliente cliente) {
+        if (registros.containsKey(cliente)) return;
+        Registro registro = new Registro(proximaOrdem++, new Perfil(cliente));
+        registros.put(cliente, registro);
+        for (int b = 0; b < BANDAS; b++) {
+            baldes.computeIfAbsent(chaveBalde(b, registro.perfil.bandas[b]), c -> new ArrayList<>(2)).add(cliente);
+        }
+    }
+
+    /**
+     * Tira um cliente do índice.
+     * @param cliente Cliente removido do cadastro
+     */
+    public synchronized void remover(Cliente cliente) {
+        Registro registro = registros.remove(cliente);
+        if (registro == null) return;
+        for (int b = 0; b < BANDAS; b++) {
+            long chave = chaveBalde(b, registro.perfil.bandas[b]);
+            List<Cliente> balde = baldes.get(chave);
+            if (balde == null) continue;
+            balde.removeIf(c -> c == cliente);
+            if (balde.isEmpty()) baldes.remove(chave);
+        }
+    }
+
+    /**
+     * Cadastros indexados que provavelmente são a mesma pessoa que o cliente informado.
+     * @param cliente Cliente consultado (indexado ou não)
+     * @return Propostas de mesclagem, da mais para a menos parecida
+     */
+    public synchronized List<Proposta> possiveisDuplicados(Cliente cliente) {
+        Registro proprio = registros.get(cliente);
+        Perfil perfil = proprio != null ? proprio.perfil : new Perfil(cliente);
+        int ordem = proprio != null ? proprio.ordem : Integer.MAX_VALUE;
+        Set<Cliente> vistos = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Proposta> propostas = new ArrayList<>();
+        for (int b = 0; b < BANDAS; b++) {
+            List<Cliente> balde = baldes.get(chaveBalde(b, perfil.bandas[b]));
+            if (balde == null || balde.size() > BALDE_MAXIMO) continue;
+            for (Cliente outro : balde) {
+                if (outro == cliente || !vistos.add(outro)) continue;
+                Registro registro = registros.get(outro);
+                double similaridade = similaridade(perfil, registro.perfil);
+                if (similaridade < SIMILARIDADE_MINIMA) continue;
+                propostas.add(melhorCadastro(cliente, ordem, outro, registro.ordem)
+                    ? new Proposta(cliente, outro, similaridade) : new Proposta(outro, cliente, similaridade));
+            }
+        }
+        propostas.sort(Comparator.comparingDouble(Proposta::getSimilaridade).reversed());
+        return propostas;
+    }
+
+    /**
+     * Procura duplicados em uma base inteira, em paralelo. Cada grupo de cadastros da mesma pessoa
+     * gera uma proposta por cadastro a remover, todas mantendo o mesmo cliente do grupo.
+     * @param clientes Clientes a verificar, na ordem de cadastro
+     * @return Propostas de mesclagem, da mais para a menos parecida
+     */
+    public static List<Proposta> buscarDuplicados(Collection<Cliente> clientes) {
+        Cliente[] todos = clientes.toArray(new Cliente[0]);
+        int n = todos.length;
+        Perfil[] perfis = new Perfil[n];
+        IntStream.range(0, n).parallel().forEach(i -> perfis[i] = new Perfil(todos[i]));
+
+        // Cada banda vira um vetor ordenado de (hash da banda nos 32 bits altos, cliente nos baixos):
+        // os baldes são as sequências de hash igual. Marca quem está em um balde que será comparado.
+        long[][] ordenadas = new long[BANDAS][];
+        boolean[][] comparavel = new boolean[BANDAS][n];
+        IntStream.range(0, BANDAS).parallel().forEach(b -> {
+            long[] banda = new long[n];
+            for (int i = 0; i < n; i++) {
+                banda[i] = ((long) perfis[i].bandas[b] << 32) | i;
+            }
+            Arrays.sort(banda);
+            for (int inicio = 0, fim; inicio < n; inicio = fim) {
+                fim = fimBalde(banda, inicio);
+                if (fim - inicio > 1 && fim - inicio <= BALDE_MAXIMO) {
+                    for (int x = inicio; x < fim; x++) {
+                        comparavel[b][(int) banda[x]] = true;
+                    }
+                }
+            }
+            ordenadas[b] = banda;
+        });
+
+        // Compara os pares de cada balde; um par que já dividiu um balde comparável em banda anterior é pulado.
+        ConcurrentLinkedQueue<long[]> confirmados = new ConcurrentLinkedQueue<>(); // {a, c, similaridade em bits}
+        IntStream.range(0, BANDAS).parallel().forEach(b -> {
+            long[] banda = ordenadas[b];
+            for (int inicio = 0, fim; inicio < n; inicio = fim) {
+                fim = fimBalde(banda, inicio);
+                if (fim - inicio < 2 || fim - inicio > BALDE_MAXIMO) continue;
+                for (int x = inicio; x < fim; x++) {
+                    for (int y = x + 1; y < fim; y++) {
+                        int a = (int) banda[x];
+                        int c = (int) banda[y];
+                        if (jaComparados(perfis, comparavel, a, c, b)) continue;
+                        double similaridade = similaridade(perfis[a], perfis[c]);
+                        if (similaridade >= SIMILARIDADE_MINIMA) {
+                            confirmados.add(new long[] {a, c, Double.doubleToLongBits(similaridade)});
+                        }
+                    }
+                }
+            }
+        });
+
+        // Agrupa os pares confirmados (união e busca) e propõe mesclar cada grupo no seu melhor cadastro.
+        int[] grupo = IntStream.range(0, n).toArray();
+        for (long[] par : confirmados) {
+            int a = raiz(grupo, (int) par[0]);
+            int c = raiz(grupo, (int) par[1]);
+            if (a != c) grupo[Math.max(a, c)] = Math.min(a, c);
+        }
+        Map<Integer, Integer> manterDoGrupo = new HashMap<>();
+        Map<Integer, Double> similaridadeDe = new HashMap<>();
+        for (long[] par : confirmados) {
+            for (int k = 0; k < 2; k++) {
+                int i = (int) par[k];
+                manterDoGrupo.merge(raiz(grupo, i), i, (atual, outro) -> melhorCadastro(todos[atual], atual, todos[outro], outro) ? atual : outro);
+                similaridadeDe.merge(i, Double.longBitsToDouble(par[2]), Math::max);
+            }
+        }
+        List<Proposta> propostas = new ArrayList<>();
+        for (int i : similaridadeDe.keySet()) {
+            int manter = manterDoGrupo.get(raiz(grupo, i));
+            if (i == manter) continue;
+            // Em grupos ligados por transitividade, vale a maior similaridade com algum membro do grupo.
+            double similaridade = Math.max(similaridade(perfis[manter], perfis[i]), similaridadeDe.get(i));
+            propostas.add(new Proposta(todos[manter], todos[i], similaridade));
+        }
+        propostas.sort(Comparator.comparingDouble(Proposta::getSimilaridade).reversed());
+        return propostas;
+    }
+
+    private static int fimBalde(long[] banda, int inicio) {
+        int hash = (int) (banda[inicio] >>> 32);
+        int fim = inicio + 1;
+        while (fim < banda.length && (int) (banda[fim] >>> 32) == hash) fim++;
+        return fim;
+    }
+
+    private static boolean jaComparados(Perfil[] perfis, boolean[][] comparavel, int a, int c, int banda) {
+        for (int b = 0; b < banda; b++) {
+            if (comparavel[b][a] && perfis[a].bandas[b] == perfis[c].bandas[b]) return true;
+        }
+        return false;
+    }
+
+    // O cadastro mantido é o que tem mais pets ou, no empate, o mais antigo.
+    private static boolean melhorCadastro(Cliente a, int ordemA, Cliente b, int ordemB) {
+        int petsA = a.getPets().size();
+        int petsB = b.getPets().size();
+        return petsA != petsB ? petsA > petsB : ordemA < ordemB;
+    }
+
+    private static int raiz(int[] grupo, int i) {
+        while (grupo[i] != i) {
+            grupo[i] = grupo[grupo[i]];
+            i = grupo[i];
+        }
+        return i;
+    }
+
+    /**
+     * Similaridade entre dois cadastros, de 0 a 1: metade pelo nome (trigramas), um quarto pelo
+     * telefone e um quarto pelo endereço (palavras). Nomes pouco parecidos zeram o resultado, para
+     * não juntar parentes que dividem telefone e endereço.
+     * @param a Um cliente
+     * @param b Outro cliente
+     * @return Similaridade entre os cadastros
+     */
+    public static double similaridade(Cliente a, Cliente b) {
+        return similaridade(new Perfil(a), new Perfil(b));
+    }
+
+    private static double similaridade(Perfil a, Perfil b) {
+        double nome = jaccard(a.trigramasNome, b.trigramasNome);
+        if (nome < NOME_MINIMO) return 0;
+        double telefone = a.telefone >= 0 && a.telefone == b.telefone ? 1 : 0;
+        double endereco = jaccard(a.palavrasEndereco, b.palavrasEndereco);
+        return 0.5 * nome + 0.25 * telefone + 0.25 * endereco;
+    }
+
+    // Assinatura MinHash: para cada função de hash, o menor valor entre as características.
+    private static int[] assinatura(Perfil perfil) {
+        long[] caracteristicas = new long[perfil.trigramasNome.length + perfil.palavrasEndereco.length + COPIAS_TELEFONE];
+        int k = 0;
+        for (int trigrama : perfil.trigramasNome) {
+            caracteristicas[k++] = (1L << 56) | trigrama;
+        }
+        for (int palavra : perfil.palavrasEndereco) {
+            caracteristicas[k++] = (2L << 56) | (palavra & 0xFFFF_FFFFL);
+        }
+        if (perfil.telefone >= 0) {
+            for (int c = 0; c < COPIAS_TELEFONE; c++) {
+                caracteristicas[k++] = ((3L + c) << 56) | perfil.telefone;
+            }
+        }
+        int[] assinatura = new int[PERMUTACOES];
+        Arrays.fill(assinatura, Integer.MAX_VALUE);
+        // A característica é espalhada uma vez; cada função de hash é só um ou-exclusivo e uma multiplicação.
+        for (int i = 0; i < k; i++) {
+            long h = misturar(caracteristicas[i]);
+            for (int p = 0; p < PERMUTACOES; p++) {
+                int valor = (int) (((h ^ SEMENTES[p]) * 0x9E3779B97F4A7C15L) >>> 33);
+                if (valor < assinatura[p]) assinatura[p] = valor;
+            }
+        }
+        return assinatura;
+    }
+
+    // Hash de cada banda: LINHAS valores consecutivos da assinatura.
+    private static int[] bandas(int[] assinatura) {
+        int[] bandas = new int[BANDAS];
+        for (int b = 0; b < BANDAS; b++) {
+            long h = b;
+            for (int r = 0; r < LINHAS; r++) {
+                h = misturar(h * 31 + assinatura[b * LINHAS + r]);
+            }
+            bandas[b] = (int) (h >>> 32);
+        }
+        return bandas;
+    }
+
+    private static long chaveBalde(int banda, int hash) {
+        return ((long) banda << 32) | (hash & 0xFFFF_FFFFL);
+    }
+
+    // Finalizador do SplitMix64: espalha bem os bits de entradas parecidas.
+    private static long misturar(long x) {
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+
+    // Trigramas do nome com espaços nas pontas, codificados em base 37 (a-z, 0-9 e espaço).
+    private static int[] trigramas(String nome) {
+        String texto = " " + nome + " ";
+        if (texto.length() < 3) return new int[0];
+        int[] trigramas = new int[texto.length() - 2];
+        for (int i = 0; i < trigramas.length; i++) {
+            trigramas[i] = (codigo(texto.charAt(i)) * 37 + codigo(texto.charAt(i + 1))) * 37 + codigo(texto.charAt(i + 2));
+        }
+        return Arrays.stream(trigramas).sorted().distinct().toArray();
+    }
+
+    private static int codigo(char c) {
+        if (c >= 'a' && c <= 'z') return c - 'a' + 1;
+        if (c >= '0' && c <= '9') return c - '0' + 27;
+        return 0;
+    }
+
+    private static int[] palavrasEndereco(String endereco) {
+        return Arrays.stream(TabelaGeocodigos.normalizar(endereco).split(" "))
+            .map(palavra -> ABREVIACOES.getOrDefault(palavra, palavra))
+            .filter(palavra -> !palavra.isEmpty())
+            .mapToInt(String::hashCode).sorted().distinct().toArray();
+    }
+
+    /**
+     * Normaliza um telefone para comparação: só os 8 últimos dígitos, o que ignora código do país,
+     * DDD, o 0 de longa distância e o 9 inicial dos celulares.
+     * @param telefone Telefone em qualquer formato
+     * @return Últimos 8 dígitos, ou vazio se houver menos de 8
+     */
+    static String normalizarTelefone(String telefone) {
+        char[] digitos = new char[8];
+        int encontrados = 0;
+        for (int i = telefone.length() - 1; i >= 0 && encontrados < 8; i--) {
+            char c = telefone.charAt(i);
+            if (c >= '0' && c <= '9') digitos[7 - encontrados++] = c;
+        }
+        return encontrados < 8 ? "" : new String(digitos);
+    }
+
+    private static double jaccard(int[] a, int[] b) {
+        int comuns = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] == b[j]) {
+                comuns++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        int uniao = a.length + b.length - comuns;
+        return uniao == 0 ? 0 : (double) comuns / uniao;
+    }
+}
@@ -0,0 +1,176 @@
+package aps3;
+
+import java.math.BigDecimal;
+
+/**
+ * Valor monetário em reais, armazenado como quantidade inteira de centavos.
+ * Somas e subtrações são exatas; operações com percentuais arredondam para o centavo
+ * mais próximo (meio centavo arredonda para cima), sempre uma única vez por operação.
+ */
+public final class Dinheiro implements Comparable<Dinheiro> {
+    public static final Dinheiro ZERO = new Dinheiro(0);
+
+    private final long centavos; // Valor em centavos de real
+
+    private Dinheiro(long centavos) {
+        this.centavos = centavos;
+    }
+
+    /**
+     * Cria um valor a partir de centavos.
+     * @param centavos Quantidade de centavos
+     * @return Valor monetário correspondente
+     */
+    public static Dinheiro deCentavos(long centavos) {
+        return centavos == 0 ? ZERO : new Dinheiro(centavos);
+    }
+
+    /**
+     * Cria um valor a partir de reais inteiros.
+     * @param reais Quantidade de reais
+     * @return Valor monetário correspondente
+     */
+    public static Dinheiro deReais(long reais) {
+        return deCentavos(Math.multiplyExact(reais, 100));
+    }
+
+    /**
+     * Converte um texto digitado pelo usuário ("12,50", "1.234,56", "12.5", "R$ 3") em valor monetário.
+     * Sem vírgula, pontos seguidos de exatamente três dígitos são separadores de milhar ("1.234" é
+     * R$ 1.234,00); com uma ou duas casas, o ponto é decimal ("1.23" é R$ 1,23).
+     * @param texto Valor em reais, com vírgula ou ponto decimal
+     * @return Valor monetário correspondente
+     * @throws IllegalArgumentException Se o texto não for um valor válido ou tiver mais de duas casas decimais
+     */
+    public static Dinheiro parse(String texto) {
+        if (texto == null || texto.isBlank()) throw new IllegalArgumentException("Valor monetário não informado.");
+        String normalizado = texto.trim().replace("R$", "").trim();
+        if (normalizado.contains(",")) {
+            normalizado = normalizado.replace(".", "").replace(',', '.'); // Formato brasileiro: 1.234,56
+        } else if (normalizado.matches("-?\\d{1,3}(\\.\\d{3})+")) {
+            normalizado = normalizado.replace(".", ""); // Só milhares: 1.234 ou 1.234.567
+        }
+        try {
+            BigDecimal valor = new BigDecimal(normalizado);
+            if (valor.scale() > 2) throw new IllegalArgumentException("Valor monetário com mais de duas casas decimais: " + texto);
+            return deCentavos(valor.movePointRight(2).longValueExact());
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("Valor monetário inválido: " + texto);
+        }
+    }
+
+    /**
+     * Soma um vetor de valores em centavos. O laço simples permite que a JVM o vetorize.
+     * @param centavos Valores em centavos
+     * @param inicio Primeira posição (inclusiva)
+     * @param fim Última posição (exclusiva)
+     * @return Soma dos valores em centavos
+     */
+    public static long somarCentavos(long[] centavos, int inicio, int fim) {
+        long soma = 0;
+        for (int i = inicio; i < fim; i++) {
+            soma += centavos[i];
+        }
+        return soma;
+    }
+
+    /**
+     * Aplica um desconto percentual a um valor em centavos, sem alocar objetos.
+     * @param centavos Valor original em centavos
+     * @param pontosBase Desconto em centésimos de ponto percentual (1500 = 15%)
+     * @return Valor com desconto, arredondado para o centavo mais próximo
+     */
+    public static long descontarCentavos(long centavos, int pontosBase) {
+        return dividirArredondando(centavos * (10_000 - pontosBase), 10_000);
+    }
+
+    /**
+     * Converte um percentual para centésimos de ponto percentual (15.5% = 1550).
+     * @param percentual Percentual entre 0 e 100
+     * @return Percentual em pontos base
+     * @throws IllegalArgumentException Se o percentual estiver fora do intervalo
+     */
+    public static int pontosBase(double percentual) {
+        if (percentual < 0 || percentual > 100) {
+            throw new IllegalArgumentException("Percentual deve estar entre 0 e 100.");
+        }
+        return (int) Math.round(percentual * 100);
+    }
+
+    public Dinheiro somar(Dinheiro outro) {
+        return deCentavos(Math.addExact(centavos, outro.centavos));
+    }
+
+    public Dinheiro subtrair(Dinheiro outro) {
+        return deCentavos(Math.subtractExact(centavos, outro.centavos));
+    }
+
+    public Dinheiro multiplicar(int quantidade) {
+        return deCentavos(Math.multiplyExact(centavos, quantidade));
+    }
+
+    /**
+     * Aplica um desconto percentual.
+     * @param percentual Percentual de desconto (entre 0 e 100)
+     * @return Valor com desconto, arredondado para o centavo
+     */
+    public Dinheiro aplicarDesconto(double percentual) {
+        return deCentavos(descontarCentavos(centavos, pontosBase(percentual)));
+    }
+
+    public boolean isNegativo() {
+        return centavos < 0;
+    }
+
+    public boolean isPositivo() {
+        return centavos > 0;
+    }
+
+    public long getCentavos() {
+        return centavos;
+    }
+
+    /**
+     * Retorna o valor em reais como double, apenas para exibição e cálculos estatísticos.
+     * @return Valor aproximado em reais
+     */
+    public double emReais() {
+        return centavos / 100.0;
+    }
+
+    @Override
+    public int compareTo(Dinheiro outro) {
+        return Long.compare(centavos, outro.centavos);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Dinheiro && ((Dinheiro) obj).centavos == centavos;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(centavos);
+    }
+
+    /**
+     * Retorna o valor com duas casas decimais e vírgula, ex.: "1234,50".
+     * @return Valor formatado sem o símbolo da moeda
+     */
+    @Override
+    public String toString() {
+        long absoluto = Math.abs(centavos);
+        long fracao = absoluto % 100;
+        StringBuilder sb = new StringBuilder(24);
+        if (centavos < 0) sb.append('-');
+        sb.append(absoluto / 100).append(',');
+        if (fracao < 10) sb.append('0');
+        return sb.append(fracao).toString();
+    }
+
+    // Divisão inteira com arredondamento do meio para longe do zero.
+    private static long dividirArredondando(long dividendo, long divisor) {
+        long metade = divisor / 2;
+        return dividendo >= 0 ? (dividendo + metade) / divisor : -((-dividendo + metade) / divisor);
+    }
+}
@@ -0,0 +1,743 @@
+package aps3;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+/**
+ * Diário de movimentos do caixa e fechamento do dia.
+ * <p>
+ * A {@link Loja} anota aqui cada movimento que altera o financeiro ou o estoque (agendamento,
+ * cancelamento, venda, despesa, entrada e saída de estoque), em vetores por coluna, como no
+ * {@link LivroDespesas}. O fechamento retira de uma vez os movimentos anotados desde o fechamento
+ * anterior, junto com os contadores do {@link Financeiro}, o estoque e a agenda do dia naquele
+ * instante, e processa o período com a loja livre, em etapas: soma os movimentos em blocos
+ * paralelos (e a agenda do dia em outro), confere os contadores e o estoque com a abertura mais os
+ * movimentos e aponta as divergências. O resultado é congelado em um {@link Resumo} imutável, que
+ * nunca é recalculado; o diário guarda só os movimentos do período ainda aberto.
+ * <p>
+ * O período vai de um fechamento ao seguinte: o que for lançado depois de o caixa fechar entra no
+ * próximo dia. Os agendamentos continuam lançando o valor no financeiro quando são feitos, então o
+ * resumo separa o valor agendado para depois do dia (antecipado) do valor dos serviços atendidos no
+ * dia (realizado).
+ */
+public class FechamentoCaixa {
+    private static final int MOVIMENTOS_POR_BLOCO = 1 << 15; // Movimentos somados por tarefa paralela
+
+    /**
+     * Tipo de um movimento do diário.
+     */
+    public enum Movimento {
+        AGENDAMENTO,     // Valor lançado por um agendamento (ou agendamento reativado); referência: dia do serviço
+        CANCELAMENTO,    // Valor estornado por um cancelamento; referência: dia do serviço
+        VENDA,           // Total de um recibo; quantidade: serviços vendidos; texto: método de pagamento
+        DESPESA,         // Despesa lançada; referência: data da despesa; texto: categoria
+        ENTRADA_ESTOQUE, // Unidades cadastradas ou repostas; referência: código do produto
+        SAIDA_ESTOQUE    // Unidades vendidas; referência: código do produto
+    }
+    private static final Movimento[] MOVIMENTOS = Movimento.values();
+
+    /**
+     * Contadores do financeiro e estoque dos produtos em um instante: a abertura e o fechamento de
+     * um período.
+     */
+    static final class Contadores {
+        static final Contadores VAZIO = new Contadores(0, 0, 0, Map.of(), Map.of());
+
+        private final long recebimento;                     // Centavos
+        private final long servicos;
+        private final long despesas;                        // Centavos
+        private final Map<String, Long> recebimentoPorMetodo; // Centavos por método de pagamento
+        private final Map<Integer, Integer> estoque;        // Código do produto -> unidades
+
+        Contadores(long recebimento, long servicos, long despesas, Map<String, Long> recebimentoPorMetodo,
+                   Map<Integer, Integer> estoque) {
+            this.recebimento = recebimento;
+            this.servicos = servicos;
+            this.despesas = despesas;
+            this.recebimentoPorMetodo = Map.copyOf(recebimentoPorMetodo);
+            this.estoque = Map.copyOf(estoque);
+        }
+    }
+
+    /**
+     * Movimentos retirados do diário e estado da loja no instante do fechamento.
+     */
+    static final class Captura {
+        private final LocalDate dia;
+        private final Contadores abertura;
+        private final Contadores fechamento;
+        private final byte[] tipos;
+        private final long[] centavos;
+        private final int[] quantidades;
+        private final int[] referencias;
+        private final int[] textos;
+        private final int movimentos;
+        private final List<String> nomes;           // Textos do diário, por índice
+        private final byte[] situacoes;             // Agenda do dia: 0 pendente, 1 compareceu, 2 faltou, 3 cancelado
+        private final long[] valoresAgenda;
+
+        private Captura(LocalDate dia, Contadores abertura, Contadores fechamento, FechamentoCaixa diario,
+                        List<Agendamento> agenda) {
+            this.dia = dia;
+            this.abertura = abertura;
+            this.fechamento = fechamento;
+            this.tipos = diario.tipos;
+            this.centavos = diario.centavos;
+            this.quantidades = diario.quantidades;
+            this.referencias = diario.referencias;
+            this.textos = diario.textos;
+            this.movimentos = diario.quantidade;
+            this.nomes = List.copyOf(diario.nomes);
+            this.situacoes = new byte[agenda.size()];
+            this.valoresAgenda = new long[agenda.size()];
+            for (int i = 0; i < situacoes.length; i++) {
+                Agendamento agendamento = agenda.get(i);
+                situacoes[i] = (byte) (agendamento.isCancelado() ? 3 : agendamento.isPendente() ? 0
+                    : agendamento.getCompareceu() ? 1 : 2);
+                valoresAgenda[i] = agendamento.getValor().getCentavos();
+            }
+        }
+    }
+
+    /**
+     * Movimentos do período aberto em um instante, para gravar sem o monitor do caixa. Como na
+     * {@link Captura}, os vetores são os do próprio diário: as posições capturadas não mudam mais,
+     * porque os lançamentos seguintes ocupam posições posteriores e um fechamento troca os vetores.
+     */
+    static final class Diario {
+        private final byte[] tipos;
+        private final long[] centavos;
+        private final int[] quantidades;
+        private final int[] referencias;
+        private final int[] textos;
+        private final int movimentos;
+        private final List<String> nomes;
+
+        // Chamado com o monitor do caixa.
+        private Diario(FechamentoCaixa diario) {
+            this.tipos = diario.tipos;
+            this.centavos = diario.centavos;
+            this.quantidades = diario.quantidades;
+            this.referencias = diario.referencias;
+            this.textos = diario.textos;
+            this.movimentos = diario.quantidade;
+            this.nomes = List.copyOf(diario.nomes);
+        }
+
+        /**
+         * Grava os movimentos capturados, que {@link #restaurar} aplica depois da abertura ou sem ela.
+         * @param saida Destino dos registros
+         * @throws IOException Se não for possível gravar
+         */
+        void gravar(Writer saida) throws IOException {
+            for (int i = 0; i < movimentos; i++) {
+                linha(saida, "caixa", "movimento", MOVIMENTOS[tipos[i]], centavos[i], quantidades[i], referencias[i],
+                    textos[i] < 0 ? "" : nomes.get(textos[i]));
+            }
+        }
+    }
+
+    // Somas de um bloco de movimentos ou da agenda; juntadas depois em um único total.
+    private static final class Totais {
+        private long agendamentos, valorAgendado, valorAntecipado, cancelamentos, valorCancelado;
+        private long vendas, valorVendas, servicosVendidos, unidadesVendidas, unidadesRepostas, despesas, valorDespesas;
+        private long atendidos, faltas, cancelados, pendentes, valorRealizado;
+        private final Map<Integer, long[]> porMetodo = new HashMap<>(); // Índice do texto -> centavos vendidos
+        private final Map<Integer, long[]> estoque = new HashMap<>();   // Código do produto -> variação em unidades
+
+        private Totais juntar(Totais outro) {
+            agendamentos += outro.agendamentos;
+            valorAgendado += outro.valorAgendado;
+            valorAntecipado += outro.valorAntecipado;
+            cancelamentos += outro.cancelamentos;
+            valorCancelado += outro.valorCancelado;
+            vendas += outro.vendas;
+            valorVendas += outro.valorVendas;
+            servicosVendidos += outro.servicosVendidos;
+            unidadesVendidas += outro.unidadesVendidas;
+            unidadesRepostas += outro.unidadesRepostas;
+            despesas += outro.despesas;
+            valorDespesas += outro.valorDespesas;
+            atendidos += outro.atendidos;
+            faltas += outro.faltas;
+            cancelados += outro.cancelados;
+            pendentes += outro.pendentes;
+            valorRealizado += outro.valorRealizado;
+            outro.porMetodo.forEach((texto, valor) -> porMetodo.computeIfAbsent(texto, t -> new long[1])[0] += valor[0]);
+            outro.estoque.forEach((codigo, valor) -> estoque.computeIfAbsent(codigo, c -> new long[1])[0] += valor[0]);
+            return this;
+        }
+    }
+
+    /**
+     * Resumo imutável de um dia fechado: movimentos do período, agenda do dia, contadores na
+     * abertura e no fechamento e as divergências encontradas na conferência.
+     */
+    public static final class Resumo {
+        private static final int CAMPOS = 23;
+
+        private final LocalDate dia;
+        private final int agendamentos;
+        private final Dinheiro valorAgendado;
+        private final Dinheiro valorAntecipado;   // Parte do valor agendado para serviços depois do dia
+        private final int cancelamentos;
+        private final Dinheiro valorCancelado;
+        private final int vendas;
+        private final Dinheiro valorVendas;
+        private final int servicosVendidos;
+        private final long unidadesVendidas;
+        private final long unidadesRepostas;
+        private final int despesas;
+        private final Dinheiro valorDespesas;
+        private final int atendidos;              // Agenda do dia
+        private final int faltas;
+        private final int cancelados;
+        private final int pendentes;
+        private final Dinheiro valorRealizado;    // Valor dos serviços atendidos no dia
+        private final Dinheiro recebimentoAbertura;
+        private final Dinheiro recebimentoFechamento;
+        private final long servicosAbertura;
+        private final long servicosFechamento;
+        private final Dinheiro despesasFechamento;
+        private final Map<String, Dinheiro> vendasPorMetodo;
+        private final List<String> divergencias;
+
+        private Resumo(LocalDate dia, long[] c, Map<String, Dinheiro> vendasPorMetodo, List<String> divergencias) {
+            if (c.length != CAMPOS) throw new IllegalArgumentException("resumo com " + c.length + " campos");
+            this.dia = dia;
+            agendamentos = (int) c[0];
+            valorAgendado = Dinheiro.deCentavos(c[1]);
+            valorAntecipado = Dinheiro.deCentavos(c[2]);
+            cancelamentos = (int) c[3];
+            valorCancelado = Dinheiro.deCentavos(c[4]);
+            vendas = (int) c[5];
+            valorVendas = Dinheiro.deCentavos(c[6]);
+            servicosVendidos = (int) c[7];
+            unidadesVendidas = c[8];
+            unidadesRepostas = c[9];
+            despesas = (int) c[10];
+            valorDespesas = Dinheiro.deCentavos(c[11]);
+            atendidos = (int) c[12];
+            faltas = (int) c[13];
+            cancelados = (int) c[14];
+            pendentes = (int) c[15];
+            valorRealizado = Dinheiro.deCentavos(c[16]);
+            recebimentoAbertura = Dinheiro.deCentavos(c[17]);
+            recebimentoFechamento = Dinheiro.deCentavos(c[18]);
+            servicosAbertura = c[19];
+            servicosFechamento = c[20];
+            despesasFechamento = Dinheiro.deCentavos(c[21]);
+            if (c[22] != divergencias.size()) throw new IllegalArgumentException("resumo de " + dia + " com divergências faltando");
+            this.vendasPorMetodo = Collections.unmodifiableMap(new TreeMap<>(vendasPorMetodo));
+            this.divergencias = List.copyOf(divergencias);
+        }
+
+        // Campos na ordem do construtor, usada também no arquivo.
+        private long[] campos() {
+            return new long[] {agendamentos, valorAgendado.getCentavos(), valorAntecipado.getCentavos(), cancelamentos,
+                valorCancelado.getCentavos(), vendas, valorVendas.getCentavos(), servicosVendidos, unidadesVendidas,
+                unidadesRepostas, despesas, valorDespesas.getCentavos(), atendidos, faltas, cancelados, pendentes,
+                valorRealizado.getCentavos(), recebimentoAbertura.getCentavos(), recebimentoFechamento.getCentavos(),
+                servicosAbertura, servicosFechamento, despesasFechamento.getCentavos(), divergencias.size()};
+        }
+
+        public LocalDate getDia() {
+            return dia;
+        }
+        public int getAgendamentos() {
+            return agendamentos;
+        }
+        public Dinheiro getValorAgendado() {
+            return valorAgendado;
+        }
+        public Dinheiro getValorAntecipado() {
+            return valorAntecipado;
+        }
+        public int getCancelamentos() {
+            return cancelamentos;
+        }
+        public Dinheiro getValorCancelado() {
+            return valorCancelado;
+        }
+        public int getVendas() {
+            return vendas;
+        }
+        public Dinheiro getValorVendas() {
+            return valorVendas;
+        }
+        public Map<String, Dinheiro> getVendasPorMetodo() {
+            return vendasPorMetodo;
+        }
+        public int getServicosVendidos() {
+            return servicosVendidos;
+        }
+        public long getUnidadesVendidas() {
+            return unidadesVendidas;
+        }
+        public long getUnidadesRepostas() {
+            return unidadesRepostas;
+        }
+        public int getDespesas() {
+            return despesas;
+        }
+        public Dinheiro getValorDespesas() {
+            return valorDespesas;
+        }
+        public int getAtendidos() {
+            return atendidos;
+        }
+        public int getFaltas() {
+            return faltas;
+        }
+        public int getCancelados() {
+            return cancelados;
+        }
+        public int getPendentes() {
+            return pendentes;
+        }
+        public Dinheiro getValorRealizado() {
+            return valorRealizado;
+        }
+        public Dinheiro getRecebimentoAbertura() {
+            return recebimentoAbertura;
+        }
+        public Dinheiro getRecebimentoFechamento() {
+            return recebimentoFechamento;
+        }
+        public long getServicosAbertura() {
+            return servicosAbertura;
+        }
+        public long getServicosFechamento() {
+            return servicosFechamento;
+        }
+        public Dinheiro getDespesasFechamento() {
+            return despesasFechamento;
+        }
+
+        /**
+         * Divergências encontradas ao conferir o período com os contadores e a agenda.
+         * @return Lista imutável de mensagens (vazia se o caixa fechou conciliado)
+         */
+        public List<String> getDivergencias() {
+            return divergencias;
+        }
+        public boolean isConciliado() {
+            return divergencias.isEmpty();
+        }
+
+        /**
+         * Formata o resumo para exibição.
+         * @return Texto do fechamento
+         */
+        public String formatar() {
+            StringBuilder sb = new StringBuilder(String.format(
+                """
+                📒 Fechamento de %s:
+                - Agendamentos lançados: %d (R$ %s, dos quais R$ %s para os próximos dias)
+                - Cancelamentos: %d (R$ %s estornados)
+                - Vendas: %d (R$ %s, %d serviço(s), %d unidade(s))
+                - Despesas: %d (R$ %s)
+                - Estoque reposto: %d unidade(s)
+                - Agenda do dia: %d atendido(s) (R$ %s), %d falta(s), %d cancelado(s), %d sem registro
+                - Recebimento: R$ %s na abertura, R$ %s no fechamento
+                """,
+                dia.format(ModoLote.FORMATO_DATA), agendamentos, valorAgendado, valorAntecipado, cancelamentos, valorCancelado,
+                vendas, valorVendas, servicosVendidos, unidadesVendidas, despesas, valorDespesas, unidadesRepostas,
+                atendidos, valorRealizado, faltas, cancelados, pendentes, recebimentoAbertura, recebimentoFechamento));
+            vendasPorMetodo.forEach((metodo, valor) -> sb.append(String.format("  • %s: R$ %s%n", metodo, valor)));
+            if (divergencias.isEmpty()) {
+                sb.append("✅ Caixa conciliado.");
+            } else {
+                sb.append("⚠️ Divergências:");
+                divergencias.forEach(divergencia -> sb.append("\n  • ").append(divergencia));
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public String toString() {
+            return dia.format(ModoLote.FORMATO_DATA) + (divergencias.isEmpty() ? " conciliado" : " com " + divergencias.size() + " divergência(s)");
+        }
+    }
+
+    // Movimentos do período aberto, em ordem de lançamento.
+    private byte[] tipos = new byte[16];
+    private long[] centavos = new long[16];
+    private int[] quantidades = new int[16];
+    private int[] referencias = new int[16];
+    private int[] textos = new int[16];          // Índice em nomes, ou -1
+    private int quantidade;
+    private final List<String> nomes = new ArrayList<>();
+    private final Map<String, Integer> indiceNome = new HashMap<>();
+
+    private Contadores abertura;                 // Contadores no último fechamento, ou null antes de a loja abrir o caixa
+    private final TreeMap<LocalDate, Resumo> resumos = new TreeMap<>();
+    private Captura captura;                     // Fechamento em andamento, ou null
+
+    // Registros lidos de um arquivo que esperam o resumo ou a abertura a que pertencem.
+    private final Map<String, Long> metodosLidos = new TreeMap<>();
+    private final Map<Integer, Integer> estoqueLido = new HashMap<>();
+    private final List<String> divergenciasLidas = new ArrayList<>();
+
+    /**
+     * Anota um movimento no período aberto. Custo O(1) amortizado, adequado ao caminho das vendas.
+     * @param tipo Tipo do movimento
+     * @param centavos Valor em centavos (0 para os movimentos de estoque)
+     * @param quantidade Quantidade (serviços ou unidades)
+     * @param referencia Dia do serviço ou da despesa (dias desde 1970-01-01) ou código do produto
+     * @param texto Método de pagamento ou categoria, ou null
+     */
+    synchronized void registrar(Movimento tipo, long centavos, int quantidade, int referencia, String texto) {
+        if (this.quantidade == tipos.length) {
+            int novoTamanho = this.quantidade + (this.quantidade >> 1);
+            tipos = Arrays.copyOf(tipos, novoTamanho);
+            this.centavos = Arrays.copyOf(this.centavos, novoTamanho);
+            quantidades = Arrays.copyOf(quantidades, novoTamanho);
+            referencias = Arrays.copyOf(referencias, novoTamanho);
+            textos = Arrays.copyOf(textos, novoTamanho);
+        }
+        tipos[this.quantidade] = (byte) tipo.ordinal();
+        this.centavos[this.quantidade] = centavos;
+        quantidades[this.quantidade] = quantidade;
+        referencias[this.quantidade] = referencia;
+        textos[this.quantidade] = texto == null ? -1 : indiceNome.computeIfAbsent(texto, nome -> {
+            nomes.add(nome);
+            return nomes.size() - 1;
+        });
+        this.quantidade++;
+    }
+
+    /**
+     * Define os contadores de abertura do primeiro período, se ainda não houver: a loja abre o
+     * caixa depois de carregar os dados salvos.
+     * @param contadores Contadores atuais da loja
+     */
+    synchronized void abrir(Contadores contadores) {
+        if (abertura == null) abertura = contadores;
+    }
+
+    /**
+     * Retira os movimentos do período aberto para fechar o dia; os próximos lançamentos já entram
+     * no período seguinte. Chamado com a loja bloqueada, junto com a leitura dos contadores.
+     * @param dia Dia a fechar
+     * @param fechamento Contadores da loja neste instante
+     * @param agenda Agendamentos do dia
+     * @return Captura a ser processada por {@link #concluir}
+     * @throws IllegalArgumentException Se o dia for futuro ou não for posterior ao último fechamento
+     * @throws IllegalStateException Se outro fechamento estiver em andamento
+     */
+    synchronized Captura iniciar(LocalDate dia, Contadores fechamento, List<Agendamento> agenda) {
+        if (captura != null) throw new IllegalStateException("Já há um fechamento de caixa em andamento.");
+        if (dia.isAfter(LocalDate.now())) throw new IllegalArgumentException("Não é possível fechar um dia futuro.");
+        if (!resumos.isEmpty() && !dia.isAfter(resumos.lastKey())) {
+            throw new IllegalArgumentException("O caixa já foi fechado em " + resumos.lastKey().format(ModoLote.FORMATO_DATA)
+                + "; dias anteriores não podem ser fechados.");
+        }
+        captura = new Captura(dia, abertura == null ? Contadores.VAZIO : abertura, fechamento, this, agenda);
+        tipos = new byte[16];
+        centavos = new long[16];
+        quantidades = new int[16];
+        referencias = new int[16];
+        textos = new int[16];
+        quantidade = 0;
+        return captura;
+    }
+
+    /**
+     * Processa uma captura sem bloquear a loja: soma os movimentos em blocos paralelos e a agenda
+     * do dia, confere o resultado com os contadores e congela o resumo. Se algo falhar, os
+     * movimentos voltam para o diário e o dia continua aberto.
+     * @param captura Captura devolvida por {@link #iniciar}
+     * @return Resumo do dia
+     */
+    Resumo concluir(Captura captura) {
+        try {
+            int blocos = (captura.movimentos + MOVIMENTOS_POR_BLOCO - 1) / MOVIMENTOS_POR_BLOCO;
+            // O bloco de número "blocos" é a agenda do dia.
+            Totais totais = IntStream.rangeClosed(0, blocos).parallel()
+                .mapToObj(bloco -> bloco == blocos ? somarAgenda(captura) : somarMovimentos(captura, bloco))
+                .toList().stream().reduce(Totais::juntar).orElseThrow(); // Poucos blocos: juntados em sequência
+            Map<String, Long> vendasPorMetodo = new TreeMap<>();
+            totais.porMetodo.forEach((texto, valor) -> vendasPorMetodo.put(captura.nomes.get(texto), valor[0]));
+            List<String> divergencias = conciliar(captura, totais, vendasPorMetodo);
+            Map<String, Dinheiro> vendas = new TreeMap<>();
+            vendasPorMetodo.forEach((metodo, valor) -> vendas.put(metodo, Dinheiro.deCentavos(valor)));
+            Resumo resumo = new Resumo(captura.dia, new long[] {totais.agendamentos, totais.valorAgendado,
+                totais.valorAntecipado, totais.cancelamentos, totais.valorCancelado, totais.vendas, totais.valorVendas,
+                totais.servicosVendidos, totais.unidadesVendidas, totais.unidadesRepostas, totais.despesas,
+                totais.valorDespesas, totais.atendidos, totais.faltas, totais.cancelados, totais.pendentes,
+                totais.valorRealizado, captura.abertura.recebimento, captura.fechamento.recebimento,
+                captura.abertura.servicos, captura.fechamento.servicos, captura.fechamento.despesas, divergencias.size()},
+                vendas, divergencias);
+            synchronized (this) {
+                resumos.put(resumo.getDia(), resumo);
+                abertura = captura.fechamento;
+                this.captura = null;
+                notifyAll();
+            }
+            return resumo;
+        } catch (RuntimeException | Error e) {
+            devolver(captura);
+            throw e;
+        }
+    }
+
+    // Devolve ao diário os movimentos de um fechamento que falhou, antes dos lançados depois dele.
+    private synchronized void devolver(Captura falha) {
+        int depois = quantidade;
+        byte[] novosTipos = Arrays.copyOf(falha.tipos, falha.movimentos + depois + 16);
+        long[] novosCentavos = Arrays.copyOf(falha.centavos, novosTipos.length);
+        int[] novasQuantidades = Arrays.copyOf(falha.quantidades, novosTipos.length);
+        int[] novasReferencias = Arrays.copyOf(falha.referencias, novosTipos.length);
+        int[] novosTextos = Arrays.copyOf(falha.textos, novosTipos.length);
+        System.arraycopy(tipos, 0, novosTipos, falha.movimentos, depois);
+        System.arraycopy(centavos, 0, novosCentavos, falha.movimentos, depois);
+        System.arraycopy(quantidades, 0, novasQuantidades, falha.movimentos, depois);
+        System.arraycopy(referencias, 0, novasReferencias, falha.movimentos, depois);
+        System.arraycopy(textos, 0, novosTextos, falha.movimentos, depois);
+        tipos = novosTipos;
+        centavos = novosCentavos;
+        quantidades = novasQuantidades;
+        referencias = novasReferencias;
+        textos = novosTextos;
+        quantidade = falha.movimentos + depois;
+        captura = null;
+        notifyAll();
+    }
+
+    private static Totais somarMovimentos(Captura captura, int bloco) {
+        Totais totais = new Totais();
+        int dia = (int) captura.dia.toEpochDay();
+        int fim = Math.min(captura.movimentos, (bloco + 1) * MOVIMENTOS_POR_BLOCO);
+        for (int i = bloco * MOVIMENTOS_POR_BLOCO; i < fim; i++) {
+            long valor = captura.centavos[i];
+            int quantidade = captura.quantidades[i];
+            switch (MOVIMENTOS[captura.tipos[i]]) {
+                case AGENDAMENTO -> {
+                    totais.agendamentos++;
+                    totais.valorAgendado += valor;
+                    if (captura.referencias[i] > dia) totais.valorAntecipado += valor;
+                }
+                case CANCELAMENTO -> {
+                    totais.cancelamentos++;
+                    totais.valorCancelado += valor;
+                }
+                case VENDA -> {
+                    totais.vendas++;
+                    totais.valorVendas += valor;
+                    totais.servicosVendidos += quantidade;
+                    totais.porMetodo.computeIfAbsent(captura.textos[i], t -> new long[1])[0] += valor;
+                }
+                case DESPESA -> {
+                    totais.despesas++;
+                    totais.valorDespesas += valor;
+                }
+                case ENTRADA_ESTOQUE -> {
+                    totais.unidadesRepostas += quantidade;
+                    totais.estoque.computeIfAbsent(captura.referencias[i], c -> new long[1])[0] += quantidade;
+                }
+                case SAIDA_ESTOQUE -> {
+                    totais.unidadesVendidas += quantidade;
+                    totais.estoque.computeIfAbsent(captura.referencias[i], c -> new long[1])[0] -= quantidade;
+                }
+            }
+        }
+        return totais;
+    }
+
+    private static Totais somarAgenda(Captura captura) {
+        Totais totais = new Totais();
+        for (int i = 0; i < captura.situacoes.length; i++) {
+            switch (captura.situacoes[i]) {
+                case 0 -> totais.pendentes++;
+                case 1 -> {
+                    totais.atendidos++;
+                    totais.valorRealizado += captura.valoresAgenda[i];
+                }
+                case 2 -> totais.faltas++;
+                default -> totais.cancelados++;
+            }
+        }
+        return totais;
+    }
+
+    // Confere a abertura mais os movimentos com os contadores do fechamento; cada diferença vira uma divergência.
+    private static List<String> conciliar(Captura captura, Totais totais, Map<String, Long> vendasPorMetodo) {
+        Contadores abertura = captura.abertura;
+        Contadores fechamento = captura.fechamento;
+        List<String> divergencias = new ArrayList<>();
+        conferir(divergencias, "Recebimento", abertura.recebimento + totais.valorAgendado - totais.valorCancelado + totais.valorVendas,
+            fechamento.recebimento, true);
+        conferir(divergencias, "Serviços realizados", abertura.servicos + totais.agendamentos - totais.cancelamentos
+            + totais.servicosVendidos, fechamento.servicos, false);
+        conferir(divergencias, "Despesas", abertura.despesas + totais.valorDespesas, fechamento.despesas, true);
+        TreeSet<String> metodos = new TreeSet<>(abertura.recebimentoPorMetodo.keySet());
+        metodos.addAll(fechamento.recebimentoPorMetodo.keySet());
+        metodos.addAll(vendasPorMetodo.keySet());
+        for (String metodo : metodos) {
+            conferir(divergencias, "Recebimento em " + metodo, abertura.recebimentoPorMetodo.getOrDefault(metodo, 0L)
+                + vendasPorMetodo.getOrDefault(metodo, 0L), fechamento.recebimentoPorMetodo.getOrDefault(metodo, 0L), true);
+        }
+        TreeSet<Integer> produtos = new TreeSet<>(abertura.estoque.keySet());
+        produtos.addAll(fechamento.estoque.keySet());
+        produtos.addAll(totais.estoque.keySet());
+        for (int codigo : produtos) {
+            long[] variacao = totais.estoque.get(codigo);
+            conferir(divergencias, "Estoque do produto " + codigo, abertura.estoque.getOrDefault(codigo, 0)
+                + (variacao == null ? 0 : variacao[0]), fechamento.estoque.getOrDefault(codigo, 0), false);
+        }
+        if (totais.pendentes > 0) {
+            divergencias.add(totais.pendentes + " agendamento(s) de " + captura.dia.format(ModoLote.FORMATO_DATA)
+                + " sem comparecimento registrado.");
+        }
+        return divergencias;
+    }
+
+    private static void conferir(List<String> divergencias, String contador, long esperado, long registrado, boolean dinheiro) {
+        if (esperado == registrado) return;
+        divergencias.add(dinheiro
+            ? String.format("%s: R$ %s registrado, R$ %s pelos movimentos (diferença de R$ %s).", contador,
+                Dinheiro.deCentavos(registrado), Dinheiro.deCentavos(esperado), Dinheiro.deCentavos(registrado - esperado))
+            : String.format("%s: %d registrado, %d pelos movimentos (diferença de %d).", contador, registrado, esperado,
+                registrado - esperado));
+    }
+
+    // Consultas
+
+    /**
+     * Resumo de um dia fechado.
+     * @param dia Dia consultado
+     * @return Resumo congelado no fechamento, ou null se o dia não foi fechado
+     */
+    public synchronized Resumo getResumo(LocalDate dia) {
+        return resumos.get(dia);
+    }
+
+    /**
+     * Resumos dos dias fechados em um período, em ordem de data.
+     * @param de Data inicial (inclusiva)
+     * @param ate Data final (inclusiva)
+     * @return Cópia da lista de resumos
+     */
+    public synchronized List<Resumo> getResumos(LocalDate de, LocalDate ate) {
+        if (ate.isBefore(de)) return List.of();
+        return new ArrayList<>(resumos.subMap(de, true, ate, true).values());
+    }
+
+    /**
+     * Último dia fechado, contando um fechamento em andamento: lançamentos com data até ele são recusados.
+     * @return Data do último fechamento, ou null se nenhum dia foi fechado
+     */
+    public synchronized LocalDate getUltimoDiaFechado() {
+        if (captura != null) return captura.dia;
+        return resumos.isEmpty() ? null : resumos.lastKey();
+    }
+
+    /**
+     * Quantidade de movimentos do período ainda aberto.
+     * @return Movimentos anotados desde o último fechamento
+     */
+    public synchronized int getMovimentosAbertos() {
+        return quantidade;
+    }
+
+    // Arquivo
+
+    /**
+     * Grava os resumos e a abertura do período aberto, no formato de campos separados por ";" dos
+     * dados gerais; os movimentos ficam para {@link #capturarDiario}. Espera um fechamento em
+     * andamento terminar, para gravar um estado inteiro.
+     * @param saida Destino dos registros
+     * @throws IOException Se não for possível gravar
+     */
+    synchronized void gravar(Writer saida) throws IOException {
+        while (captura != null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrompido esperando o fechamento do caixa.", e);
+            }
+        }
+        for (Resumo resumo : resumos.values()) {
+            String dia = resumo.getDia().format(ModoLote.FORMATO_DATA);
+            for (Map.Entry<String, Dinheiro> metodo : resumo.getVendasPorMetodo().entrySet()) {
+                linha(saida, "fechamento", "metodo", dia, metodo.getKey(), metodo.getValue().getCentavos());
+            }
+            for (String divergencia : resumo.getDivergencias()) {
+                linha(saida, "fechamento", "divergencia", dia, divergencia);
+            }
+            StringBuilder campos = new StringBuilder();
+            for (long campo : resumo.campos()) {
+                campos.append(';').append(campo);
+            }
+            saida.write("fechamento;resumo;" + dia + campos + "\n"); // Por último: fecha os registros do dia
+        }
+        Contadores inicio = abertura == null ? Contadores.VAZIO : abertura; // Loja nova: o caixa abriu zerado
+        for (Map.Entry<String, Long> metodo : new TreeMap<>(inicio.recebimentoPorMetodo).entrySet()) {
+            linha(saida, "caixa", "metodo", metodo.getKey(), metodo.getValue());
+        }
+        for (Map.Entry<Integer, Integer> produto : new TreeMap<>(inicio.estoque).entrySet()) {
+            linha(saida, "caixa", "estoque", produto.getKey(), produto.getValue());
+        }
+        linha(saida, "caixa", "abertura", inicio.recebimento, inicio.servicos, inicio.despesas);
+    }
+
+    /**
+     * Captura os movimentos do período aberto para gravá-los depois. Chamado com o monitor da loja,
+     * junto com {@link #gravar}, para que a abertura gravada seja a desses movimentos.
+     * @return Movimentos lançados até agora
+     */
+    synchronized Diario capturarDiario() {
+        return new Diario(this);
+    }
+
+    /**
+     * Aplica um registro "fechamento" ou "caixa" gravado por {@link #gravar}, em um caixa vazio.
+     * @param c Campos do registro
+     * @throws IllegalArgumentException Se o registro for inválido
+     */
+    synchronized void restaurar(String[] c) {
+        switch (c[0] + ";" + c[1]) {
+            case "fechamento;metodo" -> metodosLidos.put(c[3], Long.parseLong(c[4]));
+            case "fechamento;divergencia" -> divergenciasLidas.add(c[3]);
+            case "fechamento;resumo" -> {
+                long[] campos = new long[c.length - 3];
+                for (int i = 0; i < campos.length; i++) {
+                    campos[i] = Long.parseLong(c[i + 3]);
+                }
+                Map<String, Dinheiro> vendas = new TreeMap<>();
+                metodosLidos.forEach((metodo, valor) -> vendas.put(metodo, Dinheiro.deCentavos(valor)));
+                Resumo resumo = new Resumo(LocalDate.parse(c[2], ModoLote.FORMATO_DATA), campos, vendas, divergenciasLidas);
+                resumos.put(resumo.getDia(), resumo);
+                metodosLidos.clear();
+                divergenciasLidas.clear();
+            }
+            case "caixa;metodo" -> metodosLidos.put(c[2], Long.parseLong(c[3]));
+            case "caixa;estoque" -> estoqueLido.put(Integer.parseInt(c[2]), Integer.parseInt(c[3]));
+            case "caixa;abertura" -> {
+                abertura = new Contadores(Long.parseLong(c[2]), Long.parseLong(c[3]), Long.parseLong(c[4]), metodosLidos, estoqueLido);
+                metodosLidos.clear();
+                estoqueLido.clear();
+            }
+            case "caixa;movimento" -> registrar(Movimento.valueOf(c[2]), Long.parseLong(c[3]), Integer.parseInt(c[4]),
+                Integer.parseInt(c[5]), c[6].isEmpty() ? null : c[6]);
+            default -> throw new IllegalArgumentException("registro desconhecido: " + c[0] + ";" + c[1]);
+        }
+    }
+
+    private static void linha(Writer saida, Object... campos) throws IOException {
+        saida.write(FeedAlteracoes.comando(campos));
+        saida.write('\n');
+    }
+}
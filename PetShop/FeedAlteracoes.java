@@ -0,0 +1,394 @@
+package aps3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Feed de alterações da loja (captura de mudanças): cada alteração de clientes, pets, agendamentos,
+ * produtos e financeiro recebe um número de sequência crescente e fica registrada como um comando
+ * do {@link ModoLote}, de modo que quem acompanha o feed pode reaplicá-la em outra loja.
+ * <p>
+ * Os consumidores guardam apenas o número da última alteração processada (o cursor) e retomam a
+ * partir dele quando quiserem, recebendo lotes de tamanho limitado. A entrega é puxada pelo
+ * consumidor: um consumidor lento só atrasa a si mesmo e nada se acumula em filas por assinante.
+ * A leitura não bloqueia quem publica.
+ * <p>
+ * A memória é limitada: quem ainda precisa de alterações antigas (uma réplica conectada, uma
+ * assinatura ou a cadeia de cópias incrementais) as retém com {@link #reter(Object, long)}, e o feed
+ * descarta, em blocos inteiros, tudo o que nenhum deles retém, guardando sempre as
+ * {@value #RETENCAO_MINIMA} alterações mais recentes para quem se reconecta. Nenhum consumidor
+ * retém mais que {@value #RETENCAO_MAXIMA}: um consumidor parado passa a receber o erro de
+ * alterações descartadas e precisa partir de uma cópia completa.
+ */
+public class FeedAlteracoes {
+    private static final int BITS_BLOCO = 10;
+    private static final int TAMANHO_BLOCO = 1 << BITS_BLOCO; // Alterações por bloco do registro
+    static final int RETENCAO_MINIMA = 1 << 16; // Alterações recentes sempre guardadas
+    static final int RETENCAO_MAXIMA = 1 << 18; // Limite do que um consumidor atrasado consegue reter
+
+    // Blocos de alterações; a sequência s fica no bloco (s - 1) >> BITS_BLOCO. Blocos descartados viram null.
+    private volatile Alteracao[][] blocos = new Alteracao[16][];
+    private volatile long ultimaSequencia;   // Publicada depois de a alteração estar no bloco
+    private volatile long primeiraSequencia = 1; // Alterações anteriores foram descartadas
+    private final Map<Object, Long> retencoes = new HashMap<>(); // Consumidor -> cursor; protegido pelo monitor
+
+    /**
+     * Alteração publicada no feed.
+     */
+    public static final class Alteracao {
+        private final long sequencia;
+        private final long instante;  // Milissegundos desde 1970-01-01 UTC
+        private final String comando; // Linha no formato do modo em lote
+
+        private Alteracao(long sequencia, long instante, String comando) {
+            this.sequencia = sequencia;
+            this.instante = instante;
+            this.comando = comando;
+        }
+
+        public long getSequencia() {
+            return sequencia;
+        }
+        public long getInstante() {
+            return instante;
+        }
+        public String getComando() {
+            return comando;
+        }
+
+        @Override
+        public String toString() {
+            return sequencia + "\t" + comando;
+        }
+    }
+
+    /**
+     * Assinatura que entrega as alterações em lotes, em uma thread própria, a partir de um cursor.
+     * O cursor só avança depois que o destino processa o lote sem erro.
+     */
+    public final class Assinatura {
+        private final int tamanhoLote;
+        private final Consumer<List<Alteracao>> destino;
+        private final Thread entregador;
+        private volatile long cursor;
+        private volatile boolean ativa = true;
+        private volatile RuntimeException erro;
+
+        private Assinatura(long cursor, int tamanhoLote, Consumer<List<Alteracao>> destino) {
+            this.cursor = cursor;
+            this.tamanhoLote = tamanhoLote;
+            this.destino = destino;
+            this.entregador = new Thread(this::entregar, "feed-assinatura");
+            this.entregador.setDaemon(true);
+        }
+
+        private void entregar() {
+            try {
+                while (ativa) {
+                    List<Alteracao> lote = aguardar(cursor, tamanhoLote, 1000);
+                    if (lote.isEmpty() || !ativa) continue;
+                    destino.accept(lote);
+                    cursor = lote.get(lote.size() - 1).getSequencia();
+                    reter(this, cursor);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                erro = e; // A assinatura para; quem assinou pode retomar do cursor atual.
+            } finally {
+                ativa = false;
+                soltar(this);
+            }
+        }
+
+        /**
+         * Interrompe a entrega. O lote em processamento, se houver, termina antes.
+         */
+        public void cancelar() {
+            ativa = false;
+            entregador.interrupt();
+        }
+
+        /**
+         * Sequência da última alteração entregue com sucesso.
+         * @return Cursor para retomar a assinatura
+         */
+        public long getCursor() {
+            return cursor;
+        }
+
+        /**
+         * Quantas alterações já publicadas ainda não foram entregues.
+         * @return Atraso da assinatura em número de alterações
+         */
+        public long getAtraso() {
+            return ultimaSequencia - cursor;
+        }
+
+        public boolean isAtiva() {
+            return ativa;
+        }
+
+        /**
+         * Erro lançado pelo destino que encerrou a assinatura.
+         * @return Erro ou null se a assinatura não falhou
+         */
+        public RuntimeException getErro() {
+            return erro;
+        }
+    }
+
+    /**
+     * Publica uma alteração. Chamado pela loja dentro da própria operação, para que a ordem do feed
+     * seja a ordem em que as alterações foram aplicadas.
+     * @param comando Comando no formato do modo em lote que reproduz a alteração
+     * @return Número de sequência atribuído
+     */
+    public synchronized long publicar(String comando) {
+        long sequencia = ultimaSequencia + 1;
+        int bloco = (int) ((sequencia - 1) >>> BITS_BLOCO);
+        Alteracao[][] atuais = blocos;
+        if (bloco >= atuais.length) {
+            atuais = Arrays.copyOf(atuais, atuais.length * 2);
+        }
+        if (atuais[bloco] == null) {
+            atuais[bloco] = new Alteracao[TAMANHO_BLOCO];
+        }
+        atuais[bloco][(int) ((sequencia - 1) & (TAMANHO_BLOCO - 1))] = new Alteracao(sequencia, System.currentTimeMillis(), comando);
+        blocos = atuais;
+        ultimaSequencia = sequencia; // Torna a alteração visível para os leitores
+        notifyAll();
+        if ((sequencia & (TAMANHO_BLOCO - 1)) == 0) aparar(); // A cada bloco completo
+        return sequencia;
+    }
+
+    /**
+     * Lê as alterações posteriores a um cursor, sem bloquear.
+     * @param cursor Sequência da última alteração já processada (0 para ler desde o início)
+     * @param maximo Tamanho máximo do lote (pelo menos 1)
+     * @return Alterações em ordem de sequência; vazia se o cursor estiver em dia
+     * @throws IllegalArgumentException Se o cursor ou o tamanho do lote forem inválidos
+     * @throws IllegalStateException Se as alterações seguintes ao cursor já tiverem sido descartadas
+     */
+    public List<Alteracao> ler(long cursor, int maximo) {
+        if (maximo < 1) throw new IllegalArgumentException("O lote deve ter pelo menos uma alteração.");
+        long ultima = ultimaSequencia; // Lida antes dos blocos: tudo até ela já está publicado
+        if (cursor < 0 || cursor > ultima) throw new IllegalArgumentException("Cursor inválido: " + cursor);
+        if (cursor + 1 < primeiraSequencia) {
+            throw new IllegalStateException("As alterações após " + cursor + " já foram descartadas; é preciso uma cópia completa.");
+        }
+        Alteracao[][] atuais = blocos;
+        int quantidade = (int) Math.min(maximo, ultima - cursor);
+        List<Alteracao> lote = new ArrayList<>(quantidade);
+        for (long s = cursor + 1; s <= cursor + quantidade; s++) {
+            Alteracao[] bloco = atuais[(int) ((s - 1) >>> BITS_BLOCO)];
+            if (bloco == null) {
+                throw new IllegalStateException("As alterações após " + cursor + " já foram descartadas; é preciso uma cópia completa.");
+            }
+            lote.add(bloco[(int) ((s - 1) & (TAMANHO_BLOCO - 1))]);
+        }
+        return lote;
+    }
+
+    /**
+     * Cursor para ler as alterações publicadas a partir de um instante: a sequência da última
+     * alteração anterior a ele, encontrada por busca binária (as sequências seguem a ordem de publicação).
+     * @param instante Milissegundos desde 1970-01-01 UTC
+     * @return Cursor a passar para {@link #ler(long, int)}
+     * @throws IllegalStateException Se alterações a partir do instante já tiverem sido descartadas
+     */
+    public long cursorEm(long instante) {
+        long ultima = ultimaSequencia;
+        long primeira = primeiraSequencia;
+        Alteracao[][] atuais = blocos;
+        long baixo = primeira, alto = ultima; // Procura a primeira alteração com instante >= o pedido
+        while (baixo <= alto) {
+            long meio = (baixo + alto) >>> 1;
+            Alteracao[] bloco = atuais[(int) ((meio - 1) >>> BITS_BLOCO)];
+            if (bloco == null) throw new IllegalStateException("Alterações descartadas durante a busca; tente de novo.");
+            if (bloco[(int) ((meio - 1) & (TAMANHO_BLOCO - 1))].getInstante() < instante) {
+                baixo = meio + 1;
+            } else {
+                alto = meio - 1;
+            }
+        }
+        if (baixo == primeira && primeira > 1) {
+            throw new IllegalStateException("As alterações desse instante já foram descartadas; é preciso uma cópia completa.");
+        }
+        return baixo - 1;
+    }
+
+    /**
+     * Lê as alterações posteriores a um cursor, esperando até que exista alguma ou o tempo acabe.
+     * @param cursor Sequência da última alteração já processada
+     * @param maximo Tamanho máximo do lote
+     * @param esperaMillis Tempo máximo de espera em milissegundos
+     * @return Alterações em ordem de sequência; vazia se nada for publicado no prazo
+     * @throws InterruptedException Se a thread for interrompida durante a espera
+     */
+    public List<Alteracao> aguardar(long cursor, int maximo, long esperaMillis) throws InterruptedException {
+        if (cursor >= ultimaSequencia) {
+            long limite = System.currentTimeMillis() + esperaMillis;
+            synchronized (this) {
+                long restante;
+                while (cursor >= ultimaSequencia && (restante = limite - System.currentTimeMillis()) > 0) {
+                    wait(restante);
+                }
+            }
+        }
+        return ler(cursor, maximo);
+    }
+
+    /**
+     * Assina o feed a partir de um cursor. Os lotes são entregues em uma thread própria, um de cada vez.
+     * @param cursor Sequência da última alteração já processada pelo destino
+     * @param tamanhoLote Tamanho máximo de cada lote
+     * @param destino Recebe os lotes em ordem
+     * @return Assinatura iniciada
+     * @throws IllegalArgumentException Se o cursor ou o tamanho do lote forem inválidos
+     */
+    public Assinatura assinar(long cursor, int tamanhoLote, Consumer<List<Alteracao>> destino) {
+        if (tamanhoLote < 1) throw new IllegalArgumentException("O lote deve ter pelo menos uma alteração.");
+        if (cursor < 0 || cursor > ultimaSequencia) throw new IllegalArgumentException("Cursor inválido: " + cursor);
+        if (destino == null) throw new IllegalArgumentException("Destino da assinatura não pode ser nulo.");
+        Assinatura assinatura = new Assinatura(cursor, tamanhoLote, destino);
+        reter(assinatura, cursor);
+        assinatura.entregador.start();
+        return assinatura;
+    }
+
+    /**
+     * Continua a numeração de um feed vazio a partir da última sequência de uma execução anterior,
+     * cujos dados foram carregados de um arquivo. As alterações até ela não ficam disponíveis: um
+     * cursor anterior exige uma cópia completa, como depois de {@link #descartarAte(long)}.
+     * @param sequencia Última sequência publicada na execução anterior
+     * @throws IllegalArgumentException Se a sequência for negativa
+     * @throws IllegalStateException Se o feed já tiver alterações
+     */
+    public synchronized void retomar(long sequencia) {
+        if (sequencia < 0) throw new IllegalArgumentException("Sequência inválida: " + sequencia);
+        if (ultimaSequencia != 0 || primeiraSequencia != 1) throw new IllegalStateException("O feed já tem alterações.");
+        int bloco = (int) (sequencia >>> BITS_BLOCO); // Bloco da próxima alteração
+        if (bloco >= blocos.length) blocos = new Alteracao[Integer.highestOneBit(bloco) * 2][];
+        primeiraSequencia = sequencia + 1;
+        ultimaSequencia = sequencia;
+    }
+
+    /**
+     * Registra que um consumidor já processou as alterações até o cursor e ainda precisa das
+     * seguintes; o que ficou antes do menor cursor retido pode ser descartado.
+     * @param consumidor Quem retém (a mesma instância nas chamadas seguintes)
+     * @param cursor Sequência da última alteração que o consumidor já processou
+     */
+    public synchronized void reter(Object consumidor, long cursor) {
+        retencoes.put(consumidor, cursor);
+        aparar();
+    }
+
+    /**
+     * Remove a retenção de um consumidor que não acompanha mais o feed.
+     * @param consumidor Quem retinha
+     */
+    public synchronized void soltar(Object consumidor) {
+        if (retencoes.remove(consumidor) != null) aparar();
+    }
+
+    /**
+     * Descarta as alterações que nenhum consumidor retém, guardando as mais recentes.
+     */
+    public synchronized void aparar() {
+        long limite = ultimaSequencia - RETENCAO_MINIMA;
+        for (long cursor : retencoes.values()) {
+            limite = Math.min(limite, cursor);
+        }
+        limite = Math.max(limite, ultimaSequencia - RETENCAO_MAXIMA);
+        if (limite >= primeiraSequencia) descartarAte(limite);
+    }
+
+    /**
+     * Libera a memória das alterações até a sequência informada (em blocos inteiros).
+     * Cursores anteriores a ela deixam de poder ser retomados.
+     * @param sequencia Última alteração que pode ser descartada
+     */
+    public synchronized void descartarAte(long sequencia) {
+        long limite = Math.min(sequencia, ultimaSequencia);
+        int blocosInteiros = (int) (limite >>> BITS_BLOCO); // Blocos cujas alterações são todas <= limite
+        Alteracao[][] atuais = blocos;
+        for (int i = (int) ((primeiraSequencia - 1) >>> BITS_BLOCO); i < blocosInteiros; i++) {
+            atuais[i] = null;
+        }
+        primeiraSequencia = Math.max(primeiraSequencia, ((long) blocosInteiros << BITS_BLOCO) + 1);
+    }
+
+    public long getUltimaSequencia() {
+        return ultimaSequencia;
+    }
+    public long getPrimeiraSequencia() {
+        return primeiraSequencia;
+    }
+
+    /**
+     * Monta a linha de comando de uma alteração no formato do modo em lote. Separadores, quebras de
+     * linha e barras invertidas dentro dos campos são escapados ("\;", "\n", "\r", "\\"), para
+     * que {@link #separar(String)} devolva exatamente os mesmos campos.
+     * @param campos Nome do comando seguido dos campos
+     * @return Linha de comando
+     */
+    public static String comando(Object... campos) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < campos.length; i++) {
+            if (i > 0) sb.append(';');
+            String campo = String.valueOf(campos[i]);
+            for (int j = 0; j < campo.length(); j++) {
+                char c = campo.charAt(j);
+                switch (c) {
+                    case ';' -> sb.append("\\;");
+                    case '\\' -> sb.append("\\\\");
+                    case '\n' -> sb.append("\\n");
+                    case '\r' -> sb.append("\\r");
+                    default -> sb.append(c);
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Separa uma linha de comando nos seus campos, desfazendo os escapes de {@link #comando(Object...)}.
+     * Uma barra invertida seguida de outro caractere é mantida como está, para que linhas escritas à
+     * mão (um endereço com "\\", por exemplo) continuem valendo.
+     * @param linha Linha de comando
+     * @return Campos da linha, incluindo os vazios
+     */
+    public static String[] separar(String linha) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        for (int i = 0; i < linha.length(); i++) {
+            char c = linha.charAt(i);
+            if (c == ';') {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else if (c == '\\' && i + 1 < linha.length()) {
+                char seguinte = linha.charAt(i + 1);
+                switch (seguinte) {
+                    case ';', '\\' -> campo.append(seguinte);
+                    case 'n' -> campo.append('\n');
+                    case 'r' -> campo.append('\r');
+                    default -> {
+                        campo.append(c);
+                        continue; // O caractere seguinte é lido normalmente
+                    }
+                }
+                i++;
+            } else {
+                campo.append(c);
+            }
+        }
+        campos.add(campo.toString());
+        return campos.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,399 @@
+package aps3;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Fila de espera dos clientes que chegam sem agendamento.
+ * <p>
+ * Cada cliente recebe uma senha e é atendido por prioridade e, dentro da mesma prioridade, por ordem
+ * de chegada. As senhas ficam em um heap indexado por serviço (cada senha sabe sua posição no heap),
+ * então entrar, cancelar e chamar custam O(log n). Separar por serviço permite achar, também em
+ * O(log n), a primeira senha que cabe em uma lacuna deixada por uma falta ou cancelamento.
+ * <p>
+ * A espera estimada de uma senha é o trabalho à sua frente, somado ao que falta dos atendimentos
+ * em andamento e dividido pelos tosadores. O trabalho à frente vem de árvores de Fenwick por
+ * prioridade, indexadas pelo número da senha, com os minutos de serviço de cada senha: cada
+ * alteração na fila atualiza só as árvores, e cada estimativa custa O(log n) sem percorrer a fila.
+ * Os números das senhas crescem sempre; as árvores cobrem só a janela entre a senha mais antiga
+ * ainda na fila e a próxima, e são compactadas quando essa janela anda.
+ */
+public class FilaEspera {
+
+    /**
+     * Classes de prioridade, da mais à menos urgente.
+     */
+    public enum Prioridade {
+        URGENTE,       // Pet que precisa de atendimento imediato
+        PREFERENCIAL,  // Atendimento preferencial previsto em lei (idosos, gestantes, PcD)
+        NORMAL
+    }
+
+    /**
+     * Senha de um cliente na fila.
+     */
+    public static final class Senha {
+        private final int numero;
+        private final Pets pet;
+        private final String servico;
+        private final int minutos;
+        private final Prioridade prioridade;
+        private final LocalDateTime chegada;
+        private LocalDateTime chamada; // null enquanto espera
+        private int posicaoHeap;       // Posição no heap do serviço; -1 fora da fila
+
+        private Senha(int numero, Pets pet, String servico, Prioridade prioridade, LocalDateTime chegada) {
+            this.numero = numero;
+            this.pet = pet;
+            this.servico = servico;
+            this.minutos = Servico.tempoEmMinutos(servico);
+            this.prioridade = prioridade;
+            this.chegada = chegada;
+        }
+
+        public int getNumero() {
+            return numero;
+        }
+        public Pets getPet() {
+            return pet;
+        }
+        public String getServico() {
+            return servico;
+        }
+        public int getMinutos() {
+            return minutos;
+        }
+        public Prioridade getPrioridade() {
+            return prioridade;
+        }
+        public LocalDateTime getChegada() {
+            return chegada;
+        }
+
+        /**
+         * Momento em que a senha foi chamada para atendimento.
+         * @return Horário da chamada, ou null se ainda estiver esperando ou tiver sido cancelada
+         */
+        public LocalDateTime getChamada() {
+            return chamada;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Senha %d | %s | %s (%d min) | %s", numero, pet.getNomePet(), servico, minutos,
+                prioridade);
+        }
+    }
+
+    // Heap mínimo de senhas por (prioridade, número); cada senha guarda sua posição para remoção em O(log n).
+    private static final class Heap {
+        private Senha[] itens = new Senha[16];
+        private int tamanho;
+
+        private Senha topo() {
+            return tamanho == 0 ? null : itens[0];
+        }
+
+        private void adicionar(Senha senha) {
+            if (tamanho == itens.length) itens = Arrays.copyOf(itens, tamanho * 2);
+            itens[tamanho] = senha;
+            senha.posicaoHeap = tamanho++;
+            subir(senha.posicaoHeap);
+        }
+
+        private void remover(Senha senha) {
+            int i = senha.posicaoHeap;
+            Senha ultima = itens[--tamanho];
+            itens[tamanho] = null;
+            senha.posicaoHeap = -1;
+            if (i == tamanho) return;
+            itens[i] = ultima;
+            ultima.posicaoHeap = i;
+            subir(i);
+            descer(ultima.posicaoHeap);
+        }
+
+        private void subir(int i) {
+            while (i > 0) {
+                int pai = (i - 1) / 2;
+                if (!antes(itens[i], itens[pai])) return;
+                trocar(i, pai);
+                i = pai;
+            }
+        }
+
+        private void descer(int i) {
+            while (true) {
+                int menor = i;
+                int esquerda = 2 * i + 1;
+                if (esquerda < tamanho && antes(itens[esquerda], itens[menor])) menor = esquerda;
+                if (esquerda + 1 < tamanho && antes(itens[esquerda + 1], itens[menor])) menor = esquerda + 1;
+                if (menor == i) return;
+                trocar(i, menor);
+                i = menor;
+            }
+        }
+
+        private void trocar(int a, int b) {
+            Senha troca = itens[a];
+            itens[a] = itens[b];
+            itens[b] = troca;
+            itens[a].posicaoHeap = a;
+            itens[b].posicaoHeap = b;
+        }
+    }
+
+    private static final Comparator<Senha> ORDEM_ATENDIMENTO =
+        Comparator.comparing(Senha::getPrioridade).thenComparingInt(Senha::getNumero);
+    private static final int JANELA_INICIAL = 64;
+
+    private final Heap[] heaps = new Heap[Servico.SERVICOS_DISPONIVEIS.size()]; // Um heap por serviço
+    private final Map<Integer, Senha> aguardando = new HashMap<>();           // Número -> senha na fila
+    private final PriorityQueue<LocalDateTime> emAndamento = new PriorityQueue<>(); // Fim de cada atendimento da fila
+
+    // Trabalho à frente: minutos e quantidade de senhas por prioridade, indexados por número - base.
+    private final ArvoreFenwick[] minutos = new ArvoreFenwick[Prioridade.values().length];
+    private final ArvoreFenwick[] quantidades = new ArvoreFenwick[Prioridade.values().length];
+    private final long[] totalMinutos = new long[Prioridade.values().length];
+    private final int[] totalQuantidade = new int[Prioridade.values().length];
+    private int base = 1;        // Número da senha na posição 0 das árvores
+    private int proximoNumero = 1;
+    private int tosadores;
+
+    /**
+     * Construtor da fila.
+     * @param tosadores Tosadores atendendo a fila (deve ser positivo)
+     * @throws IllegalArgumentException Se a quantidade de tosadores for inválida
+     */
+    public FilaEspera(int tosadores) {
+        setTosadores(tosadores);
+        for (int i = 0; i < heaps.length; i++) {
+            heaps[i] = new Heap();
+        }
+        for (int p = 0; p < minutos.length; p++) {
+            minutos[p] = new ArvoreFenwick(JANELA_INICIAL);
+            quantidades[p] = new ArvoreFenwick(JANELA_INICIAL);
+        }
+    }
+
+    /**
+     * Altera a quantidade de tosadores atendendo a fila; as estimativas passam a usar o novo valor.
+     * @param tosadores Tosadores disponíveis (deve ser positivo)
+     * @throws IllegalArgumentException Se a quantidade for inválida
+     */
+    public synchronized void setTosadores(int tosadores) {
+        if (tosadores < 1) throw new IllegalArgumentException("Deve haver pelo menos um tosador.");
+        this.tosadores = tosadores;
+    }
+
+    public synchronized int getTosadores() {
+        return tosadores;
+    }
+
+    /**
+     * Coloca um pet na fila.
+     * @param pet Pet a ser atendido
+     * @param servico Nome do serviço
+     * @param prioridade Prioridade do atendimento
+     * @param agora Horário de chegada
+     * @return Senha do cliente
+     * @throws IllegalArgumentException Se algum parâmetro for inválido
+     */
+    public synchronized Senha entrar(Pets pet, String servico, Prioridade prioridade, LocalDateTime agora) {
+        if (pet == null) throw new IllegalArgumentException("Pet não pode ser nulo.");
+        int indiceServico = Servico.indiceServico(servico);
+        if (indiceServico < 0) throw new IllegalArgumentException("Serviço inválido! Escolha um dos serviços disponíveis.");
+        if (prioridade == null) throw new IllegalArgumentException("Prioridade não pode ser nula.");
+        garantirJanela();
+        Senha senha = new Senha(proximoNumero++, pet, servico, prioridade, agora);
+        heaps[indiceServico].adicionar(senha);
+        aguardando.put(senha.numero, senha);
+        contabilizar(senha, 1);
+        return senha;
+    }
+
+    /**
+     * Tira uma senha da fila, em O(log n).
+     * @param numero Número da senha
+     * @return true se a senha estava na fila
+     */
+    public synchronized boolean cancelar(int numero) {
+        Senha senha = aguardando.get(numero);
+        if (senha == null) return false;
+        retirar(senha);
+        return true;
+    }
+
+    /**
+     * Tira da fila todas as senhas de um pet, como quando ele é removido do cadastro. Percorre a
+     * fila, em O(n + k log n) para k senhas do pet.
+     * @param pet Pet cujas senhas são canceladas
+     * @return Quantidade de senhas canceladas
+     */
+    public synchronized int cancelarPet(Pets pet) {
+        List<Senha> doPet = new ArrayList<>();
+        for (Senha senha : aguardando.values()) {
+            if (senha.pet == pet) doPet.add(senha);
+        }
+        for (Senha senha : doPet) {
+            retirar(senha);
+        }
+        return doPet.size();
+    }
+
+    /**
+     * Chama a próxima senha para um tosador livre.
+     * @param agora Horário da chamada
+     * @return Senha chamada, ou null se a fila estiver vazia
+     * @throws IllegalStateException Se todos os tosadores estiverem ocupados
+     */
+    public synchronized Senha chamarProximo(LocalDateTime agora) {
+        liberarTosadores(agora);
+        if (emAndamento.size() >= tosadores) throw new IllegalStateException("Todos os tosadores estão ocupados.");
+        Senha proxima = melhorAte(Integer.MAX_VALUE);
+        if (proxima == null) return null;
+        retirar(proxima);
+        proxima.chamada = agora;
+        emAndamento.add(agora.plusMinutes(proxima.minutos));
+        return proxima;
+    }
+
+    /**
+     * Aproveita uma lacuna na agenda (falta ou cancelamento) para atender a primeira senha, em ordem de
+     * prioridade e chegada, cujo serviço caiba no tempo livre. O atendimento ocupa o tosador do
+     * agendamento vago, sem tirar tosadores da fila.
+     * @param minutosLivres Duração da lacuna
+     * @param agora Início da lacuna
+     * @return Senha chamada, ou null se nenhuma couber
+     */
+    public synchronized Senha preencherLacuna(int minutosLivres, LocalDateTime agora) {
+        Senha escolhida = melhorAte(minutosLivres);
+        if (escolhida == null) return null;
+        retirar(escolhida);
+        escolhida.chamada = agora;
+        return escolhida;
+    }
+
+    /**
+     * Estima quanto tempo falta para a senha ser chamada, em O(log n).
+     * @param numero Número da senha
+     * @param agora Horário da estimativa
+     * @return Espera estimada
+     * @throws NoSuchElementException Se a senha não estiver na fila
+     */
+    public synchronized Duration estimarEspera(int numero, LocalDateTime agora) {
+        Senha senha = buscar(numero);
+        liberarTosadores(agora);
+        int p = senha.prioridade.ordinal();
+        int posicao = senha.numero - base;
+        long trabalhoAFrente = minutos[p].prefixo(posicao - 1);
+        long aFrente = quantidades[p].prefixo(posicao - 1);
+        for (int q = 0; q < p; q++) {
+            trabalhoAFrente += totalMinutos[q];
+            aFrente += totalQuantidade[q];
+        }
+        if (aFrente < tosadores - emAndamento.size()) return Duration.ZERO; // Sobra tosador livre para ela
+
+        long restanteSegundos = 0;
+        for (LocalDateTime fim : emAndamento) {
+            restanteSegundos += Math.max(0, Duration.between(agora, fim).getSeconds());
+        }
+        return Duration.ofSeconds((trabalhoAFrente * 60 + restanteSegundos + tosadores - 1) / tosadores);
+    }
+
+    /**
+     * Quantas senhas serão chamadas antes desta, em O(log n).
+     * @param numero Número da senha
+     * @return Senhas à frente
+     * @throws NoSuchElementException Se a senha não estiver na fila
+     */
+    public synchronized int getPosicao(int numero) {
+        Senha senha = buscar(numero);
+        int p = senha.prioridade.ordinal();
+        long aFrente = quantidades[p].prefixo(senha.numero - base - 1);
+        for (int q = 0; q < p; q++) {
+            aFrente += totalQuantidade[q];
+        }
+        return (int) aFrente;
+    }
+
+    /**
+     * Senhas na fila, na ordem em que serão chamadas.
+     * @return Cópia ordenada da fila
+     */
+    public synchronized List<Senha> listar() {
+        List<Senha> senhas = new ArrayList<>(aguardando.values());
+        senhas.sort(ORDEM_ATENDIMENTO);
+        return senhas;
+    }
+
+    public synchronized int tamanho() {
+        return aguardando.size();
+    }
+
+    private Senha buscar(int numero) {
+        Senha senha = aguardando.get(numero);
+        if (senha == null) throw new NoSuchElementException("Senha não está na fila: " + numero);
+        return senha;
+    }
+
+    // Primeira senha, em ordem de atendimento, entre os serviços que cabem no tempo informado.
+    private Senha melhorAte(int minutosLivres) {
+        Senha melhor = null;
+        for (Heap heap : heaps) {
+            Senha topo = heap.topo();
+            if (topo != null && topo.minutos <= minutosLivres && (melhor == null || antes(topo, melhor))) melhor = topo;
+        }
+        return melhor;
+    }
+
+    private void retirar(Senha senha) {
+        heaps[Servico.indiceServico(senha.servico)].remover(senha);
+        aguardando.remove(senha.numero);
+        contabilizar(senha, -1);
+    }
+
+    private void contabilizar(Senha senha, int sinal) {
+        int p = senha.prioridade.ordinal();
+        minutos[p].somar(senha.numero - base, sinal * (long) senha.minutos);
+        quantidades[p].somar(senha.numero - base, sinal);
+        totalMinutos[p] += sinal * (long) senha.minutos;
+        totalQuantidade[p] += sinal;
+    }
+
+    // Garante posição para a próxima senha: descarta as posições anteriores à senha mais antiga da fila
+    // e dobra a janela se ainda faltar espaço. Custa O(n), mas só acontece quando a janela se esgota.
+    private void garantirJanela() {
+        int tamanhoAtual = minutos[0].tamanho();
+        if (proximoNumero - base < tamanhoAtual) return;
+        int novaBase = proximoNumero;
+        for (int numero : aguardando.keySet()) {
+            novaBase = Math.min(novaBase, numero);
+        }
+        int ocupadas = proximoNumero - novaBase;
+        int novoTamanho = Math.max(JANELA_INICIAL, Integer.highestOneBit(Math.max(1, ocupadas)) * 4);
+        for (int p = 0; p < minutos.length; p++) {
+            minutos[p].redimensionar(novoTamanho, base - novaBase);
+            quantidades[p].redimensionar(novoTamanho, base - novaBase);
+        }
+        base = novaBase;
+    }
+
+    private void liberarTosadores(LocalDateTime agora) {
+        while (!emAndamento.isEmpty() && !emAndamento.peek().isAfter(agora)) {
+            emAndamento.poll();
+        }
+    }
+
+    private static boolean antes(Senha a, Senha b) {
+        return ORDEM_ATENDIMENTO.compare(a, b) < 0;
+    }
+}
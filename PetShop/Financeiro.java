@@ -1,16 +1,19 @@
 package aps3;
 
 import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Gerencia o controle financeiro do pet shop, incluindo recebimentos, despesas e métodos de pagamento.
  */
 public class Financeiro {
-    private double recebimento;      // Valor total recebido
+    private long recebimento;        // Valor total recebido, em centavos
     private int servicoFeitos;       // Quantidade de serviços realizados
     private String metodoPagamento;  // Método de pagamento utilizado
     private LocalDate dataRegistro;  // Data do registro financeiro
-    private double despesas = 0.0;   // Total de despesas associadas
+    private final LivroDespesas livroDespesas = new LivroDespesas(); // Despesas por categoria, data e fornecedor
+    private final Map<String, long[]> recebimentoPorMetodo = new TreeMap<>(); // Centavos recebidos por método de pagamento
 
     /**
      * Construtor da classe Financeiro, garantindo validações essenciais.
@@ -20,90 +23,179 @@ public class Financeiro {
      * @param dataRegistro Data do registro financeiro (não pode ser futura)
      * @throws IllegalArgumentException Se algum parâmetro for inválido
      */
-    public Financeiro(double recebimento, int servicoFeitos, String metodoPagamento, LocalDate dataRegistro) {
-        if (recebimento < 0) throw new IllegalArgumentException("O valor de recebimento não pode ser negativo.");
+    public Financeiro(Dinheiro recebimento, int servicoFeitos, String metodoPagamento, LocalDate dataRegistro) {
+        if (recebimento.isNegativo()) throw new IllegalArgumentException("O valor de recebimento não pode ser negativo.");
         if (servicoFeitos < 0) throw new IllegalArgumentException("Quantidade de serviços feitos não pode ser negativa.");
         if (metodoPagamento == null || metodoPagamento.isBlank()) throw new IllegalArgumentException("Método de pagamento inválido.");
         if (dataRegistro.isAfter(LocalDate.now())) throw new IllegalArgumentException("Data futura não permitida.");
 
-        this.recebimento = recebimento;
+        this.recebimento = recebimento.getCentavos();
         this.servicoFeitos = servicoFeitos;
         this.metodoPagamento = metodoPagamento;
         this.dataRegistro = dataRegistro;
     }
 
     /**
-     * Adiciona uma despesa ao controle financeiro.
+     * Adiciona uma despesa de hoje, sem categoria nem fornecedor, ao controle financeiro.
      * @param valor Valor da despesa (não pode ser negativo)
      * @throws IllegalArgumentException Se o valor for inválido
      */
-    public void adicionarDespesa(double valor) {
-        if (valor < 0) throw new IllegalArgumentException("O valor da despesa não pode ser negativo.");
-        despesas += valor;
+    public synchronized void adicionarDespesa(Dinheiro valor) {
+        adicionarDespesa(LivroDespesas.CATEGORIA_PADRAO, LocalDate.now(), valor, null);
+    }
+
+    /**
+     * Adiciona uma despesa ao livro de despesas.
+     * @param categoria Categoria da despesa (não pode ser vazia)
+     * @param data Data da despesa (não pode ser futura)
+     * @param valor Valor da despesa (não pode ser negativo)
+     * @param fornecedor Fornecedor da despesa (pode ser vazio)
+     * @throws IllegalArgumentException Se algum parâmetro for inválido
+     */
+    public synchronized void adicionarDespesa(String categoria, LocalDate data, Dinheiro valor, String fornecedor) {
+        livroDespesas.registrar(categoria, data, valor, fornecedor);
+    }
+
+    /**
+     * Total das despesas de um período, em O(log n).
+     * @param de Data inicial (inclusiva)
+     * @param ate Data final (inclusiva)
+     * @return Soma das despesas do período
+     */
+    public synchronized Dinheiro getDespesas(LocalDate de, LocalDate ate) {
+        return livroDespesas.total(de, ate);
+    }
+
+    /**
+     * Total das despesas de uma categoria em um período, em O(log n).
+     * @param categoria Categoria consultada
+     * @param de Data inicial (inclusiva)
+     * @param ate Data final (inclusiva)
+     * @return Soma das despesas da categoria no período
+     */
+    public synchronized Dinheiro getDespesas(String categoria, LocalDate de, LocalDate ate) {
+        return livroDespesas.total(categoria, de, ate);
+    }
+
+    /**
+     * Registra um recebimento associado a um método de pagamento.
+     * @param valor Valor recebido (não pode ser negativo)
+     * @param metodoPagamento Método de pagamento utilizado (não pode ser vazio)
+     * @throws IllegalArgumentException Se algum parâmetro for inválido
+     */
+    public synchronized void registrarRecebimento(Dinheiro valor, String metodoPagamento) {
+        if (valor.isNegativo()) throw new IllegalArgumentException("O valor de recebimento não pode ser negativo.");
+        if (metodoPagamento == null || metodoPagamento.isBlank()) throw new IllegalArgumentException("Método de pagamento inválido.");
+        recebimento = Math.addExact(recebimento, valor.getCentavos());
+        recebimentoPorMetodo.computeIfAbsent(metodoPagamento, m -> new long[1])[0] += valor.getCentavos();
+        this.metodoPagamento = metodoPagamento;
+    }
+
+    /**
+     * Soma serviços realizados ao contador do financeiro.
+     * @param quantidade Quantidade de serviços (não pode ser negativa)
+     * @throws IllegalArgumentException Se a quantidade for negativa
+     */
+    public synchronized void registrarServicos(int quantidade) {
+        if (quantidade < 0) throw new IllegalArgumentException("Quantidade de serviços feitos não pode ser negativa.");
+        servicoFeitos += quantidade;
+    }
+
+    /**
+     * Retorna o total recebido em cada método de pagamento.
+     * @return Cópia do mapa método de pagamento -> valor recebido
+     */
+    public synchronized Map<String, Dinheiro> getRecebimentoPorMetodo() {
+        Map<String, Dinheiro> copia = new TreeMap<>();
+        recebimentoPorMetodo.forEach((metodo, centavos) -> copia.put(metodo, Dinheiro.deCentavos(centavos[0])));
+        return copia;
     }
 
     /**
      * Calcula o saldo financeiro atual.
      * @return Saldo final (recebimento menos despesas)
      */
-    public double getSaldoFinal() {
-        return recebimento - despesas;
+    public synchronized Dinheiro getSaldoFinal() {
+        return Dinheiro.deCentavos(recebimento - livroDespesas.getTotal().getCentavos());
     }
 
     /**
      * Exibe um resumo financeiro formatado.
      * @return String com informações do financeiro
      */
-    public String exibirResumoFinanceiro() {
+    public synchronized String exibirResumoFinanceiro() {
         return String.format(
             """
             📊 Resumo Financeiro:
-            - Total Recebido: R$ %.2f
+            - Total Recebido: R$ %s
             - Total de Serviços Realizados: %d
             - Método de Pagamento: %s
             - Data do Registro: %s
-            - Despesas: R$ %.2f
-            - Saldo Final: R$ %.2f
-            """,
-            recebimento, servicoFeitos, metodoPagamento, dataRegistro, despesas, getSaldoFinal()
+            - Despesas: R$ %s
+            - Saldo Final: R$ %s
+            %s%s""",
+            Dinheiro.deCentavos(recebimento), servicoFeitos, metodoPagamento, dataRegistro,
+            livroDespesas.getTotal(), getSaldoFinal(),
+            formatarRecebimentoPorMetodo(), formatarDespesasPorCategoria()
         );
     }
 
+    // Monta as linhas de recebimento por método de pagamento exibidas no resumo.
+    private String formatarRecebimentoPorMetodo() {
+        StringBuilder sb = new StringBuilder();
+        recebimentoPorMetodo.forEach((metodo, centavos) ->
+            sb.append(String.format("  • %s: R$ %s%n", metodo, Dinheiro.deCentavos(centavos[0]))));
+        return sb.toString();
+    }
+
+    // Monta as linhas de despesas por categoria exibidas no resumo.
+    private String formatarDespesasPorCategoria() {
+        Map<String, Dinheiro> totais = livroDespesas.totaisPorCategoria();
+        if (totais.isEmpty()) return "";
+        StringBuilder sb = new StringBuilder("- Despesas por Categoria:\n");
+        totais.forEach((categoria, valor) -> sb.append(String.format("  • %s: R$ %s%n", categoria, valor)));
+        return sb.toString();
+    }
+
     // Getters e Setters
 
-    public double getRecebimento() { 
-        return recebimento;
+    public synchronized Dinheiro getRecebimento() { 
+        return Dinheiro.deCentavos(recebimento);
     }
-    public void setRecebimento(double recebimento) {
-        if (recebimento < 0) throw new IllegalArgumentException("O valor de recebimento não pode ser negativo.");
-        this.recebimento = recebimento;
+    public synchronized void setRecebimento(Dinheiro recebimento) {
+        if (recebimento.isNegativo()) throw new IllegalArgumentException("O valor de recebimento não pode ser negativo.");
+        this.recebimento = recebimento.getCentavos();
     }
 
-    public int getServicoFeitos() {
+    public synchronized int getServicoFeitos() {
         return servicoFeitos;
     }
-    public void setServicoFeitos(int servicoFeitos) {
+    public synchronized void setServicoFeitos(int servicoFeitos) {
         if (servicoFeitos < 0) throw new IllegalArgumentException("Quantidade de serviços feitos não pode ser negativa.");
         this.servicoFeitos = servicoFeitos;
     }
 
-    public String getMetodoPagamento() { 
+    public synchronized String getMetodoPagamento() { 
         return metodoPagamento; 
     }
-    public void setMetodoPagamento(String metodoPagamento) {
+    public synchronized void setMetodoPagamento(String metodoPagamento) {
         if (metodoPagamento == null || metodoPagamento.isBlank()) throw new IllegalArgumentException("Método de pagamento inválido.");
         this.metodoPagamento = metodoPagamento;
     }
 
-    public LocalDate getDataRegistro() { 
+    public synchronized LocalDate getDataRegistro() { 
         return dataRegistro;
     }
-    public void setDataRegistro(LocalDate dataRegistro) {
+    public synchronized void setDataRegistro(LocalDate dataRegistro) {
         if (dataRegistro.isAfter(LocalDate.now())) throw new IllegalArgumentException("Data futura não permitida.");
         this.dataRegistro = dataRegistro;
     }
 
-    public double getDespesas() {
-        return despesas; 
+    public synchronized Dinheiro getDespesas() {
+        return livroDespesas.getTotal();
+    }
+
+    public LivroDespesas getLivroDespesas() {
+        return livroDespesas;
     }
 }
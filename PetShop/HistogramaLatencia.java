@@ -0,0 +1,82 @@
+package aps3;
+
+/**
+ * Histograma de latências em nanossegundos com faixas log-lineares (precisão de cerca de 3%).
+ * Registrar custa O(1) e não aloca memória; percentis custam O(faixas). Não é seguro para várias
+ * threads: cada thread registra no seu histograma e os resultados são somados com {@link #somar}.
+ */
+public class HistogramaLatencia {
+    private static final int SUBFAIXAS = 32; // Faixas por potência de 2
+    private static final int FAIXAS = 2 * SUBFAIXAS + 58 * SUBFAIXAS;
+
+    private final long[] contagens = new long[FAIXAS];
+    private long quantidade;
+    private long maximo;
+    private long soma;
+
+    /**
+     * Registra uma medição.
+     * @param nanos Latência em nanossegundos (valores negativos contam como zero)
+     */
+    public void registrar(long nanos) {
+        long valor = Math.max(0, nanos);
+        contagens[faixa(valor)]++;
+        quantidade++;
+        soma += valor;
+        if (valor > maximo) maximo = valor;
+    }
+
+    /**
+     * Soma as medições de outro histograma a este.
+     * @param outro Histograma somado
+     */
+    public void somar(HistogramaLatencia outro) {
+        for (int i = 0; i < FAIXAS; i++) {
+            contagens[i] += outro.contagens[i];
+        }
+        quantidade += outro.quantidade;
+        soma += outro.soma;
+        maximo = Math.max(maximo, outro.maximo);
+    }
+
+    /**
+     * Latência abaixo da qual está a fração informada das medições.
+     * @param percentil Percentil entre 0 e 100
+     * @return Limite superior aproximado da faixa do percentil, em nanossegundos (0 se não houver medições)
+     */
+    public long percentil(double percentil) {
+        if (quantidade == 0) return 0;
+        long alvo = Math.max(1, (long) Math.ceil(quantidade * percentil / 100.0));
+        long acumulado = 0;
+        for (int i = 0; i < FAIXAS; i++) {
+            acumulado += contagens[i];
+            if (acumulado >= alvo) return Math.min(limiteSuperior(i), maximo);
+        }
+        return maximo;
+    }
+
+    public long getQuantidade() {
+        return quantidade;
+    }
+    public long getMaximo() {
+        return maximo;
+    }
+    public double getMedia() {
+        return quantidade == 0 ? 0 : (double) soma / quantidade;
+    }
+
+    // Valores até 2 * SUBFAIXAS têm faixa própria; acima, cada potência de 2 é dividida em SUBFAIXAS faixas.
+    private static int faixa(long valor) {
+        if (valor < 2 * SUBFAIXAS) return (int) valor;
+        int deslocamento = 63 - Long.numberOfLeadingZeros(valor) - 5; // Mantém os 6 bits mais significativos
+        int topo = (int) (valor >>> deslocamento);                        // Entre SUBFAIXAS e 2 * SUBFAIXAS - 1
+        return 2 * SUBFAIXAS + (deslocamento - 1) * SUBFAIXAS + (topo - SUBFAIXAS);
+    }
+
+    private static long limiteSuperior(int faixa) {
+        if (faixa < 2 * SUBFAIXAS) return faixa;
+        int deslocamento = (faixa - 2 * SUBFAIXAS) / SUBFAIXAS + 1;
+        long topo = SUBFAIXAS + (faixa - 2 * SUBFAIXAS) % SUBFAIXAS;
+        return ((topo + 1) << deslocamento) - 1;
+    }
+}
@@ -0,0 +1,261 @@
+package aps3;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Índice de pets para campanhas: aniversariantes de um período e faixas de idade.
+ * <p>
+ * Os aniversários ficam em 366 baldes, um por dia do ano (29/02 incluído), então "aniversariantes
+ * da próxima semana" lê sete baldes em vez de percorrer todos os pets. As datas de nascimento
+ * ficam em um mapa ordenado de baldes por dia, e uma faixa de idade vira um intervalo de datas
+ * lido em ordem. Espécie e porte são filtrados nos candidatos, direto no {@link ArmazemPets}.
+ * <p>
+ * A {@link Loja} indexa os pets ao cadastrá-los e os retira ao removê-los. Os resultados são
+ * conferidos com a data de nascimento atual de cada pet, então uma data alterada fora da loja
+ * nunca produz um alvo errado (apenas deixa o pet fora das listas até ser indexado de novo).
+ */
+public class IndiceCampanhas {
+    private static final int DIAS_DO_ANO = 366;
+    private static final int FEVEREIRO_29 = diaDoAno(MonthDay.of(2, 29));
+
+    // Pets de um mesmo dia; a ordem não é mantida na remoção.
+    private static final class Balde {
+        private Pets[] pets = new Pets[4];
+        private int tamanho;
+
+        private void adicionar(Pets pet) {
+            if (tamanho == pets.length) pets = Arrays.copyOf(pets, tamanho * 2);
+            pets[tamanho++] = pet;
+        }
+
+        private boolean remover(Pets pet) {
+            for (int i = 0; i < tamanho; i++) {
+                if (pets[i] == pet) {
+                    pets[i] = pets[--tamanho];
+                    pets[tamanho] = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Pet selecionado para uma campanha, com o dono e a data que o qualificou.
+     */
+    public static final class Alvo {
+        private final Pets pet;
+        private final Cliente dono;
+        private final LocalDate aniversario; // Null nas listas por idade
+
+        private Alvo(Pets pet, Cliente dono, LocalDate aniversario) {
+            this.pet = pet;
+            this.dono = dono;
+            this.aniversario = aniversario;
+        }
+
+        public Pets getPet() {
+            return pet;
+        }
+        public Cliente getDono() {
+            return dono;
+        }
+
+        /**
+         * Data do aniversário dentro do período consultado (29/02 cai em 28/02 nos anos não bissextos).
+         * @return Data do aniversário, ou null se o alvo veio de uma faixa de idade
+         */
+        public LocalDate getAniversario() {
+            return aniversario;
+        }
+    }
+
+    private final Balde[] porDiaDoAno = new Balde[DIAS_DO_ANO];
+    private final TreeMap<Integer, Balde> porNascimento = new TreeMap<>(); // Dias desde 1970-01-01 -> pets
+    private int quantidade;
+
+    public IndiceCampanhas() {
+        for (int i = 0; i < DIAS_DO_ANO; i++) {
+            porDiaDoAno[i] = new Balde();
+        }
+    }
+
+    /**
+     * Indexa um pet pela data de nascimento atual.
+     * @param pet Pet cadastrado
+     */
+    public synchronized void indexar(Pets pet) {
+        LocalDate nascimento = pet.getDataNascimento();
+        porDiaDoAno[diaDoAno(MonthDay.from(nascimento))].adicionar(pet);
+        porNascimento.computeIfAbsent((int) nascimento.toEpochDay(), d -> new Balde()).adicionar(pet);
+        quantidade++;
+    }
+
+    /**
+     * Retira um pet do índice.
+     * @param pet Pet removido
+     */
+    public synchronized void remover(Pets pet) {
+        LocalDate nascimento = pet.getDataNascimento();
+        Balde doDia = porNascimento.get((int) nascimento.toEpochDay());
+        if (doDia != null && doDia.remover(pet)) {
+            if (doDia.tamanho == 0) porNascimento.remove((int) nascimento.toEpochDay());
+            porDiaDoAno[diaDoAno(MonthDay.from(nascimento))].remover(pet);
+            quantidade--;
+            return;
+        }
+        // A data mudou depois de indexada: procura o pet em todos os baldes.
+        for (Iterator<Balde> baldes = porNascimento.values().iterator(); baldes.hasNext(); ) {
+            Balde balde = baldes.next();
+            if (balde.remover(pet)) {
+                if (balde.tamanho == 0) baldes.remove();
+                for (Balde doAno : porDiaDoAno) {
+                    if (doAno.remover(pet)) break;
+                }
+                quantidade--;
+                return;
+            }
+        }
+    }
+
+    public synchronized int getQuantidade() {
+        return quantidade;
+    }
+
+    /**
+     * Pets que fazem aniversário entre duas datas, em ordem de aniversário.
+     * @param de Primeiro dia do período
+     * @param ate Último dia do período (no máximo um ano depois de de)
+     * @param especie Espécie exigida, ou null para qualquer uma
+     * @param porte Porte exigido, ou null para qualquer um
+     * @param dono Dono de cada pet na versão atual; pets sem dono (removidos) ficam de fora
+     * @return Alvos da campanha
+     * @throws IllegalArgumentException Se o período for inválido ou maior que um ano
+     */
+    public synchronized List<Alvo> aniversariantes(LocalDate de, LocalDate ate, String especie, String porte,
+                                                   Function<Pets, Cliente> dono) {
+        if (ate.isBefore(de)) throw new IllegalArgumentException("Período inválido: o fim é anterior ao início.");
+        if (!ate.isBefore(de.plusYears(1))) throw new IllegalArgumentException("O período de aniversários deve ser menor que um ano.");
+        int codigoEspecie = codigoEspecie(especie);
+        int indicePorte = indicePorte(porte);
+        List<Alvo> alvos = new ArrayList<>();
+        for (LocalDate dia = de; !dia.isAfter(ate); dia = dia.plusDays(1)) {
+            MonthDay diaMes = MonthDay.from(dia);
+            coletar(porDiaDoAno[diaDoAno(diaMes)], diaMes, dia, codigoEspecie, indicePorte, dono, alvos);
+            if (!dia.isLeapYear() && diaMes.equals(MonthDay.of(2, 28))) {
+                coletar(porDiaDoAno[FEVEREIRO_29], MonthDay.of(2, 29), dia, codigoEspecie, indicePorte, dono, alvos);
+            }
+        }
+        return alvos;
+    }
+
+    /**
+     * Pets com idade entre dois valores (em anos completos), do mais velho para o mais novo.
+     * @param idadeMinima Idade mínima, inclusive
+     * @param idadeMaxima Idade máxima, inclusive
+     * @param hoje Data de referência das idades
+     * @param especie Espécie exigida, ou null para qualquer uma
+     * @param porte Porte exigido, ou null para qualquer um
+     * @param dono Dono de cada pet na versão atual; pets sem dono (removidos) ficam de fora
+     * @return Alvos da campanha
+     * @throws IllegalArgumentException Se a faixa for inválida
+     */
+    public synchronized List<Alvo> faixaEtaria(int idadeMinima, int idadeMaxima, LocalDate hoje, String especie, String porte,
+                                               Function<Pets, Cliente> dono) {
+        if (idadeMinima < 0 || idadeMaxima < idadeMinima) {
+            throw new IllegalArgumentException("Faixa de idade inválida: " + idadeMinima + " a " + idadeMaxima + ".");
+        }
+        int codigoEspecie = codigoEspecie(especie);
+        int indicePorte = indicePorte(porte);
+        // Nascidos depois de hoje - (máxima + 1) anos e até hoje - mínima anos; a idade exata é conferida em cada dia.
+        int de = (int) hoje.minusYears(idadeMaxima + 1L).toEpochDay();
+        int ate = (int) hoje.minusYears(idadeMinima).toEpochDay();
+        List<Alvo> alvos = new ArrayList<>();
+        for (Map.Entry<Integer, Balde> dia : porNascimento.subMap(de, true, ate, true).entrySet()) {
+            int nascimento = dia.getKey();
+            int idade = Pets.idade(LocalDate.ofEpochDay(nascimento), hoje); // A mesma para todo o balde
+            if (idade < idadeMinima || idade > idadeMaxima) continue;
+            Balde balde = dia.getValue();
+            for (int i = 0; i < balde.tamanho; i++) {
+                Pets pet = balde.pets[i];
+                if (!aceita(pet, codigoEspecie, indicePorte)) continue;
+                if (pet.getDiaNascimento() != nascimento) continue; // Data alterada depois de indexada
+                Cliente cliente = dono.apply(pet);
+                if (cliente != null) alvos.add(new Alvo(pet, cliente, null));
+            }
+        }
+        return alvos;
+    }
+
+    /**
+     * Grava os alvos de uma campanha em um arquivo CSV (separado por ";"), um pet por linha.
+     * @param alvos Alvos da campanha
+     * @param arquivo Arquivo de destino (substituído se existir)
+     * @param hoje Data de referência das idades
+     * @return Quantidade de linhas gravadas
+     * @throws IOException Se não for possível gravar
+     */
+    public static int exportar(Iterable<Alvo> alvos, Path arquivo, LocalDate hoje) throws IOException {
+        int linhas = 0;
+        try (BufferedWriter saida = Files.newBufferedWriter(arquivo, StandardCharsets.UTF_8)) {
+            saida.write("cpf;cliente;telefone;pet;especie;porte;nascimento;idade;aniversario\n");
+            for (Alvo alvo : alvos) {
+                Pets pet = alvo.getPet();
+                saida.write(FeedAlteracoes.comando(alvo.getDono().getCpf(), alvo.getDono().getNome(), alvo.getDono().getTelefone(),
+                    pet.getNomePet(), pet.getEspecie(), pet.getPortePet(), pet.getDataNascimento().format(ModoLote.FORMATO_DATA),
+                    pet.getIdade(hoje), alvo.getAniversario() == null ? "" : alvo.getAniversario().format(ModoLote.FORMATO_DATA)));
+                saida.write('\n');
+                linhas++;
+            }
+        }
+        return linhas;
+    }
+
+    private static void coletar(Balde balde, MonthDay diaMes, LocalDate aniversario, int codigoEspecie, int indicePorte,
+                                Function<Pets, Cliente> dono, List<Alvo> alvos) {
+        for (int i = 0; i < balde.tamanho; i++) {
+            Pets pet = balde.pets[i];
+            if (!aceita(pet, codigoEspecie, indicePorte) || !MonthDay.from(pet.getDataNascimento()).equals(diaMes)) continue;
+            Cliente cliente = dono.apply(pet);
+            if (cliente != null) alvos.add(new Alvo(pet, cliente, aniversario));
+        }
+    }
+
+    private static boolean aceita(Pets pet, int codigoEspecie, int indicePorte) {
+        return (codigoEspecie < 0 || pet.getCodigoEspecie() == codigoEspecie)
+            && (indicePorte < 0 || pet.getIndicePorte() == indicePorte);
+    }
+
+    private static int codigoEspecie(String especie) {
+        if (especie == null || especie.isBlank()) return -1;
+        byte codigo = ArmazemPets.codigoEspecie(especie);
+        if (codigo < 0) throw new IllegalArgumentException("Espécie inválida: " + especie + ".");
+        return codigo;
+    }
+
+    private static int indicePorte(String porte) {
+        if (porte == null || porte.isBlank()) return -1;
+        for (int i = 0; i < Pets.PORTES.size(); i++) {
+            if (TabelaGeocodigos.normalizar(Pets.PORTES.get(i)).equals(TabelaGeocodigos.normalizar(porte))) return i;
+        }
+        throw new IllegalArgumentException("Porte inválido: " + porte + ". Use " + String.join(", ", Pets.PORTES) + ".");
+    }
+
+    // Posição do dia no ano bissexto (0 a 365), para que 29/02 tenha o seu balde.
+    private static int diaDoAno(MonthDay diaMes) {
+        return diaMes.atYear(2000).getDayOfYear() - 1;
+    }
+}
@@ -0,0 +1,336 @@
+package aps3;
+
+import java.time.LocalDate;
+import java.util.AbstractCollection;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Versão imutável e consistente dos cadastros da {@link Loja}: clientes, pets, agendamentos e produtos.
+ * <p>
+ * A loja publica uma nova versão a cada alteração, reaproveitando a estrutura da anterior
+ * ({@link VetorPersistente} e {@link MapaPersistente}). Quem lê obtém a versão atual em O(1), sem
+ * bloqueios, e pode percorrê-la pelo tempo que quiser: as alterações seguintes não a modificam.
+ * O instantâneo fixa quais objetos existem, não o estado interno de cada um: o estoque e o preço de
+ * um produto e a situação de um agendamento são lidos como estão agora. Cada um desses campos é
+ * volátil, então a leitura vê um valor inteiro e recente; dois campos lidos em seguida (o estoque
+ * de dois produtos, por exemplo) podem ser de alterações diferentes.
+ * <p>
+ * Além do índice por dia, os agendamentos têm um índice reverso por pet, e o cliente leva aos pets:
+ * as remoções encontram os agendamentos afetados sem percorrer a agenda. Um pet removido continua
+ * ligado ao último dono (lápide), para que o histórico mostre de quem eram os agendamentos.
+ */
+public final class Instantaneo {
+    static final Instantaneo VAZIO = new Instantaneo(0, VetorPersistente.vazio(), MapaPersistente.vazio(), 0,
+        MapaPersistente.vazio(), MapaPersistente.vazio(), VetorPersistente.vazio(), VetorPersistente.vazio(), MapaPersistente.vazio(),
+        MapaPersistente.vazio(), MapaPersistente.vazio(), MapaPersistente.vazio());
+
+    private final long versao;
+
+    // Clientes em ordem de cadastro; removidos deixam uma posição nula até a próxima compactação.
+    private final VetorPersistente<Cliente> clientes;
+    private final MapaPersistente<String, Integer> posicaoCliente; // CPF formatado -> posição em clientes
+    private final int totalClientes;
+
+    private final MapaPersistente<String, List<Pets>> petsPorCpf; // Listas imutáveis; cada cliente tem poucos pets
+    private final MapaPersistente<Pets, Cliente> donos;
+    private final VetorPersistente<Agendamento> agendamentos;
+    private final VetorPersistente<Produto> produtos;
+    private final MapaPersistente<Integer, Produto> produtoPorCodigo;
+    private final MapaPersistente<LocalDate, VetorPersistente<Agendamento>> agendamentosPorData; // Índice por dia
+    private final MapaPersistente<Pets, VetorPersistente<Agendamento>> agendamentosPorPet;     // Índice reverso pet -> agendamentos
+    private final MapaPersistente<Pets, Cliente> exDonos; // Último dono de cada pet removido, para o histórico
+
+    private Instantaneo(long versao, VetorPersistente<Cliente> clientes, MapaPersistente<String, Integer> posicaoCliente,
+                        int totalClientes, MapaPersistente<String, List<Pets>> petsPorCpf, MapaPersistente<Pets, Cliente> donos,
+                        VetorPersistente<Agendamento> agendamentos, VetorPersistente<Produto> produtos,
+                        MapaPersistente<Integer, Produto> produtoPorCodigo,
+                        MapaPersistente<LocalDate, VetorPersistente<Agendamento>> agendamentosPorData,
+                        MapaPersistente<Pets, VetorPersistente<Agendamento>> agendamentosPorPet, MapaPersistente<Pets, Cliente> exDonos) {
+        this.versao = versao;
+        this.clientes = clientes;
+        this.posicaoCliente = posicaoCliente;
+        this.totalClientes = totalClientes;
+        this.petsPorCpf = petsPorCpf;
+        this.donos = donos;
+        this.agendamentos = agendamentos;
+        this.produtos = produtos;
+        this.produtoPorCodigo = produtoPorCodigo;
+        this.agendamentosPorData = agendamentosPorData;
+        this.agendamentosPorPet = agendamentosPorPet;
+        this.exDonos = exDonos;
+    }
+
+    // Consultas
+
+    /**
+     * Número da versão; cresce a cada alteração publicada pela loja.
+     * @return Versão deste instantâneo
+     */
+    public long getVersao() {
+        return versao;
+    }
+
+    /**
+     * Busca um cliente pelo CPF já formatado (ver {@link Cliente#formatarCPF(String)}).
+     * @param cpfFormatado CPF no formato 000.000.000-00
+     * @return Cliente encontrado ou null se não existir nesta versão
+     */
+    public Cliente buscarCliente(String cpfFormatado) {
+        Integer posicao = posicaoCliente.get(cpfFormatado);
+        return posicao == null ? null : clientes.get(posicao);
+    }
+
+    public Cliente buscarDono(Pets pet) {
+        return donos.get(pet);
+    }
+
+    /**
+     * Dono de um pet para relatórios de histórico: o atual ou, se o pet foi removido, o último.
+     * @param pet Pet consultado
+     * @return Dono atual ou anterior, ou null se desconhecido
+     */
+    public Cliente buscarDonoHistorico(Pets pet) {
+        Cliente dono = donos.get(pet);
+        return dono != null ? dono : exDonos.get(pet);
+    }
+
+    // Último dono de um pet removido, ou null se o pet não foi removido.
+    Cliente buscarExDono(Pets pet) {
+        return exDonos.get(pet);
+    }
+
+    public Produto buscarProduto(int codProduto) {
+        return produtoPorCodigo.get(codProduto);
+    }
+
+    /**
+     * Retorna os pets de um cliente nesta versão.
+     * @param cliente Cliente cadastrado
+     * @return Lista imutável de pets (vazia se o cliente não existir nesta versão)
+     */
+    public List<Pets> getPets(Cliente cliente) {
+        List<Pets> pets = petsPorCpf.get(cliente.getCpf());
+        return pets == null ? List.of() : pets;
+    }
+
+    /**
+     * Clientes em ordem de cadastro, sem cópia.
+     * @return Coleção imutável dos clientes desta versão
+     */
+    public Collection<Cliente> getClientes() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Cliente> iterator() {
+                return new Iterator<>() {
+                    private final Iterator<Cliente> posicoes = clientes.iterator();
+                    private Cliente proximo = avancar();
+
+                    private Cliente avancar() {
+                        while (posicoes.hasNext()) {
+                            Cliente cliente = posicoes.next();
+                            if (cliente != null) return cliente;
+                        }
+                        return null;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return proximo != null;
+                    }
+
+                    @Override
+                    public Cliente next() {
+                        if (proximo == null) throw new NoSuchElementException();
+                        Cliente atual = proximo;
+                        proximo = avancar();
+                        return atual;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return totalClientes;
+            }
+        };
+    }
+
+    public List<Agendamento> getAgendamentos() {
+        return comoLista(agendamentos);
+    }
+
+    public List<Produto> getProdutos() {
+        return comoLista(produtos);
+    }
+
+    public int getQuantidadePets() {
+        return donos.tamanho();
+    }
+
+    /**
+     * Agendamentos de um dia pelo índice por data, sem percorrer os demais.
+     * @param data Dia consultado
+     * @return Lista imutável dos agendamentos do dia, na ordem em que entraram nesta versão
+     */
+    public List<Agendamento> getAgendamentosDoDia(LocalDate data) {
+        VetorPersistente<Agendamento> doDia = agendamentosPorData.get(data);
+        return doDia == null ? List.of() : comoLista(doDia);
+    }
+
+    /**
+     * Agendamentos de um pet pelo índice reverso, sem percorrer os demais. Vale também para pets
+     * removidos, cujos agendamentos continuam no histórico.
+     * @param pet Pet consultado
+     * @return Lista imutável dos agendamentos do pet, na ordem em que entraram nesta versão
+     */
+    public List<Agendamento> getAgendamentos(Pets pet) {
+        VetorPersistente<Agendamento> doPet = agendamentosPorPet.get(pet);
+        return doPet == null ? List.of() : comoLista(doPet);
+    }
+
+    // Posições internas dos clientes, que incluem as vazias deixadas pelos removidos até a compactação.
+
+    int getPosicoesClientes() {
+        return clientes.tamanho();
+    }
+    Cliente getClienteEm(int posicao) {
+        return clientes.get(posicao);
+    }
+    int getPosicaoCliente(String cpfFormatado) {
+        Integer posicao = posicaoCliente.get(cpfFormatado);
+        return posicao == null ? -1 : posicao;
+    }
+
+    // Alterações: cada uma devolve a próxima versão e deixa esta intacta.
+
+    Instantaneo comCliente(Cliente cliente) {
+        return new Instantaneo(versao + 1, clientes.com(cliente), posicaoCliente.com(cliente.getCpf(), clientes.tamanho()),
+            totalClientes + 1, petsPorCpf.com(cliente.getCpf(), List.of()), donos, agendamentos, produtos, produtoPorCodigo, agendamentosPorData, agendamentosPorPet, exDonos);
+    }
+
+    Instantaneo semCliente(Cliente cliente) {
+        Integer posicao = posicaoCliente.get(cliente.getCpf());
+        if (posicao == null) return this;
+        MapaPersistente<Pets, Cliente> novosDonos = donos;
+        MapaPersistente<Pets, Cliente> novosExDonos = exDonos;
+        for (Pets pet : getPets(cliente)) {
+            novosDonos = novosDonos.sem(pet);
+            novosExDonos = novosExDonos.com(pet, cliente);
+        }
+        VetorPersistente<Cliente> novosClientes = clientes.alterar(posicao, null);
+        MapaPersistente<String, Integer> novasPosicoes = posicaoCliente.sem(cliente.getCpf());
+        int restantes = totalClientes - 1;
+
+        // Compacta quando mais da metade das posições está vazia, mantendo a ordem de cadastro.
+        if (novosClientes.tamanho() > 32 && restantes < novosClientes.tamanho() / 2) {
+            VetorPersistente<Cliente> compactados = VetorPersistente.vazio();
+            novasPosicoes = MapaPersistente.vazio();
+            for (Cliente restante : novosClientes) {
+                if (restante == null) continue;
+                novasPosicoes = novasPosicoes.com(restante.getCpf(), compactados.tamanho());
+                compactados = compactados.com(restante);
+            }
+            novosClientes = compactados;
+        }
+        return new Instantaneo(versao + 1, novosClientes, novasPosicoes, restantes, petsPorCpf.sem(cliente.getCpf()),
+            novosDonos, agendamentos, produtos, produtoPorCodigo, agendamentosPorData, agendamentosPorPet, novosExDonos);
+    }
+
+    Instantaneo comPet(Cliente dono, Pets pet) {
+        List<Pets> atuais = getPets(dono);
+        Pets[] novos = atuais.toArray(new Pets[atuais.size() + 1]);
+        novos[atuais.size()] = pet;
+        return new Instantaneo(versao + 1, clientes, posicaoCliente, totalClientes, petsPorCpf.com(dono.getCpf(), List.of(novos)),
+            donos.com(pet, dono), agendamentos, produtos, produtoPorCodigo, agendamentosPorData, agendamentosPorPet, exDonos.sem(pet));
+    }
+
+    Instantaneo semPet(Pets pet) {
+        Cliente dono = donos.get(pet);
+        if (dono == null) return this;
+        List<Pets> restantes = getPets(dono).stream().filter(p -> p != pet).toList();
+        return new Instantaneo(versao + 1, clientes, posicaoCliente, totalClientes, petsPorCpf.com(dono.getCpf(), restantes),
+            donos.sem(pet), agendamentos, produtos, produtoPorCodigo, agendamentosPorData, agendamentosPorPet, exDonos.com(pet, dono));
+    }
+
+    Instantaneo comAgendamento(Agendamento agendamento) {
+        return new Instantaneo(versao + 1, clientes, posicaoCliente, totalClientes, petsPorCpf, donos,
+            agendamentos.com(agendamento), produtos, produtoPorCodigo, noDia(agendamento), noPet(agendamento), exDonos);
+    }
+
+    /**
+     * Versão vazia com posições reservadas para clientes e agendamentos que serão carregados depois,
+     * cada um na posição que tinha quando foi salvo. As posições reservadas já contam no total de
+     * clientes, para que a compactação de {@link #semCliente} não desloque as que faltam carregar.
+     * @param clientes Posições de clientes a reservar
+     * @param agendamentos Posições de agendamentos a reservar
+     * @return Versão com as posições reservadas
+     */
+    static Instantaneo comReservas(int clientes, int agendamentos) {
+        return new Instantaneo(1, VetorPersistente.nulos(clientes), MapaPersistente.vazio(), clientes, MapaPersistente.vazio(),
+            MapaPersistente.vazio(), VetorPersistente.nulos(agendamentos), VetorPersistente.vazio(), MapaPersistente.vazio(),
+            MapaPersistente.vazio(), MapaPersistente.vazio(), MapaPersistente.vazio());
+    }
+
+    // Ocupa uma posição reservada por comReservas; o total de clientes já a inclui.
+    Instantaneo comClienteEm(int posicao, Cliente cliente) {
+        return new Instantaneo(versao + 1, clientes.alterar(posicao, cliente), posicaoCliente.com(cliente.getCpf(), posicao),
+            totalClientes, petsPorCpf.com(cliente.getCpf(), List.of()), donos, agendamentos, produtos, produtoPorCodigo, agendamentosPorData, agendamentosPorPet, exDonos);
+    }
+
+    Instantaneo comAgendamentoEm(int posicao, Agendamento agendamento) {
+        return new Instantaneo(versao + 1, clientes, posicaoCliente, totalClientes, petsPorCpf, donos,
+            agendamentos.alterar(posicao, agendamento), produtos, produtoPorCodigo, noDia(agendamento), noPet(agendamento), exDonos);
+    }
+
+    // Registra o último dono de um pet removido lido de um arquivo.
+    Instantaneo comExDono(Pets pet, Cliente exDono) {
+        return new Instantaneo(versao + 1, clientes, posicaoCliente, totalClientes, petsPorCpf, donos, agendamentos, produtos,
+            produtoPorCodigo, agendamentosPorData, agendamentosPorPet, exDonos.com(pet, exDono));
+    }
+
+    // Esquece o último dono de um pet descartado, que não tem mais histórico a mostrar.
+    Instantaneo semExDono(Pets pet) {
+        if (exDonos.get(pet) == null) return this;
+        return new Instantaneo(versao + 1, clientes, posicaoCliente, totalClientes, petsPorCpf, donos, agendamentos, produtos,
+            produtoPorCodigo, agendamentosPorData, agendamentosPorPet, exDonos.sem(pet));
+    }
+
+    Instantaneo comProduto(Produto produto) {
+        return new Instantaneo(versao + 1, clientes, posicaoCliente, totalClientes, petsPorCpf, donos, agendamentos,
+            produtos.com(produto), produtoPorCodigo.com(produto.getCodProduto(), produto), agendamentosPorData, agendamentosPorPet, exDonos);
+    }
+
+    private MapaPersistente<LocalDate, VetorPersistente<Agendamento>> noDia(Agendamento agendamento) {
+        VetorPersistente<Agendamento> doDia = agendamentosPorData.get(agendamento.getData());
+        return agendamentosPorData.com(agendamento.getData(), (doDia == null ? VetorPersistente.<Agendamento>vazio() : doDia).com(agendamento));
+    }
+
+    private MapaPersistente<Pets, VetorPersistente<Agendamento>> noPet(Agendamento agendamento) {
+        VetorPersistente<Agendamento> doPet = agendamentosPorPet.get(agendamento.getPet());
+        return agendamentosPorPet.com(agendamento.getPet(), (doPet == null ? VetorPersistente.<Agendamento>vazio() : doPet).com(agendamento));
+    }
+
+    // Visão de lista imutável sobre um vetor persistente, com acesso por índice em O(log32 n).
+    private static <T> List<T> comoLista(VetorPersistente<T> vetor) {
+        return new AbstractList<>() {
+            @Override
+            public T get(int indice) {
+                return vetor.get(indice);
+            }
+
+            @Override
+            public int size() {
+                return vetor.tamanho();
+            }
+
+            @Override
+            public Iterator<T> iterator() {
+                return vetor.iterator();
+            }
+        };
+    }
+}
@@ -0,0 +1,50 @@
+package aps3;
+
+import java.time.Duration;
+
+/**
+ * Representa um lembrete a ser enviado ao cliente antes de um agendamento.
+ */
+public class Lembrete {
+    private final Agendamento agendamento; // Agendamento lembrado
+    private final String nomeCliente;      // Nome do dono do pet
+    private final String telefone;         // Telefone de contato do cliente
+    private final Duration antecedencia;   // Antecedência do lembrete em relação ao agendamento
+
+    /**
+     * Construtor da classe Lembrete.
+     * @param agendamento Agendamento a ser lembrado
+     * @param cliente Dono do pet
+     * @param antecedencia Antecedência do lembrete
+     */
+    public Lembrete(Agendamento agendamento, Cliente cliente, Duration antecedencia) {
+        this.agendamento = agendamento;
+        this.nomeCliente = cliente.getNome();
+        this.telefone = cliente.getTelefone();
+        this.antecedencia = antecedencia;
+    }
+
+    /**
+     * Monta o texto do lembrete enviado ao cliente.
+     * @return Mensagem formatada
+     */
+    public String getMensagem() {
+        return String.format("Olá %s! Lembrete: %s de %s em %s às %s (faltam %dh).",
+            nomeCliente, agendamento.getServico(), agendamento.getPet().getNomePet(),
+            agendamento.getData(), agendamento.getHora(), antecedencia.toHours());
+    }
+
+    // Getters
+    public Agendamento getAgendamento() {
+        return agendamento;
+    }
+    public String getNomeCliente() {
+        return nomeCliente;
+    }
+    public String getTelefone() {
+        return telefone;
+    }
+    public Duration getAntecedencia() {
+        return antecedencia;
+    }
+}
@@ -0,0 +1,287 @@
+package aps3;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lado líder da replicação: envia o {@link FeedAlteracoes} da loja para réplicas ({@link SeguidorReplicacao})
+ * conectadas por socket em localhost.
+ * <p>
+ * Cada réplica informa o cursor de onde quer continuar e recebe as alterações em lotes, seguidas de
+ * sinais de vida com a última sequência do líder quando não há nada novo. A réplica confirma o que
+ * aplicou, o que dá o atraso de cada uma; o feed retém as alterações ainda não confirmadas por uma
+ * réplica conectada. No modo semissíncrono, {@link Loja#aguardarReplicacao()}
+ * só retorna depois que alguma réplica confirmar as alterações já publicadas; se nenhuma confirmar
+ * dentro do prazo, a replicação passa a assíncrona até uma réplica alcançar o líder de novo.
+ * <p>
+ * Protocolo, uma mensagem por linha com campos separados por tabulação:
+ * <pre>
+ * réplica -> líder: SEGUIR cursor | ACK sequencia
+ * líder -> réplica: A sequencia instante comando | H ultimaSequencia | E mensagem
+ * </pre>
+ */
+public class LiderReplicacao {
+    static final String SEGUIR = "SEGUIR";
+    static final String CONFIRMACAO = "ACK";
+    static final String ALTERACAO = "A";
+    static final String SINAL_VIDA = "H";
+    static final String ERRO = "E";
+
+    private static final int TAMANHO_LOTE = 512;
+    private static final long INTERVALO_SINAL_VIDA = 500; // Milissegundos sem alterações até o próximo sinal de vida
+
+    private final Loja loja;
+    private final FeedAlteracoes feed;
+    private final int porta;
+    private final boolean semiSincrona;
+    private final long esperaConfirmacaoMillis;
+    private final Set<Replica> replicas = ConcurrentHashMap.newKeySet();
+    private ServerSocket servidor;
+
+    private long confirmadaAte;       // Maior sequência confirmada por alguma réplica; protegida pelo monitor
+    private boolean degradada;        // true enquanto a replicação semissíncrona estiver operando como assíncrona
+    private long esperasExpiradas;    // Vezes em que nenhuma réplica confirmou dentro do prazo
+
+    /**
+     * Construtor do líder.
+     * @param loja Loja cujas alterações serão replicadas (não pode ser nula)
+     * @param porta Porta TCP em localhost (0 escolhe uma porta livre)
+     * @param semiSincrona true para que as alterações esperem a confirmação de uma réplica
+     * @param esperaConfirmacaoMillis Prazo de espera por confirmação no modo semissíncrono
+     * @throws IllegalArgumentException Se algum parâmetro for inválido
+     */
+    public LiderReplicacao(Loja loja, int porta, boolean semiSincrona, long esperaConfirmacaoMillis) {
+        if (loja == null) throw new IllegalArgumentException("Loja não pode ser nula.");
+        if (porta < 0 || porta > 65535) throw new IllegalArgumentException("Porta inválida: " + porta);
+        if (esperaConfirmacaoMillis < 0) throw new IllegalArgumentException("Prazo de confirmação não pode ser negativo.");
+        this.loja = loja;
+        this.feed = loja.getFeed();
+        this.porta = porta;
+        this.semiSincrona = semiSincrona;
+        this.esperaConfirmacaoMillis = esperaConfirmacaoMillis;
+    }
+
+    /**
+     * Abre a porta, passa a aceitar réplicas e se registra na loja.
+     * @throws IOException Se a porta não puder ser aberta
+     * @throws IllegalStateException Se o líder já tiver sido iniciado
+     */
+    public synchronized void iniciar() throws IOException {
+        if (servidor != null) throw new IllegalStateException("Replicação já iniciada.");
+        servidor = new ServerSocket();
+        servidor.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), porta));
+        Thread aceitador = new Thread(this::aceitarReplicas, "aceitador-replicacao");
+        aceitador.setDaemon(true);
+        aceitador.start();
+        loja.setReplicacao(this);
+    }
+
+    /**
+     * Fecha a porta e desconecta as réplicas.
+     */
+    public void encerrar() {
+        loja.setReplicacao(null);
+        try {
+            synchronized (this) {
+                if (servidor == null) return;
+                servidor.close();
+            }
+        } catch (IOException ignorada) {
+            // Nada a fazer: o socket já está sendo descartado.
+        }
+        for (Replica replica : replicas) {
+            replica.fechar();
+        }
+        synchronized (this) {
+            notifyAll(); // Libera quem estiver esperando confirmação
+        }
+    }
+
+    public int getPorta() {
+        return servidor.getLocalPort();
+    }
+
+    public boolean isSemiSincrona() {
+        return semiSincrona;
+    }
+
+    /**
+     * Espera até que alguma réplica confirme a sequência informada (só no modo semissíncrono).
+     * @param sequencia Última alteração que precisa estar replicada
+     * @return true se foi confirmada; false se o prazo expirou, não há réplicas ou a replicação está degradada
+     */
+    public synchronized boolean aguardarConfirmacao(long sequencia) {
+        if (!semiSincrona) return false;
+        if (confirmadaAte >= sequencia) return true;
+        if (degradada || replicas.isEmpty()) return false;
+        long limite = System.currentTimeMillis() + esperaConfirmacaoMillis;
+        long restante;
+        try {
+            while (confirmadaAte < sequencia && (restante = limite - System.currentTimeMillis()) > 0 && !servidor.isClosed()) {
+                wait(restante);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (confirmadaAte >= sequencia) return true;
+        degradada = true;
+        esperasExpiradas++;
+        return false;
+    }
+
+    /**
+     * Atraso de cada réplica conectada, em número de alterações ainda não confirmadas.
+     * @return Mapa endereço da réplica -> atraso
+     */
+    public Map<String, Long> getAtrasos() {
+        Map<String, Long> atrasos = new LinkedHashMap<>();
+        long ultima = feed.getUltimaSequencia();
+        for (Replica replica : replicas) {
+            atrasos.put(replica.nome, Math.max(0, ultima - replica.confirmada));
+        }
+        return atrasos;
+    }
+
+    public int getQuantidadeReplicas() {
+        return replicas.size();
+    }
+
+    public synchronized boolean isDegradada() {
+        return degradada;
+    }
+
+    public synchronized long getEsperasExpiradas() {
+        return esperasExpiradas;
+    }
+
+    private synchronized void confirmar(long sequencia) {
+        if (sequencia > confirmadaAte) {
+            confirmadaAte = sequencia;
+            notifyAll();
+        }
+        if (degradada && confirmadaAte >= feed.getUltimaSequencia()) {
+            degradada = false; // Uma réplica alcançou o líder: volta a esperar confirmações
+        }
+    }
+
+    private void aceitarReplicas() {
+        while (!servidor.isClosed()) {
+            try {
+                Socket socket = servidor.accept();
+                socket.setTcpNoDelay(true);
+                Replica replica = new Replica(socket);
+                Thread thread = new Thread(replica::atender, "replicacao-" + replica.nome);
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (!servidor.isClosed()) {
+                    System.err.println("Erro ao aceitar réplica: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Conexão com uma réplica: esta thread envia os lotes e outra lê as confirmações.
+    private final class Replica {
+        private final Socket socket;
+        private final String nome;
+        private volatile long confirmada;
+
+        private Replica(Socket socket) {
+            this.socket = socket;
+            this.nome = socket.getRemoteSocketAddress().toString();
+        }
+
+        private void atender() {
+            try (socket;
+                 BufferedReader entrada = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                 Writer saida = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), 1 << 16)) {
+                String[] pedido = lerMensagem(entrada);
+                if (pedido == null || !pedido[0].equals(SEGUIR) || pedido.length < 2) {
+                    saida.write(ERRO + "\tEsperado: " + SEGUIR + " <cursor>\n");
+                    return;
+                }
+                long cursor = Long.parseLong(pedido[1]);
+                confirmada = cursor;
+                feed.reter(this, cursor);
+                replicas.add(this);
+
+                Thread leitor = new Thread(() -> lerConfirmacoes(entrada), "confirmacoes-" + nome);
+                leitor.setDaemon(true);
+                leitor.start();
+
+                try {
+                    while (!socket.isClosed()) {
+                        List<FeedAlteracoes.Alteracao> lote = feed.aguardar(cursor, TAMANHO_LOTE, INTERVALO_SINAL_VIDA);
+                        for (FeedAlteracoes.Alteracao alteracao : lote) {
+                            saida.write(ALTERACAO + "\t" + alteracao.getSequencia() + "\t" + alteracao.getInstante() + "\t"
+                                + alteracao.getComando() + "\n");
+                        }
+                        if (lote.isEmpty()) {
+                            saida.write(SINAL_VIDA + "\t" + feed.getUltimaSequencia() + "\n");
+                        } else {
+                            cursor = lote.get(lote.size() - 1).getSequencia();
+                        }
+                        saida.flush(); // Bloqueia se a réplica não estiver lendo: o líder não acumula nada por ela
+                    }
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    // Cursor à frente do líder ou anterior às alterações ainda guardadas.
+                    saida.write(ERRO + "\t" + e.getMessage() + "\n");
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                // Réplica desconectada ou pedido inválido: ela pode reconectar a partir do último cursor confirmado.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                replicas.remove(this);
+                feed.soltar(this);
+            }
+        }
+
+        private void lerConfirmacoes(BufferedReader entrada) {
+            try {
+                String[] mensagem;
+                while ((mensagem = lerMensagem(entrada)) != null) {
+                    if (mensagem[0].equals(CONFIRMACAO) && mensagem.length > 1) {
+                        long sequencia = Long.parseLong(mensagem[1]);
+                        confirmada = Math.max(confirmada, sequencia);
+                        feed.reter(this, confirmada); // O que a réplica já aplicou pode sair do feed
+                        confirmar(sequencia);
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                // A conexão será fechada pela thread de envio.
+            } finally {
+                fechar();
+            }
+        }
+
+        private void fechar() {
+            try {
+                socket.close();
+            } catch (IOException ignorada) {
+                // Nada a fazer: o socket já está sendo descartado.
+            }
+        }
+    }
+
+    // Lê uma mensagem de controle (comando e argumento); null no fim da conexão.
+    static String[] lerMensagem(BufferedReader entrada) throws IOException {
+        String linha = entrada.readLine();
+        return linha == null ? null : linha.split("[\t ]", 2);
+    }
+}
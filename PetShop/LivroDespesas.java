@@ -0,0 +1,249 @@
+package aps3;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Livro de despesas do pet shop: cada lançamento guarda categoria, data, valor em centavos e fornecedor.
+ * <p>
+ * Os lançamentos ficam em vetores paralelos (sem um objeto por despesa), e categorias e fornecedores
+ * são guardados uma única vez em dicionários. Os totais são indexados por dia em uma
+ * {@link ArvoreFenwick} geral e em uma por categoria, então "despesas da categoria X entre D1 e D2"
+ * custa O(log d), onde d é o número de dias cobertos, independentemente de quantos milhões de
+ * lançamentos existam. O total geral é mantido a cada lançamento.
+ */
+public class LivroDespesas {
+    public static final String CATEGORIA_PADRAO = "Outros";
+    public static final String FORNECEDOR_PADRAO = "Não informado";
+    private static final int DIAS_INICIAIS = 366;
+
+    // Lançamentos, em ordem de registro.
+    private int[] dias = new int[16];          // Dia desde 1970-01-01
+    private int[] categorias = new int[16];    // Índice em nomesCategorias
+    private int[] fornecedores = new int[16];  // Índice em nomesFornecedores
+    private long[] centavos = new long[16];
+    private int quantidade;
+
+    private final List<String> nomesCategorias = new ArrayList<>();
+    private final Map<String, Integer> indiceCategoria = new HashMap<>();
+    private final List<String> nomesFornecedores = new ArrayList<>();
+    private final Map<String, Integer> indiceFornecedor = new HashMap<>();
+
+    // Índices por dia: posição = dia - diaBase.
+    private int diaBase;
+    private ArvoreFenwick totalPorDia;
+    private final List<ArvoreFenwick> totalPorCategoria = new ArrayList<>();
+    private long[] totalCategoria = new long[4]; // Total de todas as datas, por categoria
+    private long total;
+
+    /**
+     * Despesa registrada no livro.
+     */
+    public static final class Lancamento {
+        private final LocalDate data;
+        private final String categoria;
+        private final String fornecedor;
+        private final Dinheiro valor;
+
+        private Lancamento(LocalDate data, String categoria, String fornecedor, Dinheiro valor) {
+            this.data = data;
+            this.categoria = categoria;
+            this.fornecedor = fornecedor;
+            this.valor = valor;
+        }
+
+        public LocalDate getData() {
+            return data;
+        }
+        public String getCategoria() {
+            return categoria;
+        }
+        public String getFornecedor() {
+            return fornecedor;
+        }
+        public Dinheiro getValor() {
+            return valor;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s | %s | %s | R$ %s", data.format(ModoLote.FORMATO_DATA), categoria, fornecedor, valor);
+        }
+    }
+
+    /**
+     * Registra uma despesa.
+     * @param categoria Categoria da despesa (não pode ser vazia)
+     * @param data Data da despesa (não pode ser futura)
+     * @param valor Valor da despesa (não pode ser negativo)
+     * @param fornecedor Fornecedor (vazio ou nulo vira {@value #FORNECEDOR_PADRAO})
+     * @throws IllegalArgumentException Se algum parâmetro for inválido
+     */
+    public synchronized void registrar(String categoria, LocalDate data, Dinheiro valor, String fornecedor) {
+        if (categoria == null || categoria.isBlank()) throw new IllegalArgumentException("Categoria da despesa inválida.");
+        if (data == null) throw new IllegalArgumentException("Data da despesa não pode ser nula.");
+        if (data.isAfter(LocalDate.now())) throw new IllegalArgumentException("Data futura não permitida.");
+        if (valor == null) throw new IllegalArgumentException("O valor da despesa não pode ser nulo.");
+        if (valor.isNegativo()) throw new IllegalArgumentException("O valor da despesa não pode ser negativo.");
+        long novoTotal = Math.addExact(total, valor.getCentavos());
+        int dia = Math.toIntExact(data.toEpochDay());
+        if (fornecedor == null || fornecedor.isBlank()) fornecedor = FORNECEDOR_PADRAO;
+
+        int posicao = posicaoDia(dia);
+        int categoriaIndice = indiceCategoria(categoria.trim());
+        int fornecedorIndice = indiceFornecedor.computeIfAbsent(fornecedor.trim(), nome -> {
+            nomesFornecedores.add(nome);
+            return nomesFornecedores.size() - 1;
+        });
+
+        if (quantidade == dias.length) {
+            int novoTamanho = quantidade + (quantidade >> 1);
+            dias = Arrays.copyOf(dias, novoTamanho);
+            categorias = Arrays.copyOf(categorias, novoTamanho);
+            fornecedores = Arrays.copyOf(fornecedores, novoTamanho);
+            centavos = Arrays.copyOf(centavos, novoTamanho);
+        }
+        dias[quantidade] = dia;
+        categorias[quantidade] = categoriaIndice;
+        fornecedores[quantidade] = fornecedorIndice;
+        centavos[quantidade] = valor.getCentavos();
+        quantidade++;
+
+        totalPorDia.somar(posicao, valor.getCentavos());
+        totalPorCategoria.get(categoriaIndice).somar(posicao, valor.getCentavos());
+        totalCategoria[categoriaIndice] += valor.getCentavos();
+        total = novoTotal;
+    }
+
+    /**
+     * Total de todas as despesas registradas, em O(1).
+     * @return Soma das despesas
+     */
+    public synchronized Dinheiro getTotal() {
+        return Dinheiro.deCentavos(total);
+    }
+
+    /**
+     * Total das despesas de um período.
+     * @param de Data inicial (inclusiva)
+     * @param ate Data final (inclusiva)
+     * @return Soma das despesas do período
+     */
+    public synchronized Dinheiro total(LocalDate de, LocalDate ate) {
+        return Dinheiro.deCentavos(intervalo(totalPorDia, de, ate));
+    }
+
+    /**
+     * Total das despesas de uma categoria em um período.
+     * @param categoria Categoria consultada
+     * @param de Data inicial (inclusiva)
+     * @param ate Data final (inclusiva)
+     * @return Soma das despesas da categoria no período (zero se a categoria não existir)
+     */
+    public synchronized Dinheiro total(String categoria, LocalDate de, LocalDate ate) {
+        Integer indice = categoria == null ? null : indiceCategoria.get(categoria.trim());
+        if (indice == null) return Dinheiro.ZERO;
+        return Dinheiro.deCentavos(intervalo(totalPorCategoria.get(indice), de, ate));
+    }
+
+    /**
+     * Totais de cada categoria em um período, em O(c log d) para c categorias.
+     * @param de Data inicial (inclusiva)
+     * @param ate Data final (inclusiva)
+     * @return Mapa categoria -> total, em ordem alfabética, só com categorias que tiveram despesas no período
+     */
+    public synchronized Map<String, Dinheiro> totaisPorCategoria(LocalDate de, LocalDate ate) {
+        Map<String, Dinheiro> totais = new TreeMap<>();
+        for (int i = 0; i < nomesCategorias.size(); i++) {
+            long soma = intervalo(totalPorCategoria.get(i), de, ate);
+            if (soma != 0) totais.put(nomesCategorias.get(i), Dinheiro.deCentavos(soma));
+        }
+        return totais;
+    }
+
+    /**
+     * Totais de cada categoria considerando todas as datas, em O(c).
+     * @return Mapa categoria -> total, em ordem alfabética
+     */
+    public synchronized Map<String, Dinheiro> totaisPorCategoria() {
+        Map<String, Dinheiro> totais = new TreeMap<>();
+        for (int i = 0; i < nomesCategorias.size(); i++) {
+            totais.put(nomesCategorias.get(i), Dinheiro.deCentavos(totalCategoria[i]));
+        }
+        return totais;
+    }
+
+    public synchronized int getQuantidade() {
+        return quantidade;
+    }
+
+    /**
+     * Retorna um lançamento pela ordem de registro.
+     * @param indice Posição do lançamento (0 é o primeiro registrado)
+     * @return Lançamento correspondente
+     * @throws IndexOutOfBoundsException Se a posição não existir
+     */
+    public synchronized Lancamento getLancamento(int indice) {
+        if (indice < 0 || indice >= quantidade) throw new IndexOutOfBoundsException("Lançamento inexistente: " + indice);
+        return new Lancamento(LocalDate.ofEpochDay(dias[indice]), nomesCategorias.get(categorias[indice]),
+            nomesFornecedores.get(fornecedores[indice]), Dinheiro.deCentavos(centavos[indice]));
+    }
+
+    public synchronized List<String> getCategorias() {
+        return List.copyOf(nomesCategorias);
+    }
+
+    // Índices
+
+    private int indiceCategoria(String categoria) {
+        Integer indice = indiceCategoria.get(categoria);
+        if (indice != null) return indice;
+        int novo = nomesCategorias.size();
+        nomesCategorias.add(categoria);
+        indiceCategoria.put(categoria, novo);
+        totalPorCategoria.add(new ArvoreFenwick(totalPorDia.tamanho()));
+        if (novo == totalCategoria.length) totalCategoria = Arrays.copyOf(totalCategoria, novo * 2);
+        return novo;
+    }
+
+    // Converte o dia em posição nas árvores, ampliando a janela de dias quando necessário.
+    private int posicaoDia(int dia) {
+        if (totalPorDia == null) {
+            diaBase = dia - DIAS_INICIAIS / 2;
+            totalPorDia = new ArvoreFenwick(DIAS_INICIAIS);
+        }
+        long posicao = (long) dia - diaBase;
+        int tamanho = totalPorDia.tamanho();
+        if (posicao >= 0 && posicao < tamanho) return (int) posicao;
+
+        // Dobra a janela na direção do dia novo (ou mais, se ele estiver muito longe).
+        int deslocamento = 0;
+        long novoTamanho;
+        if (posicao < 0) {
+            deslocamento = (int) Math.max(tamanho, -posicao + DIAS_INICIAIS / 2);
+            novoTamanho = (long) tamanho + deslocamento;
+        } else {
+            novoTamanho = Math.max(2L * tamanho, posicao + DIAS_INICIAIS / 2);
+        }
+        if (novoTamanho > Integer.MAX_VALUE - 1) throw new IllegalArgumentException("Data da despesa fora do intervalo suportado.");
+        totalPorDia.redimensionar((int) novoTamanho, deslocamento);
+        for (ArvoreFenwick arvore : totalPorCategoria) {
+            arvore.redimensionar((int) novoTamanho, deslocamento);
+        }
+        diaBase -= deslocamento;
+        return (int) (dia - (long) diaBase);
+    }
+
+    private long intervalo(ArvoreFenwick arvore, LocalDate de, LocalDate ate) {
+        if (arvore == null) return 0;
+        long inicio = Math.max(de.toEpochDay() - diaBase, 0);
+        long fim = Math.min(ate.toEpochDay() - diaBase, arvore.tamanho() - 1L);
+        if (fim < inicio) return 0;
+        return arvore.intervalo((int) inicio, (int) fim);
+    }
+}
@@ -0,0 +1,139 @@
+package aps3;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Remoções recentes de clientes e pets, que ainda podem ser desfeitas.
+ * <p>
+ * A remoção é lógica: a loja tira o cliente ou o pet dos cadastros, mas guarda aqui o que é
+ * preciso para devolvê-lo (pets, conta de fidelidade e agendamentos cancelados em cascata), e o
+ * histórico de saúde só é apagado quando a remoção sai da lixeira. Cabem {@link #CAPACIDADE_PADRAO}
+ * remoções; as mais antigas saem primeiro. A lixeira vale para a sessão: não é gravada com os dados.
+ */
+public class Lixeira {
+    public static final int CAPACIDADE_PADRAO = 1000;
+
+    /**
+     * O que foi removido de uma vez: um cliente com todos os pets, ou um único pet.
+     */
+    public static final class Remocao {
+        private final Cliente dono;
+        private final boolean cliente;              // true se o cliente inteiro foi removido
+        private final List<Pets> pets;
+        private final List<Agendamento> cancelados; // Agendamentos futuros cancelados pela remoção
+        private final long[] contaFidelidade;      // Conta do cliente removido, ou null
+
+        Remocao(Cliente dono, boolean cliente, List<Pets> pets, List<Agendamento> cancelados, long[] contaFidelidade) {
+            this.dono = dono;
+            this.cliente = cliente;
+            this.pets = List.copyOf(pets);
+            this.cancelados = List.copyOf(cancelados);
+            this.contaFidelidade = contaFidelidade;
+        }
+
+        public Cliente getDono() {
+            return dono;
+        }
+        public boolean isCliente() {
+            return cliente;
+        }
+        public List<Pets> getPets() {
+            return pets;
+        }
+        public List<Agendamento> getCancelados() {
+            return cancelados;
+        }
+        long[] getContaFidelidade() {
+            return contaFidelidade;
+        }
+
+        // Chave usada para desfazer: o CPF do cliente, ou CPF e nome do pet.
+        private String chave() {
+            return cliente ? Lixeira.chave(dono.getCpf(), null) : Lixeira.chave(dono.getCpf(), pets.get(0).getNomePet());
+        }
+
+        @Override
+        public String toString() {
+            String alvo = cliente ? "Cliente " + dono.getNome() + " (" + dono.getCpf() + ") com " + pets.size() + " pet(s)"
+                : "Pet " + pets.get(0).getNomePet() + " de " + dono.getNome() + " (" + dono.getCpf() + ")";
+            return cancelados.isEmpty() ? alvo : alvo + ", " + cancelados.size() + " agendamento(s) cancelado(s)";
+        }
+    }
+
+    private final int capacidade;
+    private final LinkedHashMap<String, Remocao> remocoes = new LinkedHashMap<>(); // Da mais antiga para a mais recente
+
+    public Lixeira() {
+        this(CAPACIDADE_PADRAO);
+    }
+
+    /**
+     * Cria uma lixeira com capacidade definida.
+     * @param capacidade Quantidade de remoções guardadas
+     * @throws IllegalArgumentException Se a capacidade não for positiva
+     */
+    public Lixeira(int capacidade) {
+        if (capacidade <= 0) throw new IllegalArgumentException("Capacidade da lixeira deve ser positiva.");
+        this.capacidade = capacidade;
+    }
+
+    /**
+     * Guarda uma remoção. Uma remoção anterior com a mesma chave (o CPF cadastrado de novo e
+     * removido outra vez) e as que passarem da capacidade são descartadas.
+     * @param remocao Remoção feita
+     * @return Remoções descartadas, cujo histórico de saúde pode ser apagado
+     */
+    synchronized List<Remocao> guardar(Remocao remocao) {
+        List<Remocao> descartadas = new ArrayList<>(1);
+        Remocao anterior = remocoes.remove(remocao.chave());
+        if (anterior != null) descartadas.add(anterior);
+        remocoes.put(remocao.chave(), remocao);
+        for (Iterator<Remocao> antigas = remocoes.values().iterator(); remocoes.size() > capacidade; ) {
+            descartadas.add(antigas.next());
+            antigas.remove();
+        }
+        return descartadas;
+    }
+
+    /**
+     * Busca uma remoção sem retirá-la da lixeira.
+     * @param cpf CPF formatado do cliente (ou do dono do pet)
+     * @param nomePet Nome do pet, ou null para a remoção do cliente
+     * @return Remoção encontrada, ou null se não estiver na lixeira
+     */
+    synchronized Remocao buscar(String cpf, String nomePet) {
+        return remocoes.get(chave(cpf, nomePet));
+    }
+
+    /**
+     * Retira uma remoção para desfazê-la.
+     * @param cpf CPF formatado do cliente (ou do dono do pet)
+     * @param nomePet Nome do pet, ou null para a remoção do cliente
+     * @return Remoção retirada, ou null se não estiver na lixeira
+     */
+    synchronized Remocao retirar(String cpf, String nomePet) {
+        return remocoes.remove(chave(cpf, nomePet));
+    }
+
+    /**
+     * Remoções que ainda podem ser desfeitas, da mais recente para a mais antiga.
+     * @return Cópia da lista de remoções
+     */
+    public synchronized List<Remocao> getRemocoes() {
+        List<Remocao> lista = new ArrayList<>(remocoes.values());
+        Collections.reverse(lista);
+        return lista;
+    }
+
+    public synchronized int getQuantidade() {
+        return remocoes.size();
+    }
+
+    private static String chave(String cpf, String nomePet) {
+        return nomePet == null ? cpf : cpf + "/" + nomePet.trim().toLowerCase(); // Nomes de pet valem sem distinção de caixa
+    }
+}
@@ -0,0 +1,1238 @@
+package aps3;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Estado e regras de negócio do pet shop: clientes, pets, agendamentos, produtos e financeiro.
+ * Não faz entrada nem saída de dados, o que permite usá-la tanto pelo menu interativo
+ * quanto pelo modo em lote ou por outras interfaces.
+ * <p>
+ * É segura para uso por várias threads. As alterações são serializadas pelo monitor da loja e
+ * cada uma publica um novo {@link Instantaneo} dos cadastros; buscas e listagens leem o
+ * instantâneo atual sem bloquear, de modo que relatórios longos não atrasam os atendimentos
+ * nem enxergam um cadastro pela metade.
+ * <p>
+ * Cada alteração também é publicada no {@link FeedAlteracoes} como um comando do modo em lote,
+ * na mesma ordem em que foi aplicada, para que sistemas externos acompanhem a loja.
+ */
+public class Loja {
+    // Quantidade padrão de tosadores atendendo simultaneamente em cada horário.
+    public static final int CAPACIDADE_POR_HORARIO = 3;
+    // Prazo padrão de entrega dos fornecedores, usado nos pontos de pedido.
+    public static final int PRAZO_ENTREGA_DIAS = 5;
+
+    // Versão atual dos cadastros; substituída (nunca alterada) a cada operação de escrita.
+    private volatile Instantaneo atual = Instantaneo.VAZIO;
+
+    private final Financeiro financeiro = new Financeiro(Dinheiro.ZERO, 0, "Indefinido", LocalDate.now());
+    private final PrevisorFalta previsorFalta = new PrevisorFalta();
+    private final OtimizadorOverbooking overbooking = new OtimizadorOverbooking(CAPACIDADE_POR_HORARIO, 1.5, 1.0);
+    private final RegistroSaude saude = new RegistroSaude();
+    private final PrevisaoEstoque previsaoEstoque = new PrevisaoEstoque(PRAZO_ENTREGA_DIAS);
+    private final MotorPrecos motorPrecos;
+    private final Checkout checkout;
+    private final DespachanteLembretes lembretes;
+    private final FeedAlteracoes feed = new FeedAlteracoes();
+    private final FilaEspera filaEspera = new FilaEspera(CAPACIDADE_POR_HORARIO); // Clientes sem agendamento; só local
+    private final DetectorDuplicados duplicados = new DetectorDuplicados();       // Índice de cadastros parecidos
+    private final ProgramaFidelidade fidelidade = new ProgramaFidelidade();       // Pontos e níveis por CPF
+    private final IndiceCampanhas campanhas = new IndiceCampanhas();              // Pets por aniversário e nascimento
+    private final Lixeira lixeira = new Lixeira();                                // Remoções que ainda podem ser desfeitas
+    private final FechamentoCaixa caixa = new FechamentoCaixa();                  // Movimentos do dia e resumos dos dias fechados
+    private final ArmazemPets armazemPets = new ArmazemPets();                    // Dados compactos dos pets desta loja
+    // Arquivo de onde os segmentos de clientes ainda não carregados são lidos sob demanda, ou null.
+    private volatile ArquivoLoja arquivo;
+    // Clientes carregados do arquivo que ainda não entraram no índice de duplicados (indexados em lote).
+    private final List<Cliente> semIndice = new ArrayList<>();
+
+    private volatile LiderReplicacao replicacao; // Líder de replicação em execução, ou null
+    private volatile Thread aplicadorReplica;    // Única thread que pode alterar uma réplica, ou null se a loja não for réplica
+    private volatile CopiaSeguranca.Gravacao copia; // Cópia completa em andamento, ou null
+
+    /**
+     * Construtor da loja.
+     * @param motorPrecos Motor de promoções usado para cotar os serviços (não pode ser nulo)
+     * @param lembretes Despachante dos lembretes de agendamento (não pode ser nulo)
+     * @throws IllegalArgumentException Se algum parâmetro for nulo
+     */
+    public Loja(MotorPrecos motorPrecos, DespachanteLembretes lembretes) {
+        if (motorPrecos == null) throw new IllegalArgumentException("Motor de preços não pode ser nulo.");
+        if (lembretes == null) throw new IllegalArgumentException("Despachante de lembretes não pode ser nulo.");
+        this.motorPrecos = motorPrecos;
+        this.lembretes = lembretes;
+        this.checkout = new Checkout(financeiro, motorPrecos, previsaoEstoque);
+    }
+
+    /**
+     * Retorna a versão atual dos cadastros em O(1), sem bloquear.
+     * @return Instantâneo imutável de clientes, pets, agendamentos e produtos
+     */
+    public Instantaneo instantaneo() {
+        return completo();
+    }
+
+    // Clientes e pets
+
+    /**
+     * Busca um cliente pelo CPF, com ou sem pontuação.
+     * @param cpf CPF do cliente
+     * @return Cliente encontrado ou null se não existir
+     */
+    public Cliente buscarCliente(String cpf) {
+        String cpfFormatado = Cliente.formatarCPF(cpf);
+        carregarSegmento(cpfFormatado);
+        return atual.buscarCliente(cpfFormatado);
+    }
+
+    /**
+     * Cadastra um novo cliente.
+     * @param nome Nome completo
+     * @param cpf CPF com 11 dígitos
+     * @param telefone Telefone com DDD
+     * @param endereco Endereço completo
+     * @return Cliente cadastrado
+     * @throws IllegalArgumentException Se algum dado for inválido ou o CPF já estiver cadastrado
+     */
+    public synchronized Cliente cadastrarCliente(String nome, String cpf, String telefone, String endereco) {
+        verificarEscrita();
+        Cliente cliente = new Cliente(nome, cpf, telefone, endereco);
+        carregarSegmento(cliente.getCpf());
+        if (atual.buscarCliente(cliente.getCpf()) != null) {
+            throw new IllegalArgumentException("Cliente com CPF " + cliente.getCpf() + " já cadastrado.");
+        }
+        atual = atual.comCliente(cliente);
+        duplicados.indexar(cliente);
+        feed.publicar(FeedAlteracoes.comando("cliente", cliente.getNome(), cliente.getCpf(), cliente.getTelefone(), cliente.getEndereco()));
+        return cliente;
+    }
+
+    /**
+     * Cadastra um pet para um cliente.
+     * @param cliente Dono do pet (deve estar cadastrado)
+     * @param nomePet Nome do pet
+     * @param especie Espécie (Cachorro ou Gato)
+     * @param peso Peso em kg
+     * @param nascimento Data de nascimento
+     * @return Pet cadastrado
+     * @throws IllegalArgumentException Se algum dado for inválido ou o cliente já tiver um pet com o mesmo nome
+     */
+    public Pets cadastrarPet(Cliente cliente, String nomePet, String especie, float peso, LocalDate nascimento) {
+        return cadastrarPet(cliente, nomePet, especie, peso, nascimento, LocalDate.now());
+    }
+
+    /**
+     * Cadastra um pet com a data da primeira pesagem informada; usado ao reaplicar o feed, que grava
+     * a data em que o líder registrou o peso.
+     * @param dataPeso Data da primeira medição do histórico de peso
+     */
+    synchronized Pets cadastrarPet(Cliente cliente, String nomePet, String especie, float peso, LocalDate nascimento,
+                                   LocalDate dataPeso) {
+        verificarEscrita();
+        if (cliente == null || atual.buscarCliente(cliente.getCpf()) != cliente) {
+            throw new IllegalArgumentException("Cliente não cadastrado.");
+        }
+        Pets homonimo = petComNome(cliente, nomePet);
+        if (homonimo != null) {
+            throw new IllegalArgumentException("O cliente já tem um pet chamado " + homonimo.getNomePet() + ".");
+        }
+        Pets pet = new Pets(armazemPets, nomePet, especie, peso, nascimento);
+        cliente.adicionarPet(pet);
+        saude.registrarPeso(pet, dataPeso, peso); // Primeira medição do histórico de peso
+        atual = atual.comPet(cliente, pet);
+        campanhas.indexar(pet);
+        feed.publicar(FeedAlteracoes.comando("pet", cliente.getCpf(), pet.getNomePet(), pet.getEspecie(), peso,
+            nascimento.format(ModoLote.FORMATO_DATA), dataPeso.format(ModoLote.FORMATO_DATA)));
+        return pet;
+    }
+
+    /**
+     * Busca o primeiro pet com o nome informado, ignorando maiúsculas e minúsculas.
+     * @param nomePet Nome do pet
+     * @return Pet encontrado
+     * @throws NoSuchElementException Se nenhum pet tiver esse nome
+     */
+    public Pets buscarPet(String nomePet) {
+        Instantaneo instantaneo = completo();
+        for (Cliente cliente : instantaneo.getClientes()) {
+            for (Pets pet : instantaneo.getPets(cliente)) {
+                if (pet.getNomePet().equalsIgnoreCase(nomePet)) {
+                    return pet;
+                }
+            }
+        }
+        throw new NoSuchElementException("🚫 Pet não encontrado!");
+    }
+
+    /**
+     * Busca um pet pelo CPF do dono e pelo nome, sem percorrer os demais clientes.
+     * @param cpf CPF do dono
+     * @param nomePet Nome do pet
+     * @return Pet encontrado
+     * @throws NoSuchElementException Se o cliente ou o pet não existirem
+     */
+    public Pets buscarPet(String cpf, String nomePet) {
+        String cpfFormatado = Cliente.formatarCPF(cpf);
+        carregarSegmento(cpfFormatado);
+        Instantaneo instantaneo = atual;
+        Cliente cliente = instantaneo.buscarCliente(cpfFormatado);
+        if (cliente == null) throw new NoSuchElementException("🚫 Cliente não encontrado!");
+        for (Pets pet : instantaneo.getPets(cliente)) {
+            if (pet.getNomePet().equalsIgnoreCase(nomePet)) {
+                return pet;
+            }
+        }
+        throw new NoSuchElementException("🚫 Pet não encontrado!");
+    }
+
+    /**
+     * Retorna o cliente dono de um pet.
+     * @param pet Pet cadastrado
+     * @return Dono do pet
+     * @throws NoSuchElementException Se o pet não estiver cadastrado
+     */
+    public Cliente buscarDono(Pets pet) {
+        Cliente dono = atual.buscarDono(pet);
+        if (dono == null) throw new NoSuchElementException("🚫 Dono do pet não encontrado!");
+        return dono;
+    }
+
+    /**
+     * O que acontece com os agendamentos futuros de um pet ou cliente removido. Os passados, os já
+     * registrados e os cancelados ficam sempre no histórico, ligados ao último dono.
+     */
+    public enum PoliticaRemocao {
+        BLOQUEAR,         // Recusa a remoção se houver agendamentos futuros pendentes
+        CANCELAR_FUTUROS, // Cancela os agendamentos futuros pendentes, devolvendo as vagas e estornando os valores
+        MANTER_HISTORICO  // Mantém os agendamentos como estão, sem lembretes
+    }
+
+    /**
+     * Remove um pet do cadastro e cancela os lembretes pendentes e as senhas da fila de espera dele,
+     * mantendo os agendamentos no histórico.
+     * @param pet Pet a ser removido
+     * @return Cliente que era dono do pet
+     * @throws NoSuchElementException Se o pet não estiver cadastrado
+     */
+    public Cliente removerPet(Pets pet) {
+        return removerPet(pet, PoliticaRemocao.MANTER_HISTORICO, LocalDateTime.now());
+    }
+
+    /**
+     * Remove um pet do cadastro aplicando uma política aos agendamentos futuros; as senhas dele na
+     * fila de espera são canceladas. A remoção vai para a {@link Lixeira} e pode ser desfeita com
+     * {@link #desfazerRemocao}.
+     * @param pet Pet a ser removido
+     * @param politica Política para os agendamentos futuros
+     * @param referencia Instante a partir do qual um agendamento é futuro (o atual, ou o do comando replicado)
+     * @return Cliente que era dono do pet
+     * @throws NoSuchElementException Se o pet não estiver cadastrado
+     * @throws IllegalStateException Se a política for BLOQUEAR e houver agendamentos futuros
+     */
+    public synchronized Cliente removerPet(Pets pet, PoliticaRemocao politica, LocalDateTime referencia) {
+        verificarEscrita();
+        Cliente dono = buscarDono(pet);
+        LocalDateTime inicio = referencia.truncatedTo(ChronoUnit.MINUTES);
+        List<Agendamento> futuros = agendamentosFuturos(List.of(pet), inicio, politica);
+        preservar(dono);
+        List<Agendamento> cancelados = cancelarEmCascata(futuros, dono, politica, inicio.toLocalDate());
+        dono.removerPet(pet);
+        atual = atual.semPet(pet);
+        lembretes.cancelarPet(pet);
+        campanhas.remover(pet);
+        filaEspera.cancelarPet(pet);
+        descartar(lixeira.guardar(new Lixeira.Remocao(dono, false, List.of(pet), cancelados, null)));
+        feed.publicar(comandoRemocao(FeedAlteracoes.comando("remover-pet", dono.getCpf(), pet.getNomePet()), politica, inicio));
+        return dono;
+    }
+
+    /**
+     * Remove um cliente e todos os seus pets, cancelando os lembretes pendentes e as senhas da fila
+     * de espera e mantendo os agendamentos no histórico.
+     * @param cliente Cliente a ser removido
+     * @return true se o cliente estava cadastrado
+     */
+    public boolean removerCliente(Cliente cliente) {
+        return removerCliente(cliente, PoliticaRemocao.MANTER_HISTORICO, LocalDateTime.now());
+    }
+
+    /**
+     * Remove um cliente e todos os seus pets aplicando uma política aos agendamentos futuros e
+     * cancelando as senhas dos pets na fila de espera. O trabalho é proporcional aos pets e
+     * agendamentos do cliente, pelos índices reversos (e ao tamanho da fila). A remoção
+     * vai para a {@link Lixeira} e pode ser desfeita com {@link #desfazerRemocao}.
+     * @param cliente Cliente a ser removido
+     * @param politica Política para os agendamentos futuros
+     * @param referencia Instante a partir do qual um agendamento é futuro (o atual, ou o do comando replicado)
+     * @return true se o cliente estava cadastrado
+     * @throws IllegalStateException Se a política for BLOQUEAR e houver agendamentos futuros
+     */
+    public synchronized boolean removerCliente(Cliente cliente, PoliticaRemocao politica, LocalDateTime referencia) {
+        verificarEscrita();
+        if (cliente == null || atual.buscarCliente(cliente.getCpf()) != cliente) return false;
+        List<Pets> pets = atual.getPets(cliente);
+        LocalDateTime inicio = referencia.truncatedTo(ChronoUnit.MINUTES);
+        List<Agendamento> futuros = agendamentosFuturos(pets, inicio, politica);
+        preservar(cliente);
+        List<Agendamento> cancelados = cancelarEmCascata(futuros, cliente, politica, inicio.toLocalDate());
+        for (Pets pet : pets) {
+            lembretes.cancelarPet(pet);
+            campanhas.remover(pet);
+            filaEspera.cancelarPet(pet);
+        }
+        atual = atual.semCliente(cliente);
+        duplicados.remover(cliente);
+        long[] conta = fidelidade.exportar(cliente.getCpf());
+        fidelidade.remover(cliente.getCpf());
+        descartar(lixeira.guardar(new Lixeira.Remocao(cliente, true, pets, cancelados, conta)));
+        feed.publicar(comandoRemocao(FeedAlteracoes.comando("remover-cliente", cliente.getCpf()), politica, inicio));
+        return true;
+    }
+
+    /**
+     * Desfaz uma remoção que ainda está na lixeira: o cliente (ou o pet) volta com os pets, o
+     * histórico de saúde, a conta de fidelidade e os lembretes dos agendamentos pendentes. Os
+     * agendamentos cancelados pela remoção voltam, com os pontos de fidelidade, se o horário ainda tiver vaga.
+     * As senhas da fila de espera canceladas pela remoção não voltam: a fila atende quem está na loja,
+     * e uma senha antiga passaria à frente de quem chegou depois; o cliente pega uma senha nova.
+     * @param cpf CPF do cliente removido, ou do dono do pet removido
+     * @param nomePet Nome do pet removido, ou null para desfazer a remoção do cliente
+     * @return Agendamentos cancelados pela remoção que não puderam voltar (horário lotado)
+     * @throws NoSuchElementException Se a remoção não estiver na lixeira
+     * @throws IllegalStateException Se o CPF já foi cadastrado de novo, o dono do pet foi removido ou já tem um pet com o mesmo nome
+     */
+    public synchronized List<Agendamento> desfazerRemocao(String cpf, String nomePet) {
+        verificarEscrita();
+        String cpfFormatado = Cliente.formatarCPF(cpf);
+        carregarSegmento(cpfFormatado);
+        Lixeira.Remocao remocao = lixeira.buscar(cpfFormatado, nomePet);
+        if (remocao == null) throw new NoSuchElementException("Remoção não encontrada na lixeira.");
+        Cliente dono = remocao.getDono();
+        if (remocao.isCliente()) {
+            if (atual.buscarCliente(cpfFormatado) != null) {
+                throw new IllegalStateException("O CPF " + cpfFormatado + " já foi cadastrado de novo; a remoção não pode ser desfeita.");
+            }
+        } else {
+            if (atual.buscarCliente(cpfFormatado) != dono) {
+                throw new IllegalStateException("O dono do pet não está cadastrado; desfaça antes a remoção do cliente.");
+            }
+            Pets homonimo = petComNome(dono, nomePet);
+            if (homonimo != null) {
+                throw new IllegalStateException("O cliente já tem outro pet chamado " + homonimo.getNomePet() + ".");
+            }
+        }
+        lixeira.retirar(cpfFormatado, nomePet);
+
+        Instantaneo proximo = atual;
+        if (remocao.isCliente()) {
+            proximo = proximo.comCliente(dono);
+            duplicados.indexar(dono);
+            if (remocao.getContaFidelidade() != null) fidelidade.restaurar(dono.getCpf(), remocao.getContaFidelidade());
+        } else {
+            preservar(dono);
+            dono.adicionarPet(remocao.getPets().get(0));
+        }
+        for (Pets pet : remocao.getPets()) {
+            proximo = proximo.comPet(dono, pet);
+            campanhas.indexar(pet);
+        }
+        atual = proximo;
+
+        // Reativa os cancelados que ainda cabem no horário e agenda os lembretes de todos os pendentes.
+        List<Agendamento> naoReativados = new ArrayList<>();
+        LocalDate hoje = LocalDate.now();
+        for (Agendamento agendamento : remocao.getCancelados()) {
+            double riscoFalta = previsorFalta.probabilidadeFalta(agendamento.getData(), agendamento.getHora(),
+                agendamento.getServico(), dono.getCpf());
+            if (!overbooking.reservar(agendamento.getData(), agendamento.getHora(),
+                    Servico.tempoEmMinutos(agendamento.getServico()), riscoFalta)) {
+                naoReativados.add(agendamento);
+                continue;
+            }
+            CopiaSeguranca.Gravacao gravacao = copia;
+            if (gravacao != null) gravacao.preservar(agendamento);
+            agendamento.reativar();
+            agendamento.setRiscoReserva(riscoFalta);
+            fidelidade.creditar(dono.getCpf(), agendamento.getValor(), hoje); // Devolve o que o cancelamento estornou
+            financeiro.setServicoFeitos(financeiro.getServicoFeitos() + 1);
+            financeiro.setRecebimento(financeiro.getRecebimento().somar(agendamento.getValor()));
+            caixa.registrar(FechamentoCaixa.Movimento.AGENDAMENTO, agendamento.getValor().getCentavos(), 1,
+                (int) agendamento.getData().toEpochDay(), null);
+        }
+        for (Pets pet : remocao.getPets()) {
+            for (Agendamento agendamento : atual.getAgendamentos(pet)) {
+                if (agendamento.isPendente()) lembretes.agendarLembretes(agendamento, dono);
+            }
+        }
+        feed.publicar(nomePet == null ? FeedAlteracoes.comando("desfazer-remocao", dono.getCpf())
+            : FeedAlteracoes.comando("desfazer-remocao", dono.getCpf(), nomePet));
+        return naoReativados;
+    }
+
+    /**
+     * Remoções que ainda podem ser desfeitas.
+     * @return Lixeira da loja
+     */
+    public Lixeira getLixeira() {
+        return lixeira;
+    }
+
+    // Pet do cliente com o nome informado, sem diferenciar maiúsculas e minúsculas, ou null. O feed, a lixeira e o modo
+    // em lote identificam um pet pelo CPF do dono e pelo nome, então dois pets do mesmo cliente não podem ter o mesmo nome.
+    private Pets petComNome(Cliente dono, String nomePet) {
+        for (Pets pet : atual.getPets(dono)) {
+            if (pet.getNomePet().equalsIgnoreCase(nomePet)) return pet;
+        }
+        return null;
+    }
+
+    // Agendamentos pendentes dos pets a partir do instante, pelo índice reverso; recusa a remoção se a política for BLOQUEAR.
+    private List<Agendamento> agendamentosFuturos(List<Pets> pets, LocalDateTime inicio, PoliticaRemocao politica) {
+        List<Agendamento> futuros = new ArrayList<>();
+        for (Pets pet : pets) {
+            for (Agendamento agendamento : atual.getAgendamentos(pet)) {
+                if (agendamento.isPendente() && !LocalDateTime.of(agendamento.getData(), agendamento.getHora()).isBefore(inicio)) {
+                    futuros.add(agendamento);
+                }
+            }
+        }
+        if (politica == PoliticaRemocao.BLOQUEAR && !futuros.isEmpty()) {
+            throw new IllegalStateException("Há " + futuros.size() + " agendamento(s) futuro(s); cancele-os ou escolha outra política de remoção.");
+        }
+        return futuros;
+    }
+
+    // Os pontos são estornados antes de a conta de fidelidade ir para a lixeira, então voltam só com os agendamentos reativados.
+    private List<Agendamento> cancelarEmCascata(List<Agendamento> futuros, Cliente dono, PoliticaRemocao politica, LocalDate hoje) {
+        if (politica != PoliticaRemocao.CANCELAR_FUTUROS) return List.of();
+        for (Agendamento agendamento : futuros) {
+            cancelarPendente(agendamento, dono, hoje);
+        }
+        return futuros;
+    }
+
+    // O comando da política padrão continua com o formato anterior; o instante fixa quais agendamentos eram futuros.
+    private static String comandoRemocao(String comando, PoliticaRemocao politica, LocalDateTime inicio) {
+        if (politica == PoliticaRemocao.MANTER_HISTORICO) return comando;
+        return comando + ";" + FeedAlteracoes.comando(politica, inicio.format(ModoLote.FORMATO_DATA_HORA));
+    }
+
+    // Apaga o histórico de saúde dos pets das remoções que saíram da lixeira. Os que não têm agendamentos no histórico
+    // saem da lápide e devolvem a posição ao armazenamento; durante uma cópia completa, que ainda pode lê-los, ficam.
+    // Quem ainda segurar a visão de um pet liberado (uma versão antiga, um resultado de consulta) recebe um erro ao lê-la.
+    private void descartar(List<Lixeira.Remocao> remocoes) {
+        for (Lixeira.Remocao remocao : remocoes) {
+            for (Pets pet : remocao.getPets()) {
+                saude.remover(pet);
+                if (copia == null && atual.getAgendamentos(pet).isEmpty()) {
+                    atual = atual.semExDono(pet);
+                    pet.liberar();
+                }
+            }
+        }
+    }
+
+    /**
+     * Pets que fazem aniversário em um período, para campanhas. Lê apenas os dias do período no
+     * índice de aniversários; se a loja foi aberta de um arquivo, carrega antes os segmentos que faltam.
+     * @param de Primeiro dia do período
+     * @param ate Último dia do período (menos de um ano depois de de)
+     * @param especie Espécie exigida, ou null para qualquer uma
+     * @param porte Porte exigido, ou null para qualquer um
+     * @return Alvos em ordem de aniversário
+     * @throws IllegalArgumentException Se o período, a espécie ou o porte forem inválidos
+     */
+    public List<IndiceCampanhas.Alvo> aniversariantes(LocalDate de, LocalDate ate, String especie, String porte) {
+        Instantaneo versao = completo();
+        return campanhas.aniversariantes(de, ate, especie, porte, versao::buscarDono);
+    }
+
+    /**
+     * Pets em uma faixa de idade, para campanhas. Lê apenas o intervalo de datas de nascimento da faixa.
+     * @param idadeMinima Idade mínima em anos, inclusive
+     * @param idadeMaxima Idade máxima em anos, inclusive
+     * @param especie Espécie exigida, ou null para qualquer uma
+     * @param porte Porte exigido, ou null para qualquer um
+     * @return Alvos do mais velho para o mais novo
+     * @throws IllegalArgumentException Se a faixa, a espécie ou o porte forem inválidos
+     */
+    public List<IndiceCampanhas.Alvo> faixaEtaria(int idadeMinima, int idadeMaxima, String especie, String porte) {
+        Instantaneo versao = completo();
+        return campanhas.faixaEtaria(idadeMinima, idadeMaxima, LocalDate.now(), especie, porte, versao::buscarDono);
+    }
+
+    /**
+     * Cadastros já existentes que provavelmente são da mesma pessoa que o cliente informado.
+     * Consulta o índice incremental, sem percorrer os demais clientes. Se a loja foi aberta de um
+     * arquivo, a primeira consulta carrega os segmentos que faltam e indexa os clientes carregados.
+     * @param cliente Cliente consultado
+     * @return Propostas de mesclagem, da mais para a menos parecida
+     */
+    public List<DetectorDuplicados.Proposta> possiveisDuplicados(Cliente cliente) {
+        indexarCarregados();
+        return duplicados.possiveisDuplicados(cliente);
+    }
+
+    /**
+     * Procura clientes duplicados em todo o cadastro, em paralelo.
+     * @return Propostas de mesclagem, da mais para a menos parecida
+     */
+    public List<DetectorDuplicados.Proposta> buscarDuplicados() {
+        return DetectorDuplicados.buscarDuplicados(completo().getClientes());
+    }
+
+    /**
+     * Planeja uma consulta sobre a versão atual dos cadastros (ver {@link Consulta}).
+     * @param consulta Consulta compilada
+     * @return Plano pronto para ser executado, fixo nesta versão
+     */
+    public Consulta.Plano consultar(Consulta consulta) {
+        return consulta.planejar(completo());
+    }
+
+    /**
+     * Mescla dois cadastros da mesma pessoa: os pets passam para o cliente mantido, com agendamentos,
+     * lembretes e histórico de saúde intactos, e o outro cadastro é removido.
+     * @param manter Cliente que fica com os pets
+     * @param remover Cliente a ser removido
+     * @return Cliente mantido
+     * @throws IllegalArgumentException Se algum dos clientes não estiver cadastrado, forem o mesmo ou tiverem pets com o mesmo nome
+     */
+    public synchronized Cliente mesclarClientes(Cliente manter, Cliente remover) {
+        verificarEscrita();
+        if (manter == null || atual.buscarCliente(manter.getCpf()) != manter
+            || remover == null || atual.buscarCliente(remover.getCpf()) != remover) {
+            throw new IllegalArgumentException("Cliente não cadastrado.");
+        }
+        if (manter == remover) throw new IllegalArgumentException("Não é possível mesclar um cliente com ele mesmo.");
+        for (Pets pet : atual.getPets(remover)) {
+            if (petComNome(manter, pet.getNomePet()) != null) {
+                throw new IllegalArgumentException("Os dois clientes têm um pet chamado " + pet.getNomePet()
+                    + "; remova um deles antes de mesclar.");
+            }
+        }
+        preservar(manter);
+        preservar(remover);
+        Instantaneo proximo = atual;
+        for (Pets pet : proximo.getPets(remover)) {
+            remover.removerPet(pet);
+            manter.adicionarPet(pet);
+            proximo = proximo.semPet(pet).comPet(manter, pet);
+        }
+        atual = proximo.semCliente(remover);
+        duplicados.remover(remover);
+        fidelidade.mesclar(manter.getCpf(), remover.getCpf(), LocalDate.now()); // Pontos e gasto somam na conta mantida
+        feed.publicar(FeedAlteracoes.comando("mesclar", manter.getCpf(), remover.getCpf()));
+        return manter;
+    }
+
+    // Agendamentos
+
+    /**
+     * Agenda um serviço: aplica as promoções vigentes, reserva a vaga no horário considerando o
+     * risco de falta, agenda os lembretes e lança o valor no financeiro.
+     * @param pet Pet que receberá o serviço
+     * @param data Data do serviço
+     * @param hora Hora do serviço
+     * @param servico Nome do serviço
+     * @return Agendamento criado
+     * @throws IllegalArgumentException Se o horário ou o serviço forem inválidos
+     * @throws IllegalStateException Se o horário estiver lotado
+     */
+    public Agendamento agendar(Pets pet, LocalDate data, LocalTime hora, String servico) {
+        return agendar(pet, data, hora, servico, 0);
+    }
+
+    /**
+     * Agenda um serviço resgatando pontos de fidelidade do dono. O preço considera as promoções do
+     * nível do cliente; os pontos descontam do preço até zerá-lo, e o valor pago gera novos pontos.
+     * @param pet Pet que receberá o serviço
+     * @param data Data do serviço
+     * @param hora Hora do serviço
+     * @param servico Nome do serviço
+     * @param pontos Pontos que o cliente quer usar (limitados ao saldo e ao preço; 0 para nenhum)
+     * @return Agendamento criado, com o valor já descontado
+     * @throws IllegalArgumentException Se o horário ou o serviço forem inválidos
+     * @throws IllegalStateException Se o horário estiver lotado
+     */
+    public synchronized Agendamento agendar(Pets pet, LocalDate data, LocalTime hora, String servico, long pontos) {
+        verificarEscrita();
+        if (!Agendamento.isHorarioValido(data, hora)) {
+            throw new IllegalArgumentException("Horário de agendamento inválido. O pet shop está fechado nesse horário.");
+        }
+        if (Servico.indiceServico(servico) < 0) {
+            throw new IllegalArgumentException("Serviço inválido! Escolha um dos serviços disponíveis.");
+        }
+        Cliente dono = buscarDono(pet);
+        preservar(dono);
+
+        // Calcula o preço com base no serviço, no porte do pet na data do serviço, nas promoções vigentes e no
+        // nível de fidelidade do dono; os pontos resgatados descontam do preço.
+        LocalDate hoje = LocalDate.now();
+        Dinheiro valor = motorPrecos.cotar(servico, porteEm(pet, data), LocalDateTime.of(data, hora), List.of(servico),
+            fidelidade.nivel(dono.getCpf(), hoje));
+        long resgatados = fidelidade.pontosResgataveis(dono.getCpf(), valor, pontos, hoje);
+        if (resgatados > 0) {
+            Dinheiro desconto = Dinheiro.deCentavos(resgatados * ProgramaFidelidade.CENTAVOS_POR_PONTO_RESGATADO);
+            valor = desconto.compareTo(valor) >= 0 ? Dinheiro.deCentavos(0) : valor.subtrair(desconto);
+        }
+
+        // Estima o risco de falta e verifica se o horário ainda comporta o agendamento.
+        double riscoFalta = previsorFalta.probabilidadeFalta(data, hora, servico, dono.getCpf());
+        int duracao = Servico.tempoEmMinutos(servico);
+        if (!overbooking.reservar(data, hora, duracao, riscoFalta)) {
+            throw new IllegalStateException("Horário lotado! Escolha outro horário.");
+        }
+
+        Agendamento agendamento;
+        try {
+            agendamento = new Agendamento(pet, data, hora, servico, valor);
+        } catch (IllegalArgumentException e) {
+            overbooking.liberar(data, hora, duracao, riscoFalta); // Devolve a vaga se o agendamento for rejeitado.
+            throw e;
+        }
+        lancarAgendamento(agendamento, dono, riscoFalta, resgatados, hoje);
+        return agendamento;
+    }
+
+    /**
+     * Reaplica um agendamento lido do feed com os efeitos que o líder aplicou: preço final, pontos
+     * resgatados, risco de falta usado na reserva e dia do lançamento. Não confere o horário com o
+     * relógio nem recalcula o preço com as promoções e o nível de fidelidade locais, para que uma
+     * réplica ou uma restauração chegue ao mesmo estado mesmo depois de o horário passar.
+     * @param lancamento Dia em que o líder lançou o agendamento (vale para a fidelidade)
+     * @return Agendamento recriado
+     * @throws NoSuchElementException Se o pet não tiver dono cadastrado
+     */
+    synchronized Agendamento reaplicarAgendamento(Pets pet, LocalDate data, LocalTime hora, String servico, long resgatados,
+                                                  Dinheiro valor, double riscoFalta, LocalDate lancamento) {
+        verificarEscrita();
+        Cliente dono = buscarDono(pet);
+        preservar(dono);
+        overbooking.ocupar(data, hora, Servico.tempoEmMinutos(servico), riscoFalta); // O líder já aceitou a reserva
+        Agendamento agendamento = Agendamento.restaurar(pet, data, hora, servico, valor, "-");
+        lancarAgendamento(agendamento, dono, riscoFalta, resgatados, lancamento);
+        return agendamento;
+    }
+
+    // Publica um agendamento já reservado: lembretes, fidelidade, financeiro, caixa e feed, com os valores aplicados.
+    private void lancarAgendamento(Agendamento agendamento, Cliente dono, double riscoFalta, long resgatados, LocalDate hoje) {
+        Dinheiro valor = agendamento.getValor();
+        agendamento.setRiscoReserva(riscoFalta); // Devolvido ao overbooking se o agendamento for cancelado
+        atual = atual.comAgendamento(agendamento);
+        lembretes.agendarLembretes(agendamento, dono); // Agenda os lembretes de 24h e 2h antes.
+        if (resgatados > 0) fidelidade.resgatar(dono.getCpf(), resgatados, hoje);
+        fidelidade.creditar(dono.getCpf(), valor, hoje);
+
+        // Atualiza os registros financeiros do pet shop após o agendamento ser concluído.
+        financeiro.setServicoFeitos(financeiro.getServicoFeitos() + 1);
+        financeiro.setRecebimento(financeiro.getRecebimento().somar(valor));
+        caixa.registrar(FechamentoCaixa.Movimento.AGENDAMENTO, valor.getCentavos(), 1, (int) agendamento.getData().toEpochDay(), null);
+        feed.publicar(FeedAlteracoes.comando("agendar", dono.getCpf(), agendamento.getPet().getNomePet(),
+            agendamento.getData().format(ModoLote.FORMATO_DATA), agendamento.getHora().format(ModoLote.FORMATO_HORA),
+            agendamento.getServico(), resgatados, valor.getCentavos(), riscoFalta, hoje.format(ModoLote.FORMATO_DATA)));
+    }
+
+    /**
+     * Estima a probabilidade de falta de um agendamento já realizado.
+     * @param agendamento Agendamento a ser avaliado
+     * @return Probabilidade de falta entre 0 e 1
+     */
+    public double estimarRiscoFalta(Agendamento agendamento) {
+        return previsorFalta.probabilidadeFalta(agendamento, buscarDono(agendamento.getPet()).getCpf());
+    }
+
+    /**
+     * Retorna o nome da promoção aplicável a um serviço, para exibição.
+     * @param pet Pet que receberá o serviço
+     * @param data Data do serviço
+     * @param hora Hora do serviço
+     * @param servico Nome do serviço
+     * @return Nome da promoção ou null se nenhuma se aplica
+     */
+    public String promocaoAplicada(Pets pet, LocalDate data, LocalTime hora, String servico) {
+        Cliente dono = buscarDono(pet);
+        int nivel = dono == null ? 0 : fidelidade.nivel(dono.getCpf(), LocalDate.now());
+        return motorPrecos.promocaoAplicada(servico, porteEm(pet, data), LocalDateTime.of(data, hora), nivel);
+    }
+
+    // Fidelidade
+
+    /**
+     * Situação do cliente no programa de fidelidade.
+     * @param cliente Cliente consultado
+     * @return Nível, pontos e gasto dos últimos 12 meses
+     */
+    public ProgramaFidelidade.Extrato extratoFidelidade(Cliente cliente) {
+        return fidelidade.extrato(cliente.getCpf(), LocalDate.now());
+    }
+
+    /**
+     * Expira os pontos e o gasto de mais de 12 meses em todas as contas (execução noturna). Carrega
+     * antes os clientes que ainda não foram lidos do arquivo, para que as contas deles também expirem.
+     * @param data Data da expiração
+     * @return Total de pontos expirados
+     */
+    public synchronized long expirarPontos(LocalDate data) {
+        verificarEscrita();
+        completo();
+        long expirados = fidelidade.expirar(data);
+        feed.publicar(FeedAlteracoes.comando("expirar-pontos", data.format(ModoLote.FORMATO_DATA)));
+        return expirados;
+    }
+
+    // Saúde
+
+    /**
+     * Registra uma pesagem no histórico e atualiza o peso (e o porte) atual do pet com a mais recente.
+     * @param pet Pet pesado
+     * @param data Data da pesagem (pode ser retroativa)
+     * @param peso Peso em kg
+     * @return Alertas de tendência de peso
+     * @throws IllegalArgumentException Se o peso for inválido
+     * @throws NoSuchElementException Se o pet não estiver cadastrado
+     */
+    public synchronized List<String> registrarPeso(Pets pet, LocalDate data, float peso) {
+        verificarEscrita();
+        Cliente dono = buscarDono(pet);
+        preservar(dono);
+        List<String> alertas = saude.registrarPeso(pet, data, peso);
+        pet.setPesoPet(saude.pesoAtual(pet)); // A pesagem mais recente define o porte usado nos próximos serviços
+        feed.publicar(FeedAlteracoes.comando("peso", dono.getCpf(), pet.getNomePet(), data.format(ModoLote.FORMATO_DATA), peso));
+        return alertas;
+    }
+
+    /**
+     * Registra a aplicação de uma vacina no histórico do pet.
+     * @param pet Pet vacinado
+     * @param data Data da aplicação
+     * @param vacina Nome da vacina
+     * @throws IllegalArgumentException Se o nome da vacina for inválido
+     * @throws NoSuchElementException Se o pet não estiver cadastrado
+     */
+    public synchronized void registrarVacina(Pets pet, LocalDate data, String vacina) {
+        verificarEscrita();
+        Cliente dono = buscarDono(pet);
+        preservar(dono);
+        saude.registrarVacina(pet, data, vacina);
+        feed.publicar(FeedAlteracoes.comando("vacina", dono.getCpf(), pet.getNomePet(), data.format(ModoLote.FORMATO_DATA), vacina));
+    }
+
+    /**
+     * Registra uma anotação livre no histórico do pet.
+     * @param pet Pet
+     * @param data Data da anotação
+     * @param texto Texto da anotação
+     * @throws IllegalArgumentException Se o texto for inválido
+     * @throws NoSuchElementException Se o pet não estiver cadastrado
+     */
+    public synchronized void registrarAnotacao(Pets pet, LocalDate data, String texto) {
+        verificarEscrita();
+        Cliente dono = buscarDono(pet);
+        preservar(dono);
+        saude.registrarAnotacao(pet, data, texto);
+        feed.publicar(FeedAlteracoes.comando("anotacao", dono.getCpf(), pet.getNomePet(), data.format(ModoLote.FORMATO_DATA), texto));
+    }
+
+    /**
+     * Retorna o porte de um pet em uma data, de acordo com o histórico de pesagens.
+     * @param pet Pet consultado
+     * @param data Data de referência
+     * @return Porte vigente na data
+     */
+    public String porteEm(Pets pet, LocalDate data) {
+        return saude.porteEm(pet, data);
+    }
+
+    /**
+     * Registra se o cliente compareceu a um agendamento, alimentando o previsor de faltas.
+     * Uma falta registrada durante o horário do serviço abre uma lacuna na agenda, oferecida à
+     * primeira senha da fila de espera cujo serviço caiba no tempo que resta.
+     * @param agendamento Agendamento realizado
+     * @param compareceu true se o pet foi atendido
+     * @return Senha da fila de espera chamada para a lacuna, ou null se nenhuma foi chamada
+     * @throws IllegalStateException Se o resultado já tiver sido registrado
+     */
+    public synchronized FilaEspera.Senha registrarComparecimento(Agendamento agendamento, boolean compareceu) {
+        verificarEscrita();
+        Cliente dono = buscarDono(agendamento.getPet()); // Antes de marcar: o resultado só vale junto com o treino do previsor
+        preservar(dono);
+        CopiaSeguranca.Gravacao gravacao = copia;
+        if (gravacao != null) gravacao.preservar(agendamento);
+        agendamento.registrarComparecimento(compareceu);
+        previsorFalta.registrarResultado(agendamento, dono.getCpf(), !compareceu);
+        feed.publicar(FeedAlteracoes.comando("comparecimento", dono.getCpf(), agendamento.getPet().getNomePet(),
+            agendamento.getData().format(ModoLote.FORMATO_DATA), agendamento.getHora().format(ModoLote.FORMATO_HORA),
+            compareceu ? "S" : "N"));
+        return compareceu ? null : preencherLacuna(agendamento);
+    }
+
+    /**
+     * Cancela um agendamento pendente: devolve a vaga do horário, cancela os lembretes e estorna o
+     * valor do financeiro e o gasto e os pontos de fidelidade creditados no agendamento.
+     * Um cancelamento durante o horário do serviço abre uma lacuna, oferecida à fila de espera.
+     * @param agendamento Agendamento a cancelar
+     * @return Senha da fila de espera chamada para a lacuna, ou null se nenhuma foi chamada
+     * @throws NoSuchElementException Se o pet do agendamento não estiver cadastrado
+     * @throws IllegalStateException Se o agendamento já tiver sido cancelado ou o comparecimento registrado
+     */
+    public synchronized FilaEspera.Senha cancelarAgendamento(Agendamento agendamento) {
+        verificarEscrita();
+        Cliente dono = buscarDono(agendamento.getPet());
+        cancelarPendente(agendamento, dono, LocalDate.now());
+        feed.publicar(FeedAlteracoes.comando("cancelar", dono.getCpf(), agendamento.getPet().getNomePet(),
+            agendamento.getData().format(ModoLote.FORMATO_DATA), agendamento.getHora().format(ModoLote.FORMATO_HORA)));
+        return preencherLacuna(agendamento);
+    }
+
+    // Cancela o agendamento, devolve a vaga com o risco usado na reserva (ou o estimado agora, se ela veio de um arquivo),
+    // cancela os lembretes e estorna o valor lançado no agendamento e os pontos que ele creditou.
+    private void cancelarPendente(Agendamento agendamento, Cliente dono, LocalDate hoje) {
+        CopiaSeguranca.Gravacao gravacao = copia;
+        if (gravacao != null) gravacao.preservar(agendamento);
+        agendamento.cancelar();
+        double riscoFalta = agendamento.getRiscoReserva();
+        if (Double.isNaN(riscoFalta)) riscoFalta = previsorFalta.probabilidadeFalta(agendamento, dono.getCpf());
+        overbooking.liberar(agendamento.getData(), agendamento.getHora(), Servico.tempoEmMinutos(agendamento.getServico()), riscoFalta);
+        lembretes.cancelarAgendamento(agendamento);
+        fidelidade.estornar(dono.getCpf(), agendamento.getValor(), hoje);
+        financeiro.setServicoFeitos(Math.max(0, financeiro.getServicoFeitos() - 1));
+        financeiro.setRecebimento(financeiro.getRecebimento().subtrair(agendamento.getValor()));
+        caixa.registrar(FechamentoCaixa.Movimento.CANCELAMENTO, agendamento.getValor().getCentavos(), 1,
+            (int) agendamento.getData().toEpochDay(), null);
+    }
+
+    // Oferece à fila de espera o tempo que resta de um serviço que não vai acontecer, se ele já começou.
+    private FilaEspera.Senha preencherLacuna(Agendamento agendamento) {
+        LocalDateTime agora = LocalDateTime.now();
+        LocalDateTime inicio = LocalDateTime.of(agendamento.getData(), agendamento.getHora());
+        long minutosLivres = Duration.between(agora, inicio.plusMinutes(Servico.tempoEmMinutos(agendamento.getServico()))).toMinutes();
+        if (agora.isBefore(inicio) || minutosLivres <= 0) return null; // Fora do horário do serviço: não há lacuna agora
+        return filaEspera.preencherLacuna((int) minutosLivres, agora);
+    }
+
+    /**
+     * Busca um agendamento pelo pet, data e hora.
+     * @param pet Pet atendido
+     * @param data Data do agendamento
+     * @param hora Hora do agendamento
+     * @return Agendamento encontrado
+     * @throws NoSuchElementException Se o agendamento não existir
+     */
+    public Agendamento buscarAgendamento(Pets pet, LocalDate data, LocalTime hora) {
+        // Os agendamentos do pet já foram carregados com ele; o índice reverso evita percorrer a agenda.
+        List<Agendamento> agendamentos = atual.getAgendamentos(pet);
+        for (int i = agendamentos.size() - 1; i >= 0; i--) {
+            Agendamento agendamento = agendamentos.get(i);
+            if (agendamento.getData().equals(data) && agendamento.getHora().equals(hora)) {
+                return agendamento;
+            }
+        }
+        throw new NoSuchElementException("🚫 Agendamento não encontrado!");
+    }
+
+    // Produtos e vendas
+
+    /**
+     * Cadastra um novo produto.
+     * @param nome Nome do produto
+     * @param preco Preço do produto
+     * @param estoque Quantidade em estoque
+     * @param categoria Categoria do produto
+     * @param codProduto Código único do produto
+     * @return Produto cadastrado
+     * @throws IllegalArgumentException Se algum dado for inválido ou o código já existir
+     */
+    public synchronized Produto cadastrarProduto(String nome, Dinheiro preco, int estoque, String categoria, int codProduto) {
+        verificarEscrita();
+        if (atual.buscarProduto(codProduto) != null) {
+            throw new IllegalArgumentException("Já existe um produto com o código " + codProduto + ".");
+        }
+        Produto produto = new Produto(nome, preco, estoque, categoria, codProduto);
+        atual = atual.comProduto(produto);
+        previsaoEstoque.registrarEntrada(produto, LocalDate.now());
+        caixa.registrar(FechamentoCaixa.Movimento.ENTRADA_ESTOQUE, 0, estoque, codProduto, null);
+        feed.publicar(FeedAlteracoes.comando("produto", codProduto, produto.getNome(), produto.getCategoria(), produto.getPreco(), estoque));
+        return produto;
+    }
+
+    /**
+     * Busca um produto pelo código.
+     * @param codProduto Código do produto
+     * @return Produto encontrado ou null se não existir
+     */
+    public Produto buscarProduto(int codProduto) {
+        return atual.buscarProduto(codProduto);
+    }
+
+    /**
+     * Adiciona unidades ao estoque de um produto (chegada de mercadoria).
+     * @param produto Produto reposto
+     * @param quantidade Unidades recebidas (deve ser positiva)
+     * @return Novo estoque do produto
+     * @throws IllegalArgumentException Se a quantidade for inválida
+     */
+    public synchronized int reporEstoque(Produto produto, int quantidade) {
+        verificarEscrita();
+        if (quantidade <= 0) throw new IllegalArgumentException("Quantidade inválida! Informe um valor positivo.");
+        produto.adicionarEstoque(quantidade);
+        previsaoEstoque.registrarEntrada(produto, LocalDate.now());
+        caixa.registrar(FechamentoCaixa.Movimento.ENTRADA_ESTOQUE, 0, quantidade, produto.getCodProduto(), null);
+        feed.publicar(FeedAlteracoes.comando("estoque", produto.getCodProduto(), quantidade));
+        return produto.getEstoque();
+    }
+
+    /**
+     * Gera as sugestões de compra da semana para todo o catálogo.
+     * @return Produtos a comprar, dos mais urgentes para os menos urgentes
+     */
+    public List<PrevisaoEstoque.Sugestao> sugerirCompras() {
+        return previsaoEstoque.sugerirCompras(getProdutos(), LocalDate.now());
+    }
+
+    /**
+     * Finaliza a venda de um carrinho no caixa.
+     * @param carrinho Itens da venda
+     * @param metodoPagamento Método de pagamento
+     * @return Recibo da venda
+     */
+    public Recibo vender(Carrinho carrinho, String metodoPagamento) {
+        return vender(carrinho, metodoPagamento, null);
+    }
+
+    /**
+     * Finaliza a venda de um carrinho no caixa para um cliente identificado: os serviços recebem as
+     * promoções do nível dele e o total gera pontos de fidelidade. A cotação roda com a loja livre; o
+     * monitor só é tomado para reservar o estoque e publicar o recibo, na ordem do feed.
+     * @param carrinho Itens da venda
+     * @param metodoPagamento Método de pagamento
+     * @param cliente Cliente que paga, ou null para venda sem identificação
+     * @return Recibo da venda
+     */
+    public Recibo vender(Carrinho carrinho, String metodoPagamento, Cliente cliente) {
+        int nivel = cliente == null ? 0 : fidelidade.nivel(cliente.getCpf(), LocalDate.now());
+        Checkout.Cotacao cotacao = checkout.cotar(carrinho, metodoPagamento, nivel);
+        synchronized (this) {
+            verificarEscrita();
+            if (cliente != null) preservar(cliente);
+            Recibo recibo = checkout.concluir(cotacao);
+            lancarVenda(recibo, carrinho, cliente);
+            return recibo;
+        }
+    }
+
+    /**
+     * Reaplica uma venda lida do feed com o total e o instante que o líder aplicou, sem recalcular
+     * preços com as promoções locais.
+     * @param total Total cobrado pelo líder
+     * @param instante Momento da venda no líder
+     * @return Recibo com o total gravado
+     * @throws IllegalStateException Se não houver estoque suficiente
+     */
+    synchronized Recibo reaplicarVenda(Carrinho carrinho, String metodoPagamento, Cliente cliente, Dinheiro total,
+                                       LocalDateTime instante) {
+        verificarEscrita();
+        if (cliente != null) preservar(cliente);
+        Recibo recibo = checkout.reaplicar(carrinho, metodoPagamento, total, instante);
+        lancarVenda(recibo, carrinho, cliente);
+        return recibo;
+    }
+
+    // Credita a fidelidade, anota a venda no caixa e a publica no feed com o total e o instante do recibo.
+    private void lancarVenda(Recibo recibo, Carrinho carrinho, Cliente cliente) {
+        String metodoPagamento = recibo.getMetodoPagamento();
+        if (cliente != null) fidelidade.creditar(cliente.getCpf(), recibo.getTotal(), recibo.getDataHora().toLocalDate());
+        caixa.registrar(FechamentoCaixa.Movimento.VENDA, recibo.getTotal().getCentavos(), carrinho.getServicos().size(), 0,
+            recibo.getMetodoPagamento());
+        StringBuilder itens = new StringBuilder();
+        for (Carrinho.ItemProduto item : carrinho.getProdutos()) {
+            caixa.registrar(FechamentoCaixa.Movimento.SAIDA_ESTOQUE, 0, item.getQuantidade(), item.getProduto().getCodProduto(), null);
+            if (itens.length() > 0) itens.append(',');
+            itens.append("p:").append(item.getProduto().getCodProduto()).append(':').append(item.getQuantidade());
+        }
+        for (Servico servico : carrinho.getServicos()) {
+            if (itens.length() > 0) itens.append(',');
+            Cliente dono = atual.buscarDono(servico.getPet());
+            itens.append("s:").append(dono == null ? "" : dono.getCpf()).append(':').append(servico.getPet().getNomePet())
+                .append(':').append(servico.getNomeServico());
+        }
+        feed.publicar(FeedAlteracoes.comando("venda", metodoPagamento, itens, cliente == null ? "" : cliente.getCpf(),
+            recibo.getTotal().getCentavos(), recibo.getDataHora().format(ModoLote.FORMATO_DATA_HORA)));
+    }
+
+    // Financeiro
+
+    /**
+     * Lança uma despesa no financeiro.
+     * @param categoria Categoria da despesa
+     * @param data Data da despesa
+     * @param valor Valor da despesa
+     * @param fornecedor Fornecedor (pode ser vazio)
+     * @throws IllegalArgumentException Se algum dado for inválido
+     * @throws IllegalStateException Se o caixa do dia da despesa já tiver sido fechado
+     */
+    public synchronized void registrarDespesa(String categoria, LocalDate data, Dinheiro valor, String fornecedor) {
+        verificarEscrita();
+        if (categoria == null || categoria.isBlank()) throw new IllegalArgumentException("Categoria da despesa inválida.");
+        if (data == null) throw new IllegalArgumentException("Data da despesa não pode ser nula.");
+        if (valor == null) throw new IllegalArgumentException("O valor da despesa não pode ser nulo.");
+        if (valor.isNegativo()) throw new IllegalArgumentException("O valor da despesa não pode ser negativo.");
+        LocalDate fechado = caixa.getUltimoDiaFechado();
+        if (fechado != null && !data.isAfter(fechado)) {
+            throw new IllegalStateException("O caixa de " + fechado.format(ModoLote.FORMATO_DATA)
+                + " já foi fechado; lance a despesa em uma data posterior.");
+        }
+        financeiro.adicionarDespesa(categoria, data, valor, fornecedor);
+        caixa.registrar(FechamentoCaixa.Movimento.DESPESA, valor.getCentavos(), 1, (int) data.toEpochDay(), categoria.trim());
+        feed.publicar(FeedAlteracoes.comando("despesa", valor, categoria, data.format(ModoLote.FORMATO_DATA),
+            fornecedor == null ? "" : fornecedor));
+    }
+
+    /**
+     * Fecha o caixa de um dia: confere os movimentos lançados desde o fechamento anterior com os
+     * contadores do financeiro e o estoque e congela o resultado em um resumo imutável. A loja só
+     * fica bloqueada para retirar os movimentos; a soma e a conferência rodam em paralelo, com a
+     * loja livre, e o que for lançado nesse meio-tempo entra no dia seguinte. Um dia já fechado
+     * devolve o resumo guardado, sem recalcular.
+     * @param dia Dia a fechar (não pode ser futuro nem anterior ao último fechamento)
+     * @return Resumo do dia, com as divergências encontradas
+     * @throws IllegalArgumentException Se o dia for futuro ou anterior ao último fechamento
+     * @throws IllegalStateException Se outro fechamento estiver em andamento
+     */
+    public FechamentoCaixa.Resumo fecharDia(LocalDate dia) {
+        FechamentoCaixa.Resumo fechado = caixa.getResumo(dia);
+        if (fechado != null) return fechado;
+        FechamentoCaixa.Captura captura;
+        synchronized (this) {
+            verificarEscrita();
+            List<Agendamento> agenda = completo().getAgendamentosDoDia(dia);
+            captura = caixa.iniciar(dia, contadores(), agenda);
+            feed.publicar(FeedAlteracoes.comando("fechar-dia", dia.format(ModoLote.FORMATO_DATA)));
+        }
+        return caixa.concluir(captura);
+    }
+
+    // Abre o caixa com os contadores atuais, se ele ainda não tiver abertura (dados carregados sem fechamento anterior).
+    synchronized void abrirCaixa() {
+        caixa.abrir(contadores());
+    }
+
+    // Contadores do financeiro e estoque de cada produto, conferidos no fechamento do caixa.
+    private FechamentoCaixa.Contadores contadores() {
+        Map<String, Long> porMetodo = new HashMap<>();
+        financeiro.getRecebimentoPorMetodo().forEach((metodo, valor) -> porMetodo.put(metodo, valor.getCentavos()));
+        Map<Integer, Integer> estoque = new HashMap<>();
+        for (Produto produto : atual.getProdutos()) {
+            estoque.put(produto.getCodProduto(), produto.getEstoque());
+        }
+        return new FechamentoCaixa.Contadores(financeiro.getRecebimento().getCentavos(), financeiro.getServicoFeitos(),
+            financeiro.getDespesas().getCentavos(), porMetodo, estoque);
+    }
+
+    // Consultas
+
+    // As consultas devolvem visões imutáveis do instantâneo atual, sem cópia nem bloqueio.
+    public Collection<Cliente> getClientes() {
+        return completo().getClientes();
+    }
+    public List<Agendamento> getAgendamentos() {
+        return completo().getAgendamentos();
+    }
+
+    /**
+     * Agendamentos de um pet pelo índice reverso, inclusive os cancelados e os já registrados.
+     * @param pet Pet consultado
+     * @return Lista imutável dos agendamentos do pet
+     */
+    public List<Agendamento> getAgendamentos(Pets pet) {
+        return atual.getAgendamentos(pet);
+    }
+    public List<Produto> getProdutos() {
+        return atual.getProdutos();
+    }
+    public PrevisaoEstoque getPrevisaoEstoque() {
+        return previsaoEstoque;
+    }
+    public RegistroSaude getSaude() {
+        return saude;
+    }
+    // Carga sob demanda
+
+    /**
+     * Passa a carregar os clientes, pets e agendamentos de um arquivo salvo sob demanda. A loja
+     * deve estar vazia; as posições de cada cliente e agendamento ficam reservadas para que a ordem
+     * de cadastro seja a mesma de quando foram salvos.
+     * @param arquivo Arquivo já aberto, com o índice lido
+     * @param clientes Posições de clientes salvas
+     * @param agendamentos Posições de agendamentos salvas
+     * @throws IllegalStateException Se a loja já tiver clientes ou agendamentos
+     */
+    synchronized void abrirSegmentos(ArquivoLoja arquivo, int clientes, int agendamentos) {
+        if (atual.getVersao() != 0 || this.arquivo != null) throw new IllegalStateException("A loja já tem dados carregados.");
+        atual = Instantaneo.comReservas(clientes, agendamentos);
+        this.arquivo = arquivo;
+    }
+
+    // Chamado pelo arquivo quando o último segmento é carregado.
+    synchronized void segmentosCarregados() {
+        arquivo = null;
+    }
+
+    // Coloca um cliente salvo na sua posição reservada, com os pets já associados a ele.
+    synchronized void restaurarCliente(int posicao, Cliente cliente) {
+        Instantaneo proximo = atual.comClienteEm(posicao, cliente);
+        for (Pets pet : cliente.getPets()) {
+            proximo = proximo.comPet(cliente, pet);
+            campanhas.indexar(pet);
+        }
+        atual = proximo;
+        semIndice.add(cliente);
+    }
+
+    // Coloca um agendamento salvo na sua posição reservada e reagenda os lembretes que ainda não passaram.
+    synchronized void restaurarAgendamento(int posicao, Agendamento agendamento, Cliente dono) {
+        atual = atual.comAgendamentoEm(posicao, agendamento);
+        if (dono != null && agendamento.isPendente()) lembretes.agendarLembretes(agendamento, dono);
+    }
+
+    // Liga um pet removido, lido de um arquivo, ao seu último dono.
+    synchronized void restaurarExDono(Pets pet, Cliente exDono) {
+        atual = atual.comExDono(pet, exDono);
+    }
+
+    synchronized void restaurarProduto(Produto produto) {
+        if (atual.buscarProduto(produto.getCodProduto()) != null) {
+            throw new IllegalArgumentException("Já existe um produto com o código " + produto.getCodProduto() + ".");
+        }
+        atual = atual.comProduto(produto);
+    }
+
+    // Carrega o segmento do CPF, se ainda não estiver na memória.
+    private void carregarSegmento(String cpfFormatado) {
+        ArquivoLoja pendente = arquivo;
+        if (pendente != null) pendente.carregarCliente(this, cpfFormatado);
+    }
+
+    // Carrega as despesas e os movimentos do caixa gravados, se ainda não estiverem na memória.
+    private void carregarLancamentos() {
+        ArquivoLoja pendente = arquivo;
+        if (pendente != null) pendente.carregarLancamentos(this);
+    }
+
+    // Indexa os clientes carregados do arquivo que continuam cadastrados; os removidos nesse meio-tempo ficam de fora.
+    private synchronized void indexarCarregados() {
+        completo();
+        for (Cliente cliente : semIndice) {
+            if (atual.buscarCliente(cliente.getCpf()) == cliente) duplicados.indexar(cliente);
+        }
+        semIndice.clear();
+    }
+
+    // Versão atual com todos os segmentos carregados, para consultas que percorrem todos os clientes.
+    private Instantaneo completo() {
+        ArquivoLoja pendente = arquivo;
+        if (pendente != null) pendente.carregarTodos(this);
+        return atual;
+    }
+
+    // Replicação
+
+    /**
+     * No modo de replicação semissíncrona, espera alguma réplica confirmar as alterações já publicadas.
+     * Chamado pelas interfaces depois de cada operação, fora do monitor da loja, para não atrasar as demais.
+     * @return true se as alterações estão confirmadas; false se a replicação não é semissíncrona ou o prazo expirou
+     */
+    public boolean aguardarReplicacao() {
+        LiderReplicacao lider = replicacao;
+        return lider != null && lider.aguardarConfirmacao(feed.getUltimaSequencia());
+    }
+
+    /**
+     * Indica se a loja é uma réplica somente leitura.
+     * @return true enquanto a loja estiver seguindo um líder
+     */
+    public boolean isReplica() {
+        return aplicadorReplica != null;
+    }
+
+    void setReplicacao(LiderReplicacao replicacao) {
+        this.replicacao = replicacao;
+    }
+
+    // Torna a loja somente leitura para todas as threads, exceto a que aplica as alterações do líder.
+    void tornarReplica(Thread aplicador) {
+        aplicadorReplica = aplicador;
+    }
+
+    // Libera a loja para alterações (promoção da réplica a líder).
+    void promover() {
+        aplicadorReplica = null;
+    }
+
+    // Registra a cópia completa que passa a receber os clientes antes de serem alterados.
+    synchronized void iniciarCopia(CopiaSeguranca.Gravacao gravacao) {
+        if (copia != null) throw new IllegalStateException("Já existe uma cópia de segurança em andamento.");
+        copia = gravacao;
+    }
+
+    synchronized void terminarCopia(CopiaSeguranca.Gravacao gravacao) {
+        if (copia == gravacao) copia = null;
+    }
+
+    // Entrega à cópia em andamento o estado do cliente antes de uma alteração; a expiração de pontos
+    // não passa por aqui porque é idempotente e é reaplicada pela cópia incremental seguinte.
+    private void preservar(Cliente cliente) {
+        CopiaSeguranca.Gravacao gravacao = copia;
+        if (gravacao != null) gravacao.preservar(cliente);
+    }
+
+    private void verificarEscrita() {
+        Thread aplicador = aplicadorReplica;
+        if (aplicador != null && aplicador != Thread.currentThread()) {
+            throw new IllegalStateException("Esta loja é uma réplica somente leitura; alterações devem ser feitas no líder.");
+        }
+        carregarLancamentos(); // As despesas e os movimentos novos entram depois dos gravados
+    }
+
+    PrevisorFalta getPrevisorFalta() {
+        return previsorFalta;
+    }
+    OtimizadorOverbooking getOverbooking() {
+        return overbooking;
+    }
+    ProgramaFidelidade getFidelidade() {
+        return fidelidade;
+    }
+    public FilaEspera getFilaEspera() {
+        return filaEspera;
+    }
+    public FeedAlteracoes getFeed() {
+        return feed;
+    }
+    public Financeiro getFinanceiro() {
+        carregarLancamentos();
+        return financeiro;
+    }
+    public FechamentoCaixa getCaixa() {
+        carregarLancamentos();
+        return caixa;
+    }
+    public DespachanteLembretes getLembretes() {
+        return lembretes;
+    }
+    public MotorPrecos getMotorPrecos() {
+        return motorPrecos;
+    }
+    ArmazemPets getArmazemPets() {
+        return armazemPets;
+    }
+}
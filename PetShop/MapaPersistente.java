@@ -0,0 +1,242 @@
+package aps3;
+
+import java.util.Arrays;
+
+/**
+ * Mapa imutável com compartilhamento estrutural (HAMT: trie de 32 ramos indexada pelo hash da chave).
+ * Inclusões e remoções devolvem um novo mapa em O(log32 n), copiando apenas o caminho alterado;
+ * versões antigas continuam válidas e podem ser lidas por outras threads sem sincronização.
+ * @param <K> Tipo das chaves (precisam de equals/hashCode consistentes)
+ * @param <V> Tipo dos valores
+ */
+public final class MapaPersistente<K, V> {
+    private static final int BITS = 5;
+    private static final int MASCARA = (1 << BITS) - 1;
+
+    @SuppressWarnings("rawtypes")
+    private static final MapaPersistente VAZIO = new MapaPersistente<>(null, 0);
+
+    private final No raiz; // null quando o mapa está vazio
+    private final int tamanho;
+
+    private MapaPersistente(No raiz, int tamanho) {
+        this.raiz = raiz;
+        this.tamanho = tamanho;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> MapaPersistente<K, V> vazio() {
+        return VAZIO;
+    }
+
+    public int tamanho() {
+        return tamanho;
+    }
+
+    /**
+     * Busca o valor associado a uma chave.
+     * @param chave Chave procurada
+     * @return Valor associado ou null se a chave não existir
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object chave) {
+        if (raiz == null) return null;
+        Entrada entrada = raiz.buscar(espalhar(chave), 0, chave);
+        return entrada == null ? null : (V) entrada.valor;
+    }
+
+    public boolean contem(Object chave) {
+        return raiz != null && raiz.buscar(espalhar(chave), 0, chave) != null;
+    }
+
+    /**
+     * Associa um valor a uma chave, substituindo o valor anterior se houver.
+     * @param chave Chave (não pode ser nula)
+     * @param valor Valor associado
+     * @return Novo mapa com a associação
+     */
+    public MapaPersistente<K, V> com(K chave, V valor) {
+        if (chave == null) throw new IllegalArgumentException("Chave não pode ser nula.");
+        int hash = espalhar(chave);
+        if (raiz == null) {
+            return new MapaPersistente<>(NoBitmap.VAZIO.inserir(new Entrada(hash, chave, valor), 0), 1);
+        }
+        boolean existia = raiz.buscar(hash, 0, chave) != null;
+        No novaRaiz = raiz.inserir(new Entrada(hash, chave, valor), 0);
+        return novaRaiz == raiz ? this : new MapaPersistente<>(novaRaiz, existia ? tamanho : tamanho + 1);
+    }
+
+    /**
+     * Remove a associação de uma chave.
+     * @param chave Chave a ser removida
+     * @return Novo mapa sem a chave (o próprio mapa se ela não existia)
+     */
+    public MapaPersistente<K, V> sem(Object chave) {
+        if (!contem(chave)) return this;
+        No novaRaiz = raiz.remover(espalhar(chave), 0, chave);
+        return new MapaPersistente<>(novaRaiz, tamanho - 1);
+    }
+
+    // Mistura os bits altos nos baixos, já que os primeiros níveis usam os bits menos significativos.
+    private static int espalhar(Object chave) {
+        int h = chave.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Entrada {
+        private final int hash;
+        private final Object chave;
+        private final Object valor;
+
+        private Entrada(int hash, Object chave, Object valor) {
+            this.hash = hash;
+            this.chave = chave;
+            this.valor = valor;
+        }
+    }
+
+    private abstract static class No {
+        abstract Entrada buscar(int hash, int nivel, Object chave);
+        abstract No inserir(Entrada entrada, int nivel);
+        abstract No remover(int hash, int nivel, Object chave); // null quando o nó fica vazio
+    }
+
+    // Nó com até 32 posições ocupadas, compactadas em um vetor indexado pelo bitmap.
+    private static final class NoBitmap extends No {
+        private static final NoBitmap VAZIO = new NoBitmap(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] filhos; // Cada posição guarda uma Entrada ou um No
+
+        private NoBitmap(int bitmap, Object[] filhos) {
+            this.bitmap = bitmap;
+            this.filhos = filhos;
+        }
+
+        private int posicao(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Entrada buscar(int hash, int nivel, Object chave) {
+            int bit = 1 << ((hash >>> nivel) & MASCARA);
+            if ((bitmap & bit) == 0) return null;
+            Object filho = filhos[posicao(bit)];
+            if (filho instanceof Entrada entrada) {
+                return entrada.chave.equals(chave) ? entrada : null;
+            }
+            return ((No) filho).buscar(hash, nivel + BITS, chave);
+        }
+
+        @Override
+        No inserir(Entrada nova, int nivel) {
+            int bit = 1 << ((nova.hash >>> nivel) & MASCARA);
+            int posicao = posicao(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] novos = new Object[filhos.length + 1];
+                System.arraycopy(filhos, 0, novos, 0, posicao);
+                novos[posicao] = nova;
+                System.arraycopy(filhos, posicao, novos, posicao + 1, filhos.length - posicao);
+                return new NoBitmap(bitmap | bit, novos);
+            }
+            Object filho = filhos[posicao];
+            Object substituto;
+            if (filho instanceof Entrada atual) {
+                if (atual.chave.equals(nova.chave)) {
+                    if (atual.valor == nova.valor) return this;
+                    substituto = nova;
+                } else if (atual.hash == nova.hash) {
+                    substituto = new NoColisao(nova.hash, new Entrada[] {atual, nova});
+                } else {
+                    substituto = VAZIO.inserir(atual, nivel + BITS).inserir(nova, nivel + BITS);
+                }
+            } else {
+                No subNo = (No) filho;
+                substituto = subNo.inserir(nova, nivel + BITS);
+                if (substituto == subNo) return this;
+            }
+            Object[] novos = filhos.clone();
+            novos[posicao] = substituto;
+            return new NoBitmap(bitmap, novos);
+        }
+
+        @Override
+        No remover(int hash, int nivel, Object chave) {
+            int bit = 1 << ((hash >>> nivel) & MASCARA);
+            if ((bitmap & bit) == 0) return this;
+            int posicao = posicao(bit);
+            Object filho = filhos[posicao];
+            Object substituto;
+            if (filho instanceof Entrada entrada) {
+                if (!entrada.chave.equals(chave)) return this;
+                substituto = null;
+            } else {
+                substituto = ((No) filho).remover(hash, nivel + BITS, chave);
+                if (substituto == filho) return this;
+            }
+            if (substituto != null) {
+                Object[] novos = filhos.clone();
+                novos[posicao] = substituto;
+                return new NoBitmap(bitmap, novos);
+            }
+            if (filhos.length == 1) return null;
+            Object[] novos = new Object[filhos.length - 1];
+            System.arraycopy(filhos, 0, novos, 0, posicao);
+            System.arraycopy(filhos, posicao + 1, novos, posicao, novos.length - posicao);
+            return new NoBitmap(bitmap & ~bit, novos);
+        }
+    }
+
+    // Nó para chaves diferentes com o mesmo hash de 32 bits, percorrido linearmente.
+    private static final class NoColisao extends No {
+        private final int hash;
+        private final Entrada[] entradas;
+
+        private NoColisao(int hash, Entrada[] entradas) {
+            this.hash = hash;
+            this.entradas = entradas;
+        }
+
+        @Override
+        Entrada buscar(int hash, int nivel, Object chave) {
+            for (Entrada entrada : entradas) {
+                if (entrada.chave.equals(chave)) return entrada;
+            }
+            return null;
+        }
+
+        @Override
+        No inserir(Entrada nova, int nivel) {
+            if (nova.hash != hash) {
+                // Hash diferente: o nó de colisão desce um nível dentro de um nó comum.
+                int bit = 1 << ((hash >>> nivel) & MASCARA);
+                return new NoBitmap(bit, new Object[] {this}).inserir(nova, nivel);
+            }
+            for (int i = 0; i < entradas.length; i++) {
+                if (entradas[i].chave.equals(nova.chave)) {
+                    if (entradas[i].valor == nova.valor) return this;
+                    Entrada[] novas = entradas.clone();
+                    novas[i] = nova;
+                    return new NoColisao(hash, novas);
+                }
+            }
+            Entrada[] novas = Arrays.copyOf(entradas, entradas.length + 1);
+            novas[entradas.length] = nova;
+            return new NoColisao(hash, novas);
+        }
+
+        @Override
+        No remover(int hash, int nivel, Object chave) {
+            for (int i = 0; i < entradas.length; i++) {
+                if (entradas[i].chave.equals(chave)) {
+                    if (entradas.length == 1) return null;
+                    Entrada[] novas = new Entrada[entradas.length - 1];
+                    System.arraycopy(entradas, 0, novas, 0, i);
+                    System.arraycopy(entradas, i + 1, novas, i, novas.length - i);
+                    return new NoColisao(hash, novas);
+                }
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,670 @@
+package aps3;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Executa comandos do pet shop sem menus nem prompts, lendo um arquivo ou a entrada padrão.
+ * Cada linha é um comando com campos separados por ";"; linhas vazias e iniciadas por "#" são ignoradas.
+ * Dentro de um campo, "\;", "\n", "\r" e "\\" representam o separador, as quebras de linha e a própria
+ * barra invertida (é assim que o feed de alterações grava os campos, ver {@link FeedAlteracoes#comando}).
+ *
+ * <pre>
+ * cliente;nome;cpf;telefone;endereco
+ * pet;cpf;nome;especie;peso;dd/MM/yyyy
+ * agendar;cpf;nomePet;dd/MM/yyyy;HH:mm;servico[;pontos]   (pontos de fidelidade a resgatar no preço)
+ * comparecimento;cpf;nomePet;dd/MM/yyyy;HH:mm;S|N   (falta no horário do serviço chama uma senha da fila)
+ * cancelar;cpf;nomePet;dd/MM/yyyy;HH:mm   (devolve a vaga e estorna o valor; durante o serviço chama uma senha da fila)
+ * produto;codigo;nome;categoria;preco;estoque
+ * estoque;codigo;quantidade
+ * venda;metodoPagamento;item[,item...][;cpf]   (item = p:codigo:quantidade ou s:cpf:nomePet:servico; cpf de quem paga)
+ * despesa;valor[;categoria;dd/MM/yyyy;fornecedor]
+ * despesas;dd/MM/yyyy;dd/MM/yyyy[;categoria]   (totais do período por categoria)
+ * fechar-dia[;dd/MM/yyyy]   (fecha o caixa do dia, padrão hoje; uma linha por divergência; resultado: agendado,
+ *     vendas, despesas, realizado e quantidade de divergências; um dia já fechado devolve o resumo guardado)
+ * fechamentos;dd/MM/yyyy;dd/MM/yyyy   (resumos dos dias fechados no período)
+ * peso;cpf;nomePet;dd/MM/yyyy;peso
+ * vacina;cpf;nomePet;dd/MM/yyyy;nomeVacina
+ * anotacao;cpf;nomePet;dd/MM/yyyy;texto
+ * saude;cpf;nomePet;dd/MM/yyyy;dd/MM/yyyy   (pesagens e eventos do intervalo)
+ * alertas;cpf;nomePet
+ * remover-pet;cpf;nomePet[;politica[;dd/MM/yyyy HH:mm]]
+ * remover-cliente;cpf[;politica[;dd/MM/yyyy HH:mm]]
+ *     (politica para os agendamentos futuros: BLOQUEAR, CANCELAR_FUTUROS ou MANTER_HISTORICO, o padrão;
+ *      a data e hora marcam o início dos futuros, padrão agora)
+ * desfazer-remocao;cpf[;nomePet]   (devolve o cliente ou o pet da lixeira; resultado: agendamentos que não voltaram)
+ * lixeira   (remoções que ainda podem ser desfeitas, da mais recente)
+ * duplicados   (pares de cadastros parecidos: cpf mantido, cpf a remover, similaridade)
+ * mesclar;cpfManter;cpfRemover   (pets passam para o primeiro cliente; o segundo é removido)
+ * fidelidade;cpf   (nível, pontos, valor dos pontos e gasto dos últimos 12 meses)
+ * expirar-pontos;dd/MM/yyyy   (expira em todas as contas os pontos e o gasto de mais de 12 meses)
+ * consulta;texto   (ex.: "pets onde especie = Gato e idade &gt; 10"; uma linha por resultado, campos da entidade)
+ * explicar;texto   (plano escolhido para a consulta: índice ou varredura e candidatos examinados)
+ * aniversariantes;dd/MM/yyyy;dd/MM/yyyy[;especie;porte;arquivo]   (pets que fazem aniversário no período)
+ * faixa-etaria;idadeMinima;idadeMaxima[;especie;porte;arquivo]   (pets com idade na faixa, em anos)
+ *     (campos vazios não filtram; com arquivo, os alvos são gravados em CSV e o resultado é a quantidade)
+ * feed;cursor;maximo   (alterações publicadas após o cursor, no formato destes comandos)
+ * copia;arquivo[;sequencia|dd/MM/yyyy HH:mm]   (cópia de segurança completa, ou incremental desde a sequência ou o instante)
+ * verificar-copia;arquivo   (confere os blocos da cópia; devolve o tipo, as sequências e os registros)
+ * rota;dd/MM/yyyy[;HH:mm]   (busca dos pets com agendamento antes do horário, padrão 12:00)
+ * fila-entrar;cpf;nomePet;servico[;URGENTE|PREFERENCIAL|NORMAL]   (cliente sem agendamento; devolve a senha)
+ * fila-chamar | fila-cancelar;senha | fila   (fila de espera: chamar, cancelar, listar com a espera estimada)
+ * clientes | pets | historico | produtos | financeiro | compras   (historico inclui a situação e o CPF do dono, atual ou último)
+ * </pre>
+ *
+ * No feed de alterações, "pet" traz também a data da primeira pesagem, "agendar" traz os pontos
+ * resgatados, o preço final em centavos, o risco de falta da reserva e o dia do lançamento, e "venda"
+ * traz o total em centavos e o instante. O modo de reaplicação ({@link #ModoLote(Loja, boolean)}),
+ * usado pela réplica e pela cópia incremental, aplica esses valores em vez de recalculá-los com as
+ * regras e o relógio locais; fora dele os campos extras são ignorados.
+ *
+ * A saída tem uma linha por comando, com campos separados por tabulação: {@code OK}, o número
+ * da linha e o resultado, ou {@code ERRO}, o número da linha e a mensagem. Consultas produzem
+ * linhas {@code DADO} antes do {@code OK}. A última linha é {@code FIM} com os totais.
+ */
+public class ModoLote {
+    static final DateTimeFormatter FORMATO_DATA = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    static final DateTimeFormatter FORMATO_HORA = DateTimeFormatter.ofPattern("HH:mm");
+    static final DateTimeFormatter FORMATO_DATA_HORA = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    private final Loja loja;  // Loja sobre a qual os comandos são executados
+    private final boolean reaplicacao; // Comandos vindos do feed: aplica os valores gravados
+    private PlanejadorRotas planejador; // Criado no primeiro comando "rota"
+    private long executados;  // Comandos executados com sucesso
+    private long erros;       // Comandos que falharam
+
+    /**
+     * Construtor do modo em lote.
+     * @param loja Loja sobre a qual os comandos serão executados
+     */
+    public ModoLote(Loja loja) {
+        this(loja, false);
+    }
+
+    /**
+     * Construtor do modo em lote que pode reaplicar comandos do feed de alterações.
+     * @param loja Loja sobre a qual os comandos serão executados
+     * @param reaplicacao true para aplicar os preços, pontos e datas gravados no feed
+     */
+    public ModoLote(Loja loja, boolean reaplicacao) {
+        this.loja = loja;
+        this.reaplicacao = reaplicacao;
+    }
+
+    /**
+     * Ponto de entrada usado por {@link PetShop#main}: {@code --lote <arquivo|-> [saida]}.
+     * @param loja Loja sobre a qual os comandos serão executados
+     * @param args Argumentos da linha de comando
+     * @return Código de saída do processo (0 se todos os comandos tiveram sucesso)
+     */
+    public static int executar(Loja loja, String[] args) {
+        if (args.length < 2) {
+            System.err.println("Uso: --lote <arquivo de comandos | -> [arquivo de saída]");
+            return 2;
+        }
+        try (BufferedReader entrada = args[1].equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16)
+                : Files.newBufferedReader(Path.of(args[1]), StandardCharsets.UTF_8);
+             Writer saida = args.length > 2
+                ? Files.newBufferedWriter(Path.of(args[2]), StandardCharsets.UTF_8)
+                : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16)) {
+            ModoLote lote = new ModoLote(loja);
+            lote.executar(entrada, saida);
+            return lote.erros == 0 ? 0 : 1;
+        } catch (IOException e) {
+            System.err.println("Erro de entrada/saída no modo em lote: " + e.getMessage());
+            return 2;
+        }
+    }
+
+    /**
+     * Executa todos os comandos da entrada, escrevendo os resultados na saída.
+     * @param entrada Comandos, um por linha
+     * @param saida Destino dos resultados
+     * @throws IOException Se a leitura ou a escrita falharem
+     */
+    public void executar(BufferedReader entrada, Writer saida) throws IOException {
+        long inicio = System.nanoTime();
+        String linha;
+        long numero = 0;
+        while ((linha = entrada.readLine()) != null) {
+            numero++;
+            executarLinha(numero, linha, saida);
+        }
+        saida.write("FIM\t" + (executados + erros) + "\t" + executados + "\t" + erros + "\t"
+            + (System.nanoTime() - inicio) / 1_000_000 + "ms\n");
+        saida.flush();
+    }
+
+    /**
+     * Executa uma única linha de comando.
+     * @param numero Número da linha, usado na saída
+     * @param linha Comando a ser executado
+     * @param saida Destino do resultado
+     * @return true se o comando foi executado com sucesso (linhas vazias e comentários também contam)
+     * @throws IOException Se a escrita falhar
+     */
+    public boolean executarLinha(long numero, String linha, Writer saida) throws IOException {
+        String comando = linha.strip();
+        if (comando.isEmpty() || comando.startsWith("#")) return true;
+        try {
+            String resultado = executarComando(FeedAlteracoes.separar(comando), saida);
+            loja.aguardarReplicacao(); // Na replicação semissíncrona, confirma só o que já está em uma réplica
+            saida.write("OK\t" + numero + "\t" + resultado + "\n");
+            executados++;
+            return true;
+        } catch (IllegalArgumentException | IllegalStateException | NoSuchElementException
+                 | IndexOutOfBoundsException | DateTimeParseException e) {
+            saida.write("ERRO\t" + numero + "\t" + mensagem(e) + "\n");
+            erros++;
+            return false;
+        }
+    }
+
+    public long getExecutados() {
+        return executados;
+    }
+    public long getErros() {
+        return erros;
+    }
+
+    private String executarComando(String[] c, Writer saida) throws IOException {
+        switch (c[0].trim().toLowerCase()) {
+            case "cliente" -> {
+                exigirCampos(c, 5);
+                return loja.cadastrarCliente(c[1], c[2], c[3], c[4]).getCpf();
+            }
+            case "pet" -> {
+                exigirCampos(c, 6);
+                Cliente cliente = loja.buscarCliente(c[1]);
+                if (cliente == null) throw new NoSuchElementException("Cliente não encontrado: " + c[1]);
+                float peso = Float.parseFloat(c[4].trim().replace(',', '.'));
+                Pets pet = reaplicacao && c.length > 6
+                    ? loja.cadastrarPet(cliente, c[2].trim(), c[3].trim(), peso, data(c[5]), data(c[6]))
+                    : loja.cadastrarPet(cliente, c[2].trim(), c[3].trim(), peso, data(c[5]));
+                return pet.getNomePet() + "\t" + pet.getPortePet();
+            }
+            case "agendar" -> {
+                exigirCampos(c, 6);
+                long pontos = c.length > 6 && !c[6].isBlank() ? Long.parseLong(c[6].trim()) : 0;
+                Pets pet = loja.buscarPet(c[1], c[2].trim());
+                Agendamento agendamento = reaplicacao && c.length > 9
+                    ? loja.reaplicarAgendamento(pet, data(c[3]), hora(c[4]), c[5].trim(), pontos,
+                        Dinheiro.deCentavos(Long.parseLong(c[7].trim())), Double.parseDouble(c[8].trim()), data(c[9]))
+                    : loja.agendar(pet, data(c[3]), hora(c[4]), c[5].trim(), pontos);
+                return agendamento.getValor().toString();
+            }
+            case "cancelar" -> {
+                exigirCampos(c, 5);
+                Pets pet = loja.buscarPet(c[1], c[2].trim());
+                FilaEspera.Senha chamada = loja.cancelarAgendamento(loja.buscarAgendamento(pet, data(c[3]), hora(c[4])));
+                return chamada == null ? pet.getNomePet() : pet.getNomePet() + "\t" + chamada.getNumero();
+            }
+            case "comparecimento" -> {
+                exigirCampos(c, 6);
+                Pets pet = loja.buscarPet(c[1], c[2].trim());
+                FilaEspera.Senha chamada = loja.registrarComparecimento(loja.buscarAgendamento(pet, data(c[3]), hora(c[4])),
+                    c[5].trim().equalsIgnoreCase("S"));
+                return chamada == null ? pet.getNomePet() : pet.getNomePet() + "\t" + chamada.getNumero();
+            }
+            case "produto" -> {
+                exigirCampos(c, 6);
+                Produto produto = loja.cadastrarProduto(c[2].trim(), Dinheiro.parse(c[4]), Integer.parseInt(c[5].trim()),
+                    c[3].trim(), Integer.parseInt(c[1].trim()));
+                return String.valueOf(produto.getCodProduto());
+            }
+            case "estoque" -> {
+                exigirCampos(c, 3);
+                return String.valueOf(loja.reporEstoque(produto(c[1]), Integer.parseInt(c[2].trim())));
+            }
+            case "venda" -> {
+                exigirCampos(c, 3);
+                Carrinho carrinho = new Carrinho();
+                for (String item : c[2].split(",")) {
+                    String[] partes = item.trim().split(":");
+                    if (partes[0].equals("p")) {
+                        carrinho.adicionarProduto(produto(partes[1]), Integer.parseInt(partes[2].trim()));
+                    } else if (partes[0].equals("s")) {
+                        carrinho.adicionarServico(new Servico(partes[3].trim(), loja.buscarPet(partes[1], partes[2].trim())));
+                    } else {
+                        throw new IllegalArgumentException("Item de venda inválido: " + item);
+                    }
+                }
+                Cliente pagante = null;
+                if (c.length > 3 && !c[3].isBlank()) {
+                    pagante = loja.buscarCliente(c[3]);
+                    if (pagante == null) throw new NoSuchElementException("Cliente não encontrado: " + c[3]);
+                }
+                Recibo recibo = reaplicacao && c.length > 5
+                    ? loja.reaplicarVenda(carrinho, c[1], pagante, Dinheiro.deCentavos(Long.parseLong(c[4].trim())),
+                        LocalDateTime.parse(c[5].trim(), FORMATO_DATA_HORA))
+                    : loja.vender(carrinho, c[1], pagante);
+                return recibo.getNumero() + "\t" + recibo.getTotal();
+            }
+            case "despesa" -> {
+                exigirCampos(c, 2);
+                if (c.length == 2) {
+                    loja.registrarDespesa(LivroDespesas.CATEGORIA_PADRAO, LocalDate.now(), Dinheiro.parse(c[1]), null);
+                } else {
+                    exigirCampos(c, 4);
+                    loja.registrarDespesa(c[2], data(c[3]), Dinheiro.parse(c[1]), c.length > 4 ? c[4] : null);
+                }
+                return loja.getFinanceiro().getDespesas().toString();
+            }
+            case "despesas" -> {
+                exigirCampos(c, 3);
+                LocalDate de = data(c[1]);
+                LocalDate ate = data(c[2]);
+                LivroDespesas livro = loja.getFinanceiro().getLivroDespesas();
+                if (c.length > 3) return livro.total(c[3], de, ate).toString();
+                for (Map.Entry<String, Dinheiro> total : livro.totaisPorCategoria(de, ate).entrySet()) {
+                    dado(saida, total.getKey(), total.getValue().toString());
+                }
+                return livro.total(de, ate).toString();
+            }
+            case "fechar-dia" -> {
+                FechamentoCaixa.Resumo resumo = loja.fecharDia(c.length > 1 ? data(c[1]) : LocalDate.now());
+                for (String divergencia : resumo.getDivergencias()) {
+                    dado(saida, "DIVERGENCIA", divergencia);
+                }
+                return resumo.getValorAgendado() + "\t" + resumo.getValorVendas() + "\t" + resumo.getValorDespesas() + "\t"
+                    + resumo.getValorRealizado() + "\t" + resumo.getDivergencias().size();
+            }
+            case "fechamentos" -> {
+                exigirCampos(c, 3);
+                List<FechamentoCaixa.Resumo> resumos = loja.getCaixa().getResumos(data(c[1]), data(c[2]));
+                for (FechamentoCaixa.Resumo resumo : resumos) {
+                    dado(saida, resumo.getDia().format(FORMATO_DATA), resumo.getValorAgendado().toString(),
+                        resumo.getValorVendas().toString(), resumo.getValorDespesas().toString(),
+                        resumo.getValorRealizado().toString(), String.valueOf(resumo.getDivergencias().size()));
+                }
+                return String.valueOf(resumos.size());
+            }
+            case "peso" -> {
+                exigirCampos(c, 5);
+                Pets pet = loja.buscarPet(c[1], c[2].trim());
+                List<String> alertas = loja.registrarPeso(pet, data(c[3]), Float.parseFloat(c[4].trim().replace(',', '.')));
+                for (String alerta : alertas) {
+                    dado(saida, "ALERTA", alerta);
+                }
+                return pet.getPortePet();
+            }
+            case "vacina" -> {
+                exigirCampos(c, 5);
+                loja.registrarVacina(loja.buscarPet(c[1], c[2].trim()), data(c[3]), c[4]);
+                return c[4].trim();
+            }
+            case "anotacao" -> {
+                exigirCampos(c, 5);
+                String texto = String.join(";", Arrays.copyOfRange(c, 4, c.length)); // Um ";" sem escape também faz parte do texto
+                loja.registrarAnotacao(loja.buscarPet(c[1], c[2].trim()), data(c[3]), texto);
+                return c[2].trim();
+            }
+            case "saude" -> {
+                exigirCampos(c, 5);
+                Pets pet = loja.buscarPet(c[1], c[2].trim());
+                LocalDate de = data(c[3]), ate = data(c[4]);
+                int[] total = {0};
+                IOException[] falha = {null};
+                loja.getSaude().consultarPesos(pet, de, ate, (dia, peso) -> {
+                    try {
+                        dado(saida, "PESO", dia.format(FORMATO_DATA), String.valueOf(peso), Pets.calcularPorte(peso));
+                        total[0]++;
+                    } catch (IOException e) {
+                        falha[0] = e;
+                    }
+                });
+                if (falha[0] != null) throw falha[0];
+                for (RegistroSaude.Evento evento : loja.getSaude().consultarEventos(pet, de, ate)) {
+                    dado(saida, "EVENTO", evento.getData().format(FORMATO_DATA), evento.getTipo(), evento.getDescricao());
+                    total[0]++;
+                }
+                return String.valueOf(total[0]);
+            }
+            case "alertas" -> {
+                exigirCampos(c, 3);
+                List<String> alertas = loja.getSaude().alertas(loja.buscarPet(c[1], c[2].trim()), LocalDate.now());
+                for (String alerta : alertas) {
+                    dado(saida, "ALERTA", alerta);
+                }
+                return String.valueOf(alertas.size());
+            }
+            case "remover-pet" -> {
+                exigirCampos(c, 3);
+                return loja.removerPet(loja.buscarPet(c[1], c[2].trim()), politica(c, 3), referencia(c, 4)).getCpf();
+            }
+            case "remover-cliente" -> {
+                exigirCampos(c, 2);
+                Cliente cliente = loja.buscarCliente(c[1]);
+                if (!loja.removerCliente(cliente, politica(c, 2), referencia(c, 3))) {
+                    throw new NoSuchElementException("Cliente não encontrado: " + c[1]);
+                }
+                return cliente.getCpf();
+            }
+            case "desfazer-remocao" -> {
+                exigirCampos(c, 2);
+                List<Agendamento> naoReativados = loja.desfazerRemocao(c[1], opcional(c, 2));
+                for (Agendamento agendamento : naoReativados) {
+                    dado(saida, agendamento.getData().format(FORMATO_DATA), agendamento.getHora().format(FORMATO_HORA),
+                        agendamento.getPet().getNomePet(), agendamento.getServico());
+                }
+                return Cliente.formatarCPF(c[1]) + "\t" + naoReativados.size();
+            }
+            case "lixeira" -> {
+                List<Lixeira.Remocao> remocoes = loja.getLixeira().getRemocoes();
+                for (Lixeira.Remocao remocao : remocoes) {
+                    dado(saida, remocao.getDono().getCpf(), remocao.isCliente() ? "" : remocao.getPets().get(0).getNomePet(),
+                        String.valueOf(remocao.getPets().size()), String.valueOf(remocao.getCancelados().size()));
+                }
+                return String.valueOf(remocoes.size());
+            }
+            case "duplicados" -> {
+                List<DetectorDuplicados.Proposta> propostas = loja.buscarDuplicados();
+                for (DetectorDuplicados.Proposta proposta : propostas) {
+                    dado(saida, proposta.getManter().getCpf(), proposta.getRemover().getCpf(),
+                        String.format("%.2f", proposta.getSimilaridade()));
+                }
+                return String.valueOf(propostas.size());
+            }
+            case "mesclar" -> {
+                exigirCampos(c, 3);
+                Cliente manter = loja.buscarCliente(c[1]);
+                if (manter == null) throw new NoSuchElementException("Cliente não encontrado: " + c[1]);
+                Cliente remover = loja.buscarCliente(c[2]);
+                if (remover == null) throw new NoSuchElementException("Cliente não encontrado: " + c[2]);
+                return loja.mesclarClientes(manter, remover).getCpf();
+            }
+            case "fidelidade" -> {
+                exigirCampos(c, 2);
+                Cliente cliente = loja.buscarCliente(c[1]);
+                if (cliente == null) throw new NoSuchElementException("Cliente não encontrado: " + c[1]);
+                ProgramaFidelidade.Extrato extrato = loja.extratoFidelidade(cliente);
+                dado(saida, extrato.getNomeNivel(), String.valueOf(extrato.getPontos()), extrato.getValorPontos().toString(),
+                    extrato.getGastoAnual().toString());
+                return cliente.getCpf();
+            }
+            case "expirar-pontos" -> {
+                exigirCampos(c, 2);
+                return String.valueOf(loja.expirarPontos(data(c[1])));
+            }
+            case "consulta" -> {
+                exigirCampos(c, 2);
+                long[] total = new long[1];
+                try {
+                    loja.consultar(Consulta.compilar(c[1])).linhas().forEachOrdered(valores -> {
+                        try {
+                            dado(saida, valores.toArray(new String[0]));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        total[0]++;
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                return String.valueOf(total[0]);
+            }
+            case "explicar" -> {
+                exigirCampos(c, 2);
+                Consulta.Plano plano = loja.consultar(Consulta.compilar(c[1]));
+                return plano.getDescricao() + "\t" + plano.getCandidatos();
+            }
+            case "aniversariantes" -> {
+                exigirCampos(c, 3);
+                return campanha(loja.aniversariantes(data(c[1]), data(c[2]), opcional(c, 3), opcional(c, 4)), opcional(c, 5), saida);
+            }
+            case "faixa-etaria" -> {
+                exigirCampos(c, 3);
+                return campanha(loja.faixaEtaria(Integer.parseInt(c[1].trim()), Integer.parseInt(c[2].trim()), opcional(c, 3),
+                    opcional(c, 4)), opcional(c, 5), saida);
+            }
+            case "clientes" -> {
+                Instantaneo instantaneo = loja.instantaneo(); // Listagem consistente mesmo com outras sessões alterando a loja
+                for (Cliente cliente : instantaneo.getClientes()) {
+                    dado(saida, cliente.getCpf(), cliente.getNome(), cliente.getTelefone(), cliente.getEndereco(),
+                        String.valueOf(instantaneo.getPets(cliente).size()));
+                }
+                return String.valueOf(instantaneo.getClientes().size());
+            }
+            case "pets" -> {
+                Instantaneo instantaneo = loja.instantaneo();
+                int total = 0;
+                for (Cliente cliente : instantaneo.getClientes()) {
+                    for (Pets pet : instantaneo.getPets(cliente)) {
+                        dado(saida, cliente.getCpf(), pet.getNomePet(), pet.getEspecie(), String.valueOf(pet.getPesoPet()),
+                            pet.getPortePet(), pet.getDataNascimento().format(FORMATO_DATA));
+                        total++;
+                    }
+                }
+                return String.valueOf(total);
+            }
+            case "historico" -> {
+                Instantaneo instantaneo = loja.instantaneo();
+                List<Agendamento> agendamentos = instantaneo.getAgendamentos();
+                for (Agendamento agendamento : agendamentos) {
+                    Cliente dono = instantaneo.buscarDonoHistorico(agendamento.getPet()); // Pets removidos mantêm o último dono
+                    dado(saida, agendamento.getData().format(FORMATO_DATA), agendamento.getHora().format(FORMATO_HORA),
+                        agendamento.getPet().getNomePet(), agendamento.getServico(), agendamento.getValor().toString(),
+                        agendamento.getSituacao(), dono == null ? "" : dono.getCpf());
+                }
+                return String.valueOf(agendamentos.size());
+            }
+            case "produtos" -> {
+                List<Produto> produtos = loja.getProdutos();
+                for (Produto produto : produtos) {
+                    dado(saida, String.valueOf(produto.getCodProduto()), produto.getNome(), produto.getCategoria(),
+                        produto.getPreco().toString(), String.valueOf(produto.getEstoque()));
+                }
+                return String.valueOf(produtos.size());
+            }
+            case "compras" -> {
+                List<PrevisaoEstoque.Sugestao> sugestoes = loja.sugerirCompras();
+                for (PrevisaoEstoque.Sugestao sugestao : sugestoes) {
+                    dado(saida, String.valueOf(sugestao.getProduto().getCodProduto()), sugestao.getProduto().getNome(),
+                        String.valueOf(sugestao.getEstoque()), String.format("%.1f", sugestao.getDemandaSemanal()),
+                        String.format("%.1f", sugestao.getPontoPedido()), String.valueOf(sugestao.getQuantidade()));
+                }
+                return String.valueOf(sugestoes.size());
+            }
+            case "feed" -> {
+                exigirCampos(c, 3);
+                List<FeedAlteracoes.Alteracao> lote = loja.getFeed().ler(Long.parseLong(c[1].trim()), Integer.parseInt(c[2].trim()));
+                for (FeedAlteracoes.Alteracao alteracao : lote) {
+                    dado(saida, String.valueOf(alteracao.getSequencia()), alteracao.getComando());
+                }
+                return String.valueOf(lote.isEmpty() ? Long.parseLong(c[1].trim()) : lote.get(lote.size() - 1).getSequencia());
+            }
+            case "copia" -> {
+                exigirCampos(c, 2);
+                Path arquivo = Path.of(c[1].trim());
+                String desde = c.length > 2 ? c[2].trim() : "";
+                long sequencia = desde.isEmpty() ? -1 : desde.contains("/") ? loja.getFeed().cursorEm(LocalDateTime
+                    .parse(desde, FORMATO_DATA_HORA).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()) : Long.parseLong(desde);
+                try {
+                    CopiaSeguranca.Resumo resumo = sequencia < 0 ? CopiaSeguranca.gravarCompleta(loja, arquivo)
+                        : CopiaSeguranca.gravarIncremental(loja, sequencia, arquivo);
+                    return resumo.getSequenciaFinal() + "\t" + resumo.getRegistros() + "\t" + resumo.getBytes();
+                } catch (IOException e) { // Falha no arquivo da cópia não é falha da saída do lote
+                    throw new IllegalStateException("Não foi possível gravar " + arquivo + ": " + e.getMessage());
+                }
+            }
+            case "verificar-copia" -> {
+                exigirCampos(c, 2);
+                try {
+                    CopiaSeguranca.Resumo resumo = CopiaSeguranca.verificar(Path.of(c[1].trim()));
+                    return (resumo.isCompleta() ? "completa" : "incremental") + "\t" + resumo.getSequenciaInicial() + "\t"
+                        + resumo.getSequenciaFinal() + "\t" + resumo.getRegistros();
+                } catch (IOException e) {
+                    throw new IllegalStateException("Não foi possível ler " + c[1].trim() + ": " + e.getMessage());
+                }
+            }
+            case "rota" -> {
+                exigirCampos(c, 2);
+                LocalTime ate = c.length > 2 ? hora(c[2]) : PlanejadorRotas.FIM_MANHA;
+                PlanejadorRotas.Plano plano = planejador().planejar(loja, data(c[1]), ate);
+                for (PlanejadorRotas.Viagem viagem : plano.getViagens()) {
+                    dado(saida, "VIAGEM", String.valueOf(viagem.getVeiculo()), viagem.getSaida().format(FORMATO_HORA),
+                        viagem.getRetorno().format(FORMATO_HORA), String.format("%.1f", viagem.getDistanciaKm()),
+                        viagem.isNoPrazo() ? "S" : "N");
+                    for (PlanejadorRotas.Parada parada : viagem.getParadas()) {
+                        dado(saida, "PARADA", parada.getChegada().format(FORMATO_HORA), parada.getCliente().getCpf(),
+                            parada.getCliente().getNome(), String.valueOf(parada.getPets()),
+                            parada.getPrimeiroAgendamento().format(FORMATO_HORA));
+                    }
+                }
+                for (Cliente cliente : plano.getNaoLocalizados()) {
+                    dado(saida, "SEM-LOCAL", cliente.getCpf(), cliente.getEndereco());
+                }
+                return plano.getViagens().size() + "\t" + plano.getVeiculos() + "\t"
+                    + String.format("%.1f", plano.getDistanciaTotalKm());
+            }
+            case "fila-entrar" -> {
+                exigirCampos(c, 4);
+                FilaEspera.Prioridade prioridade = c.length > 4 ? prioridade(c[4]) : FilaEspera.Prioridade.NORMAL;
+                LocalDateTime agora = LocalDateTime.now();
+                FilaEspera fila = loja.getFilaEspera();
+                FilaEspera.Senha senha = fila.entrar(loja.buscarPet(c[1], c[2].trim()), c[3].trim(), prioridade, agora);
+                return senha.getNumero() + "\t" + fila.estimarEspera(senha.getNumero(), agora).toMinutes();
+            }
+            case "fila-chamar" -> {
+                FilaEspera.Senha senha = loja.getFilaEspera().chamarProximo(LocalDateTime.now());
+                if (senha == null) throw new NoSuchElementException("Fila de espera vazia.");
+                return senha.getNumero() + "\t" + senha.getPet().getNomePet() + "\t" + senha.getServico();
+            }
+            case "fila-cancelar" -> {
+                exigirCampos(c, 2);
+                int numero = Integer.parseInt(c[1].trim());
+                if (!loja.getFilaEspera().cancelar(numero)) throw new NoSuchElementException("Senha não está na fila: " + numero);
+                return String.valueOf(numero);
+            }
+            case "fila" -> {
+                FilaEspera fila = loja.getFilaEspera();
+                LocalDateTime agora = LocalDateTime.now();
+                List<FilaEspera.Senha> senhas = fila.listar();
+                for (FilaEspera.Senha senha : senhas) {
+                    dado(saida, String.valueOf(senha.getNumero()), senha.getPet().getNomePet(), senha.getServico(),
+                        senha.getPrioridade().name(), String.valueOf(fila.getPosicao(senha.getNumero())),
+                        String.valueOf(fila.estimarEspera(senha.getNumero(), agora).toMinutes()));
+                }
+                return String.valueOf(senhas.size());
+            }
+            case "financeiro" -> {
+                Financeiro financeiro = loja.getFinanceiro();
+                return financeiro.getRecebimento() + "\t" + financeiro.getServicoFeitos() + "\t"
+                    + financeiro.getDespesas() + "\t" + financeiro.getSaldoFinal();
+            }
+            default -> throw new IllegalArgumentException("Comando desconhecido: " + c[0]);
+        }
+    }
+
+    private PlanejadorRotas planejador() {
+        if (planejador == null) {
+            planejador = new PlanejadorRotas(new TabelaGeocodigos(Path.of(TabelaGeocodigos.ARQUIVO_PADRAO)));
+        } else {
+            planejador.getGeocodigos().recarregarSeAlterado(); // Endereços novos valem sem reiniciar
+        }
+        return planejador;
+    }
+
+    private Produto produto(String codigo) {
+        Produto produto = loja.buscarProduto(Integer.parseInt(codigo.trim()));
+        if (produto == null) throw new NoSuchElementException("Produto não encontrado: " + codigo.trim());
+        return produto;
+    }
+
+    // Grava os alvos no arquivo informado ou os devolve como linhas DADO.
+    private static String campanha(List<IndiceCampanhas.Alvo> alvos, String arquivo, Writer saida) throws IOException {
+        LocalDate hoje = LocalDate.now();
+        if (arquivo != null) {
+            try {
+                return IndiceCampanhas.exportar(alvos, Path.of(arquivo), hoje) + "\t" + arquivo;
+            } catch (IOException e) { // Falha no arquivo da campanha não é falha da saída do lote
+                throw new IllegalStateException("Não foi possível gravar " + arquivo + ": " + e.getMessage());
+            }
+        }
+        for (IndiceCampanhas.Alvo alvo : alvos) {
+            Pets pet = alvo.getPet();
+            dado(saida, alvo.getDono().getCpf(), alvo.getDono().getNome(), alvo.getDono().getTelefone(), pet.getNomePet(),
+                pet.getEspecie(), pet.getPortePet(), pet.getDataNascimento().format(FORMATO_DATA), String.valueOf(pet.getIdade(hoje)),
+                alvo.getAniversario() == null ? "" : alvo.getAniversario().format(FORMATO_DATA));
+        }
+        return String.valueOf(alvos.size());
+    }
+
+    private static void dado(Writer saida, String... campos) throws IOException {
+        saida.write("DADO");
+        for (String campo : campos) {
+            saida.write('\t');
+            saida.write(campo);
+        }
+        saida.write('\n');
+    }
+
+    private static void exigirCampos(String[] campos, int quantidade) {
+        if (campos.length < quantidade) {
+            throw new IllegalArgumentException("Comando '" + campos[0] + "' exige " + (quantidade - 1) + " campos.");
+        }
+    }
+
+    private static Loja.PoliticaRemocao politica(String[] campos, int indice) {
+        String texto = opcional(campos, indice);
+        if (texto == null) return Loja.PoliticaRemocao.MANTER_HISTORICO;
+        try {
+            return Loja.PoliticaRemocao.valueOf(texto.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Política de remoção inválida: " + texto.trim()
+                + " (use BLOQUEAR, CANCELAR_FUTUROS ou MANTER_HISTORICO).");
+        }
+    }
+
+    // Início dos agendamentos futuros de uma remoção: o gravado no comando replicado, ou agora.
+    private static LocalDateTime referencia(String[] campos, int indice) {
+        String texto = opcional(campos, indice);
+        return texto == null ? LocalDateTime.now() : LocalDateTime.parse(texto.trim(), FORMATO_DATA_HORA);
+    }
+
+    private static FilaEspera.Prioridade prioridade(String texto) {
+        try {
+            return FilaEspera.Prioridade.valueOf(texto.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Prioridade inválida: " + texto.trim() + " (use URGENTE, PREFERENCIAL ou NORMAL).");
+        }
+    }
+
+    // Campo opcional: null se estiver ausente ou vazio.
+    private static String opcional(String[] campos, int indice) {
+        return campos.length > indice && !campos[indice].isBlank() ? campos[indice].trim() : null;
+    }
+
+    private static LocalDate data(String texto) {
+        return LocalDate.parse(texto.trim(), FORMATO_DATA);
+    }
+
+    private static LocalTime hora(String texto) {
+        return LocalTime.parse(texto.trim(), FORMATO_HORA);
+    }
+
+    // Mensagens podem conter quebras de linha ou tabulações, que quebrariam o formato da saída.
+    private static String mensagem(RuntimeException e) {
+        String mensagem = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+        return mensagem.replace('\t', ' ').replace('\n', ' ');
+    }
+}
@@ -0,0 +1,312 @@
+package aps3;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Motor de promoções e preços dinâmicos. As regras são lidas de um arquivo texto e compiladas
+ * em uma tabela de decisão; cada cotação apenas percorre as regras candidatas do par serviço/porte
+ * comparando máscaras de bits, sem alocar objetos e sem alterar os preços base de {@link Servico}.
+ *
+ * Formato do arquivo: uma regra por linha, campos {@code chave=valor} separados por ";".
+ * Linhas vazias e iniciadas por "#" são ignoradas. Exemplo:
+ * <pre>
+ * nome=Terça do banho;desconto=15;dias=TER;horas=8-11;servicos=Banho
+ * nome=Combo hidratação;desconto=10;servicos=Banho,Hidratação;combo=Banho+Hidratação
+ * nome=Fidelidade ouro;desconto=5;fidelidade=2;portes=Médio,Grande
+ * </pre>
+ * Quando mais de uma regra se aplica, vale o maior desconto.
+ */
+public class MotorPrecos {
+    private static final List<String> DIAS = List.of("SEG", "TER", "QUA", "QUI", "SEX", "SAB", "DOM");
+    private static final int TODOS_DIAS = (1 << 7) - 1;
+    private static final int TODAS_HORAS = (1 << 24) - 1;
+    private static final int TODOS_SERVICOS = (1 << Servico.SERVICOS_DISPONIVEIS.size()) - 1;
+    private static final int TODOS_PORTES = (1 << Pets.PORTES.size()) - 1;
+
+    /**
+     * Regras compiladas: arrays paralelos indexados pelo número da regra e, para cada
+     * par serviço/porte, a lista das regras que podem se aplicar.
+     */
+    private static final class TabelaCompilada {
+        private final long[][] precoBase;     // [serviço][porte] -> preço base em centavos
+        private final int[][] candidatas;     // [serviço * portes + porte] -> regras aplicáveis
+        private final int[] dias;             // Máscara de dias da semana (bit 0 = segunda)
+        private final int[] horas;            // Máscara de horas do dia (bit 0 = 00h)
+        private final int[] combos;           // Serviços que precisam estar juntos no atendimento
+        private final int[] fidelidade;       // Nível mínimo de fidelidade
+        private final int[] descontos;        // Desconto de cada regra, em centésimos de ponto percentual
+        private final String[] nomes;         // Nome de cada regra, para exibição
+
+        private TabelaCompilada(List<int[]> mascaras, List<Integer> descontos, List<String> nomes) {
+            int servicos = Servico.SERVICOS_DISPONIVEIS.size();
+            int portes = Pets.PORTES.size();
+            int total = mascaras.size();
+
+            this.precoBase = new long[servicos][portes];
+            for (int s = 0; s < servicos; s++) {
+                for (int p = 0; p < portes; p++) {
+                    precoBase[s][p] = Servico.precoEmCentavos(Servico.SERVICOS_DISPONIVEIS.get(s), Pets.PORTES.get(p));
+                }
+            }
+
+            this.dias = new int[total];
+            this.horas = new int[total];
+            this.combos = new int[total];
+            this.fidelidade = new int[total];
+            this.descontos = new int[total];
+            this.nomes = nomes.toArray(new String[0]);
+            for (int r = 0; r < total; r++) {
+                int[] m = mascaras.get(r);
+                dias[r] = m[0];
+                horas[r] = m[1];
+                combos[r] = m[4];
+                fidelidade[r] = m[5];
+                this.descontos[r] = descontos.get(r);
+            }
+
+            // Pré-filtra as regras por serviço e porte: é a dimensão mais seletiva da tabela.
+            this.candidatas = new int[servicos * portes][];
+            for (int s = 0; s < servicos; s++) {
+                for (int p = 0; p < portes; p++) {
+                    int[] lista = new int[total];
+                    int n = 0;
+                    for (int r = 0; r < total; r++) {
+                        int[] m = mascaras.get(r);
+                        if ((m[2] & (1 << s)) != 0 && (m[3] & (1 << p)) != 0) lista[n++] = r;
+                    }
+                    candidatas[s * portes + p] = Arrays.copyOf(lista, n);
+                }
+            }
+        }
+
+        private int melhorRegra(int servico, int porte, int dia, int hora, int combo, int nivelFidelidade) {
+            int melhor = -1;
+            int maiorDesconto = 0;
+            for (int r : candidatas[servico * precoBase[0].length + porte]) {
+                if ((dias[r] & (1 << dia)) != 0
+                        && (horas[r] & (1 << hora)) != 0
+                        && (combos[r] & combo) == combos[r]
+                        && nivelFidelidade >= fidelidade[r]
+                        && descontos[r] > maiorDesconto) {
+                    melhor = r;
+                    maiorDesconto = descontos[r];
+                }
+            }
+            return melhor;
+        }
+    }
+
+    private final Path arquivo;                   // Arquivo de regras (pode não existir)
+    private volatile TabelaCompilada tabela;      // Regras em vigor, trocadas atomicamente na recarga
+    private volatile long versaoArquivo = Long.MIN_VALUE; // Data de modificação do arquivo carregado
+    private Thread monitor;
+
+    /**
+     * Cria o motor e carrega as regras do arquivo informado. Se o arquivo não existir, vale a tabela base.
+     * @param arquivo Caminho do arquivo de regras
+     */
+    public MotorPrecos(Path arquivo) {
+        this.arquivo = arquivo;
+        this.tabela = new TabelaCompilada(List.of(), List.of(), List.of());
+        recarregarSeAlterado();
+    }
+
+    /**
+     * Calcula o preço de um serviço aplicando a melhor promoção vigente.
+     * @param nomeServico Nome do serviço
+     * @param portePet Porte do pet
+     * @param dataHora Data e hora do atendimento
+     * @param servicosDoAtendimento Serviços realizados no mesmo atendimento (para combos)
+     * @param nivelFidelidade Nível de fidelidade do cliente (0 = sem fidelidade)
+     * @return Preço final, ou zero se o serviço ou o porte não existirem
+     */
+    public Dinheiro cotar(String nomeServico, String portePet, LocalDateTime dataHora,
+                        Collection<String> servicosDoAtendimento, int nivelFidelidade) {
+        int combo = 0;
+        for (String s : servicosDoAtendimento) {
+            int indice = Servico.indiceServico(s);
+            if (indice >= 0) combo |= 1 << indice;
+        }
+        return Dinheiro.deCentavos(cotarCentavos(Servico.indiceServico(nomeServico), Pets.indicePorte(portePet),
+            dataHora.getDayOfWeek(), dataHora.getHour(), combo, nivelFidelidade));
+    }
+
+    /**
+     * Versão da cotação por índices, sem alocações, para uso em laços de alto volume.
+     * @param servico Índice do serviço em {@link Servico#SERVICOS_DISPONIVEIS}
+     * @param porte Índice do porte em {@link Pets#PORTES}
+     * @param dia Dia da semana do atendimento
+     * @param hora Hora do atendimento (0 a 23)
+     * @param combo Máscara de bits dos serviços do mesmo atendimento
+     * @param nivelFidelidade Nível de fidelidade do cliente
+     * @return Preço final em centavos, ou 0 se o serviço ou o porte não existirem
+     */
+    public long cotarCentavos(int servico, int porte, DayOfWeek dia, int hora, int combo, int nivelFidelidade) {
+        if (servico < 0 || porte < 0) return 0;
+        TabelaCompilada t = tabela;
+        long base = t.precoBase[servico][porte];
+        int regra = t.melhorRegra(servico, porte, dia.ordinal(), hora, combo, nivelFidelidade);
+        return regra < 0 ? base : Dinheiro.descontarCentavos(base, t.descontos[regra]);
+    }
+
+    /**
+     * Retorna o nome da promoção que seria aplicada, para exibição ao cliente.
+     * @param nomeServico Nome do serviço
+     * @param portePet Porte do pet
+     * @param dataHora Data e hora do atendimento
+     * @param nivelFidelidade Nível de fidelidade do cliente
+     * @return Nome da promoção ou null se nenhuma se aplica
+     */
+    public String promocaoAplicada(String nomeServico, String portePet, LocalDateTime dataHora, int nivelFidelidade) {
+        int servico = Servico.indiceServico(nomeServico);
+        int porte = Pets.indicePorte(portePet);
+        if (servico < 0 || porte < 0) return null;
+        TabelaCompilada t = tabela;
+        int regra = t.melhorRegra(servico, porte, dataHora.getDayOfWeek().ordinal(), dataHora.getHour(),
+            1 << servico, nivelFidelidade);
+        return regra < 0 ? null : t.nomes[regra];
+    }
+
+    /**
+     * Recompila as regras se o arquivo foi alterado desde a última carga. Em caso de erro,
+     * as regras anteriores continuam valendo.
+     * @return true se uma nova tabela foi carregada
+     */
+    public synchronized boolean recarregarSeAlterado() {
+        try {
+            long modificacao = Files.getLastModifiedTime(arquivo).toMillis();
+            if (modificacao == versaoArquivo) return false;
+            tabela = compilar(Files.readAllLines(arquivo, StandardCharsets.UTF_8));
+            versaoArquivo = modificacao;
+            return true;
+        } catch (NoSuchFileException e) {
+            if (versaoArquivo != Long.MIN_VALUE) {
+                tabela = new TabelaCompilada(List.of(), List.of(), List.of()); // Arquivo apagado: volta à tabela base
+                versaoArquivo = Long.MIN_VALUE;
+                return true;
+            }
+            return false;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Regras de preço não recarregadas: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Inicia uma thread daemon que verifica periodicamente se o arquivo de regras mudou.
+     * @param intervaloMillis Intervalo entre verificações (deve ser positivo)
+     */
+    public synchronized void iniciarMonitoramento(long intervaloMillis) {
+        if (intervaloMillis <= 0) throw new IllegalArgumentException("Intervalo deve ser positivo.");
+        if (monitor != null) return;
+        monitor = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(intervaloMillis);
+                    recarregarSeAlterado();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "motor-precos-monitor");
+        monitor.setDaemon(true);
+        monitor.start();
+    }
+
+    /**
+     * Retorna a quantidade de regras em vigor.
+     * @return Total de regras compiladas
+     */
+    public int getTotalRegras() {
+        return tabela.descontos.length;
+    }
+
+    // Converte as linhas do arquivo em máscaras: {dias, horas, serviços, portes, combo, fidelidade}.
+    private static TabelaCompilada compilar(List<String> linhas) {
+        List<int[]> mascaras = new ArrayList<>();
+        List<Integer> descontos = new ArrayList<>();
+        List<String> nomes = new ArrayList<>();
+
+        for (int n = 0; n < linhas.size(); n++) {
+            String linha = linhas.get(n).trim();
+            if (linha.isEmpty() || linha.startsWith("#")) continue;
+
+            int[] m = {TODOS_DIAS, TODAS_HORAS, TODOS_SERVICOS, TODOS_PORTES, 0, 0};
+            double desconto = -1;
+            String nome = "Regra " + (n + 1);
+            for (String campo : linha.split(";")) {
+                String[] partes = campo.split("=", 2);
+                if (partes.length != 2) throw new IllegalArgumentException("Linha " + (n + 1) + ": campo inválido '" + campo + "'.");
+                String valor = partes[1].trim();
+                switch (partes[0].trim().toLowerCase()) {
+                    case "nome" -> nome = valor;
+                    case "desconto" -> desconto = Double.parseDouble(valor);
+                    case "dias" -> m[0] = mascaraLista(valor, ",", DIAS, "dia", n);
+                    case "horas" -> m[1] = mascaraHoras(valor, n);
+                    case "servicos" -> m[2] = mascaraLista(valor, ",", Servico.SERVICOS_DISPONIVEIS, "serviço", n);
+                    case "portes" -> m[3] = mascaraLista(valor, ",", Pets.PORTES, "porte", n);
+                    case "combo" -> m[4] = mascaraLista(valor, "\\+", Servico.SERVICOS_DISPONIVEIS, "serviço", n);
+                    case "fidelidade" -> m[5] = Integer.parseInt(valor);
+                    default -> throw new IllegalArgumentException("Linha " + (n + 1) + ": campo desconhecido '" + partes[0] + "'.");
+                }
+            }
+            if (desconto <= 0 || desconto > 100) {
+                throw new IllegalArgumentException("Linha " + (n + 1) + ": desconto deve estar entre 1 e 100.");
+            }
+            mascaras.add(m);
+            descontos.add(Dinheiro.pontosBase(desconto));
+            nomes.add(nome);
+        }
+        return new TabelaCompilada(mascaras, descontos, nomes);
+    }
+
+    private static int mascaraLista(String valor, String separador, List<String> opcoes, String tipo, int linha) {
+        int mascara = 0;
+        for (String item : valor.split(separador)) {
+            int indice = indiceSemAcento(opcoes, item.trim());
+            if (indice < 0) throw new IllegalArgumentException("Linha " + (linha + 1) + ": " + tipo + " desconhecido '" + item.trim() + "'.");
+            mascara |= 1 << indice;
+        }
+        return mascara;
+    }
+
+    // Aceita faixas inclusivas separadas por vírgula, ex.: "8-11,16-18".
+    private static int mascaraHoras(String valor, int linha) {
+        int mascara = 0;
+        for (String faixa : valor.split(",")) {
+            String[] limites = faixa.trim().split("-");
+            int inicio = Integer.parseInt(limites[0].trim());
+            int fim = limites.length > 1 ? Integer.parseInt(limites[1].trim()) : inicio;
+            if (inicio < 0 || fim > 23 || inicio > fim) {
+                throw new IllegalArgumentException("Linha " + (linha + 1) + ": faixa de horas inválida '" + faixa.trim() + "'.");
+            }
+            for (int h = inicio; h <= fim; h++) mascara |= 1 << h;
+        }
+        return mascara;
+    }
+
+    // Compara ignorando maiúsculas e acentos, para aceitar "Hidratacao", "MEDIO" ou "sab".
+    private static int indiceSemAcento(List<String> opcoes, String item) {
+        String procurado = semAcento(item);
+        for (int i = 0; i < opcoes.size(); i++) {
+            if (semAcento(opcoes.get(i)).equals(procurado)) return i;
+        }
+        return -1;
+    }
+
+    private static String semAcento(String texto) {
+        return Normalizer.normalize(texto, Normalizer.Form.NFD)
+            .replaceAll("\\p{M}", "").toLowerCase();
+    }
+}
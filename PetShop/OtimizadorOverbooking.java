@@ -0,0 +1,141 @@
+package aps3;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Controla quantos agendamentos cada horário aceita, permitindo overbooking controlado
+ * a partir da probabilidade de falta estimada pelo {@link PrevisorFalta}.
+ */
+public class OtimizadorOverbooking {
+    private final int capacidadePorHorario;   // Quantidade de tosadores disponíveis por horário
+    private final double limiteOverbooking;   // Fator máximo de agendamentos sobre a capacidade (ex.: 1.5)
+    private final double nivelRisco;          // Desvios-padrão de folga exigidos acima do comparecimento esperado
+    private final Map<Long, double[]> horarios = new HashMap<>(); // Chave do horário -> {agendados, soma p, soma p(1-p)}
+
+    /**
+     * Construtor do otimizador, garantindo validações essenciais.
+     * @param capacidadePorHorario Atendimentos simultâneos possíveis (deve ser positivo)
+     * @param limiteOverbooking Fator máximo de agendamentos sobre a capacidade (mínimo 1)
+     * @param nivelRisco Folga exigida em desvios-padrão (não pode ser negativa)
+     * @throws IllegalArgumentException Se algum parâmetro for inválido
+     */
+    public OtimizadorOverbooking(int capacidadePorHorario, double limiteOverbooking, double nivelRisco) {
+        if (capacidadePorHorario <= 0) throw new IllegalArgumentException("Capacidade por horário deve ser positiva.");
+        if (limiteOverbooking < 1) throw new IllegalArgumentException("Limite de overbooking deve ser no mínimo 1.");
+        if (nivelRisco < 0) throw new IllegalArgumentException("Nível de risco não pode ser negativo.");
+        this.capacidadePorHorario = capacidadePorHorario;
+        this.limiteOverbooking = limiteOverbooking;
+        this.nivelRisco = nivelRisco;
+    }
+
+    /**
+     * Tenta reservar uma vaga em todas as horas cheias que o serviço ocupa. Até a capacidade a vaga
+     * é sempre concedida; acima dela, só é concedida se, em cada uma dessas horas, o comparecimento
+     * esperado mais a folga de risco ainda couber nos tosadores.
+     * @param data Data do agendamento
+     * @param hora Hora de início do agendamento
+     * @param duracaoMinutos Duração do serviço em minutos
+     * @param probabilidadeFalta Probabilidade de falta do novo agendamento
+     * @return true se a vaga foi reservada, false se alguma das horas está lotada
+     */
+    public synchronized boolean reservar(LocalDate data, LocalTime hora, int duracaoMinutos, double probabilidadeFalta) {
+        double comparece = 1.0 - probabilidadeFalta;
+        long ultima = ultimaChave(data, hora, duracaoMinutos);
+        for (long chave = chave(data, hora); chave <= ultima; chave++) {
+            double[] horario = horarios.get(chave);
+            double agendados = (horario == null ? 0 : horario[0]) + 1;
+            if (agendados <= capacidadePorHorario) continue;
+            if (agendados > Math.floor(capacidadePorHorario * limiteOverbooking)) return false;
+            double esperado = horario[1] + comparece;
+            double variancia = horario[2] + comparece * probabilidadeFalta;
+            if (esperado + nivelRisco * Math.sqrt(variancia) > capacidadePorHorario) return false;
+        }
+        ocupar(data, hora, duracaoMinutos, probabilidadeFalta);
+        return true;
+    }
+
+    /**
+     * Ocupa uma vaga em todas as horas do serviço sem conferir a lotação: a reserva já foi aceita em
+     * outra loja (o líder da replicação) e está sendo reaplicada.
+     * @param data Data do agendamento
+     * @param hora Hora de início do agendamento
+     * @param duracaoMinutos Duração do serviço em minutos
+     * @param probabilidadeFalta Probabilidade usada na reserva original
+     */
+    synchronized void ocupar(LocalDate data, LocalTime hora, int duracaoMinutos, double probabilidadeFalta) {
+        double comparece = 1.0 - probabilidadeFalta;
+        long ultima = ultimaChave(data, hora, duracaoMinutos);
+        for (long chave = chave(data, hora); chave <= ultima; chave++) {
+            double[] horario = horarios.computeIfAbsent(chave, k -> new double[3]);
+            horario[0] += 1;
+            horario[1] += comparece;
+            horario[2] += comparece * probabilidadeFalta;
+        }
+    }
+
+    /**
+     * Devolve a vaga de um agendamento cancelado ou removido em todas as horas do serviço.
+     * @param data Data do agendamento
+     * @param hora Hora de início do agendamento
+     * @param duracaoMinutos Duração do serviço em minutos
+     * @param probabilidadeFalta Probabilidade usada na reserva original
+     */
+    public synchronized void liberar(LocalDate data, LocalTime hora, int duracaoMinutos, double probabilidadeFalta) {
+        double comparece = 1.0 - probabilidadeFalta;
+        long ultima = ultimaChave(data, hora, duracaoMinutos);
+        for (long chave = chave(data, hora); chave <= ultima; chave++) {
+            double[] horario = horarios.get(chave);
+            if (horario == null || horario[0] <= 0) continue;
+            horario[0] -= 1;
+            horario[1] = Math.max(0, horario[1] - comparece);
+            horario[2] = Math.max(0, horario[2] - comparece * probabilidadeFalta);
+        }
+    }
+
+    /**
+     * Retorna quantos agendamentos já ocupam o horário.
+     * @param data Data do horário
+     * @param hora Hora do horário
+     * @return Quantidade de agendamentos no horário
+     */
+    public synchronized int getAgendados(LocalDate data, LocalTime hora) {
+        double[] horario = horarios.get(chave(data, hora));
+        return horario == null ? 0 : (int) horario[0];
+    }
+
+    /**
+     * Percorre a ocupação dos horários a partir de uma data, para ser salva.
+     * @param desde Primeira data incluída
+     * @param destino Recebe a chave do horário e {agendados, soma p, soma p(1-p)}
+     */
+    synchronized void exportar(LocalDate desde, BiConsumer<Long, double[]> destino) {
+        long inicio = chave(desde, LocalTime.MIDNIGHT);
+        horarios.forEach((chave, horario) -> {
+            if (chave >= inicio && horario[0] > 0) destino.accept(chave, horario.clone());
+        });
+    }
+
+    // Restaura a ocupação salva de um horário (chave como em exportar).
+    synchronized void restaurar(long chave, double[] horario) {
+        horarios.put(chave, horario.clone());
+    }
+
+    public int getCapacidadePorHorario() {
+        return capacidadePorHorario;
+    }
+
+    // Horários são agrupados por hora cheia: dia desde a época * 24 + hora.
+    private static long chave(LocalDate data, LocalTime hora) {
+        return data.toEpochDay() * 24 + hora.getHour();
+    }
+
+    // Chave da hora cheia em que cai o último minuto do serviço (a própria hora de início se ele durar até 1 minuto).
+    private static long ultimaChave(LocalDate data, LocalTime hora, int duracaoMinutos) {
+        long inicio = data.toEpochDay() * 24 * 60 + hora.getHour() * 60 + hora.getMinute();
+        return (inicio + Math.max(1, duracaoMinutos) - 1) / 60;
+    }
+}
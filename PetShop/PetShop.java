@@ -1,5 +1,9 @@
 package aps3;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
@@ -12,23 +16,77 @@ public class PetShop {
     // Definido como constante para evitar múltiplas instâncias ao longo da execução.
     private static final Scanner SC = new Scanner(System.in);
 
-    // Listas para armazenar clientes, agendamentos e produtos cadastrados no sistema.
-    private static final List<Cliente> CLIENTES = new ArrayList<>();
-    private static final List<Agendamento> AGENDAMENTOS = new ArrayList<>();
-    private static final List<Produto> PRODUTOS = new ArrayList<>();
+    // Estado e regras de negócio do pet shop: clientes, pets, agendamentos, produtos e financeiro.
+    // As promoções vêm de "promocoes.txt" e os lembretes são gravados em arquivo no lugar de SMS/WhatsApp.
+    private static final Loja LOJA = new Loja(new MotorPrecos(Path.of("promocoes.txt")), criarDespachanteLembretes());
 
-    // Objeto responsável pela gestão financeira, inicializado com valores padrão.
-    private static final Financeiro financeiro = new Financeiro(0, 0, "Indefinido", LocalDate.now());
+    // Planejador do táxi pet; as coordenadas dos endereços vêm de "geocodigos.csv".
+    private static final PlanejadorRotas PLANEJADOR_ROTAS =
+        new PlanejadorRotas(new TabelaGeocodigos(Path.of(TabelaGeocodigos.ARQUIVO_PADRAO)));
+
+    // Dados salvos da loja, abertos na inicialização e gravados ao sair; os clientes são lidos sob demanda.
+    private static final ArquivoLoja ARQUIVO = new ArquivoLoja(Path.of(ArquivoLoja.DIRETORIO_PADRAO));
+
+    // Última alteração do feed já gravada; sem alterações depois dela, sair não regrava os dados.
+    private static volatile long sequenciaSalva;
+
+    // Porta usada pelo servidor de terminais quando nenhuma é informada.
+    private static final int PORTA_PADRAO_SERVIDOR = 5050;
+
+    // Prazo, em milissegundos, que a replicação semissíncrona espera pela confirmação de uma réplica.
+    private static final long ESPERA_REPLICACAO_SEMISSINCRONA = 1_000;
 
     // Lista imutável contendo os serviços oferecidos pelo pet shop.
-    private static final List<String> SERVIÇOS_VALIDOS = List.of(
-        "Banho", "Tosa Tesoura", "Tosa Máquina", "Tosa Bebê",
-        "Tosa Higiênica", "Corte de Unha", "Limpeza de Ouvido",
-        "Hidratação", "Remoção de Subpelos"
-    );
+    private static final List<String> SERVIÇOS_VALIDOS = Servico.SERVICOS_DISPONIVEIS;
 
     // Método principal do sistema, responsável pelo fluxo de interação com o usuário.
     public static void main(String[] args) {
+        // Modo não interativo: "--lote <arquivo|-> [saida]" executa os comandos sem exibir menus.
+        if (args.length > 0 && args[0].equals("--lote")) {
+            System.exit(ModoLote.executar(LOJA, args));
+        }
+
+        // Teste de carga: "--simular [opções]" popula a loja com dados sintéticos e mede vazão e latências.
+        if (args.length > 0 && args[0].equals("--simular")) {
+            System.exit(SimuladorCarga.executar(LOJA, args));
+        }
+
+        // Execução de treino para o arquivo de classes do AppCDS: "--treino-cds" (veja treinarCds).
+        if (args.length > 0 && args[0].equals("--treino-cds")) {
+            System.exit(treinarCds());
+        }
+
+        // Restauração: "--restaurar <copiaCompleta> [incrementais...]" recria o diretório de dados a partir das cópias.
+        if (args.length > 0 && args[0].equals("--restaurar")) {
+            System.exit(restaurarCopias(args));
+        }
+
+        LOJA.getMotorPrecos().iniciarMonitoramento(5_000); // Verifica o arquivo de promoções a cada 5 segundos.
+
+        // Modo réplica: "--replica <portaLider> [portaTerminais]" segue um líder e atende consultas somente leitura.
+        // Os lembretes ficam com o líder e só começam a ser enviados aqui se a réplica for promovida.
+        if (args.length > 0 && args[0].equals("--replica")) {
+            iniciarReplica(args);
+            return;
+        }
+
+        abrirDados(); // Lê o índice dos dados salvos; os clientes são carregados sob demanda.
+        iniciarExpiracaoPontos(); // Expira os pontos de fidelidade vencidos toda madrugada.
+        LOJA.getLembretes().iniciar(); // Inicia o envio de lembretes em segundo plano.
+
+        // Modo servidor: "--servidor [porta] [--replicacao porta] [--semi-sincrona]" atende vários terminais
+        // (telnet/nc) em localhost sobre a mesma loja e, opcionalmente, replica as alterações para réplicas.
+        if (args.length > 0 && args[0].equals("--servidor")) {
+            boolean portaInformada = args.length > 1 && !args[1].startsWith("--");
+            iniciarServidor(portaInformada ? Integer.parseInt(args[1]) : PORTA_PADRAO_SERVIDOR);
+            Runtime.getRuntime().addShutdownHook(new Thread(PetShop::salvarDados, "salvar-dados")); // Ctrl+C encerra o servidor
+            int opcaoReplicacao = Arrays.asList(args).indexOf("--replicacao");
+            if (opcaoReplicacao > 0) {
+                iniciarReplicacao(Integer.parseInt(args[opcaoReplicacao + 1]), Arrays.asList(args).contains("--semi-sincrona"));
+            }
+            return;
+        }
+
         // Utilização do try-with-resources para garantir que o Scanner seja fechado corretamente ao final da execução.
         try (SC) {
             int opcao;
@@ -43,13 +101,213 @@ public class PetShop {
                     case 3 -> realizarAgendamento(); // Método para criar um novo agendamento.
                     case 4 -> exibirHistoricoAgendamentos(); // Método para visualizar agendamentos passados.
                     case 5 -> exibirOutros(); // Submenu com outras funcionalidades.
-                    case 6 -> System.out.println("Saindo... Obrigado por usar o sistema!"); // Encerra o programa.
+                    case 6 -> { // Encerra o programa.
+                        salvarDados();
+                        System.out.println("Saindo... Obrigado por usar o sistema!");
+                    }
                     default -> System.out.println("Opção inválida! Escolha uma opção válida."); // Mensagem de erro para entrada inválida.
                 }
             } while (opcao != 6); // Loop continua até que o usuário escolha a opção de sair.
         }
     }
 
+    // Método que abre os dados salvos, se existirem, e começa a carregar em segundo plano os clientes com agendamentos recentes.
+    private static void abrirDados() {
+        sequenciaSalva = LOJA.getFeed().getUltimaSequencia();
+        if (!ARQUIVO.existe()) return;
+        try {
+            long inicio = System.nanoTime();
+            int clientes = ARQUIVO.abrir(LOJA);
+            sequenciaSalva = LOJA.getFeed().getUltimaSequencia();
+            System.out.printf("Dados abertos: %d clientes em %d segmentos (%.0f ms).%n", clientes, ARQUIVO.getSegmentos(),
+                (System.nanoTime() - inicio) / 1e6);
+            ARQUIVO.iniciarAquecimento(LOJA, ArquivoLoja.DIAS_AQUECIMENTO);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Não foi possível abrir os dados salvos: " + e.getMessage());
+            System.exit(1); // Continuar com a loja vazia sobrescreveria os dados ao sair
+        }
+    }
+
+    // Método que restaura uma cópia completa e aplica as incrementais em ordem, gravando o resultado no diretório de dados.
+    private static int restaurarCopias(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Uso: --restaurar <copiaCompleta> [incrementais...]");
+            return 2;
+        }
+        if (ARQUIVO.existe()) {
+            System.err.println("O diretório " + ArquivoLoja.DIRETORIO_PADRAO + " já tem dados; mova-o antes de restaurar.");
+            return 1;
+        }
+        try {
+            CopiaSeguranca.Resumo resumo = CopiaSeguranca.restaurar(Path.of(args[1]), LOJA);
+            System.out.println(resumo);
+            long sequencia = resumo.getSequenciaFinal();
+            for (int i = 2; i < args.length; i++) {
+                resumo = CopiaSeguranca.aplicar(Path.of(args[i]), LOJA, sequencia);
+                System.out.println(resumo);
+                sequencia = Math.max(sequencia, resumo.getSequenciaFinal());
+            }
+            int clientes = ARQUIVO.salvar(LOJA);
+            System.out.println("Dados restaurados: " + clientes + " clientes até a alteração " + sequencia + ".");
+            return 0;
+        } catch (IOException | IllegalArgumentException | IllegalStateException e) {
+            System.err.println("Não foi possível restaurar: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    // Método que agenda a expiração dos pontos de fidelidade para as 3h de cada dia, em segundo plano.
+    private static void iniciarExpiracaoPontos() {
+        Thread expiracao = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    LocalDateTime proxima = LocalDate.now().plusDays(1).atTime(3, 0);
+                    Thread.sleep(Math.max(1, Duration.between(LocalDateTime.now(), proxima).toMillis()));
+                    long expirados = LOJA.expirarPontos(LocalDate.now());
+                    if (expirados > 0) System.out.println("\n⭐ " + expirados + " pontos de fidelidade expiraram.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "expiracao-pontos");
+        expiracao.setDaemon(true);
+        expiracao.start();
+    }
+
+    // Método que grava os dados da loja no diretório padrão, se houve alguma alteração desde a última gravação.
+    private static void salvarDados() {
+        long sequencia = LOJA.getFeed().getUltimaSequencia();
+        if (sequencia == sequenciaSalva) return;
+        try {
+            int clientes = ARQUIVO.salvar(LOJA);
+            sequenciaSalva = sequencia;
+            System.out.println("Dados salvos: " + clientes + " clientes.");
+        } catch (IOException | IllegalStateException e) {
+            System.err.println("Não foi possível salvar os dados: " + e.getMessage());
+        }
+    }
+
+    // Método que executa o treino do AppCDS: popula uma loja com o simulador, salva, reabre os dados em outra
+    // loja, faz as consultas de um início de expediente e salva de novo, para que as classes usadas na
+    // inicialização fiquem registradas. O AppCDS só aceita classes em JAR:
+    //   jar cf petshop.jar aps3/*.class
+    //   java -XX:ArchiveClassesAtExit=petshop.jsa -cp petshop.jar aps3.PetShop --treino-cds
+    //   java -XX:SharedArchiveFile=petshop.jsa -cp petshop.jar aps3.PetShop
+    private static int treinarCds() {
+        if (ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                .noneMatch(a -> a.startsWith("-XX:ArchiveClassesAtExit"))) {
+            System.out.println("Aviso: sem -XX:ArchiveClassesAtExit=petshop.jsa nenhum arquivo de classes será gerado.");
+        }
+        Path diretorio = null;
+        try {
+            diretorio = Files.createTempDirectory("petshop-treino");
+            SimuladorCarga simulador = new SimuladorCarga(42, 2_000, 50);
+            simulador.popular(LOJA);
+            simulador.executar(LOJA, 1, 2_000, 0);
+            ArquivoLoja arquivo = new ArquivoLoja(diretorio.resolve(ArquivoLoja.DIRETORIO_PADRAO));
+            arquivo.salvar(LOJA);
+
+            Loja reaberta = new Loja(new MotorPrecos(Path.of("promocoes.txt")), new DespachanteLembretes(new CanalArquivo(), 10_000));
+            arquivo = new ArquivoLoja(diretorio.resolve(ArquivoLoja.DIRETORIO_PADRAO));
+            arquivo.abrir(reaberta);
+            for (Cliente cliente : LOJA.getClientes()) {
+                Cliente lido = reaberta.buscarCliente(cliente.getCpf());
+                if (lido != null && !lido.getPets().isEmpty()) reaberta.buscarPet(lido.getCpf(), lido.getPets().get(0).getNomePet());
+            }
+            reaberta.possiveisDuplicados(LOJA.getClientes().iterator().next());
+            reaberta.getFinanceiro().exibirResumoFinanceiro();
+            arquivo.iniciarAquecimento(reaberta, ArquivoLoja.DIAS_AQUECIMENTO).join();
+            arquivo.salvar(reaberta);
+            System.out.println("Treino concluído: " + reaberta.getClientes().size() + " clientes salvos e reabertos.");
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Erro no treino: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        } finally {
+            if (diretorio != null) apagarTemporario(diretorio);
+        }
+    }
+
+    // Método que apaga o diretório temporário do treino.
+    private static void apagarTemporario(Path diretorio) {
+        try (var arquivos = Files.walk(diretorio)) {
+            for (Path arquivo : arquivos.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(arquivo);
+            }
+        } catch (IOException e) {
+            System.err.println("Não foi possível apagar " + diretorio + ": " + e.getMessage());
+        }
+    }
+
+    // Método que cria o despachante de lembretes; o arquivo só é criado quando o primeiro lembrete é enviado.
+    private static DespachanteLembretes criarDespachanteLembretes() {
+        return new DespachanteLembretes(new CanalArquivo(Path.of("lembretes.txt")), 10_000);
+    }
+
+    // Método que inicia o servidor de terminais; as threads do servidor mantêm o programa em execução.
+    private static void iniciarServidor(int porta) {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        int reatores = Math.max(1, threads / 4);
+        ServidorTerminais servidor = new ServidorTerminais(LOJA, porta, reatores, threads);
+        try {
+            servidor.iniciar();
+            System.out.printf("Servidor de terminais ouvindo em 127.0.0.1:%d (%d reatores, %d executores).%n",
+                servidor.getPorta(), reatores, threads);
+        } catch (IOException e) {
+            System.err.println("Não foi possível iniciar o servidor: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    // Método que inicia o líder de replicação, que envia as alterações da loja para as réplicas conectadas.
+    private static void iniciarReplicacao(int porta, boolean semiSincrona) {
+        LiderReplicacao lider = new LiderReplicacao(LOJA, porta, semiSincrona, ESPERA_REPLICACAO_SEMISSINCRONA);
+        try {
+            lider.iniciar();
+            System.out.printf("Replicação %s ouvindo em 127.0.0.1:%d.%n", semiSincrona ? "semissíncrona" : "assíncrona", lider.getPorta());
+        } catch (IOException e) {
+            System.err.println("Não foi possível iniciar a replicação: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    // Método que inicia uma réplica: segue o líder, atende terminais somente leitura e aceita comandos de administração.
+    private static void iniciarReplica(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Uso: --replica <porta do líder> [porta dos terminais]");
+            System.exit(2);
+        }
+        // A réplica começa vazia, no cursor 0: o líder recusa se o feed dele não começar em 1 (dados reabertos de um
+        // arquivo), e a réplica para com o motivo em vez de seguir sem os dados anteriores.
+        SeguidorReplicacao replica = new SeguidorReplicacao(LOJA, Integer.parseInt(args[1]), 0);
+        replica.iniciar();
+        iniciarServidor(args.length > 2 ? Integer.parseInt(args[2]) : PORTA_PADRAO_SERVIDOR + 1);
+        System.out.println("Réplica seguindo o líder na porta " + args[1] + ". Comandos: status, promover, sair.");
+        while (SC.hasNextLine()) {
+            switch (SC.nextLine().trim().toLowerCase()) {
+                case "status" -> {
+                    System.out.printf("Conectada: %s | Cursor: %d | Atraso: %d alterações (%d ms) | Erros: %d%n",
+                        replica.isConectado() ? "sim" : "não", replica.getCursor(), replica.getAtraso(),
+                        replica.getAtrasoMillis(), replica.getErrosAplicacao());
+                    // A réplica para na primeira alteração que não consegue aplicar ou se o líder não tiver o feed desde o início.
+                    if (!replica.isAtivo() && replica.getUltimoErro() != null) {
+                        System.out.println("Replicação parada: " + replica.getUltimoErro());
+                    }
+                }
+                case "promover" -> {
+                    long cursor = replica.promover();
+                    LOJA.getLembretes().iniciar(); // A réplica promovida passa a enviar os lembretes.
+                    System.out.println("Réplica promovida a líder na alteração " + cursor + "; a loja aceita alterações.");
+                }
+                case "sair" -> System.exit(0);
+                default -> System.out.println("Comandos: status, promover, sair.");
+            }
+        }
+    }
+
     // Método que exibe o menu principal do sistema.
     private static void exibirMenu() {
         System.out.println("\n=== PETSHOP ===");
@@ -70,7 +328,15 @@ public class PetShop {
             System.out.println("1. Exibir Resumo Financeiro");
             System.out.println("2. Gerenciar Produtos");
             System.out.println("3. Remover Pet ou Cliente");
-            System.out.println("4. Voltar ao Menu Principal");
+            System.out.println("4. Registrar Comparecimento");
+            System.out.println("5. Realizar Venda");
+            System.out.println("6. Planejar Rota de Busca");
+            System.out.println("7. Fila de Espera (sem agendamento)");
+            System.out.println("8. Consulta Livre");
+            System.out.println("9. Fidelidade do Cliente");
+            System.out.println("10. Campanhas (Aniversário e Idade)");
+            System.out.println("11. Fechamento do Caixa");
+            System.out.println("12. Voltar ao Menu Principal");
             System.out.print("Opção: ");
 
             opcao = lerOpcao(); // Captura a opção do usuário.
@@ -80,15 +346,35 @@ public class PetShop {
                 case 1 -> exibirResumoFinanceiro(); // Exibe informações financeiras.
                 case 2 -> gerenciarProdutos(); // Gerencia produtos cadastrados.
                 case 3 -> menuRemover(); // Remove pets ou clientes do sistema.
-                case 4 -> System.out.println("Voltando ao Menu Principal..."); // Retorna ao menu principal.
+                case 4 -> registrarComparecimento(); // Informa se o cliente compareceu ou faltou.
+                case 5 -> realizarVenda(); // Vende produtos e serviços avulsos no caixa.
+                case 6 -> planejarRota(); // Monta as viagens do táxi pet para buscar os pets.
+                case 7 -> menuFilaEspera(); // Atende clientes que chegam sem agendamento.
+                case 8 -> consultaLivre(); // Responde perguntas do balcão escritas como consulta.
+                case 9 -> exibirFidelidade(); // Mostra nível e pontos de um cliente.
+                case 10 -> menuCampanhas(); // Lista pets aniversariantes ou de uma faixa de idade.
+                case 11 -> fecharCaixa(); // Fecha o caixa do dia e confere o financeiro e o estoque.
+                case 12 -> System.out.println("Voltando ao Menu Principal..."); // Retorna ao menu principal.
                 default -> System.out.println("Opção inválida! Escolha uma opção válida."); // Mensagem de erro para entrada inválida.
             }
-        } while (opcao != 4); // O loop continua até o usuário optar por sair.
+        } while (opcao != 12); // O loop continua até o usuário optar por sair.
     }
 
     // Método que exibe um resumo financeiro do pet shop.
     private static void exibirResumoFinanceiro() {
-        System.out.println(financeiro.exibirResumoFinanceiro());
+        System.out.println(LOJA.getFinanceiro().exibirResumoFinanceiro());
+    }
+
+    // Método que fecha o caixa de um dia (ou mostra o resumo de um dia já fechado) e exibe as divergências encontradas.
+    private static void fecharCaixa() {
+        System.out.print("Fechar o caixa de hoje? (S/N): ");
+        LocalDate dia = SC.nextLine().trim().equalsIgnoreCase("S") ? LocalDate.now()
+            : lerData("Dia a fechar ou consultar (dd/MM/yyyy): ");
+        try {
+            System.out.println(LOJA.fecharDia(dia).formatar());
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            System.out.println("🚫 " + e.getMessage());
+        }
     }
 
     // Método para gerenciar produtos cadastrados no sistema.
@@ -96,11 +382,18 @@ public class PetShop {
         System.out.println("\n=== GERENCIAR PRODUTOS ===");
 
         // Verifica se há produtos cadastrados antes de listar.
-        if (PRODUTOS.isEmpty()) {
+        if (LOJA.getProdutos().isEmpty()) {
             System.out.println("🚫 Nenhum produto cadastrado!");
         } else {
             System.out.println("Produtos cadastrados:");
-            PRODUTOS.forEach(produto -> System.out.println(produto)); // Exibe lista de produtos.
+            LOJA.getProdutos().forEach(produto -> System.out.println(produto)); // Exibe lista de produtos.
+
+            // Sugere o que comprar nesta semana com base na previsão de consumo.
+            List<PrevisaoEstoque.Sugestao> sugestoes = LOJA.sugerirCompras();
+            if (!sugestoes.isEmpty()) {
+                System.out.println("\n🛒 Sugestões de compra para esta semana:");
+                sugestoes.forEach(System.out::println);
+            }
         }
 
         // Pergunta ao usuário se deseja cadastrar um novo produto.
@@ -113,6 +406,220 @@ public class PetShop {
         }
     }
 
+    // Método que exibe o nível, os pontos e o gasto anual de um cliente no programa de fidelidade.
+    private static void exibirFidelidade() {
+        System.out.print("CPF do cliente: ");
+        Cliente cliente = LOJA.buscarCliente(SC.nextLine().trim());
+        if (cliente == null) {
+            System.out.println("🚫 Cliente não encontrado!");
+            return;
+        }
+        System.out.println("⭐ " + cliente.getNome() + ": " + LOJA.extratoFidelidade(cliente));
+    }
+
+    // Método que monta a lista de uma campanha (aniversariantes ou faixa de idade) e a exibe ou grava em arquivo.
+    private static void menuCampanhas() {
+        System.out.println("\n=== CAMPANHAS ===");
+        System.out.println("1. Aniversariantes de um Período");
+        System.out.println("2. Pets por Faixa de Idade");
+        int tipo = lerOpcao();
+        if (tipo != 1 && tipo != 2) {
+            System.out.println("Opção inválida!");
+            return;
+        }
+        try {
+            LocalDate de = null, ate = null;
+            int idadeMinima = 0, idadeMaxima = 0;
+            if (tipo == 1) {
+                de = lerData("Início do período (dd/MM/yyyy): ");
+                ate = lerData("Fim do período (dd/MM/yyyy): ");
+            } else {
+                System.out.print("Idade mínima (anos): ");
+                idadeMinima = Integer.parseInt(SC.nextLine().trim());
+                System.out.print("Idade máxima (anos): ");
+                idadeMaxima = Integer.parseInt(SC.nextLine().trim());
+            }
+            System.out.print("Espécie (Cachorro/Gato, Enter para todas): ");
+            String especie = SC.nextLine().trim();
+            System.out.print("Porte (Pequeno/Médio/Grande, Enter para todos): ");
+            String porte = SC.nextLine().trim();
+            List<IndiceCampanhas.Alvo> alvos = tipo == 1
+                ? LOJA.aniversariantes(de, ate, especie, porte)
+                : LOJA.faixaEtaria(idadeMinima, idadeMaxima, especie, porte);
+
+            System.out.print("Arquivo para exportar (Enter para exibir na tela): ");
+            String arquivo = SC.nextLine().trim();
+            LocalDate hoje = LocalDate.now();
+            if (!arquivo.isEmpty()) {
+                int linhas = IndiceCampanhas.exportar(alvos, Path.of(arquivo), hoje);
+                System.out.println("✅ " + linhas + " pet(s) gravado(s) em " + arquivo);
+                return;
+            }
+            DateTimeFormatter fmt = DateTimeFormatter.ofPattern("dd/MM");
+            for (IndiceCampanhas.Alvo alvo : alvos) {
+                Pets pet = alvo.getPet();
+                System.out.printf("%s%s (%s, %s, %d anos) | %s | %s%n",
+                    alvo.getAniversario() == null ? "" : "🎂 " + alvo.getAniversario().format(fmt) + " | ",
+                    pet.getNomePet(), pet.getEspecie(), pet.getPortePet(), pet.getIdade(hoje),
+                    alvo.getDono().getNome(), alvo.getDono().getTelefone());
+            }
+            System.out.println(alvos.size() + " pet(s) encontrado(s).");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Erro: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Erro ao gravar o arquivo: " + e.getMessage());
+        }
+    }
+
+    // Método que executa uma consulta digitada pelo usuário e exibe os resultados à medida que são encontrados.
+    private static void consultaLivre() {
+        System.out.println("\n=== CONSULTA LIVRE ===");
+        System.out.println("Ex.: pets onde especie = Gato e porte = Grande e idade > 10");
+        System.out.println("     agendamentos onde servico = \"Banho\" e data entre 01/03/2025 e 31/03/2025 ordenar por hora");
+        System.out.print("Consulta: ");
+        try {
+            Consulta consulta = Consulta.compilar(SC.nextLine());
+            Consulta.Plano plano = LOJA.consultar(consulta);
+            System.out.println(String.join(" | ", consulta.getColunas()));
+            long[] total = new long[1];
+            plano.linhas().forEachOrdered(valores -> { // Cada linha é exibida assim que encontrada
+                System.out.println(String.join(" | ", valores));
+                total[0]++;
+            });
+            System.out.printf("%d resultado(s) — %s, %d examinado(s).%n", total[0], plano.getDescricao(), plano.getCandidatos());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Erro: " + e.getMessage());
+        }
+    }
+
+    // Método que gerencia a fila de espera de clientes sem agendamento.
+    private static void menuFilaEspera() {
+        FilaEspera fila = LOJA.getFilaEspera();
+        int opcao;
+        do {
+            System.out.println("\n=== FILA DE ESPERA ===");
+            LocalDateTime agora = LocalDateTime.now();
+            for (FilaEspera.Senha senha : fila.listar()) {
+                System.out.printf("%s | Espera estimada: %d min%n", senha, fila.estimarEspera(senha.getNumero(), agora).toMinutes());
+            }
+            System.out.println("1. Entrar na Fila");
+            System.out.println("2. Chamar Próximo");
+            System.out.println("3. Cancelar Senha");
+            System.out.println("4. Voltar");
+            System.out.print("Opção: ");
+            opcao = lerOpcao();
+
+            try {
+                switch (opcao) {
+                    case 1 -> {
+                        listarPets();
+                        Pets pet = selecionarPet();
+                        String servico = lerServico();
+                        System.out.print("Prioridade (1. Urgente, 2. Preferencial, 3. Normal): ");
+                        int escolha = lerOpcao();
+                        FilaEspera.Prioridade prioridade = escolha >= 1 && escolha <= 3
+                            ? FilaEspera.Prioridade.values()[escolha - 1] : FilaEspera.Prioridade.NORMAL;
+                        FilaEspera.Senha senha = fila.entrar(pet, servico, prioridade, LocalDateTime.now());
+                        System.out.printf("✅ Senha %d | Espera estimada: %d min%n", senha.getNumero(),
+                            fila.estimarEspera(senha.getNumero(), LocalDateTime.now()).toMinutes());
+                    }
+                    case 2 -> {
+                        FilaEspera.Senha senha = fila.chamarProximo(LocalDateTime.now());
+                        System.out.println(senha == null ? "🚫 Fila vazia." : "📢 Chamando: " + senha);
+                    }
+                    case 3 -> {
+                        System.out.print("Número da senha: ");
+                        System.out.println(fila.cancelar(lerOpcao()) ? "✅ Senha cancelada." : "🚫 Senha não encontrada.");
+                    }
+                    case 4 -> System.out.println("Voltando...");
+                    default -> System.out.println("Opção inválida! Escolha uma opção válida.");
+                }
+            } catch (RuntimeException e) {
+                System.out.println("Erro na fila de espera: " + e.getMessage());
+            }
+        } while (opcao != 4);
+    }
+
+    // Método que planeja as viagens do táxi pet para os agendamentos da manhã de uma data.
+    private static void planejarRota() {
+        LocalDate data = lerData("Data da busca (dd/MM/yyyy): ");
+        PLANEJADOR_ROTAS.getGeocodigos().recarregarSeAlterado();
+        try {
+            PlanejadorRotas.Plano plano = PLANEJADOR_ROTAS.planejar(LOJA, data, PlanejadorRotas.FIM_MANHA);
+            if (plano.getViagens().isEmpty() && plano.getNaoLocalizados().isEmpty()) {
+                System.out.println("🚫 Nenhum agendamento pela manhã nessa data.");
+                return;
+            }
+            System.out.println("\n=== ROTA DE BUSCA ===");
+            System.out.println(plano.formatar());
+        } catch (IllegalStateException e) {
+            System.out.println("Erro ao planejar rota: " + e.getMessage());
+        }
+    }
+
+    // Método que monta um carrinho com produtos e serviços avulsos e finaliza a venda.
+    private static void realizarVenda() {
+        if (LOJA.getProdutos().isEmpty() && LOJA.getClientes().isEmpty()) {
+            System.out.println("🚫 Nenhum produto ou pet cadastrado para vender!");
+            return;
+        }
+
+        try {
+            Carrinho carrinho = new Carrinho();
+
+            // Adiciona produtos pelo código até o usuário digitar 0.
+            if (!LOJA.getProdutos().isEmpty()) {
+                System.out.println("\nProdutos disponíveis:");
+                LOJA.getProdutos().forEach(System.out::println);
+                while (true) {
+                    System.out.print("Código do produto (0 para encerrar): ");
+                    int codigo = Integer.parseInt(SC.nextLine().trim());
+                    if (codigo == 0) break;
+
+                    Produto produto = LOJA.buscarProduto(codigo);
+                    if (produto == null) {
+                        System.out.println("🚫 Produto não encontrado!");
+                        continue;
+                    }
+
+                    System.out.print("Quantidade: ");
+                    carrinho.adicionarProduto(produto, Integer.parseInt(SC.nextLine().trim()));
+                }
+            }
+
+            // Permite cobrar serviços avulsos na mesma venda.
+            if (!LOJA.getClientes().isEmpty()) {
+                System.out.print("Adicionar serviço avulso? (S/N): ");
+                while (SC.nextLine().trim().equalsIgnoreCase("S")) {
+                    Pets pet = selecionarPet();
+                    carrinho.adicionarServico(new Servico(lerServico(), pet));
+                    System.out.print("Adicionar outro serviço? (S/N): ");
+                }
+            }
+
+            if (carrinho.isVazio()) {
+                System.out.println("❌ Venda cancelada. Carrinho vazio.");
+                return;
+            }
+
+            // Identifica quem paga para aplicar o nível de fidelidade e creditar os pontos.
+            System.out.print("CPF do cliente para a fidelidade (Enter para pular): ");
+            String cpf = SC.nextLine().trim();
+            Cliente pagante = cpf.isEmpty() ? null : LOJA.buscarCliente(cpf);
+            if (!cpf.isEmpty() && pagante == null) System.out.println("⚠️ Cliente não encontrado; venda sem fidelidade.");
+
+            System.out.print("Método de pagamento (Dinheiro/Cartão/Pix): ");
+            Recibo recibo = LOJA.vender(carrinho, SC.nextLine().trim(), pagante);
+            System.out.println("✅ Venda finalizada!");
+            System.out.println(recibo.formatar());
+            if (pagante != null) System.out.println("⭐ " + LOJA.extratoFidelidade(pagante));
+        } catch (NumberFormatException e) {
+            System.out.println("🚫 Entrada inválida! Digite um número inteiro.");
+        } catch (RuntimeException e) {
+            System.out.println("Erro ao realizar venda: " + e.getMessage());
+        }
+    }
+
     // Método para cadastrar um novo pet e seu dono.
     private static void cadastrarPet() {
         try {
@@ -129,16 +636,18 @@ public class PetShop {
             String enderecoCliente = SC.nextLine().trim();
 
             // Verifica se o cliente já está cadastrado pelo CPF.
-            Cliente cliente = CLIENTES.stream()
-                .filter(c -> c.getCpf().equalsIgnoreCase(cpfCliente))
-                .findFirst()
-                .orElse(null);
+            Cliente cliente = LOJA.buscarCliente(cpfCliente);
 
             // Se o cliente não existir, cria um novo.
             if (cliente == null) {
-                cliente = new Cliente(nomeCliente, cpfCliente, telefoneCliente, enderecoCliente);
-                CLIENTES.add(cliente);
+                cliente = LOJA.cadastrarCliente(nomeCliente, cpfCliente, telefoneCliente, enderecoCliente);
                 System.out.println("✅ Cliente cadastrado com sucesso!");
+                // Avisa se parece ser alguém já cadastrado com outro CPF ou dados digitados de outro jeito.
+                for (DetectorDuplicados.Proposta proposta : LOJA.possiveisDuplicados(cliente)) {
+                    Cliente outro = proposta.getManter() == cliente ? proposta.getRemover() : proposta.getManter();
+                    System.out.printf("⚠️ Possível cliente duplicado: %s (CPF %s). Use Remover > Mesclar Clientes Duplicados se for a mesma pessoa.%n",
+                        outro.getNome(), outro.getCpf());
+                }
             } else {
                 System.out.println("Cliente já cadastrado. Usando cliente existente.");
             }
@@ -162,8 +671,7 @@ public class PetShop {
             LocalDate nascimento = lerData("Data de nascimento (dd/MM/yyyy): ");
 
             // Criação e associação do pet ao cliente.
-            Pets pet = new Pets(nomePet, especie, peso, nascimento);
-            cliente.adicionarPet(pet);
+            LOJA.cadastrarPet(cliente, nomePet, especie, peso, nascimento);
             System.out.println("✅ Pet cadastrado com sucesso!");
         } catch (Exception e) {
             System.out.println("Erro ao cadastrar pet: " + e.getMessage());
@@ -173,7 +681,7 @@ public class PetShop {
    // Método que exibe a lista de pets cadastrados no sistema.
     private static void listarPets() { 
         // Verifica se a lista de clientes está vazia, indicando que não há pets cadastrados.
-        if (CLIENTES.isEmpty()) { 
+        if (LOJA.getClientes().isEmpty()) { 
             System.out.println("\n🚫 Nenhum cliente e pet cadastrado!");
             return; // Retorna imediatamente para evitar processamento desnecessário.
         }
@@ -181,7 +689,7 @@ public class PetShop {
         System.out.println("\n📋 Lista de Pets Cadastrados e seus Donos:");
 
         // Itera sobre todos os clientes cadastrados.
-        for (Cliente cliente : CLIENTES) { 
+        for (Cliente cliente : LOJA.getClientes()) { 
             // Exibe as informações do cliente utilizando seu método `toString()`.
             System.out.println("\n" + cliente.toString());
 
@@ -193,7 +701,7 @@ public class PetShop {
     // Método responsável por realizar um novo agendamento de serviço para um pet.
     private static void realizarAgendamento() { 
         // Se não houver clientes cadastrados, impede o agendamento e exibe uma mensagem ao usuário.
-        if (CLIENTES.isEmpty()) { 
+        if (LOJA.getClientes().isEmpty()) { 
             System.out.println("🚫 Nenhum cliente e pet cadastrado! Cadastre antes de agendar.");
             return;
         }
@@ -204,7 +712,7 @@ public class PetShop {
             LocalTime hora = lerHora();
 
             // Verifica se o horário do agendamento está dentro do funcionamento do pet shop.
-            if (!isHorarioValido(data, hora)) { 
+            if (!Agendamento.isHorarioValido(data, hora)) { 
                 System.out.println("🚫 Horário de agendamento inválido. O pet shop está fechado nesse horário.");
                 return;
             }
@@ -218,41 +726,36 @@ public class PetShop {
             // Captura o serviço escolhido pelo usuário.
             String servico = lerServico();
 
-            // Calcula o preço automaticamente com base no serviço e no porte do pet.
-            double valor = Servico.calcularPrecoAutomatico(servico, pet.getPortePet());
+            // Informa a promoção aplicável antes de confirmar o agendamento.
+            String promocao = LOJA.promocaoAplicada(pet, data, hora, servico);
+            if (promocao != null) {
+                System.out.println("🏷️ Promoção aplicada: " + promocao);
+            }
 
-            // Cria um novo objeto `Agendamento` e adiciona à lista de agendamentos.
-            AGENDAMENTOS.add(new Agendamento(pet, data, hora, servico, valor));
+            // Oferece o resgate dos pontos de fidelidade do dono, se ele tiver saldo.
+            long pontos = 0;
+            ProgramaFidelidade.Extrato extrato = LOJA.extratoFidelidade(LOJA.buscarDono(pet));
+            if (extrato.getPontos() > 0) {
+                System.out.println("⭐ " + extrato);
+                System.out.print("Pontos a usar no pagamento (0 para nenhum): ");
+                String entrada = SC.nextLine().trim();
+                pontos = entrada.isEmpty() ? 0 : Long.parseLong(entrada);
+            }
 
-            // Atualiza os registros financeiros do pet shop após o agendamento ser concluído.
-            financeiro.setServicoFeitos(financeiro.getServicoFeitos() + 1);
-            financeiro.setRecebimento(financeiro.getRecebimento() + valor);
+            // Calcula o preço, reserva a vaga, agenda os lembretes e atualiza o financeiro e a fidelidade.
+            Agendamento agendamento = LOJA.agendar(pet, data, hora, servico, pontos);
+            Dinheiro valor = agendamento.getValor();
+            double riscoFalta = LOJA.estimarRiscoFalta(agendamento);
 
             // Exibe uma mensagem de sucesso com o valor do serviço.
-            System.out.printf("✅ Agendamento realizado com sucesso! Valor: R$ %.2f%n", valor);
+            System.out.printf("✅ Agendamento realizado com sucesso! Valor: R$ %s | Risco de falta: %.0f%%%n", valor, riscoFalta * 100);
+            System.out.println("⭐ " + LOJA.extratoFidelidade(LOJA.buscarDono(pet)));
         } catch (Exception e) { 
             // Captura possíveis erros e exibe uma mensagem informativa ao usuário.
             System.out.println("Erro ao realizar agendamento: " + e.getMessage());
         }
     }
 
-    // Método que verifica se um horário de agendamento é válido conforme o horário de funcionamento do pet shop.
-    private static boolean isHorarioValido(LocalDate data, LocalTime hora) { 
-        // Obtém o dia da semana correspondente à data informada.
-        DayOfWeek diaDaSemana = data.getDayOfWeek();
-
-        // O pet shop está fechado aos domingos, então retorna `false` imediatamente.
-        if (diaDaSemana == DayOfWeek.SUNDAY) { 
-            return false;
-        } else if (diaDaSemana == DayOfWeek.SATURDAY) { 
-            // Aos sábados, o funcionamento é das 09:00 às 13:00.
-            return hora.isAfter(LocalTime.of(8, 59)) && hora.isBefore(LocalTime.of(13, 1));
-        } else { // De segunda a sexta-feira
-            // Horário válido: das 08:00 às 18:00.
-            return hora.isAfter(LocalTime.of(7, 59)) && hora.isBefore(LocalTime.of(18, 1));
-        }
-    }
-
    // Método que permite ao usuário escolher um serviço válido a partir da lista de opções disponíveis.
     private static String lerServico() { 
         System.out.println("\n📌 Serviços disponíveis:");
@@ -286,19 +789,51 @@ public class PetShop {
         System.out.print("Digite o nome do pet: ");
         String nomePet = SC.nextLine().trim(); // Captura a entrada e remove espaços extras.
 
-        // Percorre todos os clientes cadastrados.
-        for (Cliente cliente : CLIENTES) { 
-            // Percorre os pets associados ao cliente atual.
-            for (Pets pet : cliente.getPets()) { 
-                // Compara o nome do pet ignorando maiúsculas e minúsculas.
-                if (pet.getNomePet().equalsIgnoreCase(nomePet)) { 
-                    return pet; // Retorna o pet encontrado.
-                }
-            }
+        // Busca o pet entre os clientes cadastrados; lança exceção se nenhum pet for encontrado.
+        return LOJA.buscarPet(nomePet);
+    }
+
+    // Método que registra se o cliente compareceu a um agendamento, alimentando o previsor de faltas.
+    private static void registrarComparecimento() {
+        List<Agendamento> agendamentos = LOJA.getAgendamentos();
+        if (agendamentos.isEmpty()) {
+            System.out.println("🚫 Nenhum agendamento realizado ainda.");
+            return;
+        }
+
+        // Lista os agendamentos numerados para facilitar a escolha.
+        for (int i = 0; i < agendamentos.size(); i++) {
+            System.out.printf("%d. %s%n", i + 1, agendamentos.get(i).getDetalhesAgendamento());
         }
 
-        // Caso nenhum pet seja encontrado, uma exceção é lançada para indicar erro.
-        throw new NoSuchElementException("🚫 Pet não encontrado!"); 
+        try {
+            System.out.print("Número do agendamento: ");
+            int escolha = Integer.parseInt(SC.nextLine().trim());
+            if (escolha < 1 || escolha > agendamentos.size()) {
+                System.out.println("🚫 Número inválido!");
+                return;
+            }
+            Agendamento agendamento = agendamentos.get(escolha - 1);
+
+            System.out.print("O cliente compareceu? (S/N, ou C para cancelar o agendamento): ");
+            String resposta = SC.nextLine().trim();
+
+            FilaEspera.Senha chamada;
+            if (resposta.equalsIgnoreCase("C")) {
+                chamada = LOJA.cancelarAgendamento(agendamento);
+                System.out.println("✅ Agendamento cancelado!");
+            } else {
+                chamada = LOJA.registrarComparecimento(agendamento, resposta.equalsIgnoreCase("S"));
+                System.out.println("✅ Comparecimento registrado!");
+            }
+            if (chamada != null) {
+                System.out.println("📢 Vaga aproveitada pela fila de espera: " + chamada);
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("🚫 Entrada inválida! Digite um número.");
+        } catch (RuntimeException e) {
+            System.out.println("Erro ao registrar comparecimento: " + e.getMessage());
+        }
     }
 
     // Método que solicita e valida uma data digitada pelo usuário.
@@ -354,6 +889,23 @@ public class PetShop {
         }
     }
 
+    // Método que solicita e valida um valor monetário dentro de um intervalo definido.
+    private static Dinheiro lerDinheiro(String mensagem, Dinheiro min, Dinheiro max) {
+        while (true) {
+            try {
+                System.out.print(mensagem);
+                Dinheiro valor = Dinheiro.parse(SC.nextLine()); // Converte a entrada em centavos, sem arredondamentos.
+
+                // Verifica se o valor está dentro do intervalo permitido.
+                if (valor.compareTo(min) >= 0 && valor.compareTo(max) <= 0) return valor;
+
+                System.out.println("🚫 Valor fora do intervalo permitido! Tente novamente.");
+            } catch (IllegalArgumentException e) {
+                System.out.println("🚫 Entrada inválida! Digite um valor como 12,50."); // Exibe erro caso a entrada não seja um valor válido.
+            }
+        }
+    }
+
    // Método para cadastrar um novo produto no sistema.
     private static void cadastrarProduto() {
         try {
@@ -363,8 +915,8 @@ public class PetShop {
             System.out.print("Categoria (Higiene/Alimentação/Brinquedos): ");
             String categoria = SC.nextLine().trim(); // Captura a categoria do produto.
 
-            // Obtém o preço do produto dentro do intervalo permitido (0.1 a 10.000).
-            float preco = lerFloat("Preço (R$): ", 0.1f, 10000f);
+            // Obtém o preço do produto dentro do intervalo permitido (0,10 a 10.000,00).
+            Dinheiro preco = lerDinheiro("Preço (R$): ", Dinheiro.deCentavos(10), Dinheiro.deReais(10_000));
 
             int estoque;
             while (true) {
@@ -392,9 +944,8 @@ public class PetShop {
                 }
             }
 
-            // Criação e adição do novo produto à lista de produtos.
-            Produto novoProduto = new Produto(nome, preco, estoque, categoria, codigoProduto);
-            PRODUTOS.add(novoProduto);
+            // Criação e adição do novo produto ao cadastro.
+            LOJA.cadastrarProduto(nome, preco, estoque, categoria, codigoProduto);
             System.out.println("✅ Produto cadastrado com sucesso!");
         } catch (Exception e) {
             System.out.println("Erro ao cadastrar produto: " + e.getMessage());
@@ -423,7 +974,9 @@ public class PetShop {
             System.out.println("\n=== REMOVER ===");
             System.out.println("1. Remover Pet");
             System.out.println("2. Remover Cliente");
-            System.out.println("3. Voltar");
+            System.out.println("3. Mesclar Clientes Duplicados");
+            System.out.println("4. Desfazer Remoção");
+            System.out.println("5. Voltar");
             System.out.print("Opção: ");
 
             opcao = lerOpcao(); // Obtém a opção do usuário.
@@ -431,15 +984,17 @@ public class PetShop {
             switch (opcao) {
                 case 1 -> removerPet();
                 case 2 -> removerCliente();
-                case 3 -> System.out.println("Voltando...");
+                case 3 -> mesclarClientes();
+                case 4 -> desfazerRemocao();
+                case 5 -> System.out.println("Voltando...");
                 default -> System.out.println("Opção inválida! Escolha uma opção válida.");
             }
-        } while (opcao != 3); // Continua até que o usuário escolha "Voltar".
+        } while (opcao != 5); // Continua até que o usuário escolha "Voltar".
     }
 
     // Método que permite ao usuário remover um pet cadastrado.
     private static void removerPet() {
-        if (CLIENTES.isEmpty()) {
+        if (LOJA.getClientes().isEmpty()) {
             System.out.println("🚫 Nenhum pet cadastrado para remover.");
             return;
         }
@@ -449,23 +1004,11 @@ public class PetShop {
         System.out.print("Digite o nome do pet para remover: ");
         String nomePet = SC.nextLine().trim(); // Captura o nome do pet a ser removido.
 
-        Cliente clientePet = null;
-        Pets petRemover = null;
-
-        // Percorre os clientes e seus pets para encontrar o pet desejado.
-        for (Cliente cliente : CLIENTES) {
-            for (Pets pet : cliente.getPets()) {
-                if (pet.getNomePet().equalsIgnoreCase(nomePet)) {
-                    clientePet = cliente;
-                    petRemover = pet;
-                    break;
-                }
-            }
-            if (petRemover != null) break;
-        }
-
-        // Se o pet não for encontrado, exibe uma mensagem de erro.
-        if (petRemover == null) {
+        // Busca o pet desejado; se não for encontrado, exibe uma mensagem de erro.
+        Pets petRemover;
+        try {
+            petRemover = LOJA.buscarPet(nomePet);
+        } catch (NoSuchElementException e) {
             System.out.println("🚫 Pet não encontrado.");
             return;
         }
@@ -474,24 +1017,23 @@ public class PetShop {
         String confirmar = SC.nextLine().trim();
 
         if (confirmar.equalsIgnoreCase("S")) {
-            // Remove o pet da lista de pets do cliente.
-            List<Pets> petsModificaveis = new ArrayList<>(clientePet.getPets());
-            if (petsModificaveis.remove(petRemover)) {
-                clientePet.getPets().clear();
-                clientePet.getPets().addAll(petsModificaveis);
-                System.out.println("✅ Pet removido com sucesso!");
-
-                // Se o cliente não tiver mais pets, pergunta se deseja removê-lo também.
-                if (clientePet.getPets().isEmpty()) {
-                    System.out.printf("Cliente %s não possui mais pets. Deseja removê-lo? (S/N): ", clientePet.getNome());
-                    String confirmaCliente = SC.nextLine().trim();
-                    if (confirmaCliente.equalsIgnoreCase("S")) {
-                        CLIENTES.remove(clientePet);
-                        System.out.println("✅ Cliente removido com sucesso!");
-                    }
+            Loja.PoliticaRemocao politica = lerPoliticaRemocao(List.of(petRemover));
+            if (politica == null) {
+                System.out.println("❌ Remoção cancelada.");
+                return;
+            }
+            // Remove o pet do cliente e cancela os lembretes pendentes dele.
+            Cliente clientePet = LOJA.removerPet(petRemover, politica, LocalDateTime.now());
+            System.out.println("✅ Pet removido com sucesso! (pode ser desfeito em Remover > Desfazer Remoção)");
+
+            // Se o cliente não tiver mais pets, pergunta se deseja removê-lo também.
+            if (clientePet.getPets().isEmpty()) {
+                System.out.printf("Cliente %s não possui mais pets. Deseja removê-lo? (S/N): ", clientePet.getNome());
+                String confirmaCliente = SC.nextLine().trim();
+                if (confirmaCliente.equalsIgnoreCase("S")) {
+                    LOJA.removerCliente(clientePet, politica, LocalDateTime.now());
+                    System.out.println("✅ Cliente removido com sucesso!");
                 }
-            } else {
-                System.out.println("🚫 Erro ao remover pet.");
             }
         } else {
             System.out.println("❌ Remoção cancelada.");
@@ -500,7 +1042,7 @@ public class PetShop {
 
     // Método para remover um cliente e todos os seus pets cadastrados.
     private static void removerCliente() {
-        if (CLIENTES.isEmpty()) {
+        if (LOJA.getClientes().isEmpty()) {
             System.out.println("🚫 Nenhum cliente cadastrado para remover.");
             return;
         }
@@ -510,15 +1052,8 @@ public class PetShop {
         System.out.print("Digite o CPF do cliente para remover: ");
         String cpf = SC.nextLine().trim(); // Captura o CPF do cliente.
 
-        Cliente clienteRemover = null;
-
         // Busca o cliente pelo CPF informado.
-        for (Cliente cliente : CLIENTES) {
-            if (cliente.getCpf().equalsIgnoreCase(cpf)) {
-                clienteRemover = cliente;
-                break;
-            }
-        }
+        Cliente clienteRemover = LOJA.buscarCliente(cpf);
 
         // Se o cliente não for encontrado, exibe mensagem de erro.
         if (clienteRemover == null) {
@@ -530,18 +1065,100 @@ public class PetShop {
         String confirmar = SC.nextLine().trim();
 
         if (confirmar.equalsIgnoreCase("S")) {
-            // Remove o cliente do sistema.
-            CLIENTES.remove(clienteRemover);
-            System.out.println("✅ Cliente removido com sucesso!");
+            Loja.PoliticaRemocao politica = lerPoliticaRemocao(LOJA.instantaneo().getPets(clienteRemover));
+            if (politica == null) {
+                System.out.println("❌ Remoção cancelada.");
+                return;
+            }
+            // Remove o cliente do sistema e cancela os lembretes pendentes dos seus pets.
+            LOJA.removerCliente(clienteRemover, politica, LocalDateTime.now());
+            System.out.println("✅ Cliente removido com sucesso! (pode ser desfeito em Remover > Desfazer Remoção)");
         } else {
             System.out.println("❌ Remoção cancelada.");
         }
     }
 
+    // Método que pergunta o que fazer com os agendamentos futuros dos pets a remover; devolve null se o usuário desistir.
+    private static Loja.PoliticaRemocao lerPoliticaRemocao(List<Pets> pets) {
+        LocalDateTime agora = LocalDateTime.now();
+        long futuros = pets.stream().flatMap(pet -> LOJA.getAgendamentos(pet).stream())
+            .filter(agendamento -> agendamento.isPendente() && !LocalDateTime.of(agendamento.getData(), agendamento.getHora()).isBefore(agora))
+            .count();
+        if (futuros == 0) return Loja.PoliticaRemocao.MANTER_HISTORICO;
+        System.out.printf("Há %d agendamento(s) futuro(s):%n1. Cancelar os agendamentos%n2. Manter no histórico%n3. Não remover%n", futuros);
+        return switch (lerOpcao()) {
+            case 1 -> Loja.PoliticaRemocao.CANCELAR_FUTUROS;
+            case 2 -> Loja.PoliticaRemocao.MANTER_HISTORICO;
+            default -> null;
+        };
+    }
+
+    // Método que lista a lixeira e devolve o cliente ou o pet escolhido pelo usuário.
+    private static void desfazerRemocao() {
+        List<Lixeira.Remocao> remocoes = LOJA.getLixeira().getRemocoes();
+        if (remocoes.isEmpty()) {
+            System.out.println("🚫 Nenhuma remoção para desfazer.");
+            return;
+        }
+        for (int i = 0; i < remocoes.size(); i++) {
+            System.out.printf("%d. %s%n", i + 1, remocoes.get(i));
+        }
+        int escolha = lerOpcao();
+        if (escolha < 1 || escolha > remocoes.size()) {
+            System.out.println("🚫 Número inválido!");
+            return;
+        }
+        Lixeira.Remocao remocao = remocoes.get(escolha - 1);
+        try {
+            List<Agendamento> naoReativados = LOJA.desfazerRemocao(remocao.getDono().getCpf(),
+                remocao.isCliente() ? null : remocao.getPets().get(0).getNomePet());
+            System.out.println("✅ Remoção desfeita!");
+            naoReativados.forEach(agendamento -> System.out.println("⚠️ Horário lotado, agendamento continua cancelado: "
+                + agendamento.getDetalhesAgendamento()));
+        } catch (IllegalStateException | NoSuchElementException e) {
+            System.out.println("🚫 " + e.getMessage());
+        }
+    }
+
+    // Método que procura cadastros duplicados e mescla os que o usuário confirmar.
+    private static void mesclarClientes() {
+        List<DetectorDuplicados.Proposta> propostas = LOJA.buscarDuplicados();
+        if (propostas.isEmpty()) {
+            System.out.println("✅ Nenhum cliente duplicado encontrado.");
+            return;
+        }
+
+        for (DetectorDuplicados.Proposta proposta : propostas) {
+            Cliente manter = proposta.getManter();
+            Cliente remover = proposta.getRemover();
+            // Uma mesclagem anterior pode ter removido um dos cadastros desta proposta.
+            if (LOJA.buscarCliente(manter.getCpf()) != manter || LOJA.buscarCliente(remover.getCpf()) != remover) continue;
+
+            System.out.printf("%nSimilaridade: %.0f%%%n", proposta.getSimilaridade() * 100);
+            System.out.printf("Manter:  %s | CPF: %s | Telefone: %s | Endereço: %s | Pets: %d%n", manter.getNome(),
+                manter.getCpf(), manter.getTelefone(), manter.getEndereco(), manter.getPets().size());
+            System.out.printf("Remover: %s | CPF: %s | Telefone: %s | Endereço: %s | Pets: %d%n", remover.getNome(),
+                remover.getCpf(), remover.getTelefone(), remover.getEndereco(), remover.getPets().size());
+            System.out.print("Mesclar estes cadastros? (S/N/P para parar): ");
+            String confirmar = SC.nextLine().trim();
+
+            if (confirmar.equalsIgnoreCase("P")) {
+                break;
+            } else if (confirmar.equalsIgnoreCase("S")) {
+                try {
+                    LOJA.mesclarClientes(manter, remover);
+                    System.out.println("✅ Clientes mesclados com sucesso!");
+                } catch (IllegalArgumentException e) {
+                    System.out.println("🚫 " + e.getMessage());
+                }
+            }
+        }
+    }
+
    // Método que lista todos os clientes cadastrados no sistema.
     private static void listarClientes() { 
         // Verifica se a lista de clientes está vazia. Caso esteja, exibe uma mensagem e retorna.
-        if (CLIENTES.isEmpty()) { 
+        if (LOJA.getClientes().isEmpty()) { 
             System.out.println("🚫 Nenhum cliente cadastrado.");
             return; // Retorna imediatamente para evitar execução desnecessária.
         }
@@ -549,13 +1166,13 @@ public class PetShop {
         System.out.println("\n📋 Lista de Clientes:");
 
         // Utiliza `forEach` para percorrer e imprimir cada cliente da lista.
-        CLIENTES.forEach(System.out::println); 
+        LOJA.getClientes().forEach(System.out::println); 
     }
 
     // Método que exibe o histórico de agendamentos feitos no pet shop.
     private static void exibirHistoricoAgendamentos() { 
         // Verifica se há agendamentos registrados. Caso não haja, exibe uma mensagem e retorna.
-        if (AGENDAMENTOS.isEmpty()) { 
+        if (LOJA.getAgendamentos().isEmpty()) { 
             System.out.println("🚫 Nenhum agendamento realizado ainda.");
             return;
         }
@@ -563,7 +1180,6 @@ public class PetShop {
         System.out.println("\n📅 Histórico de Agendamentos:");
 
         // Utiliza `forEach` para percorrer a lista de agendamentos e exibir os detalhes de cada um.
-        AGENDAMENTOS.forEach(agendamento -> System.out.println(agendamento.getDetalhesAgendamento())); 
+        LOJA.getAgendamentos().forEach(agendamento -> System.out.println(agendamento.getDetalhesAgendamento())); 
     }
 }
-5
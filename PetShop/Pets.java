@@ -1,59 +1,77 @@
 package aps3;
 
 import java.time.LocalDate;
-import java.time.Period;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 
 /**
  * Representa um pet cadastrado no sistema com suas características básicas.
+ * <p>
+ * Os dados ficam no {@link ArmazemPets} compacto da loja que cadastrou o pet; cada instância guarda
+ * apenas o armazenamento, a sua posição nele e a geração da posição. A identidade do objeto continua
+ * sendo a identidade do pet; depois que o pet é descartado e a posição reaproveitada, a visão falha
+ * com {@link IllegalStateException} em vez de mostrar os dados de outro pet.
  */
 public class Pets {
-    private String nomePet;
-    private String especie;
-    private float pesoPet;
-    private LocalDate dataNascimento;
-    private String portePet;
+    // Portes possíveis, do menor para o maior; a posição é usada como índice estável.
+    public static final List<String> PORTES = List.of("Pequeno", "Médio", "Grande");
+
+    private final ArmazemPets armazem; // Armazenamento da loja dona do pet
+    private final int posicao;         // Posição do pet no armazenamento
+    private final int geracao;         // Geração da posição quando o pet foi cadastrado
 
     /**
-     * Construtor da classe Pet, realizando validações essenciais.
+     * Construtor da classe Pet, realizando validações essenciais. Os pets são criados pela
+     * {@link Loja}, que fornece o seu armazenamento.
+     * @param armazem Armazenamento onde os dados do pet ficam
      * @param nomePet Nome do pet
      * @param especie Espécie (Cachorro ou Gato)
      * @param pesoPet Peso do pet (deve ser maior que zero)
      * @param dataNascimento Data de nascimento (não pode ser futura)
      */
-    public Pets(String nomePet, String especie, float pesoPet, LocalDate dataNascimento) {
+    Pets(ArmazemPets armazem, String nomePet, String especie, float pesoPet, LocalDate dataNascimento) {
         if (nomePet == null || nomePet.isBlank()) {
             throw new IllegalArgumentException("Nome do pet não pode ser vazio.");
         }
-        validarEspecie(especie); // Verifica se a espécie é válida
+        byte codigoEspecie = validarEspecie(especie); // Verifica se a espécie é válida
         if (pesoPet <= 0) throw new IllegalArgumentException("Peso inválido! Deve ser maior que zero.");
-        if (dataNascimento.isAfter(LocalDate.now())) throw new IllegalArgumentException("Data futura não permitida.");
+        int nascimento = validarNascimento(dataNascimento);
 
-        this.nomePet = nomePet;
-        this.especie = especie;
-        this.pesoPet = pesoPet;
-        this.dataNascimento = dataNascimento;
-        definirPorte(); // Define o porte automaticamente com base no peso
+        this.armazem = armazem;
+        this.posicao = armazem.adicionar(nomePet, codigoEspecie, emGramas(pesoPet), nascimento);
+        this.geracao = armazem.getGeracao(posicao);
     }
 
     /**
-     * Define o porte do pet com base no peso.
+     * Calcula o porte correspondente a um peso, usado também para pesos históricos.
+     * @param peso Peso em kg
+     * @return Porte ("Pequeno", "Médio" ou "Grande")
      */
-    private void definirPorte() {
-        if (pesoPet <= 10) {
-            this.portePet = "Pequeno";
-        } else if (pesoPet <= 25) {
-            this.portePet = "Médio";
+    public static String calcularPorte(float peso) {
+        if (peso <= 10) {
+            return "Pequeno";
+        } else if (peso <= 25) {
+            return "Médio";
         } else {
-            this.portePet = "Grande";
+            return "Grande";
         }
     }
 
+    /**
+     * Retorna a posição do porte na lista de portes.
+     * @param porte Nome do porte
+     * @return Índice do porte ou -1 se o porte não existir
+     */
+    public static int indicePorte(String porte) {
+        return PORTES.indexOf(porte);
+    }
+
     /**
      * Gera um resumo formatado sobre o pet.
      * @return String com as informações do pet
      */
     public String gerarResumo() {
+        LocalDate nascimento = getDataNascimento();
         DateTimeFormatter fmt = DateTimeFormatter.ofPattern("dd/MM/yyyy");
         return String.format("""
             Nome: %s
@@ -63,62 +81,119 @@ public class Pets {
             Porte: %s
             Nascimento: %s
             """,
-            nomePet, especie, Period.between(dataNascimento, LocalDate.now()).getYears(),
-            pesoPet, portePet, dataNascimento.format(fmt)
+            getNomePet(), getEspecie(), getIdade(LocalDate.now()),
+            getPesoPet(), getPortePet(), nascimento.format(fmt)
         );
     }
 
+    /**
+     * Idade em anos completos em uma data, a mesma de {@code Period.between(nascimento, data).getYears()}
+     * sem montar o período (quem nasceu em 29/02 completa anos em 01/03 nos anos não bissextos).
+     * @param data Data de referência
+     * @return Idade em anos
+     */
+    public int getIdade(LocalDate data) {
+        return idade(getDataNascimento(), data);
+    }
+
+    // Anos completos entre o nascimento e a data.
+    static int idade(LocalDate nascimento, LocalDate data) {
+        int idade = data.getYear() - nascimento.getYear();
+        if (data.getMonthValue() < nascimento.getMonthValue()
+            || (data.getMonthValue() == nascimento.getMonthValue() && data.getDayOfMonth() < nascimento.getDayOfMonth())) {
+            idade--;
+        }
+        return idade;
+    }
+
     /**
      * Valida a espécie do pet.
      * @param especie Espécie informada
+     * @return Código da espécie no armazenamento
      */
-    private void validarEspecie(String especie) {
-        if (!especie.equalsIgnoreCase("Cachorro") && !especie.equalsIgnoreCase("Gato")) {
+    private static byte validarEspecie(String especie) {
+        byte codigo = ArmazemPets.codigoEspecie(especie);
+        if (codigo < 0) {
             throw new IllegalArgumentException("Espécie inválida! Apenas Cachorro ou Gato são permitidos.");
         }
+        return codigo;
+    }
+
+    /**
+     * Valida a data de nascimento do pet.
+     * @param dataNascimento Data informada
+     * @return Dias desde 1970-01-01
+     */
+    private static int validarNascimento(LocalDate dataNascimento) {
+        if (dataNascimento.isAfter(LocalDate.now())) throw new IllegalArgumentException("Data futura não permitida.");
+        long dia = dataNascimento.toEpochDay();
+        if (dia < Integer.MIN_VALUE) throw new IllegalArgumentException("Data de nascimento inválida.");
+        return (int) dia;
+    }
+
+    // Peso em gramas, com no mínimo 1 g para pesos positivos muito pequenos.
+    private static int emGramas(float peso) {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, Math.round(peso * 1000.0)));
     }
 
     // Getters e Setters com validações
 
     public String getNomePet() {
-        return nomePet;
+        return armazem.getNome(posicao, geracao);
     }
     public void setNomePet(String nomePet) { 
         if (nomePet == null || nomePet.isBlank()) {
             throw new IllegalArgumentException("Nome do pet não pode ser vazio.");
         }
-        this.nomePet = nomePet; 
+        armazem.setNome(posicao, geracao, nomePet);
     }
 
+    /**
+     * Espécie do pet, sempre escrita como "Cachorro" ou "Gato".
+     * @return Espécie do pet
+     */
     public String getEspecie() { 
-        return especie;
+        return armazem.getEspecie(posicao, geracao);
     }
     public void setEspecie(String especie) { 
-        validarEspecie(especie); 
-        this.especie = especie; 
+        armazem.setEspecie(posicao, geracao, validarEspecie(especie));
+    }
+    byte getCodigoEspecie() {
+        return armazem.getCodigoEspecie(posicao, geracao);
     }
 
+    /**
+     * Peso do pet, guardado com precisão de gramas.
+     * @return Peso em kg
+     */
     public float getPesoPet() {
-        return pesoPet;
+        return armazem.getPesoGramas(posicao, geracao) / 1000f;
     }
     public void setPesoPet(float pesoPet) {
         if (pesoPet <= 0) throw new IllegalArgumentException("Peso inválido! Deve ser maior que zero.");
-        this.pesoPet = pesoPet;
-        definirPorte(); // Atualiza o porte ao modificar o peso
+        armazem.setPesoGramas(posicao, geracao, emGramas(pesoPet)); // O porte acompanha o peso
     }
 
     public LocalDate getDataNascimento() {
-        return dataNascimento; 
+        return LocalDate.ofEpochDay(armazem.getNascimento(posicao, geracao));
+    }
+    int getDiaNascimento() { // Dias desde 1970-01-01
+        return armazem.getNascimento(posicao, geracao);
     }
     public void setDataNascimento(LocalDate dataNascimento) { 
-        if (dataNascimento.isAfter(LocalDate.now())) {
-            throw new IllegalArgumentException("Data futura não permitida.");
-        }
-        this.dataNascimento = dataNascimento; 
-        definirPorte(); // Atualiza o porte ao modificar a data de nascimento
+        armazem.setNascimento(posicao, geracao, validarNascimento(dataNascimento));
     }
 
     public String getPortePet() {
-        return portePet;
+        return calcularPorte(getPesoPet());
+    }
+    int getIndicePorte() { // Posição de getPortePet() em PORTES, sem converter o peso
+        int gramas = armazem.getPesoGramas(posicao, geracao);
+        return gramas <= 10_000 ? 0 : gramas <= 25_000 ? 1 : 2;
+    }
+
+    // Devolve a posição ao armazenamento; só para pets descartados. Esta e as demais visões do pet passam a falhar.
+    void liberar() {
+        armazem.liberar(posicao, geracao);
     }
 }
@@ -0,0 +1,600 @@
+package aps3;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/**
+ * Planeja as viagens do táxi pet que busca os pets em casa para os agendamentos do dia.
+ * <p>
+ * Os clientes com agendamento no período viram paradas, localizadas pela {@link TabelaGeocodigos}.
+ * Cada viagem sai da loja, busca algumas paradas e volta antes do primeiro agendamento dos pets a bordo;
+ * nenhuma parada é visitada mais cedo que {@code antecedenciaMaxima} minutos antes do seu agendamento,
+ * para o pet não esperar demais na loja. As viagens são montadas por inserção do mais próximo e
+ * melhoradas com 2-opt (inverter trechos de uma viagem) e Or-opt (mover trechos de 1 a 3 paradas
+ * para outra posição ou viagem) enquanto a distância total diminuir. Por fim, as viagens são
+ * distribuídas entre o menor número de veículos que as cumpre sem sobreposição.
+ * <p>
+ * Distâncias são em linha reta multiplicadas por {@value #FATOR_DESVIO}, que aproxima o traçado das ruas.
+ */
+public class PlanejadorRotas {
+    public static final double FATOR_DESVIO = 1.3;
+    public static final LocalTime FIM_MANHA = LocalTime.NOON; // Limite padrão da rota da manhã
+    private static final int SEGMENTO_MAXIMO = 3;   // Paradas movidas juntas pelo Or-opt
+    private static final int RODADAS_MAXIMAS = 100; // Rodadas de melhoria, por segurança
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * Parada de uma viagem: a casa de um cliente, onde são buscados todos os seus pets do período.
+     */
+    public static final class Parada {
+        private final Cliente cliente;
+        private final TabelaGeocodigos.Coordenada coordenada;
+        private final int pets;
+        private final LocalTime chegada;
+        private final LocalTime primeiroAgendamento;
+
+        private Parada(Cliente cliente, TabelaGeocodigos.Coordenada coordenada, int pets, LocalTime chegada,
+                       LocalTime primeiroAgendamento) {
+            this.cliente = cliente;
+            this.coordenada = coordenada;
+            this.pets = pets;
+            this.chegada = chegada;
+            this.primeiroAgendamento = primeiroAgendamento;
+        }
+
+        public Cliente getCliente() {
+            return cliente;
+        }
+        public TabelaGeocodigos.Coordenada getCoordenada() {
+            return coordenada;
+        }
+        public int getPets() {
+            return pets;
+        }
+        public LocalTime getChegada() {
+            return chegada;
+        }
+        public LocalTime getPrimeiroAgendamento() {
+            return primeiroAgendamento;
+        }
+    }
+
+    /**
+     * Viagem de ida e volta à loja feita por um veículo.
+     */
+    public static final class Viagem {
+        private final int veiculo;
+        private final LocalTime saida;
+        private final LocalTime retorno;
+        private final double distanciaKm;
+        private final boolean noPrazo;
+        private final List<Parada> paradas;
+
+        private Viagem(int veiculo, LocalTime saida, LocalTime retorno, double distanciaKm, boolean noPrazo,
+                       List<Parada> paradas) {
+            this.veiculo = veiculo;
+            this.saida = saida;
+            this.retorno = retorno;
+            this.distanciaKm = distanciaKm;
+            this.noPrazo = noPrazo;
+            this.paradas = paradas;
+        }
+
+        /**
+         * Número do veículo que faz a viagem, a partir de 1.
+         * @return Número do veículo
+         */
+        public int getVeiculo() {
+            return veiculo;
+        }
+        public LocalTime getSaida() {
+            return saida;
+        }
+        public LocalTime getRetorno() {
+            return retorno;
+        }
+        public double getDistanciaKm() {
+            return distanciaKm;
+        }
+
+        /**
+         * Indica se todos os pets chegam antes dos seus agendamentos. Só é false quando nem a
+         * viagem exclusiva cumpre o prazo (pets demais para um veículo ou agendamento cedo demais).
+         * @return true se a viagem respeita os horários
+         */
+        public boolean isNoPrazo() {
+            return noPrazo;
+        }
+        public List<Parada> getParadas() {
+            return paradas;
+        }
+    }
+
+    /**
+     * Resultado do planejamento de um período.
+     */
+    public static final class Plano {
+        private final List<Viagem> viagens;
+        private final List<Cliente> naoLocalizados;
+        private final int veiculos;
+
+        private Plano(List<Viagem> viagens, List<Cliente> naoLocalizados, int veiculos) {
+            this.viagens = viagens;
+            this.naoLocalizados = naoLocalizados;
+            this.veiculos = veiculos;
+        }
+
+        /**
+         * Viagens ordenadas por veículo e horário de saída.
+         * @return Viagens planejadas
+         */
+        public List<Viagem> getViagens() {
+            return viagens;
+        }
+
+        /**
+         * Clientes com agendamento cujo endereço não está na tabela de coordenadas.
+         * @return Clientes que precisam ser buscados sem rota planejada
+         */
+        public List<Cliente> getNaoLocalizados() {
+            return naoLocalizados;
+        }
+        public int getVeiculos() {
+            return veiculos;
+        }
+        public double getDistanciaTotalKm() {
+            double total = 0;
+            for (Viagem viagem : viagens) {
+                total += viagem.distanciaKm;
+            }
+            return total;
+        }
+
+        /**
+         * Gera o roteiro formatado para exibição.
+         * @return Roteiro com as viagens de cada veículo
+         */
+        public String formatar() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("Viagens: %d | Veículos: %d | Distância total: %.1f km%n",
+                viagens.size(), veiculos, getDistanciaTotalKm()));
+            for (Viagem viagem : viagens) {
+                sb.append(String.format("%nVeículo %d: saída %s, retorno %s, %.1f km%s%n", viagem.veiculo,
+                    viagem.saida.format(ModoLote.FORMATO_HORA), viagem.retorno.format(ModoLote.FORMATO_HORA),
+                    viagem.distanciaKm, viagem.noPrazo ? "" : " ⚠️ fora do prazo"));
+                for (Parada parada : viagem.paradas) {
+                    sb.append(String.format("  %s  %s (%d pet%s, agendamento %s) - %s%n",
+                        parada.chegada.format(ModoLote.FORMATO_HORA), parada.cliente.getNome(), parada.pets,
+                        parada.pets == 1 ? "" : "s", parada.primeiroAgendamento.format(ModoLote.FORMATO_HORA),
+                        parada.cliente.getEndereco()));
+                }
+            }
+            for (Cliente cliente : naoLocalizados) {
+                sb.append(String.format("%n📍 Endereço não localizado: %s - %s", cliente.getNome(), cliente.getEndereco()));
+            }
+            return sb.toString();
+        }
+    }
+
+    private final TabelaGeocodigos geocodigos;
+    private final double minutosPorKm;
+    private final int capacidade;          // Pets por viagem
+    private final int minutosParada;       // Tempo para embarcar os pets de uma parada
+    private final int antecedenciaMaxima;  // Minutos antes do agendamento a partir dos quais o pet pode ser buscado
+    private final LocalTime inicioExpediente;
+
+    /**
+     * Planejador com os valores usuais: 25 km/h, 6 pets por viagem, 3 minutos por parada,
+     * busca até 90 minutos antes do agendamento e veículos disponíveis a partir das 07:00.
+     * @param geocodigos Tabela de coordenadas dos endereços
+     */
+    public PlanejadorRotas(TabelaGeocodigos geocodigos) {
+        this(geocodigos, 25, 6, 3, 90, LocalTime.of(7, 0));
+    }
+
+    /**
+     * Construtor do planejador.
+     * @param geocodigos Tabela de coordenadas dos endereços (não pode ser nula)
+     * @param velocidadeKmH Velocidade média no trânsito
+     * @param capacidade Pets transportados por viagem
+     * @param minutosParada Tempo gasto em cada parada
+     * @param antecedenciaMaxima Minutos antes do agendamento a partir dos quais o pet pode ser buscado
+     * @param inicioExpediente Horário a partir do qual os veículos podem sair
+     * @throws IllegalArgumentException Se algum parâmetro for inválido
+     */
+    public PlanejadorRotas(TabelaGeocodigos geocodigos, double velocidadeKmH, int capacidade, int minutosParada,
+                           int antecedenciaMaxima, LocalTime inicioExpediente) {
+        if (geocodigos == null) throw new IllegalArgumentException("Tabela de endereços não pode ser nula.");
+        if (velocidadeKmH <= 0) throw new IllegalArgumentException("Velocidade deve ser positiva.");
+        if (capacidade < 1) throw new IllegalArgumentException("Capacidade deve ser de pelo menos 1 pet.");
+        if (minutosParada < 0 || antecedenciaMaxima < 0) throw new IllegalArgumentException("Tempos não podem ser negativos.");
+        if (inicioExpediente == null) throw new IllegalArgumentException("Início do expediente não pode ser nulo.");
+        this.geocodigos = geocodigos;
+        this.minutosPorKm = 60.0 / velocidadeKmH;
+        this.capacidade = capacidade;
+        this.minutosParada = minutosParada;
+        this.antecedenciaMaxima = antecedenciaMaxima;
+        this.inicioExpediente = inicioExpediente;
+    }
+
+    public TabelaGeocodigos getGeocodigos() {
+        return geocodigos;
+    }
+
+    /**
+     * Planeja a busca dos pets com agendamento na data, antes do horário informado. Agendamentos com
+     * comparecimento já registrado e pets removidos são ignorados.
+     * @param loja Loja cujos agendamentos serão atendidos
+     * @param data Data dos agendamentos
+     * @param ate Horário limite: entram os agendamentos anteriores a ele (ex.: 12:00 para a manhã)
+     * @return Plano com as viagens
+     * @throws IllegalStateException Se houver paradas e a localização da loja não estiver cadastrada
+     */
+    public Plano planejar(Loja loja, LocalDate data, LocalTime ate) {
+        Instantaneo instantaneo = loja.instantaneo(); // Agendamentos e donos da mesma versão da loja
+        return planejar(instantaneo.getAgendamentos(), instantaneo::buscarDono, data, ate);
+    }
+
+    // Planeja a partir de uma lista de agendamentos qualquer; donos devolve null para pets removidos.
+    Plano planejar(List<Agendamento> agendamentos, Function<Pets, Cliente> donos, LocalDate data, LocalTime ate) {
+        Map<Cliente, int[]> porCliente = new LinkedHashMap<>(); // Cliente -> {primeiro agendamento em minutos, pets}
+        for (Agendamento agendamento : agendamentos) {
+            if (!agendamento.getData().equals(data) || !agendamento.getHora().isBefore(ate)
+                    || !agendamento.isPendente()) continue;
+            Cliente dono = donos.apply(agendamento.getPet());
+            if (dono == null) continue;
+            int minuto = agendamento.getHora().toSecondOfDay() / 60;
+            int[] dados = porCliente.computeIfAbsent(dono, c -> new int[] {minuto, 0});
+            dados[0] = Math.min(dados[0], minuto);
+            dados[1]++;
+        }
+
+        List<Cliente> clientes = new ArrayList<>();
+        List<TabelaGeocodigos.Coordenada> coordenadas = new ArrayList<>();
+        List<Cliente> naoLocalizados = new ArrayList<>();
+        for (Cliente cliente : porCliente.keySet()) {
+            TabelaGeocodigos.Coordenada coordenada = geocodigos.localizar(cliente.getEndereco());
+            if (coordenada == null) {
+                naoLocalizados.add(cliente);
+            } else {
+                clientes.add(cliente);
+                coordenadas.add(coordenada);
+            }
+        }
+        if (clientes.isEmpty()) return new Plano(List.of(), List.copyOf(naoLocalizados), 0);
+
+        int n = clientes.size();
+        TabelaGeocodigos.Coordenada[] pontos = new TabelaGeocodigos.Coordenada[n + 1];
+        pontos[0] = geocodigos.getLoja();
+        int[] prazos = new int[n + 1];
+        int[] pets = new int[n + 1];
+        for (int i = 1; i <= n; i++) {
+            pontos[i] = coordenadas.get(i - 1);
+            int[] dados = porCliente.get(clientes.get(i - 1));
+            prazos[i] = dados[0];
+            pets[i] = dados[1];
+        }
+
+        Resolucao resolucao = new Resolucao(pontos, prazos, pets);
+        resolucao.construir();
+        resolucao.melhorar();
+        return resolucao.montarPlano(clientes, naoLocalizados);
+    }
+
+    // Estado de um planejamento. O nó 0 é a loja e os nós 1..n são as paradas.
+    private final class Resolucao {
+        private final int n;
+        private final int tamanho;       // n + 1, largura da matriz
+        private final TabelaGeocodigos.Coordenada[] pontos;
+        private final double[] km;       // Matriz de distâncias, por linhas
+        private final double[] abertura; // Minuto do dia a partir do qual cada parada pode ser visitada
+        private final int[] prazo;       // Minuto do primeiro agendamento de cada parada
+        private final int[] demanda;     // Pets de cada parada
+        private final List<int[]> viagens = new ArrayList<>(); // Sequências de paradas, sem a loja
+        private final double inicio;
+        private int[] auxiliar;
+
+        private Resolucao(TabelaGeocodigos.Coordenada[] pontos, int[] prazo, int[] demanda) {
+            this.n = pontos.length - 1;
+            this.pontos = pontos;
+            this.tamanho = pontos.length;
+            this.km = new double[tamanho * tamanho];
+            for (int i = 0; i < tamanho; i++) {
+                for (int j = i + 1; j < tamanho; j++) {
+                    double d = pontos[i].distanciaKm(pontos[j]) * FATOR_DESVIO;
+                    km[i * tamanho + j] = d;
+                    km[j * tamanho + i] = d;
+                }
+            }
+            this.prazo = prazo;
+            this.demanda = demanda;
+            this.abertura = new double[tamanho];
+            for (int i = 1; i <= n; i++) {
+                abertura[i] = prazo[i] - antecedenciaMaxima;
+            }
+            this.inicio = inicioExpediente.toSecondOfDay() / 60.0;
+            this.auxiliar = new int[n + SEGMENTO_MAXIMO];
+        }
+
+        private double km(int i, int j) {
+            return km[i * tamanho + j];
+        }
+
+        // Inserção do mais próximo: a parada mais perto de algo já roteado entra onde aumenta menos a distância.
+        private void construir() {
+            boolean[] roteada = new boolean[tamanho];
+            double[] proximidade = new double[tamanho];
+            for (int i = 1; i <= n; i++) {
+                proximidade[i] = km(0, i);
+            }
+            for (int passo = 0; passo < n; passo++) {
+                int escolhida = -1;
+                for (int i = 1; i <= n; i++) {
+                    if (!roteada[i] && (escolhida < 0 || proximidade[i] < proximidade[escolhida])) escolhida = i;
+                }
+                inserirMaisBarato(escolhida);
+                roteada[escolhida] = true;
+                for (int i = 1; i <= n; i++) {
+                    if (!roteada[i]) proximidade[i] = Math.min(proximidade[i], km(escolhida, i));
+                }
+            }
+        }
+
+        private void inserirMaisBarato(int parada) {
+            double melhorCusto = Double.MAX_VALUE;
+            int melhorViagem = -1;
+            int melhorPosicao = -1;
+            for (int v = 0; v < viagens.size(); v++) {
+                int[] viagem = viagens.get(v);
+                if (carga(viagem) + demanda[parada] > capacidade) continue;
+                for (int p = 0; p <= viagem.length; p++) {
+                    int anterior = p == 0 ? 0 : viagem[p - 1];
+                    int seguinte = p == viagem.length ? 0 : viagem[p];
+                    double custo = km(anterior, parada) + km(parada, seguinte) - km(anterior, seguinte);
+                    if (custo < melhorCusto && viavel(inserir(viagem, p, parada), viagem.length + 1)) {
+                        melhorCusto = custo;
+                        melhorViagem = v;
+                        melhorPosicao = p;
+                    }
+                }
+            }
+            if (melhorViagem < 0) {
+                viagens.add(new int[] {parada}); // Nenhuma viagem comporta a parada: abre uma nova
+            } else {
+                int[] viagem = viagens.get(melhorViagem);
+                viagens.set(melhorViagem, Arrays.copyOf(inserir(viagem, melhorPosicao, parada), viagem.length + 1));
+            }
+        }
+
+        private void melhorar() {
+            for (int rodada = 0; rodada < RODADAS_MAXIMAS; rodada++) {
+                boolean melhorou = false;
+                for (int v = 0; v < viagens.size(); v++) {
+                    melhorou |= doisOpt(v);
+                }
+                melhorou |= orOpt();
+                if (!melhorou) return;
+            }
+        }
+
+        // 2-opt: inverte o trecho i..j se isso encurta a viagem sem perder prazos.
+        private boolean doisOpt(int v) {
+            int[] viagem = viagens.get(v);
+            boolean melhorou = false;
+            for (int i = 0; i < viagem.length - 1; i++) {
+                for (int j = i + 1; j < viagem.length; j++) {
+                    int anterior = i == 0 ? 0 : viagem[i - 1];
+                    int seguinte = j == viagem.length - 1 ? 0 : viagem[j + 1];
+                    double ganho = km(anterior, viagem[i]) + km(viagem[j], seguinte)
+                        - km(anterior, viagem[j]) - km(viagem[i], seguinte);
+                    if (ganho <= EPSILON) continue;
+                    int[] candidata = viagem.clone();
+                    for (int a = i, b = j; a < b; a++, b--) {
+                        int troca = candidata[a];
+                        candidata[a] = candidata[b];
+                        candidata[b] = troca;
+                    }
+                    if (viavel(candidata, candidata.length)) {
+                        viagem = candidata;
+                        viagens.set(v, viagem);
+                        melhorou = true;
+                    }
+                }
+            }
+            return melhorou;
+        }
+
+        // Or-opt: move um trecho de até 3 paradas, direto ou invertido, para a posição que mais encurta o total.
+        private boolean orOpt() {
+            boolean melhorou = false;
+            for (int origem = 0; origem < viagens.size(); origem++) {
+                for (int k = 1; k <= SEGMENTO_MAXIMO; k++) {
+                    for (int s = 0; s + k <= viagens.get(origem).length; s++) {
+                        if (moverTrecho(origem, s, k)) {
+                            melhorou = true;
+                            if (origem >= viagens.size()) return true; // A viagem de origem esvaziou e era a última
+                        }
+                    }
+                }
+            }
+            return melhorou;
+        }
+
+        private boolean moverTrecho(int origem, int s, int k) {
+            int[] viagem = viagens.get(origem);
+            int primeiro = viagem[s];
+            int ultimo = viagem[s + k - 1];
+            int anterior = s == 0 ? 0 : viagem[s - 1];
+            int seguinte = s + k == viagem.length ? 0 : viagem[s + k];
+            double ganhoRetirada = km(anterior, primeiro) + km(ultimo, seguinte) - km(anterior, seguinte);
+            if (ganhoRetirada <= EPSILON) return false;
+            int[] trecho = Arrays.copyOfRange(viagem, s, s + k);
+            int[] restante = new int[viagem.length - k];
+            System.arraycopy(viagem, 0, restante, 0, s);
+            System.arraycopy(viagem, s + k, restante, s, viagem.length - s - k);
+            int cargaTrecho = 0;
+            for (int parada : trecho) {
+                cargaTrecho += demanda[parada];
+            }
+
+            for (int destino = 0; destino < viagens.size(); destino++) {
+                int[] alvo = destino == origem ? restante : viagens.get(destino);
+                if (destino != origem && carga(alvo) + cargaTrecho > capacidade) continue;
+                for (int p = 0; p <= alvo.length; p++) {
+                    if (destino == origem && p == s) continue; // Mesma posição
+                    int antes = p == 0 ? 0 : alvo[p - 1];
+                    int depois = p == alvo.length ? 0 : alvo[p];
+                    double base = km(antes, depois);
+                    for (int invertido = 0; invertido < 2; invertido++) {
+                        int entrada = invertido == 0 ? primeiro : ultimo;
+                        int saida = invertido == 0 ? ultimo : primeiro;
+                        double custoInsercao = km(antes, entrada) + km(saida, depois) - base;
+                        if (custoInsercao >= ganhoRetirada - EPSILON) continue;
+                        int[] novo = Arrays.copyOf(inserir(alvo, p, trecho, invertido == 1), alvo.length + k);
+                        if (!viavel(novo, novo.length)) continue;
+                        if (destino != origem && restante.length > 0 && !viavel(restante, restante.length)) continue;
+                        if (destino == origem) {
+                            viagens.set(origem, novo);
+                        } else {
+                            viagens.set(destino, novo);
+                            if (restante.length == 0) {
+                                viagens.remove(origem);
+                            } else {
+                                viagens.set(origem, restante);
+                            }
+                        }
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        // Copia a viagem para o vetor auxiliar com o trecho inserido na posição p.
+        private int[] inserir(int[] viagem, int p, int[] trecho, boolean invertido) {
+            System.arraycopy(viagem, 0, auxiliar, 0, p);
+            for (int i = 0; i < trecho.length; i++) {
+                auxiliar[p + i] = trecho[invertido ? trecho.length - 1 - i : i];
+            }
+            System.arraycopy(viagem, p, auxiliar, p + trecho.length, viagem.length - p);
+            return auxiliar;
+        }
+
+        private int[] inserir(int[] viagem, int p, int parada) {
+            System.arraycopy(viagem, 0, auxiliar, 0, p);
+            auxiliar[p] = parada;
+            System.arraycopy(viagem, p, auxiliar, p + 1, viagem.length - p);
+            return auxiliar;
+        }
+
+        private int carga(int[] viagem) {
+            int total = 0;
+            for (int parada : viagem) {
+                total += demanda[parada];
+            }
+            return total;
+        }
+
+        // A viagem cabe no veículo e volta à loja antes do primeiro agendamento dos pets a bordo?
+        private boolean viavel(int[] viagem, int quantidade) {
+            return retorno(viagem, quantidade, null) <= prazoMinimo(viagem, quantidade) + EPSILON
+                && cargaAte(viagem, quantidade) <= capacidade;
+        }
+
+        private int cargaAte(int[] viagem, int quantidade) {
+            int total = 0;
+            for (int i = 0; i < quantidade; i++) {
+                total += demanda[viagem[i]];
+            }
+            return total;
+        }
+
+        private int prazoMinimo(int[] viagem, int quantidade) {
+            int minimo = Integer.MAX_VALUE;
+            for (int i = 0; i < quantidade; i++) {
+                minimo = Math.min(minimo, prazo[viagem[i]]);
+            }
+            return minimo;
+        }
+
+        /**
+         * Horário de volta à loja saindo o mais cedo útil: a tempo de chegar à primeira parada na sua
+         * abertura, mas não antes do expediente. Paradas alcançadas antes da abertura esperam.
+         * @param chegadas Recebe o horário de cada parada, se não for nulo
+         * @return Minuto do dia do retorno à loja
+         */
+        private double retorno(int[] viagem, int quantidade, double[] chegadas) {
+            double t = Math.max(inicio, abertura[viagem[0]] - km(0, viagem[0]) * minutosPorKm);
+            int anterior = 0;
+            for (int i = 0; i < quantidade; i++) {
+                int parada = viagem[i];
+                t = Math.max(t + km(anterior, parada) * minutosPorKm, abertura[parada]);
+                if (chegadas != null) chegadas[i] = t;
+                t += minutosParada;
+                anterior = parada;
+            }
+            return t + km(anterior, 0) * minutosPorKm;
+        }
+
+        private Plano montarPlano(List<Cliente> clientes, List<Cliente> naoLocalizados) {
+            // Viagens em ordem de saída, cada uma no veículo livre há mais tempo (ou em um novo).
+            int total = viagens.size();
+            double[] saidas = new double[total];
+            double[] retornos = new double[total];
+            double[][] chegadas = new double[total][];
+            Integer[] ordem = new Integer[total];
+            for (int v = 0; v < total; v++) {
+                int[] viagem = viagens.get(v);
+                chegadas[v] = new double[viagem.length];
+                retornos[v] = retorno(viagem, viagem.length, chegadas[v]);
+                saidas[v] = chegadas[v][0] - km(0, viagem[0]) * minutosPorKm;
+                ordem[v] = v;
+            }
+            Arrays.sort(ordem, (a, b) -> Double.compare(saidas[a], saidas[b]));
+            int[] veiculoDa = new int[total];
+            PriorityQueue<double[]> livres = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0])); // {livre a partir de, veículo}
+            int veiculos = 0;
+            for (int v : ordem) {
+                double[] livre = livres.peek();
+                if (livre != null && livre[0] <= saidas[v] + EPSILON) {
+                    livres.poll();
+                } else {
+                    livre = new double[] {0, ++veiculos};
+                }
+                veiculoDa[v] = (int) livre[1];
+                livre[0] = retornos[v];
+                livres.add(livre);
+            }
+
+            List<Viagem> resultado = new ArrayList<>(total);
+            for (int v : ordem) {
+                int[] viagem = viagens.get(v);
+                List<Parada> paradas = new ArrayList<>(viagem.length);
+                double distancia = km(0, viagem[0]) + km(viagem[viagem.length - 1], 0);
+                for (int i = 0; i < viagem.length; i++) {
+                    int parada = viagem[i];
+                    if (i > 0) distancia += km(viagem[i - 1], parada);
+                    paradas.add(new Parada(clientes.get(parada - 1), pontos[parada], demanda[parada], horario(chegadas[v][i]),
+                        horario(prazo[parada])));
+                }
+                resultado.add(new Viagem(veiculoDa[v], horario(saidas[v]), horario(retornos[v]), distancia,
+                    viavel(viagem, viagem.length), Collections.unmodifiableList(paradas)));
+            }
+            resultado.sort((a, b) -> a.veiculo != b.veiculo ? Integer.compare(a.veiculo, b.veiculo) : a.saida.compareTo(b.saida));
+            return new Plano(Collections.unmodifiableList(resultado), List.copyOf(naoLocalizados), veiculos);
+        }
+    }
+
+    private static LocalTime horario(double minutos) {
+        long segundos = Math.round(minutos * 60);
+        return LocalTime.ofSecondOfDay(Math.max(0, Math.min(segundos, 24 * 3600 - 1)));
+    }
+}
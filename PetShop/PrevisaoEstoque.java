@@ -0,0 +1,231 @@
+package aps3;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Previsão de consumo dos produtos e sugestões de reposição.
+ * <p>
+ * Cada código de produto mantém a demanda diária suavizada pelo método de Holt (nível e tendência)
+ * e a variância do erro de previsão. As vendas do dia são acumuladas e o modelo é atualizado uma vez
+ * por dia fechado, então cada movimentação de estoque custa O(1) e pode rodar dentro da venda.
+ * O ponto de pedido (demanda prevista no prazo de entrega mais um estoque de segurança) é recalculado
+ * no fechamento do dia e comparado com o estoque a cada movimentação.
+ */
+public class PrevisaoEstoque {
+    public static final double ALFA = 0.3;           // Peso da demanda mais recente no nível
+    public static final double BETA = 0.1;           // Peso da variação mais recente na tendência
+    public static final double FATOR_SEGURANCA = 1.65; // ~95% de chance de não faltar no prazo de entrega
+    private static final int MAXIMO_DIAS_SEM_VENDA = 365; // Dias sem venda aplicados de uma vez no modelo
+
+    private final int prazoEntregaDias; // Dias entre o pedido ao fornecedor e a chegada
+    private final Map<Integer, Consumo> consumos = new ConcurrentHashMap<>();
+
+    /**
+     * Sugestão de compra de um produto para a próxima semana.
+     */
+    public static final class Sugestao {
+        private final Produto produto;
+        private final int estoque;
+        private final double demandaSemanal;
+        private final double pontoPedido;
+        private final int quantidade;
+        private final double diasCobertura;
+
+        private Sugestao(Produto produto, int estoque, double demandaSemanal, double pontoPedido, int quantidade, double diasCobertura) {
+            this.produto = produto;
+            this.estoque = estoque;
+            this.demandaSemanal = demandaSemanal;
+            this.pontoPedido = pontoPedido;
+            this.quantidade = quantidade;
+            this.diasCobertura = diasCobertura;
+        }
+
+        public Produto getProduto() {
+            return produto;
+        }
+        public int getEstoque() {
+            return estoque;
+        }
+        public double getDemandaSemanal() {
+            return demandaSemanal;
+        }
+        public double getPontoPedido() {
+            return pontoPedido;
+        }
+        public int getQuantidade() {
+            return quantidade;
+        }
+        public double getDiasCobertura() {
+            return diasCobertura;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (cód. %d) | Estoque: %d | Previsão semanal: %.1f | Ponto de pedido: %.1f | Comprar: %d | Cobertura: %.1f dias",
+                produto.getNome(), produto.getCodProduto(), estoque, demandaSemanal, pontoPedido, quantidade, diasCobertura);
+        }
+    }
+
+    // Estado do modelo de um produto; acessado sob o seu próprio monitor.
+    private static final class Consumo {
+        private long diaAberto;        // Dia cujas vendas ainda estão sendo acumuladas
+        private int vendidoNoDia;
+        private boolean iniciado;      // false até o primeiro dia fechado
+        private double nivel;          // Demanda diária suavizada
+        private double tendencia;      // Variação diária da demanda
+        private double variancia;      // Média móvel exponencial do erro de previsão ao quadrado
+        private double pontoPedido;
+        private int estoque;           // Último estoque informado
+    }
+
+    /**
+     * Construtor da previsão.
+     * @param prazoEntregaDias Prazo de entrega dos fornecedores em dias (pelo menos 1)
+     * @throws IllegalArgumentException Se o prazo for inválido
+     */
+    public PrevisaoEstoque(int prazoEntregaDias) {
+        if (prazoEntregaDias < 1) throw new IllegalArgumentException("Prazo de entrega deve ser de pelo menos um dia.");
+        this.prazoEntregaDias = prazoEntregaDias;
+    }
+
+    /**
+     * Registra a saída de unidades vendidas. Custo O(1), adequado ao caminho da venda.
+     * @param produto Produto vendido
+     * @param quantidade Unidades vendidas
+     * @param data Data da venda
+     * @return true se o estoque restante ficou abaixo do ponto de pedido
+     */
+    public boolean registrarSaida(Produto produto, int quantidade, LocalDate data) {
+        Consumo consumo = consumo(produto.getCodProduto(), data);
+        synchronized (consumo) {
+            avancarAte(consumo, data.toEpochDay());
+            consumo.vendidoNoDia += quantidade;
+            consumo.estoque = produto.getEstoque();
+            return consumo.estoque <= consumo.pontoPedido;
+        }
+    }
+
+    /**
+     * Atualiza o estoque conhecido após uma entrada (reposição, devolução ou cadastro).
+     * @param produto Produto movimentado
+     * @param data Data da movimentação
+     */
+    public void registrarEntrada(Produto produto, LocalDate data) {
+        Consumo consumo = consumo(produto.getCodProduto(), data);
+        synchronized (consumo) {
+            avancarAte(consumo, data.toEpochDay());
+            consumo.estoque = produto.getEstoque();
+        }
+    }
+
+    /**
+     * Retorna o ponto de pedido atual de um produto.
+     * @param codProduto Código do produto
+     * @return Estoque mínimo antes de pedir reposição (0 se ainda não houver histórico)
+     */
+    public double pontoPedido(int codProduto) {
+        Consumo consumo = consumos.get(codProduto);
+        if (consumo == null) return 0;
+        synchronized (consumo) {
+            return consumo.pontoPedido;
+        }
+    }
+
+    /**
+     * Prevê a demanda de um produto nos próximos dias.
+     * @param codProduto Código do produto
+     * @param dias Horizonte da previsão em dias
+     * @return Unidades previstas (0 se ainda não houver histórico)
+     */
+    public double demandaPrevista(int codProduto, int dias) {
+        Consumo consumo = consumos.get(codProduto);
+        if (consumo == null) return 0;
+        synchronized (consumo) {
+            return demanda(consumo, dias);
+        }
+    }
+
+    /**
+     * Gera o relatório "o que comprar esta semana" para o catálogo inteiro, em uma única passada paralela.
+     * A quantidade sugerida leva o estoque até a demanda do prazo de entrega mais uma semana, com margem de segurança.
+     * @param produtos Catálogo de produtos
+     * @param hoje Data de referência; dias sem venda até ela são aplicados ao modelo
+     * @return Sugestões com quantidade positiva, das mais urgentes (menor cobertura) para as menos urgentes
+     */
+    public List<Sugestao> sugerirCompras(Collection<Produto> produtos, LocalDate hoje) {
+        long dia = hoje.toEpochDay();
+        return produtos.parallelStream()
+            .map(produto -> sugestao(produto, dia))
+            .filter(sugestao -> sugestao != null && sugestao.quantidade > 0)
+            .sorted(Comparator.comparingDouble(Sugestao::getDiasCobertura))
+            .toList();
+    }
+
+    private Sugestao sugestao(Produto produto, long dia) {
+        Consumo consumo = consumos.get(produto.getCodProduto());
+        if (consumo == null) return null;
+        int estoque = produto.getEstoque();
+        synchronized (consumo) {
+            avancarAte(consumo, dia);
+            if (!consumo.iniciado) return null;
+            consumo.estoque = estoque;
+            double semanal = demanda(consumo, 7);
+            double alvo = demanda(consumo, prazoEntregaDias + 7) + margemSeguranca(consumo, prazoEntregaDias + 7);
+            int quantidade = (int) Math.ceil(alvo - estoque);
+            double diaria = Math.max(consumo.nivel, 1e-9);
+            return new Sugestao(produto, estoque, semanal, consumo.pontoPedido, Math.max(0, quantidade), estoque / diaria);
+        }
+    }
+
+    private Consumo consumo(int codProduto, LocalDate data) {
+        return consumos.computeIfAbsent(codProduto, codigo -> {
+            Consumo novo = new Consumo();
+            novo.diaAberto = data.toEpochDay();
+            return novo;
+        });
+    }
+
+    // Fecha o dia aberto e os dias sem venda até o dia informado, atualizando o modelo de Holt.
+    private void avancarAte(Consumo consumo, long dia) {
+        if (dia <= consumo.diaAberto) return; // Vendas retroativas entram no dia aberto
+        fecharDia(consumo, consumo.vendidoNoDia);
+        long semVenda = Math.min(dia - consumo.diaAberto - 1, MAXIMO_DIAS_SEM_VENDA);
+        for (long i = 0; i < semVenda; i++) {
+            fecharDia(consumo, 0);
+        }
+        consumo.diaAberto = dia;
+        consumo.vendidoNoDia = 0;
+        consumo.pontoPedido = demanda(consumo, prazoEntregaDias) + margemSeguranca(consumo, prazoEntregaDias);
+    }
+
+    private static void fecharDia(Consumo consumo, int vendido) {
+        if (!consumo.iniciado) {
+            consumo.nivel = vendido;
+            consumo.tendencia = 0;
+            consumo.variancia = Math.max(vendido, 1); // Variância inicial de uma demanda de Poisson
+            consumo.iniciado = true;
+            return;
+        }
+        double previsto = consumo.nivel + consumo.tendencia;
+        double erro = vendido - previsto;
+        consumo.variancia = (1 - ALFA) * consumo.variancia + ALFA * erro * erro;
+        double nivelAnterior = consumo.nivel;
+        consumo.nivel = Math.max(0, ALFA * vendido + (1 - ALFA) * previsto);
+        consumo.tendencia = BETA * (consumo.nivel - nivelAnterior) + (1 - BETA) * consumo.tendencia;
+    }
+
+    // Soma das previsões de 1 a h dias: h * nível + tendência * h(h+1)/2, sem valores negativos.
+    private static double demanda(Consumo consumo, int dias) {
+        if (!consumo.iniciado) return 0;
+        return Math.max(0, dias * consumo.nivel + consumo.tendencia * dias * (dias + 1) / 2.0);
+    }
+
+    private static double margemSeguranca(Consumo consumo, int dias) {
+        return FATOR_SEGURANCA * Math.sqrt(consumo.variancia * dias);
+    }
+}
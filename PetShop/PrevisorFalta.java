@@ -0,0 +1,159 @@
+package aps3;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Modelo logístico local que estima a probabilidade de um cliente faltar a um agendamento.
+ * O treinamento é incremental: cada resultado observado ajusta os pesos com um passo de gradiente.
+ */
+public class PrevisorFalta {
+    // Layout do vetor de pesos: viés | dia da semana (7) | hora (24) | serviço | taxa de faltas | volume de histórico
+    private static final int POS_DIA = 1;
+    private static final int POS_HORA = POS_DIA + 7;
+    private static final int POS_SERVICO = POS_HORA + 24;
+    private static final int POS_TAXA_FALTAS = POS_SERVICO + Servico.SERVICOS_DISPONIVEIS.size();
+    private static final int POS_VOLUME = POS_TAXA_FALTAS + 1;
+    private static final int TOTAL_PESOS = POS_VOLUME + 1;
+
+    private final double[] pesos = new double[TOTAL_PESOS]; // Pesos do modelo logístico
+    private final double taxaAprendizado;                    // Tamanho do passo do gradiente
+    private final double regularizacao;                      // Penalidade L2 aplicada aos pesos ativos
+    private final Map<String, int[]> historicoClientes = new HashMap<>(); // CPF -> {agendamentos, faltas}
+    private long exemplosTreinados;                          // Quantidade de resultados já incorporados
+
+    /**
+     * Cria um previsor com hiperparâmetros padrão.
+     */
+    public PrevisorFalta() {
+        this(0.05, 0.0001);
+    }
+
+    /**
+     * Cria um previsor com os hiperparâmetros informados.
+     * @param taxaAprendizado Tamanho do passo do gradiente (deve ser positivo)
+     * @param regularizacao Penalidade L2 (não pode ser negativa)
+     * @throws IllegalArgumentException Se algum parâmetro for inválido
+     */
+    public PrevisorFalta(double taxaAprendizado, double regularizacao) {
+        if (taxaAprendizado <= 0) throw new IllegalArgumentException("Taxa de aprendizado deve ser positiva.");
+        if (regularizacao < 0) throw new IllegalArgumentException("Regularização não pode ser negativa.");
+        this.taxaAprendizado = taxaAprendizado;
+        this.regularizacao = regularizacao;
+        this.pesos[0] = -2.0; // Parte de uma taxa de faltas baixa (~12%) antes de qualquer treino
+    }
+
+    /**
+     * Estima a probabilidade de falta para um agendamento.
+     * @param agendamento Agendamento a ser avaliado
+     * @param cpfCliente CPF do dono do pet
+     * @return Probabilidade de falta entre 0 e 1
+     */
+    public synchronized double probabilidadeFalta(Agendamento agendamento, String cpfCliente) {
+        return probabilidadeFalta(agendamento.getData(), agendamento.getHora(), agendamento.getServico(), cpfCliente);
+    }
+
+    /**
+     * Estima a probabilidade de falta sem exigir um objeto Agendamento já criado.
+     * O cálculo não aloca objetos: apenas quatro posições categóricas e duas numéricas são somadas.
+     * @param data Data do agendamento
+     * @param hora Hora do agendamento
+     * @param servico Nome do serviço
+     * @param cpfCliente CPF do dono do pet
+     * @return Probabilidade de falta entre 0 e 1
+     */
+    public synchronized double probabilidadeFalta(LocalDate data, LocalTime hora, String servico, String cpfCliente) {
+        int[] historico = historicoClientes.get(cpfCliente);
+        return sigmoide(margem(data, hora, Servico.indiceServico(servico), historico));
+    }
+
+    /**
+     * Incorpora ao modelo o resultado observado de um agendamento.
+     * @param agendamento Agendamento concluído
+     * @param cpfCliente CPF do dono do pet
+     * @param faltou true se o cliente não compareceu
+     */
+    public synchronized void registrarResultado(Agendamento agendamento, String cpfCliente, boolean faltou) {
+        int[] historico = historicoClientes.computeIfAbsent(cpfCliente, cpf -> new int[2]);
+        int servico = Servico.indiceServico(agendamento.getServico());
+        double erro = sigmoide(margem(agendamento.getData(), agendamento.getHora(), servico, historico)) - (faltou ? 1.0 : 0.0);
+
+        // Atualização só nas posições ativas: o custo é constante, independente do tamanho do histórico.
+        atualizar(0, 1.0, erro);
+        atualizar(POS_DIA + agendamento.getData().getDayOfWeek().ordinal(), 1.0, erro);
+        atualizar(POS_HORA + agendamento.getHora().getHour(), 1.0, erro);
+        if (servico >= 0) atualizar(POS_SERVICO + servico, 1.0, erro);
+        atualizar(POS_TAXA_FALTAS, taxaFaltas(historico), erro);
+        atualizar(POS_VOLUME, volume(historico), erro);
+
+        historico[0]++;
+        if (faltou) historico[1]++;
+        exemplosTreinados++;
+    }
+
+    /**
+     * Retorna quantos resultados já foram usados no treinamento.
+     * @return Total de exemplos treinados
+     */
+    public synchronized long getExemplosTreinados() {
+        return exemplosTreinados;
+    }
+
+    // Persistência (ArquivoLoja): pesos do modelo e histórico de cada cliente.
+
+    synchronized double[] getPesos() {
+        return pesos.clone();
+    }
+
+    synchronized void restaurarPesos(double[] salvos, long exemplos) {
+        if (salvos.length != TOTAL_PESOS) throw new IllegalArgumentException("Modelo salvo com " + salvos.length + " pesos; esperado " + TOTAL_PESOS + ".");
+        System.arraycopy(salvos, 0, pesos, 0, TOTAL_PESOS);
+        exemplosTreinados = exemplos;
+    }
+
+    /**
+     * Histórico de comparecimento de um cliente.
+     * @param cpfCliente CPF do cliente
+     * @return {agendamentos com resultado, faltas}
+     */
+    synchronized int[] getHistorico(String cpfCliente) {
+        int[] historico = historicoClientes.get(cpfCliente);
+        return historico == null ? new int[2] : historico.clone();
+    }
+
+    synchronized void restaurarHistorico(String cpfCliente, int agendamentos, int faltas) {
+        if (agendamentos > 0) historicoClientes.put(cpfCliente, new int[] {agendamentos, faltas});
+    }
+
+    private double margem(LocalDate data, LocalTime hora, int servico, int[] historico) {
+        double z = pesos[0]
+            + pesos[POS_DIA + data.getDayOfWeek().ordinal()]
+            + pesos[POS_HORA + hora.getHour()]
+            + pesos[POS_TAXA_FALTAS] * taxaFaltas(historico)
+            + pesos[POS_VOLUME] * volume(historico);
+        if (servico >= 0) z += pesos[POS_SERVICO + servico];
+        return z;
+    }
+
+    private void atualizar(int posicao, double valor, double erro) {
+        pesos[posicao] -= taxaAprendizado * (erro * valor + regularizacao * pesos[posicao]);
+    }
+
+    // Taxa de faltas suavizada (Laplace), para não confiar demais em clientes com poucas visitas.
+    private static double taxaFaltas(int[] historico) {
+        if (historico == null) return 0.5;
+        return (historico[1] + 1.0) / (historico[0] + 2.0);
+    }
+
+    // Volume de histórico em escala logarítmica, limitado a 1.
+    private static double volume(int[] historico) {
+        if (historico == null) return 0.0;
+        return Math.min(1.0, Math.log1p(historico[0]) / Math.log(64));
+    }
+
+    private static double sigmoide(double z) {
+        return 1.0 / (1.0 + Math.exp(-z));
+    }
+}
@@ -2,11 +2,14 @@ package aps3;
 
 /**
  * Representa um produto do pet shop, incluindo nome, preço, estoque e categoria.
+ * <p>
+ * Preço e estoque mudam no lugar, com o monitor do produto; são voláteis para que os getters,
+ * usados por quem lê sem bloqueio pelo {@link Instantaneo}, vejam sempre o último valor gravado.
  */
 public class Produto { // Renamed to singular form for consistency
     private final String nome;      // Nome do produto
-    private double preco;           // Preço do produto
-    private int estoque;            // Quantidade disponível em estoque
+    private volatile Dinheiro preco; // Preço do produto
+    private volatile int estoque;    // Quantidade disponível em estoque
     private final String categoria; // Categoria do produto (Ex: Higiene, Alimentação, Brinquedos)
     private final int codProduto;   // Código único do produto
 
@@ -19,9 +22,9 @@ public class Produto { // Renamed to singular form for consistency
      * @param codProduto Código único do produto
      * @throws IllegalArgumentException Se algum parâmetro for inválido
      */
-    public Produto(String nome, double preco, int estoque, String categoria, int codProduto) {
+    public Produto(String nome, Dinheiro preco, int estoque, String categoria, int codProduto) {
         if (nome == null || nome.isBlank()) throw new IllegalArgumentException("Nome do produto não pode ser vazio.");
-        if (preco <= 0) throw new IllegalArgumentException("Preço inválido! Deve ser maior que zero.");
+        if (preco == null || !preco.isPositivo()) throw new IllegalArgumentException("Preço inválido! Deve ser maior que zero.");
         if (estoque < 0) throw new IllegalArgumentException("Estoque não pode ser negativo.");
         if (categoria == null || categoria.isBlank()) throw new IllegalArgumentException("Categoria inválida.");
         
@@ -37,7 +40,7 @@ public class Produto { // Renamed to singular form for consistency
      * @param quantidade Quantidade a ser adicionada (deve ser positiva)
      * @return Mensagem informando o novo estoque
      */
-    public String adicionarEstoque(int quantidade) {
+    public synchronized String adicionarEstoque(int quantidade) {
         if (quantidade > 0) {
             this.estoque += quantidade;
             return "Estoque atualizado! Novo total: " + this.estoque;
@@ -50,7 +53,7 @@ public class Produto { // Renamed to singular form for consistency
      * @param quantidade Quantidade a ser removida
      * @return Mensagem informando o novo estoque ou erro se insuficiente
      */
-    public String removerEstoque(int quantidade) {
+    public synchronized String removerEstoque(int quantidade) {
         if (quantidade > 0 && this.estoque >= quantidade) {
             this.estoque -= quantidade;
             return "Estoque atualizado! Novo total: " + this.estoque;
@@ -58,15 +61,41 @@ public class Produto { // Renamed to singular form for consistency
         return "Estoque insuficiente ou quantidade inválida!";
     }
 
+    /**
+     * Reserva unidades do estoque de forma atômica, para uso em vendas concorrentes.
+     * @param quantidade Quantidade a ser reservada (deve ser positiva)
+     * @return true se havia estoque suficiente e as unidades foram reservadas
+     */
+    public synchronized boolean reservarEstoque(int quantidade) {
+        if (quantidade > 0 && this.estoque >= quantidade) {
+            this.estoque -= quantidade;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Calcula o preço com um desconto percentual, sem alterar o preço cadastrado.
+     * @param descontoPercentual Percentual de desconto (entre 0 e 100)
+     * @return Preço unitário com desconto
+     * @throws IllegalArgumentException Se o percentual for inválido
+     */
+    public synchronized Dinheiro precoComDesconto(double descontoPercentual) {
+        if (descontoPercentual < 0 || descontoPercentual > 100) {
+            throw new IllegalArgumentException("Porcentagem de desconto inválida! Informe um valor entre 0% e 100%.");
+        }
+        return this.preco.aplicarDesconto(descontoPercentual);
+    }
+
     /**
      * Aplica um desconto percentual ao preço do produto.
      * @param descontoPercentual Percentual de desconto (entre 1 e 100)
      * @return Mensagem com o novo preço ou erro se percentual for inválido
      */
-    public String aplicarDesconto(double descontoPercentual) {
+    public synchronized String aplicarDesconto(double descontoPercentual) {
         if (descontoPercentual > 0 && descontoPercentual <= 100) {
-            this.preco *= (1 - (descontoPercentual / 100));
-            return "Novo preço com desconto: R$ " + String.format("%.2f", this.preco);
+            this.preco = this.preco.aplicarDesconto(descontoPercentual); // Arredonda uma única vez para o centavo
+            return "Novo preço com desconto: R$ " + this.preco;
         }
         return "Porcentagem de desconto inválida! Informe um valor entre 1% e 100%.";
     }
@@ -76,10 +105,10 @@ public class Produto { // Renamed to singular form for consistency
      * @param novoPreco Novo preço do produto (deve ser positivo)
      * @return Mensagem informando o novo preço ou erro se for inválido
      */
-    public String reajustePreco(double novoPreco) {
-        if (novoPreco > 0) {
+    public synchronized String reajustePreco(Dinheiro novoPreco) {
+        if (novoPreco != null && novoPreco.isPositivo()) {
             this.preco = novoPreco;
-            return "Novo preço ajustado: R$ " + String.format("%.2f", this.preco);
+            return "Novo preço ajustado: R$ " + this.preco;
         }
         return "Preço inválido! O valor deve ser maior que zero.";
     }
@@ -89,7 +118,7 @@ public class Produto { // Renamed to singular form for consistency
      * @param quantidade Quantidade desejada
      * @return True se há estoque suficiente, False caso contrário
      */
-    public boolean verificarEstoqueSuficiente(int quantidade) {
+    public synchronized boolean verificarEstoqueSuficiente(int quantidade) {
         return quantidade > 0 && this.estoque >= quantidade;
     }
 
@@ -98,8 +127,8 @@ public class Produto { // Renamed to singular form for consistency
      * @return String formatada com detalhes do produto
      */
     @Override
-    public String toString() {
-        return String.format("Produto: %s | Código: %d | Categoria: %s | Preço: R$ %.2f | Estoque: %d",
+    public synchronized String toString() {
+        return String.format("Produto: %s | Código: %d | Categoria: %s | Preço: R$ %s | Estoque: %d",
             nome, codProduto, categoria, preco, estoque);
     }
 
@@ -107,7 +136,7 @@ public class Produto { // Renamed to singular form for consistency
     public String getNome() { 
         return nome; 
     } 
-    public double getPreco() {
+    public Dinheiro getPreco() {
         return preco;
     } 
     public int getEstoque() {
@@ -120,11 +149,11 @@ public class Produto { // Renamed to singular form for consistency
         return codProduto;
     }
 
-    public void setPreco(double preco) {
+    public synchronized void setPreco(Dinheiro preco) {
         this.preco = preco;
     }
 
-    public void setEstoque(int estoque) {
+    public synchronized void setEstoque(int estoque) {
         this.estoque = estoque;
     }
     
@@ -0,0 +1,342 @@
+package aps3;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Programa de fidelidade: pontos por agendamento e por compra, contas identificadas pelo CPF.
+ * <p>
+ * Cada conta guarda o gasto e os pontos ganhos em 12 baldes mensais circulares, além dos totais.
+ * Ao lançar uma transação, a conta avança até o mês atual descartando os baldes que saíram da
+ * janela (no máximo 12), então o gasto dos últimos 12 meses e o nível saem em O(1), sem reler o
+ * histórico. Os pontos valem por 12 meses contados do mês em que foram ganhos; o resgate consome
+ * primeiro os mais antigos.
+ * <p>
+ * As contas ficam em vetores paralelos (estrutura de vetores, como em {@link ArmazemPets}), com
+ * cerca de 110 bytes por conta. A expiração noturna ({@link #expirar}) avança todas as contas em
+ * paralelo, para que saldos e níveis consultados sem transação recente também fiquem corretos.
+ */
+public class ProgramaFidelidade {
+    public static final List<String> NIVEIS = List.of("Sem nível", "Prata", "Ouro", "Diamante");
+    // Gasto mínimo nos últimos 12 meses, em centavos, para cada nível a partir de Prata.
+    private static final long[] GASTO_MINIMO = {500_00, 1_500_00, 4_000_00};
+    public static final int CENTAVOS_POR_PONTO_GANHO = 100; // 1 ponto a cada R$ 1,00
+    public static final int CENTAVOS_POR_PONTO_RESGATADO = 5; // 100 pontos valem R$ 5,00
+
+    private static final int MESES = 12;
+    private static final int LIMITE_PARALELO = 10_000; // Contas a partir das quais a expiração é paralela
+
+    // Estado de uma conta, para exibição.
+    public static final class Extrato {
+        private final int nivel;
+        private final long pontos;
+        private final long gastoAnual;
+
+        private Extrato(int nivel, long pontos, long gastoAnual) {
+            this.nivel = nivel;
+            this.pontos = pontos;
+            this.gastoAnual = gastoAnual;
+        }
+
+        public int getNivel() {
+            return nivel;
+        }
+        public String getNomeNivel() {
+            return NIVEIS.get(nivel);
+        }
+        public long getPontos() {
+            return pontos;
+        }
+
+        /**
+         * Gasto dos últimos 12 meses, incluindo o mês atual.
+         * @return Valor gasto
+         */
+        public Dinheiro getGastoAnual() {
+            return Dinheiro.deCentavos(gastoAnual);
+        }
+
+        /**
+         * Desconto que os pontos permitem, se todos forem resgatados.
+         * @return Valor dos pontos
+         */
+        public Dinheiro getValorPontos() {
+            return Dinheiro.deCentavos(pontos * CENTAVOS_POR_PONTO_RESGATADO);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Nível %s | %d pontos (R$ %s) | Gasto em 12 meses: R$ %s",
+                getNomeNivel(), pontos, getValorPontos(), getGastoAnual());
+        }
+    }
+
+    private final Map<String, Integer> posicaoPorCpf = new HashMap<>();
+    private int quantidade;
+
+    // Vetores paralelos; os baldes da conta i ficam em [i * MESES, (i + 1) * MESES).
+    private int[] gastoMensal = new int[64 * MESES];   // Centavos por mês
+    private int[] pontosMensais = new int[64 * MESES]; // Pontos ainda não resgatados, por mês em que foram ganhos
+    private int[] mesAtual = new int[64];              // Último mês para o qual a conta avançou
+    private long[] gastoAnual = new long[64];
+    private long[] pontos = new long[64];
+
+    /**
+     * Lança uma transação paga pelo cliente: soma o gasto do mês e credita os pontos.
+     * @param cpf CPF formatado do cliente
+     * @param valor Valor pago
+     * @param data Data do pagamento
+     * @return Nível do cliente depois da transação
+     */
+    public synchronized int creditar(String cpf, Dinheiro valor, LocalDate data) {
+        if (valor.getCentavos() < 0) throw new IllegalArgumentException("Valor inválido para a fidelidade: " + valor);
+        int conta = conta(cpf, mes(data));
+        avancar(conta, mes(data));
+        int balde = conta * MESES + mesAtual[conta] % MESES;
+        gastoMensal[balde] = (int) Math.min(Integer.MAX_VALUE, gastoMensal[balde] + valor.getCentavos());
+        gastoAnual[conta] += valor.getCentavos();
+        int ganhos = (int) (valor.getCentavos() / CENTAVOS_POR_PONTO_GANHO);
+        pontosMensais[balde] += ganhos;
+        pontos[conta] += ganhos;
+        return nivel(gastoAnual[conta]);
+    }
+
+    /**
+     * Estorna uma transação cancelada: desconta o gasto e os pontos que ela creditou, do mês mais
+     * recente para o mais antigo. Pontos que o cliente já resgatou não são cobrados: o estorno para
+     * quando o saldo acaba.
+     * @param cpf CPF formatado do cliente
+     * @param valor Valor creditado pela transação
+     * @param data Data do estorno
+     * @return Pontos debitados
+     */
+    public synchronized long estornar(String cpf, Dinheiro valor, LocalDate data) {
+        if (valor.getCentavos() < 0) throw new IllegalArgumentException("Valor inválido para a fidelidade: " + valor);
+        Integer conta = posicaoPorCpf.get(cpf);
+        if (conta == null) return 0;
+        avancar(conta, mes(data));
+        long gasto = valor.getCentavos();
+        long estornar = gasto / CENTAVOS_POR_PONTO_GANHO;
+        long debitados = 0;
+        for (int k = 0; k < MESES && (gasto > 0 || debitados < estornar); k++) { // Do mês atual para o mais antigo da janela
+            int balde = conta * MESES + (mesAtual[conta] - k) % MESES;
+            int gastoDoMes = (int) Math.min(gasto, gastoMensal[balde]);
+            gastoMensal[balde] -= gastoDoMes;
+            gastoAnual[conta] -= gastoDoMes;
+            gasto -= gastoDoMes;
+            int pontosDoMes = (int) Math.min(estornar - debitados, pontosMensais[balde]);
+            pontosMensais[balde] -= pontosDoMes;
+            debitados += pontosDoMes;
+        }
+        pontos[conta] -= debitados;
+        return debitados;
+    }
+
+    /**
+     * Pontos necessários para descontar um valor, limitados ao saldo do cliente.
+     * @param cpf CPF formatado do cliente
+     * @param valor Valor a descontar
+     * @param pontosDesejados Pontos que o cliente quer usar
+     * @param data Data do resgate
+     * @return Pontos que podem ser resgatados sem ultrapassar o valor nem o saldo
+     */
+    public synchronized long pontosResgataveis(String cpf, Dinheiro valor, long pontosDesejados, LocalDate data) {
+        Integer conta = posicaoPorCpf.get(cpf);
+        if (conta == null || pontosDesejados <= 0) return 0;
+        avancar(conta, mes(data));
+        long cobrem = (valor.getCentavos() + CENTAVOS_POR_PONTO_RESGATADO - 1) / CENTAVOS_POR_PONTO_RESGATADO;
+        return Math.min(pontosDesejados, Math.min(pontos[conta], cobrem));
+    }
+
+    /**
+     * Resgata pontos, consumindo primeiro os mais antigos.
+     * @param cpf CPF formatado do cliente
+     * @param quantidadePontos Pontos a resgatar
+     * @param data Data do resgate
+     * @return Desconto correspondente aos pontos
+     * @throws IllegalStateException Se o saldo for insuficiente
+     */
+    public synchronized Dinheiro resgatar(String cpf, long quantidadePontos, LocalDate data) {
+        if (quantidadePontos <= 0) throw new IllegalArgumentException("Quantidade de pontos inválida: " + quantidadePontos);
+        Integer conta = posicaoPorCpf.get(cpf);
+        if (conta != null) avancar(conta, mes(data));
+        if (conta == null || pontos[conta] < quantidadePontos) {
+            throw new IllegalStateException("Saldo de pontos insuficiente: " + (conta == null ? 0 : pontos[conta]) + ".");
+        }
+        long restante = quantidadePontos;
+        for (int k = MESES - 1; k >= 0 && restante > 0; k--) { // Do mês mais antigo da janela para o atual
+            int balde = conta * MESES + (mesAtual[conta] - k) % MESES;
+            int usados = (int) Math.min(restante, pontosMensais[balde]);
+            pontosMensais[balde] -= usados;
+            restante -= usados;
+        }
+        pontos[conta] -= quantidadePontos;
+        return Dinheiro.deCentavos(quantidadePontos * CENTAVOS_POR_PONTO_RESGATADO);
+    }
+
+    /**
+     * Nível de fidelidade do cliente, usado nas promoções do {@link MotorPrecos}.
+     * @param cpf CPF formatado do cliente
+     * @param data Data da consulta
+     * @return Nível entre 0 (sem nível) e {@code NIVEIS.size() - 1}
+     */
+    public synchronized int nivel(String cpf, LocalDate data) {
+        Integer conta = posicaoPorCpf.get(cpf);
+        if (conta == null) return 0;
+        avancar(conta, mes(data));
+        return nivel(gastoAnual[conta]);
+    }
+
+    /**
+     * Situação da conta do cliente.
+     * @param cpf CPF formatado do cliente
+     * @param data Data da consulta
+     * @return Nível, saldo de pontos e gasto anual (zerados se o cliente não tiver conta)
+     */
+    public synchronized Extrato extrato(String cpf, LocalDate data) {
+        Integer conta = posicaoPorCpf.get(cpf);
+        if (conta == null) return new Extrato(0, 0, 0);
+        avancar(conta, mes(data));
+        return new Extrato(nivel(gastoAnual[conta]), pontos[conta], gastoAnual[conta]);
+    }
+
+    /**
+     * Expira os pontos e o gasto que saíram da janela de 12 meses em todas as contas. As contas
+     * são avançadas em paralelo; as transações ficam bloqueadas até o fim da varredura.
+     * @param data Data da expiração (normalmente hoje)
+     * @return Total de pontos expirados
+     */
+    public synchronized long expirar(LocalDate data) {
+        int alvo = mes(data);
+        AtomicLong expirados = new AtomicLong();
+        IntStream contas = IntStream.range(0, quantidade);
+        if (quantidade >= LIMITE_PARALELO) contas = contas.parallel();
+        contas.forEach(conta -> { // Cada conta só é tocada por uma thread
+            long antes = pontos[conta];
+            avancar(conta, alvo);
+            if (pontos[conta] != antes) expirados.addAndGet(antes - pontos[conta]);
+        });
+        return expirados.get();
+    }
+
+    /**
+     * Junta a conta de um cliente removido por duplicidade à do cliente mantido.
+     * @param cpfManter CPF do cliente mantido
+     * @param cpfRemover CPF do cliente removido
+     * @param data Data da mesclagem
+     */
+    public synchronized void mesclar(String cpfManter, String cpfRemover, LocalDate data) {
+        Integer origem = posicaoPorCpf.get(cpfRemover);
+        if (origem == null || cpfManter.equals(cpfRemover)) return;
+        int destino = conta(cpfManter, mesAtual[origem]);
+        int mes = Math.max(mes(data), Math.max(mesAtual[origem], mesAtual[destino]));
+        avancar(origem, mes);
+        avancar(destino, mes);
+        for (int k = 0; k < MESES; k++) {
+            int de = origem * MESES + k, para = destino * MESES + k;
+            gastoMensal[para] = (int) Math.min(Integer.MAX_VALUE, (long) gastoMensal[para] + gastoMensal[de]);
+            pontosMensais[para] += pontosMensais[de];
+        }
+        gastoAnual[destino] += gastoAnual[origem];
+        pontos[destino] += pontos[origem];
+        remover(cpfRemover);
+    }
+
+    /**
+     * Encerra a conta de um cliente removido; os pontos são perdidos.
+     * @param cpf CPF formatado do cliente
+     */
+    public synchronized void remover(String cpf) {
+        Integer conta = posicaoPorCpf.remove(cpf);
+        if (conta == null) return;
+        Arrays.fill(gastoMensal, conta * MESES, (conta + 1) * MESES, 0); // A posição não é reaproveitada
+        Arrays.fill(pontosMensais, conta * MESES, (conta + 1) * MESES, 0);
+        gastoAnual[conta] = 0;
+        pontos[conta] = 0;
+    }
+
+    public synchronized int getQuantidadeContas() {
+        return posicaoPorCpf.size();
+    }
+
+    /**
+     * Exporta a conta de um cliente para gravação: mês atual e os baldes do mais antigo para o atual.
+     * @param cpf CPF formatado do cliente
+     * @return {mês, gasto..., pontos...} ou null se o cliente não tiver conta
+     */
+    synchronized long[] exportar(String cpf) {
+        Integer conta = posicaoPorCpf.get(cpf);
+        if (conta == null) return null;
+        long[] dados = new long[1 + 2 * MESES];
+        dados[0] = mesAtual[conta];
+        for (int k = 0; k < MESES; k++) {
+            int balde = conta * MESES + (mesAtual[conta] - (MESES - 1) + k) % MESES;
+            dados[1 + k] = gastoMensal[balde];
+            dados[1 + MESES + k] = pontosMensais[balde];
+        }
+        return dados;
+    }
+
+    // Recria uma conta exportada por exportar.
+    synchronized void restaurar(String cpf, long[] dados) {
+        if (dados.length != 1 + 2 * MESES) throw new IllegalArgumentException("Conta de fidelidade inválida.");
+        remover(cpf);
+        int conta = conta(cpf, (int) dados[0]);
+        mesAtual[conta] = (int) dados[0];
+        for (int k = 0; k < MESES; k++) {
+            int balde = conta * MESES + (mesAtual[conta] - (MESES - 1) + k) % MESES;
+            gastoMensal[balde] = (int) dados[1 + k];
+            pontosMensais[balde] = (int) dados[1 + MESES + k];
+            gastoAnual[conta] += dados[1 + k];
+            pontos[conta] += dados[1 + MESES + k];
+        }
+    }
+
+    // Posição da conta do CPF, criando-a no mês informado se necessário.
+    private int conta(String cpf, int mes) {
+        Integer existente = posicaoPorCpf.get(cpf);
+        if (existente != null) return existente;
+        if (quantidade == mesAtual.length) {
+            int novoTamanho = mesAtual.length * 2;
+            gastoMensal = Arrays.copyOf(gastoMensal, novoTamanho * MESES);
+            pontosMensais = Arrays.copyOf(pontosMensais, novoTamanho * MESES);
+            mesAtual = Arrays.copyOf(mesAtual, novoTamanho);
+            gastoAnual = Arrays.copyOf(gastoAnual, novoTamanho);
+            pontos = Arrays.copyOf(pontos, novoTamanho);
+        }
+        int conta = quantidade++;
+        mesAtual[conta] = mes;
+        posicaoPorCpf.put(cpf, conta);
+        return conta;
+    }
+
+    // Avança a conta até o mês informado, esvaziando os baldes que saem da janela (no máximo 12).
+    private void avancar(int conta, int mes) {
+        int atual = mesAtual[conta];
+        if (mes <= atual) return; // Datas anteriores entram no mês atual da conta
+        for (int m = atual + 1; m <= Math.min(mes, atual + MESES); m++) {
+            int balde = conta * MESES + m % MESES;
+            gastoAnual[conta] -= gastoMensal[balde];
+            pontos[conta] -= pontosMensais[balde];
+            gastoMensal[balde] = 0;
+            pontosMensais[balde] = 0;
+        }
+        mesAtual[conta] = mes;
+    }
+
+    private static int nivel(long gastoAnual) {
+        int nivel = 0;
+        while (nivel < GASTO_MINIMO.length && gastoAnual >= GASTO_MINIMO[nivel]) nivel++;
+        return nivel;
+    }
+
+    // Meses desde janeiro do ano 0, para indexar os baldes circulares.
+    private static int mes(LocalDate data) {
+        return data.getYear() * 12 + data.getMonthValue() - 1;
+    }
+}
@@ -0,0 +1,97 @@
+package aps3;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Comprovante imutável de uma venda finalizada no checkout.
+ */
+public class Recibo {
+    private final long numero;                 // Número sequencial do recibo
+    private final LocalDateTime dataHora;      // Momento da venda
+    private final String metodoPagamento;      // Método de pagamento utilizado
+    private final List<Linha> linhas;          // Itens cobrados
+    private final Dinheiro total;              // Valor total pago
+
+    /**
+     * Linha do recibo com o item vendido e os valores cobrados.
+     */
+    public static final class Linha {
+        private final String descricao;
+        private final int quantidade;
+        private final Dinheiro precoUnitario;
+        private final Dinheiro desconto;
+        private final Dinheiro subtotal;
+
+        Linha(String descricao, int quantidade, Dinheiro precoUnitario, Dinheiro desconto, Dinheiro subtotal) {
+            this.descricao = descricao;
+            this.quantidade = quantidade;
+            this.precoUnitario = precoUnitario;
+            this.desconto = desconto;
+            this.subtotal = subtotal;
+        }
+
+        public String getDescricao() {
+            return descricao;
+        }
+        public int getQuantidade() {
+            return quantidade;
+        }
+        public Dinheiro getPrecoUnitario() {
+            return precoUnitario;
+        }
+        public Dinheiro getDesconto() {
+            return desconto;
+        }
+        public Dinheiro getSubtotal() {
+            return subtotal;
+        }
+    }
+
+    Recibo(long numero, LocalDateTime dataHora, String metodoPagamento, List<Linha> linhas) {
+        this.numero = numero;
+        this.dataHora = dataHora;
+        this.metodoPagamento = metodoPagamento;
+        this.linhas = Collections.unmodifiableList(new ArrayList<>(linhas));
+        long centavos = 0;
+        for (Linha linha : linhas) {
+            centavos += linha.subtotal.getCentavos();
+        }
+        this.total = Dinheiro.deCentavos(centavos);
+    }
+
+    /**
+     * Gera o texto do recibo para impressão.
+     * @return Recibo formatado
+     */
+    public String formatar() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("🧾 Recibo nº %d - %s%n", numero, dataHora.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm"))));
+        for (Linha linha : linhas) {
+            sb.append(String.format("%dx %s | Unit.: R$ %s | Desconto: R$ %s | Subtotal: R$ %s%n",
+                linha.quantidade, linha.descricao, linha.precoUnitario, linha.desconto, linha.subtotal));
+        }
+        sb.append(String.format("Total: R$ %s | Pagamento: %s%n", total, metodoPagamento));
+        return sb.toString();
+    }
+
+    // Getters
+    public long getNumero() {
+        return numero;
+    }
+    public LocalDateTime getDataHora() {
+        return dataHora;
+    }
+    public String getMetodoPagamento() {
+        return metodoPagamento;
+    }
+    public List<Linha> getLinhas() {
+        return linhas;
+    }
+    public Dinheiro getTotal() {
+        return total;
+    }
+}
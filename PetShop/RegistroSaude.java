@@ -0,0 +1,373 @@
+package aps3;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Histórico de saúde dos pets: série de pesos, vacinas e anotações de atendimento.
+ * <p>
+ * Os pesos ficam em uma {@link SerieTemporal} compacta por pet. Vacinas e anotações são gravadas
+ * em um fluxo de bytes por pet (dias em deltas de tamanho variável e nomes de vacina trocados por
+ * códigos de um dicionário compartilhado), o que mantém dez anos de histórico de um milhão de
+ * pets em poucas centenas de megabytes.
+ */
+public class RegistroSaude {
+    // Janela usada para comparar o peso atual com o anterior nos alertas de tendência.
+    public static final int DIAS_TENDENCIA = 90;
+    public static final double LIMITE_PERDA = 0.10; // Perda de 10% na janela gera alerta
+    public static final double LIMITE_GANHO = 0.15; // Ganho de 15% na janela gera alerta
+    public static final int VALIDADE_VACINA_DIAS = 365;
+
+    private static final byte TIPO_VACINA = 0;
+    private static final byte TIPO_ANOTACAO = 1;
+    private static final DateTimeFormatter FORMATO_DATA = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private final Map<Pets, Historico> historicos = new ConcurrentHashMap<>();
+
+    // Dicionário de nomes de vacina: cada nome é gravado uma única vez.
+    private final Map<String, Integer> codigoVacina = new HashMap<>();
+    private final List<String> nomesVacina = new ArrayList<>();
+
+    /**
+     * Evento de saúde registrado para um pet.
+     */
+    public static final class Evento {
+        private final LocalDate data;
+        private final String tipo;      // "Vacina" ou "Anotação"
+        private final String descricao;
+
+        private Evento(LocalDate data, String tipo, String descricao) {
+            this.data = data;
+            this.tipo = tipo;
+            this.descricao = descricao;
+        }
+
+        public LocalDate getData() {
+            return data;
+        }
+        public String getTipo() {
+            return tipo;
+        }
+        public String getDescricao() {
+            return descricao;
+        }
+
+        @Override
+        public String toString() {
+            return data.format(FORMATO_DATA) + " | " + tipo + ": " + descricao;
+        }
+    }
+
+    // Histórico de um pet; acessado sob o seu próprio monitor.
+    private static final class Historico {
+        private final SerieTemporal pesos = new SerieTemporal();
+        private byte[] eventos;     // Fluxo codificado de vacinas e anotações (null se não houver)
+        private int tamanhoEventos;
+        private int ultimoDiaEvento;
+    }
+
+    /**
+     * Registra uma pesagem e verifica a tendência de peso do pet.
+     * @param pet Pet pesado
+     * @param data Data da pesagem (pode ser retroativa)
+     * @param peso Peso em kg (deve ser maior que zero)
+     * @return Alertas de tendência da pesagem mais recente (vazio se não houver)
+     * @throws IllegalArgumentException Se o peso for inválido
+     */
+    public List<String> registrarPeso(Pets pet, LocalDate data, float peso) {
+        if (peso <= 0) throw new IllegalArgumentException("Peso inválido! Deve ser maior que zero.");
+        Historico historico = historico(pet);
+        synchronized (historico) {
+            historico.pesos.adicionar(data, peso);
+            return alertasPeso(historico.pesos);
+        }
+    }
+
+    /**
+     * Registra a aplicação de uma vacina.
+     * @param pet Pet vacinado
+     * @param data Data da aplicação (pode ser retroativa)
+     * @param vacina Nome da vacina
+     * @throws IllegalArgumentException Se o nome for vazio
+     */
+    public void registrarVacina(Pets pet, LocalDate data, String vacina) {
+        if (vacina == null || vacina.isBlank()) throw new IllegalArgumentException("Nome da vacina não pode ser vazio.");
+        int codigo;
+        synchronized (codigoVacina) {
+            codigo = codigoVacina.computeIfAbsent(vacina.trim(), nome -> {
+                nomesVacina.add(nome);
+                return nomesVacina.size() - 1;
+            });
+        }
+        gravarEvento(pet, data, TIPO_VACINA, codigo, null);
+    }
+
+    /**
+     * Registra uma anotação de atendimento (observações do banho, tosa, consulta etc.).
+     * @param pet Pet atendido
+     * @param data Data do atendimento (pode ser retroativa)
+     * @param texto Texto da anotação
+     * @throws IllegalArgumentException Se o texto for vazio
+     */
+    public void registrarAnotacao(Pets pet, LocalDate data, String texto) {
+        if (texto == null || texto.isBlank()) throw new IllegalArgumentException("Anotação não pode ser vazia.");
+        gravarEvento(pet, data, TIPO_ANOTACAO, 0, texto.trim().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Percorre as pesagens de um intervalo.
+     * @param pet Pet consultado
+     * @param de Data inicial (inclusiva)
+     * @param ate Data final (inclusiva)
+     * @param destino Recebe cada pesagem, em ordem cronológica
+     */
+    public void consultarPesos(Pets pet, LocalDate de, LocalDate ate, SerieTemporal.Consumidor destino) {
+        Historico historico = historicos.get(pet);
+        if (historico == null) return;
+        synchronized (historico) {
+            historico.pesos.consultar(de, ate, destino);
+        }
+    }
+
+    /**
+     * Retorna as vacinas e anotações de um intervalo.
+     * @param pet Pet consultado
+     * @param de Data inicial (inclusiva)
+     * @param ate Data final (inclusiva)
+     * @return Eventos do intervalo, em ordem cronológica
+     */
+    public List<Evento> consultarEventos(Pets pet, LocalDate de, LocalDate ate) {
+        List<Evento> resultado = new ArrayList<>();
+        Historico historico = historicos.get(pet);
+        if (historico == null) return resultado;
+        long inicio = de.toEpochDay(), fim = ate.toEpochDay();
+        synchronized (historico) {
+            int[] posicao = {0};
+            int dia = 0;
+            while (posicao[0] < historico.tamanhoEventos) {
+                dia += lerVarint(historico.eventos, posicao);
+                byte tipo = historico.eventos[posicao[0]++];
+                int valor = lerVarint(historico.eventos, posicao); // Código da vacina ou tamanho do texto
+                if (dia > fim) break;
+                String descricao;
+                if (tipo == TIPO_VACINA) {
+                    descricao = nomeVacina(valor);
+                } else {
+                    descricao = new String(historico.eventos, posicao[0], valor, StandardCharsets.UTF_8);
+                    posicao[0] += valor;
+                }
+                if (dia >= inicio) {
+                    resultado.add(new Evento(LocalDate.ofEpochDay(dia), tipo == TIPO_VACINA ? "Vacina" : "Anotação", descricao));
+                }
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Retorna o peso vigente em uma data: o da última pesagem até ela ou, se a data for anterior
+     * ao histórico, o da primeira pesagem.
+     * @param pet Pet consultado
+     * @param data Data de referência
+     * @return Peso em kg, ou NaN se o pet não tiver pesagens
+     */
+    public float pesoEm(Pets pet, LocalDate data) {
+        Historico historico = historicos.get(pet);
+        if (historico == null) return Float.NaN;
+        synchronized (historico) {
+            float peso = historico.pesos.valorEm(data);
+            return Float.isNaN(peso) ? historico.pesos.getPrimeiroValor() : peso;
+        }
+    }
+
+    /**
+     * Retorna o porte do pet em uma data, para precificar corretamente agendamentos antigos.
+     * @param pet Pet consultado
+     * @param data Data de referência
+     * @return Porte na data, ou o porte atual se o pet não tiver pesagens
+     */
+    public String porteEm(Pets pet, LocalDate data) {
+        float peso = pesoEm(pet, data);
+        return Float.isNaN(peso) ? pet.getPortePet() : Pets.calcularPorte(peso);
+    }
+
+    /**
+     * Verifica tendências de peso e vacinas vencidas de um pet.
+     * @param pet Pet consultado
+     * @param hoje Data de referência para o vencimento das vacinas
+     * @return Mensagens de alerta (vazio se estiver tudo em ordem)
+     */
+    public List<String> alertas(Pets pet, LocalDate hoje) {
+        Historico historico = historicos.get(pet);
+        if (historico == null) return List.of();
+        List<String> alertas = new ArrayList<>();
+        synchronized (historico) {
+            alertas.addAll(alertasPeso(historico.pesos));
+        }
+        Map<String, LocalDate> ultimaDose = new LinkedHashMap<>();
+        for (Evento evento : consultarEventos(pet, LocalDate.MIN, hoje)) {
+            if (evento.getTipo().equals("Vacina")) ultimaDose.put(evento.getDescricao(), evento.getData());
+        }
+        ultimaDose.forEach((vacina, data) -> {
+            LocalDate vencimento = data.plusDays(VALIDADE_VACINA_DIAS);
+            if (vencimento.isBefore(hoje)) {
+                alertas.add("💉 Vacina " + vacina + " vencida desde " + vencimento.format(FORMATO_DATA) + ".");
+            }
+        });
+        return alertas;
+    }
+
+    /**
+     * Retorna o peso da pesagem mais recente.
+     * @param pet Pet consultado
+     * @return Peso em kg, ou NaN se o pet não tiver pesagens
+     */
+    public float pesoAtual(Pets pet) {
+        Historico historico = historicos.get(pet);
+        if (historico == null) return Float.NaN;
+        synchronized (historico) {
+            return historico.pesos.getUltimoValor();
+        }
+    }
+
+    /**
+     * Descarta o histórico de um pet removido.
+     * @param pet Pet removido
+     */
+    public void remover(Pets pet) {
+        historicos.remove(pet);
+    }
+
+    /**
+     * Memória aproximada ocupada pelos históricos codificados.
+     * @return Tamanho em bytes das séries e dos fluxos de eventos
+     */
+    public long getBytesUsados() {
+        long total = 0;
+        for (Historico historico : historicos.values()) {
+            synchronized (historico) {
+                total += historico.pesos.getBytesUsados() + (historico.eventos == null ? 0 : historico.eventos.length);
+            }
+        }
+        return total;
+    }
+
+    private Historico historico(Pets pet) {
+        if (pet == null) throw new IllegalArgumentException("Pet não pode ser nulo.");
+        return historicos.computeIfAbsent(pet, p -> new Historico());
+    }
+
+    // Compara o último peso com o vigente DIAS_TENDENCIA dias antes e com o porte daquela época.
+    private static List<String> alertasPeso(SerieTemporal pesos) {
+        if (pesos.getQuantidade() < 2) return List.of();
+        LocalDate ultimaData = pesos.getUltimaData();
+        float atual = pesos.getUltimoValor();
+        float anterior = pesos.valorEm(ultimaData.minusDays(DIAS_TENDENCIA));
+        if (Float.isNaN(anterior)) anterior = pesos.getPrimeiroValor(); // Histórico mais curto que a janela
+        List<String> alertas = new ArrayList<>();
+        double variacao = (atual - anterior) / anterior;
+        if (variacao <= -LIMITE_PERDA) {
+            alertas.add(String.format("⚠️ Perda de peso de %.0f%% (%.2f kg → %.2f kg).", -variacao * 100, anterior, atual));
+        } else if (variacao >= LIMITE_GANHO) {
+            alertas.add(String.format("⚠️ Ganho de peso de %.0f%% (%.2f kg → %.2f kg).", variacao * 100, anterior, atual));
+        }
+        String porteAnterior = Pets.calcularPorte(anterior);
+        String porteAtual = Pets.calcularPorte(atual);
+        if (!porteAnterior.equals(porteAtual)) {
+            alertas.add("📏 Porte alterado de " + porteAnterior + " para " + porteAtual + "; o preço dos serviços muda.");
+        }
+        return alertas;
+    }
+
+    private void gravarEvento(Pets pet, LocalDate data, byte tipo, int valor, byte[] texto) {
+        Historico historico = historico(pet);
+        int dia = (int) data.toEpochDay();
+        synchronized (historico) {
+            if (historico.tamanhoEventos > 0 && dia < historico.ultimoDiaEvento) {
+                reescreverEventos(historico, dia, tipo, valor, texto); // Lançamento retroativo
+            } else {
+                acrescentarEvento(historico, dia, tipo, valor, texto);
+            }
+        }
+    }
+
+    private static void acrescentarEvento(Historico historico, int dia, byte tipo, int valor, byte[] texto) {
+        ByteArrayOutputStream registro = new ByteArrayOutputStream(16 + (texto == null ? 0 : texto.length));
+        escreverVarint(registro, historico.tamanhoEventos == 0 ? dia : dia - historico.ultimoDiaEvento);
+        registro.write(tipo);
+        escreverVarint(registro, texto == null ? valor : texto.length);
+        if (texto != null) registro.write(texto, 0, texto.length);
+
+        int necessario = historico.tamanhoEventos + registro.size();
+        if (historico.eventos == null || necessario > historico.eventos.length) {
+            byte[] maior = new byte[Math.max(necessario, historico.tamanhoEventos + historico.tamanhoEventos / 4)];
+            if (historico.eventos != null) System.arraycopy(historico.eventos, 0, maior, 0, historico.tamanhoEventos);
+            historico.eventos = maior;
+        }
+        byte[] bytes = registro.toByteArray();
+        System.arraycopy(bytes, 0, historico.eventos, historico.tamanhoEventos, bytes.length);
+        historico.tamanhoEventos = necessario;
+        historico.ultimoDiaEvento = dia;
+    }
+
+    // Decodifica os eventos, insere o novo depois dos de mesma data e recodifica o fluxo.
+    private static void reescreverEventos(Historico historico, int diaNovo, byte tipoNovo, int valorNovo, byte[] textoNovo) {
+        byte[] eventos = historico.eventos;
+        int tamanho = historico.tamanhoEventos;
+        historico.eventos = null;
+        historico.tamanhoEventos = 0;
+        int[] posicao = {0};
+        int dia = 0;
+        boolean inserido = false;
+        while (posicao[0] < tamanho) {
+            dia += lerVarint(eventos, posicao);
+            byte tipo = eventos[posicao[0]++];
+            int valor = lerVarint(eventos, posicao);
+            byte[] texto = null;
+            if (tipo == TIPO_ANOTACAO) {
+                texto = Arrays.copyOfRange(eventos, posicao[0], posicao[0] + valor);
+                posicao[0] += valor;
+            }
+            if (!inserido && dia > diaNovo) {
+                acrescentarEvento(historico, diaNovo, tipoNovo, valorNovo, textoNovo);
+                inserido = true;
+            }
+            acrescentarEvento(historico, dia, tipo, valor, texto);
+        }
+    }
+
+    private String nomeVacina(int codigo) {
+        synchronized (codigoVacina) {
+            return nomesVacina.get(codigo);
+        }
+    }
+
+    // Inteiro com sinal em zigue-zague, 7 bits por byte.
+    private static void escreverVarint(ByteArrayOutputStream destino, int valor) {
+        int v = (valor << 1) ^ (valor >> 31);
+        while ((v & ~0x7F) != 0) {
+            destino.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        destino.write(v);
+    }
+
+    private static int lerVarint(byte[] origem, int[] posicao) {
+        int v = 0;
+        for (int deslocamento = 0; ; deslocamento += 7) {
+            byte b = origem[posicao[0]++];
+            v |= (b & 0x7F) << deslocamento;
+            if (b >= 0) break;
+        }
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
@@ -0,0 +1,171 @@
+package aps3;
+
+import java.util.function.Consumer;
+
+/**
+ * Roda de temporização hierárquica: agenda e cancela tarefas em O(1), sem threads por tarefa
+ * e sem varrer uma fila de prioridade a cada avanço do relógio.
+ *
+ * Cada nível tem 256 posições; o nível 0 avança um tique por vez e, a cada volta completa,
+ * a posição correspondente do nível seguinte é redistribuída nos níveis inferiores.
+ * A classe não é thread-safe: quem a utiliza deve sincronizar o acesso.
+ *
+ * @param <T> Tipo da carga associada a cada tarefa
+ */
+public class RodaTemporizacao<T> {
+    private static final int BITS_POR_NIVEL = 8;
+    private static final int POSICOES = 1 << BITS_POR_NIVEL;
+    private static final int MASCARA = POSICOES - 1;
+    private static final int NIVEIS = 4;
+
+    /**
+     * Tarefa agendada na roda. Funciona como nó de uma lista duplamente encadeada,
+     * o que permite removê-la da sua posição sem percorrer a lista.
+     */
+    public static final class Tarefa<T> {
+        private final long tique;     // Tique em que a tarefa deve disparar
+        private final T carga;        // Objeto entregue quando a tarefa expira
+        private Tarefa<T> anterior;
+        private Tarefa<T> proxima;
+        private Tarefa<T>[] balde;    // Nível em que a tarefa está (null se já disparou ou foi cancelada)
+        private int posicao;
+
+        private Tarefa(long tique, T carga) {
+            this.tique = tique;
+            this.carga = carga;
+        }
+
+        public T getCarga() {
+            return carga;
+        }
+
+        /**
+         * Indica se a tarefa ainda aguarda o disparo.
+         * @return true se a tarefa não disparou nem foi cancelada
+         */
+        public boolean isPendente() {
+            return balde != null;
+        }
+    }
+
+    private final long duracaoTique;     // Duração de um tique em milissegundos
+    private final Tarefa<T>[][] niveis;  // Cabeças das listas de cada posição, por nível
+    private long tiqueAtual;             // Último tique processado
+    private int pendentes;               // Quantidade de tarefas aguardando disparo
+
+    /**
+     * Cria a roda a partir de um instante inicial.
+     * @param duracaoTique Duração de um tique em milissegundos (deve ser positiva)
+     * @param inicioMillis Instante inicial da roda, em milissegundos
+     * @throws IllegalArgumentException Se a duração do tique for inválida
+     */
+    @SuppressWarnings("unchecked")
+    public RodaTemporizacao(long duracaoTique, long inicioMillis) {
+        if (duracaoTique <= 0) throw new IllegalArgumentException("Duração do tique deve ser positiva.");
+        this.duracaoTique = duracaoTique;
+        this.tiqueAtual = inicioMillis / duracaoTique;
+        this.niveis = (Tarefa<T>[][]) new Tarefa<?>[NIVEIS][POSICOES];
+    }
+
+    /**
+     * Agenda uma carga para disparar no instante informado. Instantes no passado disparam no próximo avanço.
+     * @param instanteMillis Instante de disparo, em milissegundos
+     * @param carga Objeto a ser entregue no disparo
+     * @return Tarefa criada, que pode ser usada para cancelamento
+     */
+    public Tarefa<T> agendar(long instanteMillis, T carga) {
+        Tarefa<T> tarefa = new Tarefa<>(Math.max(instanteMillis / duracaoTique, tiqueAtual + 1), carga);
+        inserir(tarefa);
+        pendentes++;
+        return tarefa;
+    }
+
+    /**
+     * Cancela uma tarefa ainda pendente. Cancelar uma tarefa já disparada não tem efeito.
+     * @param tarefa Tarefa a ser cancelada
+     * @return true se a tarefa estava pendente e foi removida
+     */
+    public boolean cancelar(Tarefa<T> tarefa) {
+        if (tarefa == null || tarefa.balde == null) return false;
+        desencadear(tarefa);
+        pendentes--;
+        return true;
+    }
+
+    /**
+     * Avança a roda até o instante informado, entregando as cargas das tarefas expiradas.
+     * @param agoraMillis Instante atual, em milissegundos
+     * @param expiradas Consumidor que recebe cada carga expirada, em ordem de tique
+     */
+    public void avancar(long agoraMillis, Consumer<T> expiradas) {
+        long alvo = agoraMillis / duracaoTique;
+        while (tiqueAtual < alvo) {
+            tiqueAtual++;
+            cascatear();
+            int posicao = (int) (tiqueAtual & MASCARA);
+            Tarefa<T> tarefa = niveis[0][posicao];
+            niveis[0][posicao] = null;
+            while (tarefa != null) {
+                Tarefa<T> proxima = tarefa.proxima;
+                tarefa.anterior = tarefa.proxima = null;
+                tarefa.balde = null;
+                pendentes--;
+                expiradas.accept(tarefa.carga);
+                tarefa = proxima;
+            }
+        }
+    }
+
+    /**
+     * Retorna quantas tarefas aguardam disparo.
+     * @return Total de tarefas pendentes
+     */
+    public int getPendentes() {
+        return pendentes;
+    }
+
+    // Quando os níveis inferiores completam uma volta, redistribui a posição atual dos níveis superiores.
+    private void cascatear() {
+        for (int nivel = 1; nivel < NIVEIS; nivel++) {
+            if ((tiqueAtual & ((1L << (BITS_POR_NIVEL * nivel)) - 1)) != 0) return;
+            int posicao = (int) ((tiqueAtual >>> (BITS_POR_NIVEL * nivel)) & MASCARA);
+            Tarefa<T> tarefa = niveis[nivel][posicao];
+            niveis[nivel][posicao] = null;
+            while (tarefa != null) {
+                Tarefa<T> proxima = tarefa.proxima;
+                tarefa.anterior = tarefa.proxima = null;
+                inserir(tarefa);
+                tarefa = proxima;
+            }
+        }
+    }
+
+    // Escolhe o nível pela distância até o disparo; distâncias além do último nível ficam na última volta.
+    private void inserir(Tarefa<T> tarefa) {
+        long distancia = tarefa.tique - tiqueAtual;
+        int nivel = 0;
+        while (nivel < NIVEIS - 1 && distancia >= (1L << (BITS_POR_NIVEL * (nivel + 1)))) {
+            nivel++;
+        }
+        long tiqueNivel = Math.min(tarefa.tique, tiqueAtual + (1L << (BITS_POR_NIVEL * NIVEIS)) - 1);
+        int posicao = (int) ((tiqueNivel >>> (BITS_POR_NIVEL * nivel)) & MASCARA);
+
+        Tarefa<T>[] balde = niveis[nivel];
+        tarefa.balde = balde;
+        tarefa.posicao = posicao;
+        tarefa.proxima = balde[posicao];
+        if (balde[posicao] != null) balde[posicao].anterior = tarefa;
+        balde[posicao] = tarefa;
+    }
+
+    private void desencadear(Tarefa<T> tarefa) {
+        if (tarefa.anterior != null) {
+            tarefa.anterior.proxima = tarefa.proxima;
+        } else {
+            tarefa.balde[tarefa.posicao] = tarefa.proxima;
+        }
+        if (tarefa.proxima != null) tarefa.proxima.anterior = tarefa.anterior;
+        tarefa.anterior = tarefa.proxima = null;
+        tarefa.balde = null;
+    }
+}
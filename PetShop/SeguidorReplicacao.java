@@ -0,0 +1,234 @@
+package aps3;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lado réplica da replicação: segue um {@link LiderReplicacao} em localhost e reaplica as alterações
+ * recebidas em uma loja local por meio do {@link ModoLote}.
+ * <p>
+ * Enquanto segue o líder, a loja local só aceita alterações vindas da replicação e serve consultas
+ * (listagens, históricos, resumo financeiro) sem pesar no líder. Se a conexão cai, a réplica reconecta
+ * e continua do último cursor aplicado, recebendo em lotes o que perdeu. {@link #promover()} encerra
+ * a replicação e libera a loja para receber alterações, tornando-a o novo líder.
+ * <p>
+ * As alterações são aplicadas estritamente em ordem. Se uma delas falhar, chegar fora de sequência
+ * ou o líder não tiver mais as alterações seguintes ao cursor (por exemplo, um líder que reabriu
+ * dados salvos e cujo feed não começa em 1), a réplica para, desconecta e guarda o motivo em
+ * {@link #getUltimoErro()}; o cursor fica na última alteração aplicada, sem pular a que falhou.
+ */
+public class SeguidorReplicacao {
+    private static final int ESPERA_RECONEXAO_MAXIMA = 5_000; // Milissegundos entre tentativas, no máximo
+
+    private final Loja loja;
+    private final int portaLider;
+    private final ModoLote aplicador;
+    private Thread thread;
+    private volatile Socket socket;
+    private volatile boolean ativo;
+
+    private volatile long cursor;            // Sequência do líder da última alteração aplicada
+    private volatile long ultimaDoLider;     // Última sequência conhecida do líder
+    private volatile long instanteAplicada;  // Instante, no líder, da última alteração aplicada
+    private volatile long errosAplicacao;    // Alterações que falharam ao ser reaplicadas (a réplica para na primeira)
+    private volatile String ultimoErro;
+    private volatile boolean conectado;
+
+    /**
+     * Construtor da réplica.
+     * @param loja Loja local que receberá as alterações (não pode ser nula)
+     * @param portaLider Porta do líder em localhost
+     * @param cursor Sequência da última alteração do líder já presente na loja local (0 se estiver vazia)
+     * @throws IllegalArgumentException Se algum parâmetro for inválido
+     */
+    public SeguidorReplicacao(Loja loja, int portaLider, long cursor) {
+        if (loja == null) throw new IllegalArgumentException("Loja não pode ser nula.");
+        if (portaLider < 1 || portaLider > 65535) throw new IllegalArgumentException("Porta inválida: " + portaLider);
+        if (cursor < 0) throw new IllegalArgumentException("Cursor inválido: " + cursor);
+        this.loja = loja;
+        this.portaLider = portaLider;
+        this.aplicador = new ModoLote(loja, true);
+        this.cursor = cursor;
+    }
+
+    /**
+     * Começa a seguir o líder em segundo plano; a loja local passa a ser somente leitura.
+     * @throws IllegalStateException Se a réplica já tiver sido iniciada
+     */
+    public synchronized void iniciar() {
+        if (thread != null) throw new IllegalStateException("Réplica já iniciada.");
+        ativo = true;
+        thread = new Thread(this::seguir, "replica-" + portaLider);
+        thread.setDaemon(true);
+        loja.tornarReplica(thread);
+        thread.start();
+    }
+
+    /**
+     * Para de seguir o líder e libera a loja local para alterações.
+     * A alteração em aplicação termina antes; {@link #getCursor()} indica a última alteração do líder incluída.
+     * @return Cursor da última alteração do líder aplicada
+     */
+    public long promover() {
+        Thread seguidor;
+        synchronized (this) {
+            ativo = false;
+            seguidor = thread;
+        }
+        fecharSocket();
+        if (seguidor != null) {
+            try {
+                seguidor.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        loja.promover();
+        return cursor;
+    }
+
+    public long getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Atraso da réplica em número de alterações, pela última sequência anunciada pelo líder.
+     * @return Alterações do líder ainda não aplicadas
+     */
+    public long getAtraso() {
+        return Math.max(0, ultimaDoLider - cursor);
+    }
+
+    /**
+     * Atraso da réplica em tempo: idade, no relógio do líder, da última alteração aplicada.
+     * @return Milissegundos desde que a última alteração aplicada aconteceu no líder (0 se estiver em dia)
+     */
+    public long getAtrasoMillis() {
+        if (getAtraso() == 0) return 0;
+        return Math.max(0, System.currentTimeMillis() - instanteAplicada);
+    }
+
+    public long getErrosAplicacao() {
+        return errosAplicacao;
+    }
+    public String getUltimoErro() {
+        return ultimoErro;
+    }
+    public boolean isConectado() {
+        return conectado;
+    }
+    public boolean isAtivo() {
+        return ativo;
+    }
+
+    // Laço da réplica: conecta, aplica o que chegar e reconecta com espera crescente se a conexão cair.
+    private void seguir() {
+        int espera = 100;
+        while (ativo) {
+            try (Socket conexao = new Socket()) {
+                socket = conexao;
+                if (!ativo) return;
+                conexao.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), portaLider), 2_000);
+                conexao.setTcpNoDelay(true);
+                conectado = true;
+                espera = 100;
+                receber(conexao);
+            } catch (IOException e) {
+                // Líder indisponível: tenta de novo mais tarde.
+            } finally {
+                conectado = false;
+            }
+            if (!ativo) return;
+            try {
+                Thread.sleep(espera);
+            } catch (InterruptedException e) {
+                return;
+            }
+            espera = Math.min(espera * 2, ESPERA_RECONEXAO_MAXIMA);
+        }
+    }
+
+    private void receber(Socket conexao) throws IOException {
+        BufferedReader entrada = new BufferedReader(new InputStreamReader(conexao.getInputStream(), StandardCharsets.UTF_8), 1 << 16);
+        OutputStream saida = conexao.getOutputStream();
+        enviar(saida, LiderReplicacao.SEGUIR + "\t" + cursor);
+        long confirmado = cursor;
+        String linha;
+        while (ativo && (linha = entrada.readLine()) != null) {
+            String[] campos = linha.split("\t", 4);
+            switch (campos[0]) {
+                case LiderReplicacao.ALTERACAO -> {
+                    long sequencia = Long.parseLong(campos[1]);
+                    if (sequencia <= cursor) continue; // Já aplicada antes de uma reconexão
+                    if (sequencia != cursor + 1) {
+                        parar(saida, confirmado, "Faltam as alterações " + (cursor + 1) + " a " + (sequencia - 1) + " do líder.");
+                        return;
+                    }
+                    StringWriter resultado = new StringWriter();
+                    boolean aplicada;
+                    try {
+                        aplicada = aplicador.executarLinha(sequencia, campos[3], resultado);
+                    } catch (RuntimeException e) {
+                        resultado.write(String.valueOf(e));
+                        aplicada = false;
+                    }
+                    if (!aplicada) {
+                        errosAplicacao++;
+                        parar(saida, confirmado, "Alteração " + sequencia + " não aplicada (" + resultado.toString().strip() + "): " + campos[3]);
+                        return;
+                    }
+                    instanteAplicada = Long.parseLong(campos[2]);
+                    cursor = sequencia;
+                    ultimaDoLider = Math.max(ultimaDoLider, sequencia);
+                }
+                case LiderReplicacao.SINAL_VIDA -> ultimaDoLider = Long.parseLong(campos[1]);
+                case LiderReplicacao.ERRO -> {
+                    // O líder não tem mais as alterações a partir do cursor: a réplica precisa de uma cópia completa.
+                    parar(saida, confirmado, campos.length > 1 ? campos[1] : "Erro do líder.");
+                    return;
+                }
+                default -> throw new IOException("Mensagem inválida do líder: " + linha);
+            }
+            // Confirma uma vez por lote: quando não há mais nada já recebido para aplicar.
+            if (cursor > confirmado && !entrada.ready()) {
+                enviar(saida, LiderReplicacao.CONFIRMACAO + "\t" + cursor);
+                confirmado = cursor;
+            }
+        }
+    }
+
+    // Para de seguir o líder: confirma o que já foi aplicado e guarda o motivo; a conexão é fechada por quem chamou.
+    private void parar(OutputStream saida, long confirmado, String motivo) {
+        ultimoErro = motivo;
+        ativo = false;
+        if (cursor > confirmado) {
+            try {
+                enviar(saida, LiderReplicacao.CONFIRMACAO + "\t" + cursor);
+            } catch (IOException ignorada) {
+                // O líder saberá do cursor na próxima conexão.
+            }
+        }
+    }
+
+    private static void enviar(OutputStream saida, String mensagem) throws IOException {
+        saida.write((mensagem + "\n").getBytes(StandardCharsets.UTF_8));
+        saida.flush();
+    }
+
+    private void fecharSocket() {
+        Socket atual = socket;
+        if (atual == null) return;
+        try {
+            atual.close();
+        } catch (IOException ignorada) {
+            // Nada a fazer: o socket já está sendo descartado.
+        }
+    }
+}
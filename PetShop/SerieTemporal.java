@@ -0,0 +1,324 @@
+package aps3;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Série temporal compacta de medições diárias (data, valor), como o histórico de peso de um pet.
+ * <p>
+ * Usa a codificação do Gorilla: as datas são gravadas como "delta do delta" em dias (medições
+ * em intervalos regulares custam 1 bit) e os valores como XOR com o valor anterior, guardando
+ * apenas os bits significativos. Medições típicas de peso ocupam de 2 a 4 bytes, contra dezenas
+ * de bytes por objeto em uma lista comum. A cada {@value #INTERVALO_PONTO_CONTROLE} medições um
+ * ponto de controle permite começar a decodificação no meio da série, o que mantém as consultas
+ * por data rápidas mesmo em históricos longos.
+ * <p>
+ * Medições costumam chegar em ordem cronológica e são acrescentadas em O(1). Uma medição com data
+ * anterior à última (lançamento retroativo) é aceita, mas recodifica a série inteira. Várias
+ * medições na mesma data são permitidas; a última registrada vale.
+ */
+public class SerieTemporal {
+    private static final int INTERVALO_PONTO_CONTROLE = 128;
+
+    private long[] bits = new long[2]; // Fluxo de bits codificado
+    private int totalBits;
+    private int quantidade;
+
+    // Estado do codificador após a última medição.
+    private int ultimoDia;
+    private int ultimoDelta;
+    private int ultimoValor;       // Bits do float
+    private int ultimosZerosEsquerda = Integer.MAX_VALUE; // Janela de bits significativos anterior
+    private int ultimosZerosDireita;
+
+    // Pontos de controle: posição no fluxo e estado do decodificador logo após a medição (i + 1) * INTERVALO - 1.
+    private int[] controles; // Grupos de 6 inteiros; null enquanto a série for curta
+
+    /**
+     * Registra uma medição.
+     * @param data Data da medição
+     * @param valor Valor medido
+     */
+    public void adicionar(LocalDate data, float valor) {
+        int dia = dia(data);
+        if (quantidade > 0 && dia < ultimoDia) {
+            reescreverCom(dia, valor);
+        } else {
+            acrescentar(dia, Float.floatToIntBits(valor));
+        }
+    }
+
+    private void acrescentar(int dia, int valorBits) {
+        if (quantidade == 0) {
+            escrever(dia, 32);
+            escrever(valorBits, 32);
+        } else {
+            if (quantidade % INTERVALO_PONTO_CONTROLE == 0) salvarPontoControle();
+            int delta = dia - ultimoDia;
+            escreverDeltaDoDelta(delta - ultimoDelta);
+            escreverValor(valorBits);
+            ultimoDelta = delta;
+        }
+        ultimoDia = dia;
+        ultimoValor = valorBits;
+        quantidade++;
+    }
+
+    /**
+     * Retorna o valor da última medição feita até a data informada.
+     * @param data Data de referência
+     * @return Valor vigente na data, ou NaN se não houver medição até ela
+     */
+    public float valorEm(LocalDate data) {
+        int dia = dia(data);
+        if (quantidade == 0) return Float.NaN;
+        if (dia >= ultimoDia) return Float.intBitsToFloat(ultimoValor);
+        Leitor leitor = leitorAPartirDe(dia);
+        if (leitor.dia > dia) return Float.NaN;
+        float vigente = leitor.valor();
+        while (leitor.proximo() && leitor.dia <= dia) {
+            vigente = leitor.valor();
+        }
+        return vigente;
+    }
+
+    /**
+     * Percorre as medições de um intervalo de datas, em ordem cronológica.
+     * @param de Data inicial (inclusiva)
+     * @param ate Data final (inclusiva)
+     * @param destino Recebe cada medição do intervalo
+     */
+    public void consultar(LocalDate de, LocalDate ate, Consumidor destino) {
+        if (quantidade == 0) return;
+        int inicio = dia(de);
+        int fim = dia(ate);
+        Leitor leitor = leitorAPartirDe(inicio);
+        do {
+            if (leitor.dia > fim) return;
+            if (leitor.dia >= inicio) destino.aceitar(LocalDate.ofEpochDay(leitor.dia), leitor.valor());
+        } while (leitor.proximo());
+    }
+
+    /**
+     * Recebe as medições de uma consulta.
+     */
+    @FunctionalInterface
+    public interface Consumidor {
+        void aceitar(LocalDate data, float valor);
+    }
+
+    public int getQuantidade() {
+        return quantidade;
+    }
+
+    public LocalDate getUltimaData() {
+        return quantidade == 0 ? null : LocalDate.ofEpochDay(ultimoDia);
+    }
+
+    public float getPrimeiroValor() {
+        return quantidade == 0 ? Float.NaN : leitorAPartirDe(Integer.MIN_VALUE).valor();
+    }
+
+    public float getUltimoValor() {
+        return quantidade == 0 ? Float.NaN : Float.intBitsToFloat(ultimoValor);
+    }
+
+    /**
+     * Memória aproximada ocupada pelos dados codificados.
+     * @return Tamanho em bytes do fluxo de bits e dos pontos de controle
+     */
+    public long getBytesUsados() {
+        return bits.length * 8L + (controles == null ? 0 : controles.length * 4L);
+    }
+
+    // Codificação
+
+    // Dia desde 1970-01-01, limitado ao intervalo de int para datas extremas como LocalDate.MIN.
+    private static int dia(LocalDate data) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, data.toEpochDay()));
+    }
+
+    // Decodifica a série, insere a medição retroativa depois das de mesma data e recodifica tudo.
+    private void reescreverCom(int dia, float valor) {
+        int[] dias = new int[quantidade + 1];
+        int[] valores = new int[quantidade + 1];
+        Leitor leitor = leitorAPartirDe(Integer.MIN_VALUE);
+        int n = 0;
+        boolean inserida = false;
+        do {
+            if (!inserida && leitor.dia > dia) {
+                dias[n] = dia;
+                valores[n++] = Float.floatToIntBits(valor);
+                inserida = true;
+            }
+            dias[n] = leitor.dia;
+            valores[n++] = leitor.valorBits;
+        } while (leitor.proximo());
+
+        bits = new long[bits.length];
+        totalBits = 0;
+        quantidade = 0;
+        ultimoDelta = 0;
+        ultimosZerosEsquerda = Integer.MAX_VALUE;
+        ultimosZerosDireita = 0;
+        controles = null;
+        for (int i = 0; i < n; i++) {
+            acrescentar(dias[i], valores[i]);
+        }
+    }
+
+    // Os prefixos são lidos bit a bit a partir do menos significativo: "10" é gravado como 0b01.
+    private void escreverDeltaDoDelta(int dod) {
+        if (dod == 0) {
+            escrever(0b0, 1);
+        } else if (dod >= -63 && dod <= 64) {
+            escrever(0b01, 2);
+            escrever(dod + 63, 7);
+        } else if (dod >= -255 && dod <= 256) {
+            escrever(0b011, 3);
+            escrever(dod + 255, 9);
+        } else if (dod >= -2047 && dod <= 2048) {
+            escrever(0b0111, 4);
+            escrever(dod + 2047, 12);
+        } else {
+            escrever(0b1111, 4);
+            escrever(dod, 32);
+        }
+    }
+
+    private void escreverValor(int valorBits) {
+        int xor = valorBits ^ ultimoValor;
+        if (xor == 0) {
+            escrever(0b0, 1); // Valor repetido
+            return;
+        }
+        int zerosEsquerda = Math.min(Integer.numberOfLeadingZeros(xor), 31);
+        int zerosDireita = Integer.numberOfTrailingZeros(xor);
+        if (ultimosZerosEsquerda != Integer.MAX_VALUE && zerosEsquerda >= ultimosZerosEsquerda && zerosDireita >= ultimosZerosDireita) {
+            // Cabe na janela anterior: grava só os bits dentro dela.
+            escrever(0b01, 2);
+            escrever(xor >>> ultimosZerosDireita, 32 - ultimosZerosEsquerda - ultimosZerosDireita);
+        } else {
+            int significativos = 32 - zerosEsquerda - zerosDireita;
+            escrever(0b11, 2);
+            escrever(zerosEsquerda, 5);
+            escrever(significativos - 1, 5);
+            escrever(xor >>> zerosDireita, significativos);
+            ultimosZerosEsquerda = zerosEsquerda;
+            ultimosZerosDireita = zerosDireita;
+        }
+    }
+
+    private void escrever(int valor, int tamanho) {
+        if (totalBits + tamanho > bits.length * 64L) {
+            bits = Arrays.copyOf(bits, bits.length + Math.max(1, bits.length / 4)); // Crescimento moderado: séries longas são muitas
+        }
+        long v = valor & (tamanho == 32 ? 0xFFFFFFFFL : (1L << tamanho) - 1);
+        int palavra = totalBits >>> 6;
+        int deslocamento = totalBits & 63;
+        bits[palavra] |= v << deslocamento;
+        if (deslocamento + tamanho > 64) {
+            bits[palavra + 1] |= v >>> (64 - deslocamento);
+        }
+        totalBits += tamanho;
+    }
+
+    private void salvarPontoControle() {
+        int indice = quantidade / INTERVALO_PONTO_CONTROLE - 1;
+        if (controles == null) controles = new int[6 * 4];
+        if ((indice + 1) * 6 > controles.length) controles = Arrays.copyOf(controles, controles.length * 2);
+        int base = indice * 6;
+        controles[base] = totalBits;
+        controles[base + 1] = ultimoDia;
+        controles[base + 2] = ultimoDelta;
+        controles[base + 3] = ultimoValor;
+        controles[base + 4] = ultimosZerosEsquerda;
+        controles[base + 5] = ultimosZerosDireita;
+    }
+
+    // Posiciona um leitor no ponto de controle mais próximo que não passa da data procurada.
+    private Leitor leitorAPartirDe(int dia) {
+        int pontos = quantidade <= 1 ? 0 : (quantidade - 1) / INTERVALO_PONTO_CONTROLE;
+        int baixo = 0, alto = pontos - 1, escolhido = -1;
+        while (baixo <= alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (controles[meio * 6 + 1] <= dia) {
+                escolhido = meio;
+                baixo = meio + 1;
+            } else {
+                alto = meio - 1;
+            }
+        }
+        Leitor leitor = new Leitor();
+        if (escolhido < 0) {
+            leitor.dia = ler(leitor, 32);
+            leitor.valorBits = ler(leitor, 32);
+            leitor.restantes = quantidade - 1;
+        } else {
+            // Restaura o estado salvo logo após a medição (escolhido + 1) * INTERVALO - 1.
+            int base = escolhido * 6;
+            leitor.posicao = controles[base];
+            leitor.dia = controles[base + 1];
+            leitor.delta = controles[base + 2];
+            leitor.valorBits = controles[base + 3];
+            leitor.zerosEsquerda = controles[base + 4];
+            leitor.zerosDireita = controles[base + 5];
+            leitor.restantes = quantidade - (escolhido + 1) * INTERVALO_PONTO_CONTROLE;
+        }
+        return leitor;
+    }
+
+    private int ler(Leitor leitor, int tamanho) {
+        int palavra = leitor.posicao >>> 6;
+        int deslocamento = leitor.posicao & 63;
+        long v = bits[palavra] >>> deslocamento;
+        if (deslocamento + tamanho > 64) {
+            v |= bits[palavra + 1] << (64 - deslocamento);
+        }
+        leitor.posicao += tamanho;
+        return (int) (tamanho == 32 ? v : v & ((1L << tamanho) - 1));
+    }
+
+    // Decodificador sequencial a partir de uma posição do fluxo.
+    private final class Leitor {
+        private int posicao;
+        private int dia;
+        private int delta;
+        private int valorBits;
+        private int zerosEsquerda;
+        private int zerosDireita;
+        private int restantes; // Medições ainda não decodificadas
+
+        private float valor() {
+            return Float.intBitsToFloat(valorBits);
+        }
+
+        private boolean proximo() {
+            if (restantes == 0) return false;
+            restantes--;
+            int dod;
+            if (ler(this, 1) == 0) {
+                dod = 0;
+            } else if (ler(this, 1) == 0) {
+                dod = ler(this, 7) - 63;
+            } else if (ler(this, 1) == 0) {
+                dod = ler(this, 9) - 255;
+            } else if (ler(this, 1) == 0) {
+                dod = ler(this, 12) - 2047;
+            } else {
+                dod = ler(this, 32);
+            }
+            delta += dod;
+            dia += delta;
+            if (ler(this, 1) == 1) {
+                if (ler(this, 1) == 1) {
+                    zerosEsquerda = ler(this, 5);
+                    int significativos = ler(this, 5) + 1;
+                    zerosDireita = 32 - zerosEsquerda - significativos;
+                }
+                valorBits ^= ler(this, 32 - zerosEsquerda - zerosDireita) << zerosDireita;
+            }
+            return true;
+        }
+    }
+}
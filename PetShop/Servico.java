@@ -1,5 +1,6 @@
 package aps3;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -9,19 +10,26 @@ public class Servico {
     private final String nomeServico; // Nome do serviço realizado
     private final Pets pet; // Pet que receberá o serviço
     private final int tempo; // Tempo estimado para a realização do serviço em minutos
-    private final double preco; // Preço do serviço com base no porte do pet
+    private final Dinheiro preco; // Preço do serviço com base no porte do pet
 
-    // Tabela de preços por serviço e porte do pet
-    private static final Map<String, Map<String, Double>> precosPorServico = Map.of(
-        "Banho", Map.of("Pequeno", 60.0, "Médio", 80.0, "Grande", 130.0),
-        "Tosa Tesoura", Map.of("Pequeno", 100.0, "Médio", 130.0, "Grande", 160.0),
-        "Tosa Máquina", Map.of("Pequeno", 85.0, "Médio", 110.0, "Grande", 120.0),
-        "Tosa Bebê", Map.of("Pequeno", 140.0, "Médio", 165.0, "Grande", 180.0),
-        "Tosa Higiênica", Map.of("Pequeno", 55.0, "Médio", 65.0, "Grande", 100.0),
-        "Corte de Unha", Map.of("Pequeno", 15.0, "Médio", 15.0, "Grande", 15.0),
-        "Limpeza de Ouvido", Map.of("Pequeno", 10.0, "Médio", 10.0, "Grande", 10.0),
-        "Hidratação", Map.of("Pequeno", 90.0, "Médio", 120.0, "Grande", 150.0),
-        "Remoção de Subpelos", Map.of("Pequeno", 30.0, "Médio", 50.0, "Grande", 70.0)
+    // Lista ordenada dos serviços oferecidos; a posição de cada serviço é usada como índice estável.
+    public static final List<String> SERVICOS_DISPONIVEIS = List.of(
+        "Banho", "Tosa Tesoura", "Tosa Máquina", "Tosa Bebê",
+        "Tosa Higiênica", "Corte de Unha", "Limpeza de Ouvido",
+        "Hidratação", "Remoção de Subpelos"
+    );
+
+    // Tabela de preços em centavos por serviço, indexada pelo porte do pet (Pequeno, Médio, Grande)
+    private static final Map<String, long[]> precosPorServico = Map.of(
+        "Banho", new long[] {6000, 8000, 13000},
+        "Tosa Tesoura", new long[] {10000, 13000, 16000},
+        "Tosa Máquina", new long[] {8500, 11000, 12000},
+        "Tosa Bebê", new long[] {14000, 16500, 18000},
+        "Tosa Higiênica", new long[] {5500, 6500, 10000},
+        "Corte de Unha", new long[] {1500, 1500, 1500},
+        "Limpeza de Ouvido", new long[] {1000, 1000, 1000},
+        "Hidratação", new long[] {9000, 12000, 15000},
+        "Remoção de Subpelos", new long[] {3000, 5000, 7000}
     );
 
     // Tabela de tempo fixo por serviço
@@ -60,8 +68,8 @@ public class Servico {
      * Método privado para calcular o preço do serviço com base no porte do pet.
      * @return O preço correspondente ao porte do pet
      */
-    private double calcularPreco() {
-        return precosPorServico.get(nomeServico).getOrDefault(pet.getPortePet(), 0.0);
+    private Dinheiro calcularPreco() {
+        return Dinheiro.deCentavos(precoEmCentavos(nomeServico, pet.getPortePet()));
     }
 
     /**
@@ -70,9 +78,39 @@ public class Servico {
      * @param portePet Porte do pet
      * @return O preço do serviço conforme o porte
      */
-    public static double calcularPrecoAutomatico(String nomeServico, String portePet) {
-        if (nomeServico == null || portePet == null) return 0.0;
-        return precosPorServico.getOrDefault(nomeServico, Map.of()).getOrDefault(portePet, 0.0);
+    public static Dinheiro calcularPrecoAutomatico(String nomeServico, String portePet) {
+        return Dinheiro.deCentavos(precoEmCentavos(nomeServico, portePet));
+    }
+
+    /**
+     * Retorna o preço base em centavos, sem criar objetos, para cálculos em massa.
+     * @param nomeServico Nome do serviço desejado
+     * @param portePet Porte do pet
+     * @return O preço em centavos, ou 0 se o serviço ou o porte não existirem
+     */
+    public static long precoEmCentavos(String nomeServico, String portePet) {
+        if (nomeServico == null || portePet == null) return 0;
+        long[] precos = precosPorServico.get(nomeServico);
+        int porte = Pets.indicePorte(portePet);
+        return precos == null || porte < 0 ? 0 : precos[porte];
+    }
+
+    /**
+     * Retorna o tempo estimado de um serviço sem instanciar um objeto Servico.
+     * @param nomeServico Nome do serviço
+     * @return Tempo em minutos (60 se o serviço não estiver na tabela de tempos)
+     */
+    public static int tempoEmMinutos(String nomeServico) {
+        return tempoPorServico.getOrDefault(nomeServico, 60);
+    }
+
+    /**
+     * Retorna a posição do serviço na lista de serviços disponíveis.
+     * @param nomeServico Nome do serviço
+     * @return Índice do serviço ou -1 se o serviço não existir
+     */
+    public static int indiceServico(String nomeServico) {
+        return SERVICOS_DISPONIVEIS.indexOf(nomeServico);
     }
 
     /**
@@ -81,7 +119,7 @@ public class Servico {
      */
     public String getDetalhesServico() {
         return String.format(
-            "Serviço: %s | Pet: %s | Porte: %s | Tempo: %d min | Preço: R$ %.2f",
+            "Serviço: %s | Pet: %s | Porte: %s | Tempo: %d min | Preço: R$ %s",
             nomeServico, pet.getNomePet(), pet.getPortePet(), tempo, preco
         );
     }
@@ -96,7 +134,7 @@ public class Servico {
     public int getTempo() {
         return tempo;
     }
-    public double getPreco() { 
+    public Dinheiro getPreco() { 
         return preco; 
     }
      
@@ -0,0 +1,377 @@
+package aps3;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Servidor de terminais para vários atendentes simultâneos, ouvindo apenas em localhost.
+ * Cada conexão (telnet, nc etc.) recebe a sua própria {@link SessaoTerminal} sobre a mesma {@link Loja}.
+ * <p>
+ * Uma thread aceita as conexões e as distribui entre poucos reatores; cada reator atende centenas de
+ * conexões com um {@link Selector}, sem nunca bloquear em um cliente lento. Os comandos rodam em um
+ * pequeno grupo de executores, porque podem esperar pelo monitor da loja ou pela confirmação de uma
+ * réplica: o reator entrega as linhas completas de uma conexão, uma por vez e em ordem, e recebe de
+ * volta a saída para enviar. Enquanto um comando de um terminal roda, ou se ele deixa de ler as
+ * respostas, a sessão para de ler novos comandos dele.
+ */
+public class ServidorTerminais {
+    private static final int TAMANHO_MAXIMO_LINHA = 4096;       // Linhas maiores são truncadas
+    private static final int LIMITE_SAIDA_PENDENTE = 64 * 1024; // Bytes pendentes que suspendem a leitura
+
+    private final Loja loja;
+    private final int porta;
+    private final Reator[] reatores;
+    private final int quantidadeExecutores;
+    private ExecutorService executores;
+    private final AtomicInteger sessoesAtivas = new AtomicInteger();
+    private ServerSocketChannel canalServidor;
+    private Thread aceitador;
+
+    /**
+     * Construtor do servidor.
+     * @param loja Loja compartilhada pelas sessões (não pode ser nula)
+     * @param porta Porta TCP em localhost (0 escolhe uma porta livre)
+     * @param reatores Quantidade de reatores que atendem as conexões (pelo menos 1)
+     * @param executores Quantidade de threads que executam os comandos (pelo menos 1)
+     * @throws IllegalArgumentException Se algum parâmetro for inválido
+     */
+    public ServidorTerminais(Loja loja, int porta, int reatores, int executores) {
+        if (loja == null) throw new IllegalArgumentException("Loja não pode ser nula.");
+        if (porta < 0 || porta > 65535) throw new IllegalArgumentException("Porta inválida: " + porta);
+        if (reatores < 1) throw new IllegalArgumentException("O servidor precisa de pelo menos um reator.");
+        if (executores < 1) throw new IllegalArgumentException("O servidor precisa de pelo menos um executor.");
+        this.loja = loja;
+        this.porta = porta;
+        this.reatores = new Reator[reatores];
+        this.quantidadeExecutores = executores;
+    }
+
+    /**
+     * Abre a porta e inicia as threads do servidor.
+     * @throws IOException Se a porta não puder ser aberta
+     * @throws IllegalStateException Se o servidor já tiver sido iniciado
+     */
+    public synchronized void iniciar() throws IOException {
+        if (canalServidor != null) throw new IllegalStateException("Servidor já iniciado.");
+        canalServidor = ServerSocketChannel.open();
+        canalServidor.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), porta), 256);
+        AtomicInteger numero = new AtomicInteger();
+        executores = Executors.newFixedThreadPool(quantidadeExecutores,
+            tarefa -> new Thread(tarefa, "executor-terminais-" + numero.getAndIncrement()));
+        for (int i = 0; i < reatores.length; i++) {
+            reatores[i] = new Reator(Selector.open());
+            Thread thread = new Thread(reatores[i], "reator-terminais-" + i);
+            thread.start();
+        }
+        aceitador = new Thread(this::aceitarConexoes, "aceitador-terminais");
+        aceitador.start();
+    }
+
+    /**
+     * Fecha a porta e todas as conexões abertas.
+     */
+    public synchronized void encerrar() {
+        if (canalServidor == null) return;
+        try {
+            canalServidor.close(); // Interrompe o accept() bloqueado do aceitador
+        } catch (IOException ignorada) {
+            // Nada a fazer: o canal já está sendo descartado.
+        }
+        for (Reator reator : reatores) {
+            reator.encerrar();
+        }
+        executores.shutdown(); // Os comandos em andamento terminam; a saída deles é descartada
+    }
+
+    /**
+     * Retorna a porta em que o servidor está ouvindo (útil quando construído com porta 0).
+     * @return Porta local
+     * @throws IOException Se o servidor não estiver aberto
+     */
+    public int getPorta() throws IOException {
+        return ((InetSocketAddress) canalServidor.getLocalAddress()).getPort();
+    }
+
+    public int getSessoesAtivas() {
+        return sessoesAtivas.get();
+    }
+
+    // Aceita conexões bloqueando nesta thread e as distribui entre os reatores em rodízio.
+    private void aceitarConexoes() {
+        int proximo = 0;
+        while (canalServidor.isOpen()) {
+            try {
+                SocketChannel canal = canalServidor.accept();
+                canal.configureBlocking(false);
+                canal.socket().setTcpNoDelay(true);
+                reatores[proximo].registrar(canal);
+                proximo = (proximo + 1) % reatores.length;
+            } catch (IOException e) {
+                if (canalServidor.isOpen()) {
+                    System.err.println("Erro ao aceitar conexão: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Laço de eventos que atende um subconjunto das conexões.
+    private final class Reator implements Runnable {
+        private final Selector seletor;
+        private final Queue<SocketChannel> novas = new ConcurrentLinkedQueue<>();
+        private final Queue<Runnable> concluidos = new ConcurrentLinkedQueue<>(); // Comandos executados, a enviar
+        private final ByteBuffer leitura = ByteBuffer.allocateDirect(8192); // Compartilhado pelas conexões do reator
+        private volatile boolean ativo = true;
+
+        private Reator(Selector seletor) {
+            this.seletor = seletor;
+        }
+
+        private void registrar(SocketChannel canal) {
+            novas.add(canal);
+            seletor.wakeup();
+        }
+
+        // Chamado por um executor: a continuação roda na thread do reator, que é a dona da conexão.
+        private void postar(Runnable continuacao) {
+            concluidos.add(continuacao);
+            seletor.wakeup();
+        }
+
+        // As conexões são fechadas pela própria thread do reator, ao sair do laço de eventos.
+        private void encerrar() {
+            ativo = false;
+            seletor.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (ativo) {
+                    seletor.select();
+                    SocketChannel canal;
+                    while ((canal = novas.poll()) != null) {
+                        abrirSessao(canal);
+                    }
+                    Runnable continuacao;
+                    while ((continuacao = concluidos.poll()) != null) {
+                        continuacao.run();
+                    }
+                    Iterator<SelectionKey> chaves = seletor.selectedKeys().iterator();
+                    while (chaves.hasNext()) {
+                        SelectionKey chave = chaves.next();
+                        chaves.remove();
+                        Conexao conexao = (Conexao) chave.attachment();
+                        try {
+                            if (chave.isReadable()) conexao.ler(leitura);
+                            if (chave.isValid() && chave.isWritable()) conexao.escoar();
+                        } catch (IOException e) {
+                            conexao.fechar(); // Terminal desconectado ou com erro de rede
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Erro no reator de terminais: " + e.getMessage());
+            } finally {
+                for (SelectionKey chave : seletor.keys()) {
+                    if (chave.attachment() instanceof Conexao conexao) conexao.fechar();
+                }
+                try {
+                    seletor.close();
+                } catch (IOException ignorada) {
+                    // O seletor já está sendo descartado.
+                }
+            }
+        }
+
+        private void abrirSessao(SocketChannel canal) {
+            try {
+                SelectionKey chave = canal.register(seletor, SelectionKey.OP_READ);
+                Conexao conexao = new Conexao(this, canal, chave);
+                chave.attach(conexao);
+                sessoesAtivas.incrementAndGet();
+                conexao.enviar(conexao.sessao.retirarSaida()); // Menu inicial
+            } catch (IOException e) {
+                try {
+                    canal.close();
+                } catch (IOException ignorada) {
+                    // A conexão já falhou.
+                }
+            }
+        }
+    }
+
+    // Estado de E/S de um terminal conectado: linha parcial recebida, linhas completas à espera de
+    // execução e respostas ainda não enviadas. Usado só pela thread do reator; a sessão passa para um
+    // executor durante cada comando e volta com a continuação postada ao reator.
+    private final class Conexao {
+        private final Reator reator;
+        private final SocketChannel canal;
+        private final SelectionKey chave;
+        private final SessaoTerminal sessao = new SessaoTerminal(loja);
+        private final ByteArrayOutputStream linha = new ByteArrayOutputStream(128);
+        private final ArrayDeque<String> linhas = new ArrayDeque<>(); // Completas, ainda não executadas
+        private final ArrayDeque<ByteBuffer> pendentes = new ArrayDeque<>();
+        private int bytesPendentes;
+        private boolean executando;     // Um comando desta conexão está em um executor
+        private boolean fechada;
+
+        private Conexao(Reator reator, SocketChannel canal, SelectionKey chave) {
+            this.reator = reator;
+            this.canal = canal;
+            this.chave = chave;
+        }
+
+        // Lê o que estiver disponível e entrega as linhas completas, em ordem, aos executores.
+        private void ler(ByteBuffer buffer) throws IOException {
+            buffer.clear();
+            int lidos = canal.read(buffer);
+            if (lidos < 0) {
+                fechar();
+                return;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == '\n') {
+                    linhas.add(linhaRecebida());
+                } else if (b != '\r' && linha.size() < TAMANHO_MAXIMO_LINHA) {
+                    linha.write(b);
+                }
+            }
+            executarProxima();
+        }
+
+        // Envia a próxima linha a um executor, se nenhum comando desta conexão estiver rodando.
+        private void executarProxima() {
+            if (!executando && !linhas.isEmpty() && !sessao.isEncerrada()) {
+                String proxima = linhas.poll();
+                executando = true;
+                try {
+                    executores.execute(() -> {
+                        String saida;
+                        try {
+                            sessao.receberLinha(proxima);
+                            saida = sessao.retirarSaida();
+                        } catch (RuntimeException e) {
+                            saida = "🚫 Erro: " + e.getMessage() + "\n";
+                        }
+                        String resposta = saida;
+                        reator.postar(() -> concluir(resposta));
+                    });
+                } catch (RejectedExecutionException e) {
+                    fechar(); // Servidor encerrando
+                    return;
+                }
+            }
+            atualizarInteresse();
+        }
+
+        // Na thread do reator, depois que o executor terminou o comando.
+        private void concluir(String saida) {
+            if (fechada) return; // Terminal desconectado durante o comando
+            executando = false;
+            try {
+                enviar(saida);
+            } catch (IOException e) {
+                fechar();
+                return;
+            }
+            executarProxima();
+        }
+
+        private String linhaRecebida() {
+            String texto = linha.toString(StandardCharsets.UTF_8);
+            linha.reset();
+            return texto;
+        }
+
+        // Tenta escrever imediatamente; o que não couber no socket fica pendente para OP_WRITE.
+        private void enviar(String texto) throws IOException {
+            if (!texto.isEmpty()) {
+                ByteBuffer bytes = StandardCharsets.UTF_8.encode(texto);
+                if (pendentes.isEmpty()) canal.write(bytes);
+                if (bytes.hasRemaining()) {
+                    pendentes.add(bytes);
+                    bytesPendentes += bytes.remaining();
+                }
+            }
+            atualizarInteresse();
+        }
+
+        private void escoar() throws IOException {
+            while (!pendentes.isEmpty()) {
+                ByteBuffer bytes = pendentes.peek();
+                int antes = bytes.remaining();
+                canal.write(bytes);
+                bytesPendentes -= antes - bytes.remaining();
+                if (bytes.hasRemaining()) break; // Socket cheio: espera o próximo OP_WRITE
+                pendentes.poll();
+            }
+            atualizarInteresse();
+        }
+
+        private void atualizarInteresse() {
+            if (fechada) return;
+            if (executando) {
+                chave.interestOps(pendentes.isEmpty() ? 0 : SelectionKey.OP_WRITE); // Sem novos comandos até este terminar
+                return;
+            }
+            if (sessao.isEncerrada() && pendentes.isEmpty()) {
+                descartarEntrada();
+                fechar(); // Operador escolheu "Sair" e a despedida já foi enviada
+                return;
+            }
+            int interesse = 0;
+            if (!sessao.isEncerrada() && linhas.isEmpty() && bytesPendentes < LIMITE_SAIDA_PENDENTE) {
+                interesse |= SelectionKey.OP_READ;
+            }
+            if (!pendentes.isEmpty()) interesse |= SelectionKey.OP_WRITE;
+            chave.interestOps(interesse);
+        }
+
+        // Comandos enviados depois de "Sair" ficam sem leitura; fechar com eles no socket faria o
+        // sistema operacional derrubar a conexão e o terminal perderia a despedida.
+        private void descartarEntrada() {
+            ByteBuffer descarte = ByteBuffer.allocate(1024);
+            try {
+                while (canal.read(descarte) > 0) {
+                    descarte.clear();
+                }
+            } catch (IOException e) {
+                // A conexão já caiu; só resta fechar
+            }
+        }
+
+        private void fechar() {
+            if (fechada) return;
+            fechada = true;
+            sessoesAtivas.decrementAndGet();
+            fecharSilenciosamente(chave);
+        }
+    }
+
+    private static void fecharSilenciosamente(SelectionKey chave) {
+        chave.cancel();
+        try {
+            chave.channel().close();
+        } catch (IOException ignorada) {
+            // A conexão já está sendo descartada.
+        }
+    }
+}
@@ -0,0 +1,541 @@
+package aps3;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Sessão de atendimento de um terminal conectado ao {@link ServidorTerminais}.
+ * Reproduz o fluxo de menus do console como uma máquina de estados orientada a linhas: cada
+ * etapa exibe uma pergunta e, a partir da resposta digitada, decide qual é a próxima etapa.
+ * A sessão não faz entrada nem saída; o texto produzido é acumulado e retirado pelo servidor.
+ */
+public class SessaoTerminal {
+    private final Loja loja;                             // Estado compartilhado entre todas as sessões
+    private final StringBuilder saida = new StringBuilder(); // Texto ainda não enviado ao terminal
+    private Etapa atual;                                 // Etapa que aguarda a próxima linha
+    private Supplier<Etapa> menuAtual;                   // Menu para o qual a sessão volta após um erro
+    private boolean encerrada;                           // true depois que o operador escolhe "Sair"
+
+    // Etapa da conversa: a pergunta exibida e o tratamento da resposta, que devolve a próxima
+    // etapa (ou null para encerrar a sessão).
+    private static final class Etapa {
+        private final String pergunta;
+        private final Function<String, Etapa> resposta;
+
+        private Etapa(String pergunta, Function<String, Etapa> resposta) {
+            this.pergunta = pergunta;
+            this.resposta = resposta;
+        }
+    }
+
+    /**
+     * Construtor da sessão. O menu principal já fica disponível em {@link #retirarSaida()}.
+     * @param loja Loja compartilhada (não pode ser nula)
+     * @throws IllegalArgumentException Se a loja for nula
+     */
+    public SessaoTerminal(Loja loja) {
+        if (loja == null) throw new IllegalArgumentException("Loja não pode ser nula.");
+        this.loja = loja;
+        this.atual = menuPrincipal();
+        saida.append(atual.pergunta);
+    }
+
+    /**
+     * Trata uma linha digitada pelo operador e avança a máquina de estados.
+     * @param linha Linha recebida, sem a quebra de linha
+     */
+    public void receberLinha(String linha) {
+        if (encerrada) return;
+        Etapa proxima;
+        try {
+            proxima = atual.resposta.apply(linha.trim());
+        } catch (RuntimeException e) {
+            // Erros de negócio interrompem o fluxo atual e devolvem o operador ao menu.
+            escrever("🚫 Erro: " + e.getMessage());
+            proxima = menuAtual.get();
+        }
+        loja.aguardarReplicacao(); // Na replicação semissíncrona, responde só depois da confirmação de uma réplica
+        if (proxima == null) {
+            encerrada = true;
+            return;
+        }
+        atual = proxima;
+        saida.append(atual.pergunta);
+    }
+
+    /**
+     * Retira o texto produzido desde a última chamada.
+     * @return Texto a ser enviado ao terminal (vazio se não houver nada)
+     */
+    public String retirarSaida() {
+        String texto = saida.toString();
+        saida.setLength(0);
+        return texto;
+    }
+
+    public boolean isEncerrada() {
+        return encerrada;
+    }
+
+    // Menus
+
+    private Etapa menuPrincipal() {
+        menuAtual = this::menuPrincipal;
+        return new Etapa("""
+
+            === PETSHOP ===
+            1. Cadastrar Pet
+            2. Listar Pets
+            3. Novo Agendamento
+            4. Ver Histórico de Agendamentos
+            5. Outros (Financeiro e Produtos)
+            6. Sair
+            Opção:\s""", resposta -> switch (opcao(resposta)) {
+                case 1 -> cadastrarPet();
+                case 2 -> {
+                    listarPets();
+                    yield menuPrincipal();
+                }
+                case 3 -> realizarAgendamento();
+                case 4 -> {
+                    exibirHistoricoAgendamentos();
+                    yield menuPrincipal();
+                }
+                case 5 -> menuOutros();
+                case 6 -> {
+                    escrever("Saindo... Obrigado por usar o sistema!");
+                    yield null;
+                }
+                default -> {
+                    escrever("Opção inválida! Escolha uma opção válida.");
+                    yield menuPrincipal();
+                }
+            });
+    }
+
+    private Etapa menuOutros() {
+        menuAtual = this::menuOutros;
+        return new Etapa("""
+
+            === OUTROS ===
+            1. Exibir Resumo Financeiro
+            2. Gerenciar Produtos
+            3. Remover Pet ou Cliente
+            4. Registrar Comparecimento
+            5. Realizar Venda
+            6. Voltar ao Menu Principal
+            Opção:\s""", resposta -> switch (opcao(resposta)) {
+                case 1 -> {
+                    escrever(loja.getFinanceiro().exibirResumoFinanceiro());
+                    yield menuOutros();
+                }
+                case 2 -> gerenciarProdutos();
+                case 3 -> menuRemover();
+                case 4 -> registrarComparecimento();
+                case 5 -> realizarVenda();
+                case 6 -> {
+                    escrever("Voltando ao Menu Principal...");
+                    yield menuPrincipal();
+                }
+                default -> {
+                    escrever("Opção inválida! Escolha uma opção válida.");
+                    yield menuOutros();
+                }
+            });
+    }
+
+    private Etapa menuRemover() {
+        menuAtual = this::menuRemover;
+        return new Etapa("""
+
+            === REMOVER ===
+            1. Remover Pet
+            2. Remover Cliente
+            3. Voltar
+            Opção:\s""", resposta -> switch (opcao(resposta)) {
+                case 1 -> removerPet();
+                case 2 -> removerCliente();
+                case 3 -> {
+                    escrever("Voltando...");
+                    yield menuOutros();
+                }
+                default -> {
+                    escrever("Opção inválida! Escolha uma opção válida.");
+                    yield menuRemover();
+                }
+            });
+    }
+
+    // Fluxos do menu principal
+
+    private Etapa cadastrarPet() {
+        return texto("\nNome do cliente: ", nome ->
+            texto("CPF do cliente: ", cpf ->
+            texto("Telefone do cliente: ", telefone ->
+            texto("Endereço do cliente: ", endereco -> {
+                // Verifica se o cliente já está cadastrado pelo CPF; se não existir, cria um novo.
+                Cliente existente = loja.buscarCliente(cpf);
+                Cliente cliente;
+                if (existente == null) {
+                    cliente = loja.cadastrarCliente(nome, cpf, telefone, endereco);
+                    escrever("✅ Cliente cadastrado com sucesso!");
+                } else {
+                    cliente = existente;
+                    escrever("Cliente já cadastrado. Usando cliente existente.");
+                }
+                return texto("Nome do pet: ", nomePet ->
+                    lerEspecie(especie ->
+                    lerFloat("Peso (kg): ", 0.1f, 100f, peso ->
+                    lerData("Data de nascimento (dd/MM/yyyy): ", nascimento -> {
+                        loja.cadastrarPet(cliente, nomePet, especie, peso, nascimento);
+                        escrever("✅ Pet cadastrado com sucesso!");
+                        return menuPrincipal();
+                    }))));
+            }))));
+    }
+
+    private void listarPets() {
+        Collection<Cliente> clientes = loja.getClientes();
+        if (clientes.isEmpty()) {
+            escrever("\n🚫 Nenhum cliente e pet cadastrado!");
+            return;
+        }
+        escrever("\n📋 Lista de Pets Cadastrados e seus Donos:");
+        for (Cliente cliente : clientes) {
+            escrever("\n" + cliente);
+            escrever(cliente.listarPets());
+        }
+    }
+
+    private Etapa realizarAgendamento() {
+        if (loja.getClientes().isEmpty()) {
+            escrever("🚫 Nenhum cliente e pet cadastrado! Cadastre antes de agendar.");
+            return menuPrincipal();
+        }
+        return lerData("Data do serviço (dd/MM/yyyy): ", data ->
+            lerHora(hora -> {
+                if (!Agendamento.isHorarioValido(data, hora)) {
+                    escrever("🚫 Horário de agendamento inválido. O pet shop está fechado nesse horário.");
+                    return menuPrincipal();
+                }
+                listarPets();
+                return texto("Digite o nome do pet: ", nomePet -> {
+                    Pets pet = loja.buscarPet(nomePet);
+                    return lerServico(servico -> {
+                        String promocao = loja.promocaoAplicada(pet, data, hora, servico);
+                        if (promocao != null) {
+                            escrever("🏷️ Promoção aplicada: " + promocao);
+                        }
+                        Agendamento agendamento = loja.agendar(pet, data, hora, servico);
+                        escrever(String.format("✅ Agendamento realizado com sucesso! Valor: R$ %s | Risco de falta: %.0f%%",
+                            agendamento.getValor(), loja.estimarRiscoFalta(agendamento) * 100));
+                        return menuPrincipal();
+                    });
+                });
+            }));
+    }
+
+    private void exibirHistoricoAgendamentos() {
+        List<Agendamento> agendamentos = loja.getAgendamentos();
+        if (agendamentos.isEmpty()) {
+            escrever("🚫 Nenhum agendamento realizado ainda.");
+            return;
+        }
+        escrever("\n📅 Histórico de Agendamentos:");
+        for (Agendamento agendamento : agendamentos) {
+            escrever(agendamento.getDetalhesAgendamento());
+        }
+    }
+
+    // Fluxos do menu "Outros"
+
+    private Etapa gerenciarProdutos() {
+        escrever("\n=== GERENCIAR PRODUTOS ===");
+        List<Produto> produtos = loja.getProdutos();
+        if (produtos.isEmpty()) {
+            escrever("🚫 Nenhum produto cadastrado!");
+        } else {
+            escrever("Produtos cadastrados:");
+            produtos.forEach(produto -> escrever(produto.toString()));
+            List<PrevisaoEstoque.Sugestao> sugestoes = loja.sugerirCompras();
+            if (!sugestoes.isEmpty()) {
+                escrever("\n🛒 Sugestões de compra para esta semana:");
+                sugestoes.forEach(sugestao -> escrever(sugestao.toString()));
+            }
+        }
+        return simNao("Deseja adicionar um novo produto? (S/N): ", sim -> sim ? cadastrarProduto() : menuOutros());
+    }
+
+    private Etapa cadastrarProduto() {
+        return texto("\nNome do produto: ", nome ->
+            texto("Categoria (Higiene/Alimentação/Brinquedos): ", categoria ->
+            lerDinheiro("Preço (R$): ", Dinheiro.deCentavos(10), Dinheiro.deReais(10_000), preco ->
+            lerInteiro("Quantidade disponível no estoque: ", 0, "🚫 Quantidade inválida! Digite um número não negativo.", estoque ->
+            lerInteiro("Código único do produto: ", 1, "🚫 Código inválido! Deve ser um número positivo.", codigo -> {
+                loja.cadastrarProduto(nome, preco, estoque, categoria, codigo);
+                escrever("✅ Produto cadastrado com sucesso!");
+                return menuOutros();
+            })))));
+    }
+
+    private Etapa registrarComparecimento() {
+        List<Agendamento> agendamentos = loja.getAgendamentos(); // Instantâneo: a numeração não muda durante a escolha
+        if (agendamentos.isEmpty()) {
+            escrever("🚫 Nenhum agendamento realizado ainda.");
+            return menuOutros();
+        }
+        for (int i = 0; i < agendamentos.size(); i++) {
+            escrever((i + 1) + ". " + agendamentos.get(i).getDetalhesAgendamento());
+        }
+        return lerInteiro("Número do agendamento: ", 1, "🚫 Número inválido!", escolha -> {
+            if (escolha > agendamentos.size()) {
+                escrever("🚫 Número inválido!");
+                return menuOutros();
+            }
+            Agendamento agendamento = agendamentos.get(escolha - 1);
+            return simNao("O cliente compareceu? (S/N): ", compareceu -> {
+                FilaEspera.Senha chamada = loja.registrarComparecimento(agendamento, compareceu);
+                escrever("✅ Comparecimento registrado!");
+                if (chamada != null) escrever("📢 Vaga aproveitada pela fila de espera: " + chamada);
+                return menuOutros();
+            });
+        });
+    }
+
+    private Etapa realizarVenda() {
+        List<Produto> produtos = loja.getProdutos();
+        boolean temClientes = !loja.getClientes().isEmpty();
+        if (produtos.isEmpty() && !temClientes) {
+            escrever("🚫 Nenhum produto ou pet cadastrado para vender!");
+            return menuOutros();
+        }
+        Carrinho carrinho = new Carrinho();
+        if (produtos.isEmpty()) {
+            return adicionarServicos(carrinho, "Adicionar serviço avulso? (S/N): ");
+        }
+        escrever("\nProdutos disponíveis:");
+        produtos.forEach(produto -> escrever(produto.toString()));
+        return adicionarProdutos(carrinho, temClientes);
+    }
+
+    // Adiciona produtos pelo código até o operador digitar 0.
+    private Etapa adicionarProdutos(Carrinho carrinho, boolean temClientes) {
+        return lerInteiro("Código do produto (0 para encerrar): ", 0, "🚫 Código inválido!", codigo -> {
+            if (codigo == 0) {
+                return temClientes ? adicionarServicos(carrinho, "Adicionar serviço avulso? (S/N): ") : finalizarVenda(carrinho);
+            }
+            Produto produto = loja.buscarProduto(codigo);
+            if (produto == null) {
+                escrever("🚫 Produto não encontrado!");
+                return adicionarProdutos(carrinho, temClientes);
+            }
+            return lerInteiro("Quantidade: ", 1, "🚫 Quantidade deve ser maior que zero.", quantidade -> {
+                carrinho.adicionarProduto(produto, quantidade);
+                return adicionarProdutos(carrinho, temClientes);
+            });
+        });
+    }
+
+    // Permite cobrar serviços avulsos na mesma venda.
+    private Etapa adicionarServicos(Carrinho carrinho, String pergunta) {
+        return simNao(pergunta, sim -> !sim ? finalizarVenda(carrinho)
+            : texto("Digite o nome do pet: ", nomePet -> {
+                Pets pet = loja.buscarPet(nomePet);
+                return lerServico(servico -> {
+                    carrinho.adicionarServico(new Servico(servico, pet));
+                    return adicionarServicos(carrinho, "Adicionar outro serviço? (S/N): ");
+                });
+            }));
+    }
+
+    private Etapa finalizarVenda(Carrinho carrinho) {
+        if (carrinho.isVazio()) {
+            escrever("❌ Venda cancelada. Carrinho vazio.");
+            return menuOutros();
+        }
+        return texto("Método de pagamento (Dinheiro/Cartão/Pix): ", metodo -> {
+            Recibo recibo = loja.vender(carrinho, metodo);
+            escrever("✅ Venda finalizada!");
+            escrever(recibo.formatar());
+            return menuOutros();
+        });
+    }
+
+    // Fluxos do menu de remoção
+
+    private Etapa removerPet() {
+        if (loja.getClientes().isEmpty()) {
+            escrever("🚫 Nenhum pet cadastrado para remover.");
+            return menuRemover();
+        }
+        listarPets();
+        return texto("Digite o nome do pet para remover: ", nomePet -> {
+            Pets pet = loja.buscarPet(nomePet);
+            return simNao("Tem certeza que deseja remover " + pet.getNomePet() + "? (S/N): ", sim -> {
+                if (!sim) {
+                    escrever("❌ Remoção cancelada.");
+                    return menuRemover();
+                }
+                Cliente dono = loja.removerPet(pet);
+                escrever("✅ Pet removido com sucesso!");
+                if (!dono.getPets().isEmpty()) return menuRemover();
+
+                // Se o cliente não tiver mais pets, pergunta se deseja removê-lo também.
+                return simNao("Cliente " + dono.getNome() + " não possui mais pets. Deseja removê-lo? (S/N): ", removerDono -> {
+                    if (removerDono && loja.removerCliente(dono)) {
+                        escrever("✅ Cliente removido com sucesso!");
+                    }
+                    return menuRemover();
+                });
+            });
+        });
+    }
+
+    private Etapa removerCliente() {
+        Collection<Cliente> clientes = loja.getClientes();
+        if (clientes.isEmpty()) {
+            escrever("🚫 Nenhum cliente cadastrado para remover.");
+            return menuRemover();
+        }
+        escrever("\n📋 Lista de Clientes:");
+        clientes.forEach(cliente -> escrever(cliente.toString()));
+        return texto("Digite o CPF do cliente para remover: ", cpf -> {
+            Cliente cliente = loja.buscarCliente(cpf);
+            if (cliente == null) {
+                escrever("🚫 Cliente não encontrado.");
+                return menuRemover();
+            }
+            return simNao("Tem certeza que deseja remover o cliente " + cliente.getNome() + " e todos os seus pets? (S/N): ", sim -> {
+                if (sim && loja.removerCliente(cliente)) {
+                    escrever("✅ Cliente removido com sucesso!");
+                } else {
+                    escrever("❌ Remoção cancelada.");
+                }
+                return menuRemover();
+            });
+        });
+    }
+
+    // Leitura de campos: cada método repete a própria pergunta enquanto a resposta for inválida.
+
+    private Etapa texto(String pergunta, Function<String, Etapa> continuar) {
+        return new Etapa(pergunta, continuar);
+    }
+
+    private Etapa simNao(String pergunta, Function<Boolean, Etapa> continuar) {
+        return new Etapa(pergunta, resposta -> continuar.apply(resposta.equalsIgnoreCase("S")));
+    }
+
+    private Etapa lerEspecie(Function<String, Etapa> continuar) {
+        return new Etapa("Espécie (Cachorro/Gato): ", resposta -> {
+            if (resposta.equalsIgnoreCase("Cachorro") || resposta.equalsIgnoreCase("Gato")) {
+                return continuar.apply(resposta);
+            }
+            escrever("Espécie inválida! Apenas Cachorro ou Gato são permitidos.");
+            return lerEspecie(continuar);
+        });
+    }
+
+    private Etapa lerFloat(String pergunta, float min, float max, Function<Float, Etapa> continuar) {
+        return new Etapa(pergunta, resposta -> {
+            try {
+                float valor = Float.parseFloat(resposta);
+                if (valor >= min && valor <= max) return continuar.apply(valor);
+                escrever("🚫 Valor fora do intervalo permitido! Tente novamente.");
+            } catch (NumberFormatException e) {
+                escrever("🚫 Entrada inválida! Digite um número válido.");
+            }
+            return lerFloat(pergunta, min, max, continuar);
+        });
+    }
+
+    private Etapa lerInteiro(String pergunta, int min, String mensagemMinimo, Function<Integer, Etapa> continuar) {
+        return new Etapa(pergunta, resposta -> {
+            try {
+                int valor = Integer.parseInt(resposta);
+                if (valor >= min) return continuar.apply(valor);
+                escrever(mensagemMinimo);
+            } catch (NumberFormatException e) {
+                escrever("🚫 Entrada inválida! Digite um número inteiro.");
+            }
+            return lerInteiro(pergunta, min, mensagemMinimo, continuar);
+        });
+    }
+
+    private Etapa lerDinheiro(String pergunta, Dinheiro min, Dinheiro max, Function<Dinheiro, Etapa> continuar) {
+        return new Etapa(pergunta, resposta -> {
+            Dinheiro valor;
+            try {
+                valor = Dinheiro.parse(resposta);
+            } catch (IllegalArgumentException e) {
+                escrever("🚫 Entrada inválida! Digite um valor como 12,50.");
+                return lerDinheiro(pergunta, min, max, continuar);
+            }
+            if (valor.compareTo(min) >= 0 && valor.compareTo(max) <= 0) return continuar.apply(valor);
+            escrever("🚫 Valor fora do intervalo permitido! Tente novamente.");
+            return lerDinheiro(pergunta, min, max, continuar);
+        });
+    }
+
+    private Etapa lerData(String pergunta, Function<LocalDate, Etapa> continuar) {
+        return new Etapa(pergunta, resposta -> {
+            LocalDate data;
+            try {
+                data = LocalDate.parse(resposta, ModoLote.FORMATO_DATA);
+            } catch (DateTimeParseException e) {
+                escrever("🚫 Data inválida! Use o formato dd/MM/yyyy.");
+                return lerData(pergunta, continuar);
+            }
+            return continuar.apply(data);
+        });
+    }
+
+    private Etapa lerHora(Function<LocalTime, Etapa> continuar) {
+        return new Etapa("Hora do serviço (HH:mm): ", resposta -> {
+            LocalTime hora;
+            try {
+                hora = LocalTime.parse(resposta, ModoLote.FORMATO_HORA);
+            } catch (DateTimeParseException e) {
+                escrever("🚫 Hora inválida! Use o formato HH:mm.");
+                return lerHora(continuar);
+            }
+            return continuar.apply(hora);
+        });
+    }
+
+    private Etapa lerServico(Function<String, Etapa> continuar) {
+        StringBuilder pergunta = new StringBuilder("\n📌 Serviços disponíveis:\n");
+        List<String> servicos = Servico.SERVICOS_DISPONIVEIS;
+        for (int i = 0; i < servicos.size(); i++) {
+            pergunta.append(i + 1).append(". ").append(servicos.get(i)).append('\n');
+        }
+        pergunta.append("Escolha o número do serviço desejado: ");
+        return new Etapa(pergunta.toString(), resposta -> {
+            try {
+                int escolha = Integer.parseInt(resposta);
+                if (escolha >= 1 && escolha <= servicos.size()) return continuar.apply(servicos.get(escolha - 1));
+                escrever("🚫 Número inválido! Escolha um número entre 1 e " + servicos.size() + ".");
+            } catch (NumberFormatException e) {
+                escrever("🚫 Entrada inválida! Digite um número.");
+            }
+            return lerServico(continuar);
+        });
+    }
+
+    private int opcao(String resposta) {
+        try {
+            return Integer.parseInt(resposta);
+        } catch (NumberFormatException e) {
+            return -1; // Tratado como opção inválida pelo menu
+        }
+    }
+
+    private void escrever(String texto) {
+        saida.append(texto).append('\n');
+    }
+}
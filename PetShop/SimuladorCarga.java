@@ -0,0 +1,527 @@
+package aps3;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Simulador de movimento da loja para testes de carga e de regressão.
+ * <p>
+ * Gera, a partir de uma semente, clientes com CPFs válidos (com dígitos verificadores), pets com espécie
+ * e peso realistas, agendamentos dentro do horário de funcionamento ({@link Agendamento#isHorarioValido})
+ * com a distribuição de serviços de um pet shop, vendas de produtos, pesagens e consultas. As operações
+ * são comandos do {@link ModoLote}, executados contra a {@link Loja} por várias threads a uma taxa
+ * configurável, ou gravados em arquivo para serem reexecutados com {@code --lote}.
+ * <p>
+ * Cada thread usa o seu próprio gerador derivado da semente, então a sequência de comandos de cada
+ * thread é sempre a mesma. A latência é medida a partir do instante em que a operação deveria ter
+ * começado pela taxa pedida, e não de quando começou de fato: se a loja atrasa, a espera entra nos
+ * percentis, como aconteceria com um cliente real.
+ */
+public class SimuladorCarga {
+    // Pesos de cada serviço, na ordem de Servico.SERVICOS_DISPONIVEIS.
+    private static final int[] PESOS_SERVICOS = {40, 8, 10, 3, 12, 12, 8, 5, 2};
+    private static final String[] METODOS_PAGAMENTO = {"Pix", "Crédito", "Débito", "Dinheiro"};
+    private static final String[] NOMES = {"Ana", "Bruno", "Carla", "Diego", "Elisa", "Fábio", "Gabriela", "Heitor",
+        "Isabela", "João", "Larissa", "Marcos", "Natália", "Otávio", "Paula", "Rafael", "Sofia", "Tiago", "Vitória"};
+    private static final String[] SOBRENOMES = {"Silva", "Santos", "Oliveira", "Souza", "Lima", "Pereira", "Costa",
+        "Ferreira", "Almeida", "Ribeiro", "Carvalho", "Gomes", "Martins", "Rocha"};
+    private static final String[] CATEGORIAS_PRODUTO = {"Alimento", "Higiene", "Brinquedo", "Acessório", "Medicamento"};
+    private static final int ESTOQUE_INICIAL = 1_000_000;
+    private static final int HORIZONTE_AGENDAMENTO_DIAS = 180;
+
+    /**
+     * Tipos de operação gerados pelo simulador, com o peso de cada um no movimento da loja.
+     */
+    public enum Operacao {
+        CLIENTE(5), PET(5), AGENDAMENTO(35), COMPARECIMENTO(10), VENDA(25), PESAGEM(5), CONSULTA(15);
+
+        private final int peso;
+
+        Operacao(int peso) {
+            this.peso = peso;
+        }
+    }
+
+    private final long semente;
+    private final int clientesIniciais;
+    private final int produtos;
+
+    /**
+     * Construtor do simulador.
+     * @param semente Semente dos geradores; a mesma semente gera os mesmos comandos
+     * @param clientesIniciais Clientes (com seus pets) cadastrados antes da carga
+     * @param produtos Produtos cadastrados antes da carga
+     * @throws IllegalArgumentException Se as quantidades forem inválidas
+     */
+    public SimuladorCarga(long semente, int clientesIniciais, int produtos) {
+        if (clientesIniciais < 1) throw new IllegalArgumentException("O simulador precisa de pelo menos um cliente.");
+        if (produtos < 1) throw new IllegalArgumentException("O simulador precisa de pelo menos um produto.");
+        this.semente = semente;
+        this.clientesIniciais = clientesIniciais;
+        this.produtos = produtos;
+    }
+
+    /**
+     * Resultado de uma simulação: vazão e latências por tipo de operação.
+     */
+    public static final class Relatorio {
+        private final Map<Operacao, HistogramaLatencia> latencias;
+        private final Map<Operacao, long[]> rejeitadas;
+        private final long duracaoNanos;
+        private final int threads;
+
+        private Relatorio(Map<Operacao, HistogramaLatencia> latencias, Map<Operacao, long[]> rejeitadas, long duracaoNanos, int threads) {
+            this.latencias = latencias;
+            this.rejeitadas = rejeitadas;
+            this.duracaoNanos = duracaoNanos;
+            this.threads = threads;
+        }
+
+        public long getOperacoes() {
+            long total = 0;
+            for (HistogramaLatencia histograma : latencias.values()) {
+                total += histograma.getQuantidade();
+            }
+            return total;
+        }
+
+        public double getVazao() {
+            return getOperacoes() / (duracaoNanos / 1e9);
+        }
+
+        public HistogramaLatencia getLatencias(Operacao operacao) {
+            return latencias.get(operacao);
+        }
+
+        /**
+         * Operações recusadas pelas regras de negócio (horário lotado, estoque insuficiente etc.).
+         * @param operacao Tipo de operação
+         * @return Quantidade de operações recusadas
+         */
+        public long getRejeitadas(Operacao operacao) {
+            return rejeitadas.get(operacao)[0];
+        }
+
+        /**
+         * Monta a tabela do relatório, com latências em microssegundos.
+         * @return Relatório formatado
+         */
+        public String formatar() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("Operações: %d em %.2f s com %d threads | Vazão: %.0f op/s%n",
+                getOperacoes(), duracaoNanos / 1e9, threads, getVazao()));
+            sb.append(String.format("%-15s %10s %10s %9s %9s %9s %9s %9s %9s%n",
+                "Operação", "Total", "Recusadas", "Média", "p50", "p90", "p99", "p99.9", "Máx"));
+            HistogramaLatencia geral = new HistogramaLatencia();
+            for (Operacao operacao : Operacao.values()) {
+                HistogramaLatencia histograma = latencias.get(operacao);
+                geral.somar(histograma);
+                sb.append(linha(operacao.name(), histograma, getRejeitadas(operacao)));
+            }
+            long recusadas = 0;
+            for (long[] contagem : rejeitadas.values()) {
+                recusadas += contagem[0];
+            }
+            sb.append(linha("TOTAL", geral, recusadas));
+            return sb.toString();
+        }
+
+        private static String linha(String nome, HistogramaLatencia h, long recusadas) {
+            return String.format("%-15s %10d %10d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n", nome, h.getQuantidade(), recusadas,
+                h.getMedia() / 1e3, h.percentil(50) / 1e3, h.percentil(90) / 1e3, h.percentil(99) / 1e3,
+                h.percentil(99.9) / 1e3, h.getMaximo() / 1e3);
+        }
+    }
+
+    /**
+     * Cadastra a população inicial (clientes, pets e produtos) na loja.
+     * @param loja Loja que receberá os cadastros
+     */
+    public void popular(Loja loja) {
+        ModoLote lote = new ModoLote(loja);
+        Writer descarte = Writer.nullWriter();
+        Gerador gerador = new Gerador(semente, 0, 0);
+        try {
+            for (String comando : gerador.populacao()) {
+                lote.executarLinha(0, comando, descarte);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // O descarte nunca falha
+        }
+    }
+
+    /**
+     * Executa a carga sobre a loja, já populada por {@link #popular}.
+     * @param loja Loja exercitada
+     * @param threads Threads que disparam as operações
+     * @param operacoesPorThread Operações executadas por cada thread
+     * @param taxaTotal Operações por segundo somando todas as threads (0 para o máximo possível)
+     * @return Relatório com vazão e latências
+     * @throws IllegalArgumentException Se algum parâmetro for inválido
+     */
+    public Relatorio executar(Loja loja, int threads, int operacoesPorThread, double taxaTotal) {
+        if (threads < 1) throw new IllegalArgumentException("O simulador precisa de pelo menos uma thread.");
+        if (operacoesPorThread < 0) throw new IllegalArgumentException("Quantidade de operações inválida.");
+        if (taxaTotal < 0) throw new IllegalArgumentException("Taxa inválida.");
+        long intervalo = taxaTotal == 0 ? 0 : (long) (1e9 * threads / taxaTotal); // Entre operações de uma thread
+
+        List<Trabalhador> trabalhadores = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            trabalhadores.add(new Trabalhador(loja, new Gerador(semente, i + 1, threads), operacoesPorThread, intervalo));
+        }
+        long inicio = System.nanoTime();
+        List<Thread> execucoes = new ArrayList<>();
+        for (Trabalhador trabalhador : trabalhadores) {
+            Thread thread = new Thread(trabalhador, "simulador-" + execucoes.size());
+            execucoes.add(thread);
+            thread.start();
+        }
+        for (Thread thread : execucoes) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        long duracao = System.nanoTime() - inicio;
+
+        Map<Operacao, HistogramaLatencia> latencias = new EnumMap<>(Operacao.class);
+        Map<Operacao, long[]> rejeitadas = new EnumMap<>(Operacao.class);
+        for (Operacao operacao : Operacao.values()) {
+            latencias.put(operacao, new HistogramaLatencia());
+            rejeitadas.put(operacao, new long[1]);
+        }
+        for (Trabalhador trabalhador : trabalhadores) {
+            for (Operacao operacao : Operacao.values()) {
+                latencias.get(operacao).somar(trabalhador.latencias.get(operacao));
+                rejeitadas.get(operacao)[0] += trabalhador.rejeitadas[operacao.ordinal()];
+            }
+        }
+        return new Relatorio(latencias, rejeitadas, duracao, threads);
+    }
+
+    /**
+     * Grava em arquivo a população inicial seguida das operações de uma única thread, para reexecução com {@code --lote}.
+     * @param arquivo Arquivo de destino
+     * @param operacoes Quantidade de operações após a população
+     * @throws IOException Se a escrita falhar
+     */
+    public void gravarComandos(Path arquivo, int operacoes) throws IOException {
+        Gerador populacao = new Gerador(semente, 0, 0);
+        Gerador gerador = new Gerador(semente, 1, 1);
+        try (Writer saida = Files.newBufferedWriter(arquivo, StandardCharsets.UTF_8)) {
+            saida.write("# Simulação: semente " + semente + ", " + clientesIniciais + " clientes, " + produtos + " produtos\n");
+            for (String comando : populacao.populacao()) {
+                saida.write(comando);
+                saida.write('\n');
+            }
+            for (int i = 0; i < operacoes; i++) {
+                Passo passo = gerador.proxima();
+                gerador.agendamentoAceito(passo.agendado); // Sem executar, supõe que todo agendamento é aceito
+                saida.write(passo.comando);
+                saida.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Ponto de entrada usado por {@link PetShop#main}:
+     * {@code --simular [--semente n] [--clientes n] [--produtos n] [--threads n] [--operacoes n] [--taxa op/s] [--gravar arquivo]}.
+     * @param loja Loja exercitada
+     * @param args Argumentos da linha de comando
+     * @return Código de saída do processo
+     */
+    public static int executar(Loja loja, String[] args) {
+        long semente = 42;
+        int clientes = 1_000, produtos = 200, threads = Runtime.getRuntime().availableProcessors(), operacoes = 100_000;
+        double taxa = 0;
+        String gravar = null;
+        try {
+            for (int i = 1; i < args.length; i += 2) {
+                if (i + 1 >= args.length) throw new IllegalArgumentException("Falta o valor de " + args[i]);
+                String valor = args[i + 1];
+                switch (args[i]) {
+                    case "--semente" -> semente = Long.parseLong(valor);
+                    case "--clientes" -> clientes = Integer.parseInt(valor);
+                    case "--produtos" -> produtos = Integer.parseInt(valor);
+                    case "--threads" -> threads = Integer.parseInt(valor);
+                    case "--operacoes" -> operacoes = Integer.parseInt(valor);
+                    case "--taxa" -> taxa = Double.parseDouble(valor);
+                    case "--gravar" -> gravar = valor;
+                    default -> throw new IllegalArgumentException("Opção desconhecida: " + args[i]);
+                }
+            }
+            SimuladorCarga simulador = new SimuladorCarga(semente, clientes, produtos);
+            if (gravar != null) {
+                simulador.gravarComandos(Path.of(gravar), operacoes);
+                System.out.println("Comandos gravados em " + gravar + ".");
+                return 0;
+            }
+            long inicio = System.nanoTime();
+            simulador.popular(loja);
+            System.out.printf("População: %d clientes e %d produtos em %.2f s.%n", clientes, produtos, (System.nanoTime() - inicio) / 1e9);
+            System.out.print(simulador.executar(loja, threads, Math.max(1, operacoes / threads), taxa).formatar());
+            return 0;
+        } catch (IllegalArgumentException e) {
+            System.err.println("Uso: --simular [--semente n] [--clientes n] [--produtos n] [--threads n] [--operacoes n] "
+                + "[--taxa op/s] [--gravar arquivo]\n" + e.getMessage());
+            return 2;
+        } catch (IOException e) {
+            System.err.println("Erro ao gravar os comandos: " + e.getMessage());
+            return 2;
+        }
+    }
+
+    /**
+     * Gera um CPF válido, com os dois dígitos verificadores.
+     * @param base Número de 0 a 999.999.999 usado nos nove primeiros dígitos
+     * @return CPF com 11 dígitos, sem pontuação
+     */
+    public static String gerarCpf(long base) {
+        int[] digitos = new int[11];
+        long resto = base;
+        for (int i = 8; i >= 0; i--) {
+            digitos[i] = (int) (resto % 10);
+            resto /= 10;
+        }
+        digitos[9] = digitoVerificador(digitos, 9);
+        digitos[10] = digitoVerificador(digitos, 10);
+        StringBuilder sb = new StringBuilder(11);
+        for (int digito : digitos) {
+            sb.append(digito);
+        }
+        return sb.toString();
+    }
+
+    private static int digitoVerificador(int[] digitos, int quantidade) {
+        int soma = 0;
+        for (int i = 0; i < quantidade; i++) {
+            soma += digitos[i] * (quantidade + 1 - i);
+        }
+        int resto = soma % 11;
+        return resto < 2 ? 0 : 11 - resto;
+    }
+
+    // Comando gerado e o tipo de operação a que pertence.
+    private static final class Passo {
+        private final Operacao operacao;
+        private final String comando;
+        private final String[] agendado; // cpf, pet, data e hora, se for um agendamento
+
+        private Passo(Operacao operacao, String comando, String[] agendado) {
+            this.operacao = operacao;
+            this.comando = comando;
+            this.agendado = agendado;
+        }
+    }
+
+    // Gera os comandos de uma thread. A thread 0 gera a população inicial; as demais, o movimento.
+    private final class Gerador {
+        private final SplittableRandom aleatorio;
+        private final int thread;
+        private final int totalThreads;
+        private final List<String[]> agendados = new ArrayList<>(); // Agendamentos aceitos desta thread, ainda sem comparecimento
+        private String[] ultimoAgendado;
+        private int novosClientes;
+        private int novosPets;
+
+        private Gerador(long semente, int thread, int totalThreads) {
+            this.aleatorio = new SplittableRandom(semente * 0x9E3779B97F4A7C15L + thread);
+            this.thread = thread;
+            this.totalThreads = totalThreads;
+        }
+
+        private List<String> populacao() {
+            List<String> comandos = new ArrayList<>();
+            for (int codigo = 1; codigo <= produtos; codigo++) {
+                String categoria = CATEGORIAS_PRODUTO[aleatorio.nextInt(CATEGORIAS_PRODUTO.length)];
+                long centavos = 500 + aleatorio.nextInt(30_000);
+                comandos.add(FeedAlteracoes.comando("produto", codigo, categoria + " " + codigo, categoria,
+                    Dinheiro.deCentavos(centavos), ESTOQUE_INICIAL));
+            }
+            for (int i = 0; i < clientesIniciais; i++) {
+                String cpf = cpf(i);
+                comandos.add(cliente(cpf));
+                int pets = 1 + (aleatorio.nextInt(10) < 7 ? 0 : 1 + aleatorio.nextInt(2)); // 70% têm um único pet
+                for (int p = 0; p < pets; p++) {
+                    comandos.add(pet(cpf, "Pet" + p));
+                }
+            }
+            return comandos;
+        }
+
+        private Passo proxima() {
+            ultimoAgendado = null;
+            Operacao operacao = sortearOperacao();
+            String comando = switch (operacao) {
+                case CLIENTE -> {
+                    // Faixa própria de índices por thread, para que os CPFs novos nunca se repitam.
+                    String cpf = cpf(clientesIniciais + (long) novosClientes++ * totalThreads + thread - 1);
+                    yield cliente(cpf);
+                }
+                case PET -> pet(cpfExistente(), "Novo" + thread + "_" + novosPets++); // Nomes nunca repetem no mesmo cliente
+                case AGENDAMENTO -> agendamento();
+                case COMPARECIMENTO -> comparecimento();
+                case VENDA -> venda();
+                case PESAGEM -> FeedAlteracoes.comando("peso", cpfExistente(), "Pet0",
+                    LocalDate.now().minusDays(aleatorio.nextInt(30)).format(ModoLote.FORMATO_DATA),
+                    String.format(Locale.ROOT, "%.1f", 2 + aleatorio.nextDouble() * 38));
+                case CONSULTA -> aleatorio.nextBoolean()
+                    ? FeedAlteracoes.comando("alertas", cpfExistente(), "Pet0")
+                    : FeedAlteracoes.comando("saude", cpfExistente(), "Pet0",
+                        LocalDate.now().minusDays(365).format(ModoLote.FORMATO_DATA), LocalDate.now().format(ModoLote.FORMATO_DATA));
+            };
+            return new Passo(operacao, comando, ultimoAgendado);
+        }
+
+        // Guarda um agendamento aceito pela loja para um comparecimento futuro.
+        private void agendamentoAceito(String[] agendado) {
+            if (agendado != null && agendados.size() < 10_000) agendados.add(agendado);
+        }
+
+        private Operacao sortearOperacao() {
+            int sorteio = aleatorio.nextInt(100);
+            for (Operacao operacao : Operacao.values()) {
+                sorteio -= operacao.peso;
+                if (sorteio < 0) return operacao;
+            }
+            return Operacao.CONSULTA;
+        }
+
+        // Índice -> base de 9 dígitos por uma bijeção módulo 10^9 (o multiplicador é primo com 10), espalhando os CPFs.
+        private String cpf(long indice) {
+            return gerarCpf(Math.floorMod(indice * 387_420_489L + semente, 1_000_000_000L));
+        }
+
+        private String cpfExistente() {
+            return cpf(aleatorio.nextInt(clientesIniciais));
+        }
+
+        private String cliente(String cpf) {
+            String nome = NOMES[aleatorio.nextInt(NOMES.length)] + " " + SOBRENOMES[aleatorio.nextInt(SOBRENOMES.length)];
+            String telefone = String.format("(%02d) 9%04d-%04d", 11 + aleatorio.nextInt(89), aleatorio.nextInt(10_000), aleatorio.nextInt(10_000));
+            String endereco = "Rua " + SOBRENOMES[aleatorio.nextInt(SOBRENOMES.length)] + ", " + (1 + aleatorio.nextInt(2_000));
+            return FeedAlteracoes.comando("cliente", nome, cpf, telefone, endereco);
+        }
+
+        // Cerca de 75% cachorros (porte variado) e 25% gatos (2,5 a 7 kg).
+        private String pet(String cpf, String nome) {
+            boolean gato = aleatorio.nextInt(4) == 0;
+            double peso;
+            if (gato) {
+                peso = 2.5 + aleatorio.nextDouble() * 4.5;
+            } else {
+                double porte = aleatorio.nextDouble();
+                peso = porte < 0.5 ? 2 + aleatorio.nextDouble() * 8 : porte < 0.85 ? 10 + aleatorio.nextDouble() * 15 : 25 + aleatorio.nextDouble() * 20;
+            }
+            LocalDate nascimento = LocalDate.now().minusDays(60 + aleatorio.nextInt(15 * 365));
+            return FeedAlteracoes.comando("pet", cpf, nome, gato ? "Gato" : "Cachorro",
+                String.format(Locale.ROOT, "%.1f", peso), nascimento.format(ModoLote.FORMATO_DATA));
+        }
+
+        // Data nos próximos seis meses e hora em múltiplos de 5 minutos dentro do expediente (sem domingos).
+        private String agendamento() {
+            LocalDate data;
+            do {
+                data = LocalDate.now().plusDays(1 + aleatorio.nextInt(HORIZONTE_AGENDAMENTO_DIAS));
+            } while (data.getDayOfWeek() == DayOfWeek.SUNDAY);
+            LocalTime hora;
+            do {
+                hora = LocalTime.of(8 + aleatorio.nextInt(11), 5 * aleatorio.nextInt(12));
+            } while (!Agendamento.isHorarioValido(data, hora));
+            String cpf = cpfExistente();
+            String dataTexto = data.format(ModoLote.FORMATO_DATA);
+            String horaTexto = hora.format(ModoLote.FORMATO_HORA);
+            ultimoAgendado = new String[] {cpf, "Pet0", dataTexto, horaTexto};
+            return FeedAlteracoes.comando("agendar", cpf, "Pet0", dataTexto, horaTexto, servico());
+        }
+
+        private String servico() {
+            int sorteio = aleatorio.nextInt(100);
+            for (int i = 0; i < PESOS_SERVICOS.length; i++) {
+                sorteio -= PESOS_SERVICOS[i];
+                if (sorteio < 0) return Servico.SERVICOS_DISPONIVEIS.get(i);
+            }
+            return Servico.SERVICOS_DISPONIVEIS.get(0);
+        }
+
+        // Registra o comparecimento de um agendamento feito antes por esta thread (ou tenta um agendamento, se não houver).
+        private String comparecimento() {
+            if (agendados.isEmpty()) return agendamento();
+            String[] agendado = agendados.remove(aleatorio.nextInt(agendados.size()));
+            return FeedAlteracoes.comando("comparecimento", agendado[0], agendado[1], agendado[2], agendado[3],
+                aleatorio.nextInt(10) < 9 ? "S" : "N");
+        }
+
+        private String venda() {
+            StringBuilder itens = new StringBuilder();
+            int quantidadeItens = 1 + aleatorio.nextInt(3);
+            for (int i = 0; i < quantidadeItens; i++) {
+                if (i > 0) itens.append(',');
+                itens.append("p:").append(1 + aleatorio.nextInt(produtos)).append(':').append(1 + aleatorio.nextInt(3));
+            }
+            if (aleatorio.nextInt(5) == 0) {
+                itens.append(",s:").append(cpfExistente()).append(":Pet0:").append(servico());
+            }
+            return FeedAlteracoes.comando("venda", METODOS_PAGAMENTO[aleatorio.nextInt(METODOS_PAGAMENTO.length)], itens);
+        }
+    }
+
+    // Thread de carga: dispara as operações no ritmo pedido e mede a latência de cada uma.
+    private static final class Trabalhador implements Runnable {
+        private final ModoLote lote;
+        private final Gerador gerador;
+        private final int operacoes;
+        private final long intervalo;
+        private final Map<Operacao, HistogramaLatencia> latencias = new EnumMap<>(Operacao.class);
+        private final long[] rejeitadas = new long[Operacao.values().length];
+
+        private Trabalhador(Loja loja, Gerador gerador, int operacoes, long intervalo) {
+            this.lote = new ModoLote(loja);
+            this.gerador = gerador;
+            this.operacoes = operacoes;
+            this.intervalo = intervalo;
+            for (Operacao operacao : Operacao.values()) {
+                latencias.put(operacao, new HistogramaLatencia());
+            }
+        }
+
+        @Override
+        public void run() {
+            Writer descarte = new BufferedWriter(Writer.nullWriter());
+            long inicio = System.nanoTime();
+            try {
+                for (int i = 0; i < operacoes; i++) {
+                    Passo passo = gerador.proxima(); // Gerado fora da medição
+                    long previsto = intervalo == 0 ? System.nanoTime() : inicio + i * intervalo;
+                    long espera = previsto - System.nanoTime();
+                    if (espera > 0) LockSupport.parkNanos(espera);
+                    boolean sucesso = lote.executarLinha(i, passo.comando, descarte);
+                    latencias.get(passo.operacao).registrar(System.nanoTime() - previsto);
+                    if (!sucesso) {
+                        rejeitadas[passo.operacao.ordinal()]++;
+                    } else {
+                        gerador.agendamentoAceito(passo.agendado);
+                    }
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e); // O descarte nunca falha
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package aps3;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tabela local de coordenadas de endereços, usada no lugar de um serviço de geocodificação.
+ * <p>
+ * O arquivo tem uma linha {@code endereco;latitude;longitude} por endereço; linhas vazias e iniciadas
+ * por "#" são ignoradas. O endereço especial {@value #ENDERECO_LOJA} indica de onde saem os veículos.
+ * Endereços são comparados sem acentos, maiúsculas e pontuação; se o endereço completo não estiver na
+ * tabela, as últimas palavras são descartadas uma a uma (complementos como "apto 12" ou o bairro),
+ * o que também permite cadastrar só a rua como aproximação. Como o {@link MotorPrecos}, o arquivo é
+ * relido quando alterado.
+ */
+public class TabelaGeocodigos {
+    public static final String ARQUIVO_PADRAO = "geocodigos.csv";
+    public static final String ENDERECO_LOJA = "loja";
+    private static final double RAIO_TERRA_KM = 6371.0;
+    private static final int PALAVRAS_MINIMAS = 2; // Palavras que sobram no descarte de complementos
+
+    /**
+     * Ponto geográfico em graus decimais.
+     */
+    public static final class Coordenada {
+        private final double latitude;
+        private final double longitude;
+
+        public Coordenada(double latitude, double longitude) {
+            if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+                throw new IllegalArgumentException("Coordenada inválida: " + latitude + ", " + longitude);
+            }
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+        public double getLatitude() {
+            return latitude;
+        }
+        public double getLongitude() {
+            return longitude;
+        }
+
+        /**
+         * Distância em linha reta até outro ponto (fórmula de haversine).
+         * @param outra Outro ponto
+         * @return Distância em km
+         */
+        public double distanciaKm(Coordenada outra) {
+            double dLat = Math.toRadians(outra.latitude - latitude);
+            double dLon = Math.toRadians(outra.longitude - longitude);
+            double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(latitude)) * Math.cos(Math.toRadians(outra.latitude))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+            return 2 * RAIO_TERRA_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.6f, %.6f", latitude, longitude);
+        }
+    }
+
+    private final Path arquivo;                                   // Arquivo da tabela (pode não existir)
+    private volatile Map<String, Coordenada> coordenadas = Map.of(); // Endereço normalizado -> coordenada
+    private volatile long versaoArquivo = Long.MIN_VALUE;          // Data de modificação do arquivo carregado
+
+    /**
+     * Cria a tabela e carrega o arquivo informado. Se o arquivo não existir, a tabela fica vazia.
+     * @param arquivo Caminho do arquivo de coordenadas
+     */
+    public TabelaGeocodigos(Path arquivo) {
+        this.arquivo = arquivo;
+        recarregarSeAlterado();
+    }
+
+    /**
+     * Localiza um endereço na tabela.
+     * @param endereco Endereço em texto livre, como cadastrado no cliente
+     * @return Coordenada do endereço, ou null se nem a rua estiver na tabela
+     */
+    public Coordenada localizar(String endereco) {
+        if (endereco == null) return null;
+        Map<String, Coordenada> tabela = coordenadas;
+        String chave = normalizar(endereco);
+        int palavras = chave.isEmpty() ? 0 : chave.split(" ").length;
+        while (palavras > 0) {
+            Coordenada coordenada = tabela.get(chave);
+            if (coordenada != null) return coordenada;
+            if (palavras <= PALAVRAS_MINIMAS) return null;
+            chave = chave.substring(0, chave.lastIndexOf(' '));
+            palavras--;
+        }
+        return null;
+    }
+
+    /**
+     * Coordenada da loja, de onde saem e para onde voltam os veículos.
+     * @return Coordenada da loja
+     * @throws IllegalStateException Se a tabela não tiver o endereço {@value #ENDERECO_LOJA}
+     */
+    public Coordenada getLoja() {
+        Coordenada loja = coordenadas.get(ENDERECO_LOJA);
+        if (loja == null) throw new IllegalStateException("Localização da loja não cadastrada em " + arquivo + ".");
+        return loja;
+    }
+
+    public int getTotalEnderecos() {
+        return coordenadas.size();
+    }
+
+    /**
+     * Relê o arquivo se ele foi alterado desde a última carga. Em caso de erro, a tabela anterior continua valendo.
+     * @return true se uma nova tabela foi carregada
+     */
+    public synchronized boolean recarregarSeAlterado() {
+        try {
+            long modificacao = Files.getLastModifiedTime(arquivo).toMillis();
+            if (modificacao == versaoArquivo) return false;
+            coordenadas = carregar(Files.readAllLines(arquivo, StandardCharsets.UTF_8));
+            versaoArquivo = modificacao;
+            return true;
+        } catch (NoSuchFileException e) {
+            if (versaoArquivo != Long.MIN_VALUE) {
+                coordenadas = Map.of(); // Arquivo apagado: nenhum endereço localizável
+                versaoArquivo = Long.MIN_VALUE;
+                return true;
+            }
+            return false;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Tabela de endereços não recarregada: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Os dois últimos campos são as coordenadas; o endereço pode conter ";" e vírgulas.
+    private static Map<String, Coordenada> carregar(List<String> linhas) {
+        Map<String, Coordenada> tabela = new HashMap<>(linhas.size() * 2);
+        for (int n = 0; n < linhas.size(); n++) {
+            String linha = linhas.get(n).trim();
+            if (linha.isEmpty() || linha.startsWith("#")) continue;
+            int fimLatitude = linha.lastIndexOf(';');
+            int fimEndereco = fimLatitude < 0 ? -1 : linha.lastIndexOf(';', fimLatitude - 1);
+            if (fimEndereco <= 0) throw new IllegalArgumentException("Linha " + (n + 1) + ": esperado endereco;latitude;longitude.");
+            try {
+                Coordenada coordenada = new Coordenada(Double.parseDouble(linha.substring(fimEndereco + 1, fimLatitude).trim()),
+                    Double.parseDouble(linha.substring(fimLatitude + 1).trim()));
+                tabela.put(normalizar(linha.substring(0, fimEndereco)), coordenada);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Linha " + (n + 1) + ": " + e.getMessage());
+            }
+        }
+        return Map.copyOf(tabela);
+    }
+
+    /**
+     * Forma usada para comparar endereços: sem acentos, em minúsculas e com a pontuação trocada por espaços.
+     * @param endereco Endereço em texto livre
+     * @return Endereço normalizado
+     */
+    static String normalizar(String endereco) {
+        // Uma passada sobre a forma decomposta: as marcas (acentos) somem e sequências de pontuação viram um espaço.
+        String decomposto = Normalizer.normalize(endereco, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposto.length());
+        boolean separar = false;
+        for (int i = 0; i < decomposto.length(); i++) {
+            char c = decomposto.charAt(i);
+            int tipo = Character.getType(c);
+            if (tipo == Character.NON_SPACING_MARK || tipo == Character.COMBINING_SPACING_MARK || tipo == Character.ENCLOSING_MARK) continue;
+            c = Character.toLowerCase(c);
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                if (separar && sb.length() > 0) sb.append(' ');
+                sb.append(c);
+                separar = false;
+            } else {
+                separar = true;
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,187 @@
+package aps3;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Vetor imutável com compartilhamento estrutural (árvore de fator 32 com "cauda").
+ * Cada alteração devolve um novo vetor em O(log32 n), copiando apenas o caminho alterado;
+ * versões antigas continuam válidas e podem ser lidas por outras threads sem sincronização.
+ * @param <T> Tipo dos elementos
+ */
+public final class VetorPersistente<T> implements Iterable<T> {
+    private static final int BITS = 5;
+    private static final int LARGURA = 1 << BITS; // 32 filhos por nó
+    private static final int MASCARA = LARGURA - 1;
+
+    @SuppressWarnings("rawtypes")
+    private static final VetorPersistente VAZIO = new VetorPersistente<>(0, BITS, new Object[LARGURA], new Object[0]);
+
+    private final int tamanho;
+    private final int deslocamento; // Bits do índice consumidos no nível da raiz
+    private final Object[] raiz;    // Nós internos têm 32 posições; folhas guardam os elementos
+    private final Object[] cauda;   // Últimos elementos, fora da árvore, para acréscimos rápidos
+
+    private VetorPersistente(int tamanho, int deslocamento, Object[] raiz, Object[] cauda) {
+        this.tamanho = tamanho;
+        this.deslocamento = deslocamento;
+        this.raiz = raiz;
+        this.cauda = cauda;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> VetorPersistente<T> vazio() {
+        return VAZIO;
+    }
+
+    /**
+     * Cria um vetor com todas as posições nulas, para serem preenchidas depois com {@link #alterar}.
+     * Todas as folhas (e todos os nós de um mesmo nível) são o mesmo objeto, então a criação custa
+     * O(log32 n) independentemente do tamanho; cada {@link #alterar} copia só o caminho da posição.
+     * @param tamanho Quantidade de posições (não pode ser negativa)
+     * @param <T> Tipo dos elementos
+     * @return Vetor com as posições reservadas
+     */
+    public static <T> VetorPersistente<T> nulos(int tamanho) {
+        if (tamanho < 0) throw new IllegalArgumentException("Tamanho inválido: " + tamanho);
+        if (tamanho <= LARGURA) return new VetorPersistente<>(tamanho, BITS, new Object[LARGURA], new Object[tamanho]);
+        int naArvore = ((tamanho - 1) >>> BITS) << BITS;
+        int deslocamento = BITS;
+        while (naArvore > 1 << (deslocamento + BITS)) deslocamento += BITS;
+        Object[] no = new Object[LARGURA]; // Folha nula compartilhada
+        for (int nivel = BITS; nivel <= deslocamento; nivel += BITS) {
+            Object[] pai = new Object[LARGURA];
+            Arrays.fill(pai, no);
+            no = pai;
+        }
+        return new VetorPersistente<>(tamanho, deslocamento, no, new Object[tamanho - naArvore]);
+    }
+
+    public int tamanho() {
+        return tamanho;
+    }
+
+    public boolean isVazio() {
+        return tamanho == 0;
+    }
+
+    /**
+     * Retorna o elemento na posição informada.
+     * @param indice Posição entre 0 e tamanho - 1
+     * @return Elemento armazenado
+     * @throws IndexOutOfBoundsException Se o índice for inválido
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int indice) {
+        return (T) folha(indice)[indice & MASCARA];
+    }
+
+    /**
+     * Acrescenta um elemento ao final.
+     * @param elemento Elemento a ser acrescentado
+     * @return Novo vetor com o elemento
+     */
+    public VetorPersistente<T> com(T elemento) {
+        int naCauda = tamanho - inicioCauda();
+        if (naCauda < LARGURA) {
+            Object[] novaCauda = Arrays.copyOf(cauda, naCauda + 1);
+            novaCauda[naCauda] = elemento;
+            return new VetorPersistente<>(tamanho + 1, deslocamento, raiz, novaCauda);
+        }
+        // Cauda cheia: ela vira uma folha da árvore, que ganha um nível se a raiz estiver lotada.
+        Object[] novaRaiz;
+        int novoDeslocamento = deslocamento;
+        if ((tamanho >>> BITS) > (1 << deslocamento)) {
+            novaRaiz = new Object[LARGURA];
+            novaRaiz[0] = raiz;
+            novaRaiz[1] = novoCaminho(deslocamento, cauda);
+            novoDeslocamento += BITS;
+        } else {
+            novaRaiz = empurrarCauda(deslocamento, raiz, cauda);
+        }
+        return new VetorPersistente<>(tamanho + 1, novoDeslocamento, novaRaiz, new Object[] {elemento});
+    }
+
+    /**
+     * Substitui o elemento de uma posição.
+     * @param indice Posição entre 0 e tamanho - 1
+     * @param elemento Novo elemento
+     * @return Novo vetor com a posição alterada
+     * @throws IndexOutOfBoundsException Se o índice for inválido
+     */
+    public VetorPersistente<T> alterar(int indice, T elemento) {
+        if (indice < 0 || indice >= tamanho) throw new IndexOutOfBoundsException("Índice " + indice + " fora do vetor de " + tamanho);
+        if (indice >= inicioCauda()) {
+            Object[] novaCauda = cauda.clone();
+            novaCauda[indice & MASCARA] = elemento;
+            return new VetorPersistente<>(tamanho, deslocamento, raiz, novaCauda);
+        }
+        return new VetorPersistente<>(tamanho, deslocamento, alterarNo(deslocamento, raiz, indice, elemento), cauda);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private int indice;
+            private Object[] bloco;
+
+            @Override
+            public boolean hasNext() {
+                return indice < tamanho;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (indice >= tamanho) throw new NoSuchElementException();
+                if ((indice & MASCARA) == 0) bloco = folha(indice); // Uma descida na árvore a cada 32 elementos
+                return (T) bloco[indice++ & MASCARA];
+            }
+        };
+    }
+
+    private int inicioCauda() {
+        return tamanho < LARGURA ? 0 : ((tamanho - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] folha(int indice) {
+        if (indice < 0 || indice >= tamanho) throw new IndexOutOfBoundsException("Índice " + indice + " fora do vetor de " + tamanho);
+        if (indice >= inicioCauda()) return cauda;
+        Object[] no = raiz;
+        for (int nivel = deslocamento; nivel > 0; nivel -= BITS) {
+            no = (Object[]) no[(indice >>> nivel) & MASCARA];
+        }
+        return no;
+    }
+
+    private Object[] empurrarCauda(int nivel, Object[] pai, Object[] folha) {
+        int posicao = ((tamanho - 1) >>> nivel) & MASCARA;
+        Object[] copia = pai.clone();
+        if (nivel == BITS) {
+            copia[posicao] = folha;
+        } else {
+            Object[] filho = (Object[]) pai[posicao];
+            copia[posicao] = filho != null ? empurrarCauda(nivel - BITS, filho, folha) : novoCaminho(nivel - BITS, folha);
+        }
+        return copia;
+    }
+
+    private static Object[] novoCaminho(int nivel, Object[] folha) {
+        if (nivel == 0) return folha;
+        Object[] no = new Object[LARGURA];
+        no[0] = novoCaminho(nivel - BITS, folha);
+        return no;
+    }
+
+    private static Object[] alterarNo(int nivel, Object[] no, int indice, Object elemento) {
+        Object[] copia = no.clone();
+        if (nivel == 0) {
+            copia[indice & MASCARA] = elemento;
+        } else {
+            int posicao = (indice >>> nivel) & MASCARA;
+            copia[posicao] = alterarNo(nivel - BITS, (Object[]) no[posicao], indice, elemento);
+        }
+        return copia;
+    }
+}
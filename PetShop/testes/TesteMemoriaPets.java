@@ -0,0 +1,118 @@
+package aps3;
+
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Teste de memória do {@link ArmazemPets}: compara o heap ocupado por um milhão de pets no formato
+ * compacto com o do formato antigo (um objeto por pet com Strings e {@link LocalDate} próprios) e
+ * exige uma redução de pelo menos 3 vezes. Os pets são lidos de linhas de texto, como no
+ * {@link ModoLote} e no {@link ArquivoLoja}, então cada campo chega como uma String nova. Também
+ * confere que uma posição liberada é reaproveitada sem que a visão do pet descartado leia o novo.
+ * <p>
+ * Sem dependências externas, o heap é medido pelo {@link Runtime} depois de coletas de lixo.
+ * Execute com {@code javac -encoding UTF-8 -d out *.java testes/*.java} e
+ * {@code java -cp out aps3.TesteMemoriaPets}; o código de saída é 1 se a redução não for atingida.
+ */
+public class TesteMemoriaPets {
+    private static final int PETS = 1_000_000;
+    private static final double REDUCAO_MINIMA = 3.0;
+
+    // Formato anterior ao armazenamento compacto, campo a campo.
+    private static final class PetAntigo {
+        private final String nomePet;
+        private final String especie;
+        private final String portePet;
+        private final float pesoPet;
+        private final LocalDate dataNascimento;
+
+        private PetAntigo(String nomePet, String especie, float pesoPet, LocalDate dataNascimento) {
+            this.nomePet = nomePet;
+            this.especie = especie;
+            this.portePet = Pets.calcularPorte(pesoPet);
+            this.pesoPet = pesoPet;
+            this.dataNascimento = dataNascimento;
+        }
+    }
+
+    public static void main(String[] args) {
+        String[] linhas = gerarLinhas();
+        double antigo = medir(linhas, false);
+        double compacto = medir(linhas, true);
+        double reducao = antigo / compacto;
+        System.out.printf("Formato antigo: %.1f bytes por pet%nFormato compacto: %.1f bytes por pet%nRedução: %.2fx%n",
+            antigo, compacto, reducao);
+
+        boolean reaproveita = testarReaproveitamento();
+        System.out.println("Posições liberadas reaproveitadas: " + (reaproveita ? "sim" : "não"));
+        if (reducao < REDUCAO_MINIMA || !reaproveita) {
+            System.out.println("FALHOU");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    // Linhas "nome;espécie;peso;nascimento": nomes comuns se repetem e 5% são únicos.
+    private static String[] gerarLinhas() {
+        Random aleatorio = new Random(42);
+        String[] comuns = new String[2_000];
+        for (int i = 0; i < comuns.length; i++) {
+            comuns[i] = "Pet" + Integer.toString(i, 36);
+        }
+        String[] linhas = new String[PETS];
+        for (int i = 0; i < PETS; i++) {
+            String nome = aleatorio.nextInt(20) == 0 ? "Unico" + i : comuns[aleatorio.nextInt(comuns.length)];
+            linhas[i] = nome + ";" + (aleatorio.nextBoolean() ? "Cachorro" : "Gato") + ";" + (1 + aleatorio.nextInt(40_000)) / 1000f
+                + ";" + LocalDate.of(2005, 1, 1).plusDays(aleatorio.nextInt(7_000));
+        }
+        return linhas;
+    }
+
+    // Bytes por pet mantidos vivos, sem contar o vetor que os segura.
+    private static double medir(String[] linhas, boolean compacto) {
+        Object[] pets = new Object[PETS];
+        ArmazemPets armazem = compacto ? new ArmazemPets() : null;
+        long antes = usado();
+        for (int i = 0; i < PETS; i++) {
+            String[] c = linhas[i].split(";");
+            float peso = Float.parseFloat(c[2]);
+            LocalDate nascimento = LocalDate.parse(c[3]);
+            pets[i] = compacto ? new Pets(armazem, c[0], c[1], peso, nascimento) : new PetAntigo(c[0], c[1], peso, nascimento);
+        }
+        long depois = usado();
+        if (pets[PETS - 1] == null) throw new IllegalStateException(); // Mantém os pets vivos até a medição
+        return (depois - antes) / (double) PETS;
+    }
+
+    private static long usado() {
+        Runtime runtime = Runtime.getRuntime();
+        long anterior = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long atual = runtime.totalMemory() - runtime.freeMemory();
+            if (atual >= anterior) return atual;
+            anterior = atual;
+        }
+        return anterior;
+    }
+
+    // Cadastra e descarta pets em sequência: cada novo pet ocupa a posição do último liberado, e a visão
+    // antiga falha em vez de ler os dados do novo ocupante.
+    private static boolean testarReaproveitamento() {
+        ArmazemPets armazem = new ArmazemPets();
+        Pets anterior = new Pets(armazem, "Rex", "Cachorro", 5, LocalDate.of(2020, 1, 1));
+        for (int rodada = 0; rodada < 1_000; rodada++) {
+            anterior.liberar();
+            Pets novo = new Pets(armazem, "Luna" + rodada, "Gato", 4, LocalDate.of(2021, 1, 1));
+            try {
+                anterior.getNomePet();
+                return false; // A visão antiga leu o nome do novo pet
+            } catch (IllegalStateException e) {
+                // Esperado: a posição mudou de geração
+            }
+            if (!novo.getNomePet().equals("Luna" + rodada)) return false;
+            anterior = novo;
+        }
+        return armazem.getQuantidade() == 1;
+    }
+}